@@ -17,6 +17,7 @@
  */
 package jgnash.convert.imports;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Objects;
@@ -44,6 +45,8 @@ public class GenericImport {
         final Engine engine = EngineFactory.getEngine(EngineFactory.DEFAULT);
         Objects.requireNonNull(engine);
 
+        final List<Transaction> newTransactions = new ArrayList<>();
+
         for (final ImportTransaction tran : transactions) {
             Objects.requireNonNull(tran.account);
 
@@ -68,11 +71,13 @@ public class GenericImport {
                 if (t != null) {
                     // for now we don't have transaction id's
                     //t.setFitid(tran.transactionID);
-                    engine.addTransaction(t);
+                    newTransactions.add(t);
                 }
             }
         }
 
+        engine.addTransactions(newTransactions);
+
     }
 
     /**
@@ -124,6 +124,16 @@ public class Import {
 
     private static final List<Runnable> workQueue = new ArrayList<>();
 
+    /**
+     * Number of transactions added to the engine at a time
+     */
+    private static final int TRANSACTION_BATCH_SIZE = 1000;
+
+    /**
+     * Transactions waiting to be added to the engine
+     */
+    private final List<Transaction> transactionBatch = new ArrayList<>();
+
     /**
      * Cache of currency nodes, so that database doesn't need to be queried for
      * each transaction.
@@ -265,6 +275,8 @@ public class Import {
             logger.log(Level.SEVERE, e.toString(), e);
         }
 
+        addTransactionBatch();
+
         logger.log(Level.INFO, "Generating {0} Split Transactions", splitList.size());
 
         /* loop through the lists and add split transactions */
@@ -331,17 +343,43 @@ public class Import {
 
             assert transaction.size() > 0;
 
+            queueTransaction(transaction);
+
+            i.remove();
+        }
+
+        addTransactionBatch();
+
+        logger.info("Transaction import complete");
+    }
+
+    /**
+     * Queues a transaction to be added to the engine with the next batch
+     *
+     * @param transaction transaction to add
+     */
+    private void queueTransaction(final Transaction transaction) {
+        transactionBatch.add(transaction);
+
+        if (transactionBatch.size() >= TRANSACTION_BATCH_SIZE) {
+            addTransactionBatch();
+        }
+    }
+
+    /**
+     * Adds the queued transactions to the engine in one call
+     */
+    private void addTransactionBatch() {
+        if (!transactionBatch.isEmpty()) {
             final Engine engine = EngineFactory.getEngine(EngineFactory.DEFAULT);
             Objects.requireNonNull(engine);
 
-            if (!engine.addTransaction(transaction)) {
-                logger.log(Level.SEVERE, "Failed to import transaction: {0}", id);
+            if (!engine.addTransactions(transactionBatch)) {
+                logger.log(Level.SEVERE, "Failed to import one or more of {0} transactions", transactionBatch.size());
             }
 
-            i.remove();
+            transactionBatch.clear();
         }
-
-        logger.info("Transaction import complete");
     }
 
     void importAccounts(final XMLStreamReader reader) {
@@ -544,11 +582,7 @@ public class Import {
                                 Transaction transaction = generateTransaction(transactionClass, elementMap);
 
                                 if (transaction != null) {
-                                    final Engine engine = EngineFactory.getEngine(EngineFactory.DEFAULT);
-                                    Objects.requireNonNull(engine);
-
-                                    engine.addTransaction(transaction);
-                                    logger.finest("Transaction add complete");
+                                    queueTransaction(transaction);
                                 }
                             } catch (Exception e) {
                                 logger.log(Level.SEVERE, "Error importing transaction id: {0}", transactionId);
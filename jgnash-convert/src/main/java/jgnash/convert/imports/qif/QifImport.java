@@ -246,6 +246,8 @@ public class QifImport {
             return;
         }
         List<QifTransaction> list = qAcc.items;
+        List<Transaction> newTransactions = new ArrayList<>(list.size());
+
         for (QifTransaction aList : list) {
             Transaction tran;
 
@@ -258,7 +260,7 @@ public class QifImport {
 
             tran = generateTransaction(aList, acc);
 
-            if (tran != null && isDuplicate(tran, acc)) { // strip and prevent NPE
+            if (tran != null && (isDuplicate(tran, acc) || isDuplicate(tran, newTransactions))) { // strip and prevent NPE
                 logger.fine("duplicate found");
                 duplicates.add(tran);
                 continue;
@@ -267,16 +269,22 @@ public class QifImport {
                 if (partialImport) {
                     tran.setFitid(FITID);   // importing a bank statement, flag as imported
                 }
-                engine.addTransaction(tran);
+                newTransactions.add(tran);
             } else {
                 logger.warning("Null Transaction!");
             }
         }
+
+        engine.addTransactions(newTransactions);
     }
 
     private static boolean isDuplicate(final Transaction t, final Account a) {
+        return isDuplicate(t, a.getSortedTransactionList());
+    }
+
+    private static boolean isDuplicate(final Transaction t, final List<Transaction> transactions) {
 
-        for (final Transaction tran : a.getSortedTransactionList()) {
+        for (final Transaction tran : transactions) {
             if (tran.equalsIgnoreDate(t)) {
                 return true;
             }
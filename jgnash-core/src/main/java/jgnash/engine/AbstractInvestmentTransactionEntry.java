@@ -78,6 +78,7 @@ public abstract class AbstractInvestmentTransactionEntry extends TransactionEntr
 
     void setSecurityNode(final SecurityNode securityNode) {
         this.securityNode = securityNode;
+        orderChanged();
     }
 
     public BigDecimal getPrice() {
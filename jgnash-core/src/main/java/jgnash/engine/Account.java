@@ -20,6 +20,7 @@ package jgnash.engine;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
@@ -31,8 +32,10 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -55,7 +58,6 @@ import javax.persistence.OrderBy;
 import javax.persistence.PostLoad;
 import javax.persistence.Transient;
 
-import jgnash.util.DateUtils;
 import jgnash.util.NotNull;
 import jgnash.util.Nullable;
 
@@ -112,13 +114,20 @@ public class Account extends StoredObject implements Comparable<Account> {
     Account parentAccount;
 
     /**
-     * List of transactions for this account
+     * List of transactions for this account.  Fetched on first access by the {@code TransactionLoader} of the data
+     * store
      */
     @JoinTable
     @OrderBy("date, number, dateEntered")
-    @ManyToMany(cascade = {CascadeType.ALL}, fetch = FetchType.EAGER)
+    @ManyToMany(cascade = {CascadeType.ALL}, fetch = FetchType.LAZY)
     Set<Transaction> transactions = new HashSet<>();
 
+    /**
+     * Persisted sum of the transaction amounts, {@code null} if not known.  Used while the transactions are not loaded
+     */
+    @Column(precision = 22, scale = 4)
+    private BigDecimal transactionBalance;
+
     /**
      * List of securities if this is an investment account
      */
@@ -171,10 +180,46 @@ public class Account extends StoredObject implements Comparable<Account> {
     @Transient
     private transient List<Account> cachedSortedChildren;
 
+    /**
+     * Running balances of the sorted transactions.  This is not persisted
+     */
+    @Transient
+    private transient RunningBalanceIndex runningBalanceIndex;
+
+    /**
+     * Prices of the investment transactions for each security.  This is not persisted
+     */
+    @Transient
+    private transient MarketPriceIndex marketPriceIndex;
+
+    /**
+     * Released when transactions loaded in the background have been attached, {@code null} if not loading.
+     * This is not persisted
+     *
+     * @see DeferredTransactionLoader
+     */
+    @Transient
+    private transient volatile CountDownLatch transactionsLoaded;
+
+    /**
+     * Loader of the data store this account belongs to, {@code null} to use the loader of the parent account.
+     * This is not persisted
+     *
+     * @see TransactionLoader
+     */
+    @Transient
+    private transient volatile TransactionLoader transactionLoader;
+
+    /**
+     * True while the transactions fetched lazily by JPA have not been loaded.  This is not persisted
+     */
+    @Transient
+    private transient volatile boolean transactionsPending;
+
     /**
      * Balance of the account
      * <p/>
-     * Cached balances cannot be persisted to do nature of JPA
+     * Cached balances cannot be persisted due to the nature of JPA
      */
     @Transient
     private transient BigDecimal accountBalance;
@@ -182,11 +227,36 @@ public class Account extends StoredObject implements Comparable<Account> {
     /**
      * Reconciled balance of the account
      * <p/>
-     * Cached balances cannot be persisted to do nature of JPA
+     * Cached balances cannot be persisted due to the nature of JPA
      */
     @Transient
     private transient BigDecimal reconciledBalance;
 
+    /**
+     * Balance of the account and its children, {@code null} if not known.  Guarded by the tree balance state of the
+     * root account
+     * <p/>
+     * Cached balances cannot be persisted due to the nature of JPA
+     */
+    @Transient
+    private transient BigDecimal treeBalance;
+
+    /**
+     * Reconciled balance of the account and its children, {@code null} if not known.  Guarded by the tree balance
+     * state of the root account
+     * <p/>
+     * Cached balances cannot be persisted due to the nature of JPA
+     */
+    @Transient
+    private transient BigDecimal reconciledTreeBalance;
+
+    /**
+     * Guards the cached tree balances of the accounts below this one while this account is the root of its tree.
+     * The tree balance of an account is only known if the tree balances of all of its children are known.
+     */
+    @Transient
+    private transient TreeBalanceState treeBalanceState;
+
     /**
      * User definable account number
      */
@@ -213,8 +283,31 @@ public class Account extends StoredObject implements Comparable<Account> {
     @Column(columnDefinition = "varchar(8192)")
     private Map<String, String> attributes = new HashMap<>(); // maps from attribute name to value
 
+    /**
+     * Month end balances keyed by month.  The map is replaced instead of modified so it may be read while it is
+     * being persisted
+     *
+     * @see RunningBalanceIndex
+     */
+    @ElementCollection(fetch = FetchType.EAGER)
+    @Column(precision = 22, scale = 4)
+    private Map<Integer, BigDecimal> balanceCheckpoints = new HashMap<>();
+
+    /**
+     * Time zone the months of the balance checkpoints were calculated in
+     *
+     * @see RunningBalanceIndex#getTimeZoneId()
+     */
+    private String balanceCheckpointZone;
+
     private transient ReadWriteLock transactionLock;
 
+    /**
+     * Guards the one time load of lazily fetched transactions.  It is taken after the transaction lock and the
+     * loading thread never takes the transaction lock of this account while holding it.
+     */
+    private transient Lock transactionLoadLock;
+
     private transient ReadWriteLock childLock;
 
     private transient ReadWriteLock securitiesLock;
@@ -230,17 +323,25 @@ public class Account extends StoredObject implements Comparable<Account> {
      */
     public Account() {
         transactionLock = new ReentrantReadWriteLock(true);
+        transactionLoadLock = new ReentrantLock();
         childLock = new ReentrantReadWriteLock(true);
         securitiesLock = new ReentrantReadWriteLock(true);
         attributesLock = new ReentrantReadWriteLock(true);
 
         // CopyOnWrite is used as an alternative to defensive copies
         cachedSortedChildren = new ArrayList<>();
+
+        runningBalanceIndex = new RunningBalanceIndex(this);
+        marketPriceIndex = new MarketPriceIndex(this);
+
+        treeBalanceState = new TreeBalanceState();
     }
 
     public Account(@NotNull final AccountType type, @NotNull final CurrencyNode node) {
         this();
 
+        transactionBalance = BigDecimal.ZERO;
+
         Objects.requireNonNull(type);
         Objects.requireNonNull(node);
 
@@ -260,6 +361,23 @@ public class Account extends StoredObject implements Comparable<Account> {
         return transactionLock;
     }
 
+    RunningBalanceIndex getRunningBalanceIndex() {
+        return runningBalanceIndex;
+    }
+
+    MarketPriceIndex getMarketPriceIndex() {
+        return marketPriceIndex;
+    }
+
+    Map<Integer, BigDecimal> getBalanceCheckpoints() {
+        return balanceCheckpoints;
+    }
+
+    void setBalanceCheckpoints(final Map<Integer, BigDecimal> checkpoints) {
+        balanceCheckpointZone = RunningBalanceIndex.getTimeZoneId();
+        balanceCheckpoints = checkpoints;
+    }
+
     AccountProxy getProxy() {
         if (proxy == null) {
             proxy = getAccountType().getProxy(this);
@@ -326,6 +444,109 @@ public class Account extends StoredObject implements Comparable<Account> {
     void clearCachedBalances() {
         accountBalance = null;
         reconciledBalance = null;
+
+        clearCachedTreeBalances();
+    }
+
+    /**
+     * Clear the cached tree balances of this account and its ancestors so they will be recalculated
+     */
+    void clearCachedTreeBalances() {
+        final TreeBalanceState state = getTreeBalanceState();
+
+        synchronized (state) {
+            state.generation++;
+
+            // an unknown tree balance implies the tree balances of the ancestors are unknown
+            for (Account account = this; account != null; account = account.getParent()) {
+                if (account.treeBalance == null && account.reconciledTreeBalance == null) {
+                    break;
+                }
+
+                account.treeBalance = null;
+                account.reconciledTreeBalance = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the state that guards the cached tree balances of the tree this account belongs to
+     *
+     * @return the tree balance state of the root account
+     */
+    private TreeBalanceState getTreeBalanceState() {
+        Account root = this;
+
+        while (root.parentAccount != null) {
+            root = root.parentAccount;
+        }
+
+        return root.treeBalanceState;
+    }
+
+    /**
+     * Updates the cached balances after a transaction has been added or removed.  The change is propagated to the
+     * cached tree balances of the ancestors if the balance of this account is the sum of its transactions.
+     *
+     * @param transaction transaction that was added or removed
+     * @param added       {@code true} if the transaction was added
+     */
+    private void updateCachedBalances(final Transaction transaction, final boolean added) {
+        accountBalance = null;
+        reconciledBalance = null;
+
+        if (getProxy().getClass() != AccountProxy.class) {   // balance depends on security prices
+            clearCachedTreeBalances();
+            return;
+        }
+
+        BigDecimal amount = transaction.getAmount(this);
+
+        if (!added) {
+            amount = amount.negate();
+        }
+
+        BigDecimal reconciledAmount = transaction.getReconciled(this) == ReconciledState.RECONCILED ? amount : BigDecimal.ZERO;
+
+        // convert the change to the currency of each ancestor before taking the lock
+        final List<Account> accounts = new ArrayList<>();
+        final List<BigDecimal> amounts = new ArrayList<>();
+        final List<BigDecimal> reconciledAmounts = new ArrayList<>();
+
+        for (Account account = this; account != null; account = account.getParent()) {
+            accounts.add(account);
+            amounts.add(amount);
+            reconciledAmounts.add(reconciledAmount);
+
+            final Account parent = account.getParent();
+
+            if (parent != null) {
+                amount = account.adjustForExchangeRate(amount, parent.getCurrencyNode());
+                reconciledAmount = account.adjustForExchangeRate(reconciledAmount, parent.getCurrencyNode());
+            }
+        }
+
+        final TreeBalanceState state = getTreeBalanceState();
+
+        synchronized (state) {
+            state.generation++;
+
+            for (int i = 0; i < accounts.size(); i++) {
+                final Account account = accounts.get(i);
+
+                if (account.treeBalance == null && account.reconciledTreeBalance == null) {
+                    break;
+                }
+
+                if (account.treeBalance != null) {
+                    account.treeBalance = account.treeBalance.add(amounts.get(i));
+                }
+
+                if (account.reconciledTreeBalance != null) {
+                    account.reconciledTreeBalance = account.reconciledTreeBalance.add(reconciledAmounts.get(i));
+                }
+            }
+        }
     }
 
     /**
@@ -350,13 +571,23 @@ public class Account extends StoredObject implements Comparable<Account> {
 
                 transactions.add(tran);
 
+                final List<Transaction> sortedList = getCachedSortedTransactionList();
+
                 /* The cached list may already contain the transaction if it has not been initialized yet */
-                if (!getCachedSortedTransactionList().contains(tran)) {
-                    getCachedSortedTransactionList().add(tran);
-                    Collections.sort(getCachedSortedTransactionList());
+                int index = Collections.binarySearch(sortedList, tran);
+
+                if (index < 0) {
+                    index = -(index + 1);
+                    sortedList.add(index, tran);
                 }
 
-                clearCachedBalances();
+                // running balances are only stale from the insertion point onward
+                runningBalanceIndex.invalidate(index);
+                runningBalanceIndex.invalidateCheckpoints(tran.getDate());
+                marketPriceIndex.add(tran);
+
+                updateAggregates(tran, true);
+                updateCachedBalances(tran, true);
 
                 result = true;
             } else {
@@ -370,6 +601,62 @@ public class Account extends StoredObject implements Comparable<Account> {
         }
     }
 
+    /**
+     * Adds a collection of transactions.  The sorted transaction list is only sorted once which is much
+     * faster than adding the transactions one at a time when bulk loading.
+     *
+     * @param newTransactions the {@code Transaction}s to be added
+     * @return <tt>true</tt> if all transactions were added successfully, <tt>false</tt> if a transaction was already
+     * attached to this account
+     */
+    boolean addTransactions(final Collection<Transaction> newTransactions) {
+        if (placeHolder) {
+            logger.severe("Tried to add transaction to a place holder account");
+            return false;
+        }
+
+        transactionLock.writeLock().lock();
+
+        try {
+            boolean result = true;
+
+            // initialize the cached list before the transaction set is changed
+            final List<Transaction> sortedList = getCachedSortedTransactionList();
+
+            Transaction first = null;
+
+            for (final Transaction tran : newTransactions) {
+                if (transactions.add(tran)) {
+                    sortedList.add(tran);
+                    updateAggregates(tran, true);
+
+                    if (first == null || tran.compareTo(first) < 0) {
+                        first = tran;
+                    }
+                } else {
+                    logger.log(Level.SEVERE, "Account: {0}({1}){2}Already have transaction ID: {3}", new Object[]{getName(),
+                            hashCode(), System.lineSeparator(), tran.hashCode()});
+                    result = false;
+                }
+            }
+
+            if (first != null) {
+                Collections.sort(sortedList);
+
+                // running balances are only stale from the earliest new transaction onward
+                runningBalanceIndex.invalidate(Collections.binarySearch(sortedList, first));
+                runningBalanceIndex.invalidateCheckpoints(first.getDate());
+                marketPriceIndex.clear();
+
+                clearCachedBalances();
+            }
+
+            return result;
+        } finally {
+            transactionLock.writeLock().unlock();
+        }
+    }
+
     /**
      * Removes the specified transaction from this account
      *
@@ -385,8 +672,22 @@ public class Account extends StoredObject implements Comparable<Account> {
 
             if (contains(tran)) {
                 transactions.remove(tran);
-                getCachedSortedTransactionList().remove(tran);
-                clearCachedBalances();
+
+                final int index = indexOf(tran);
+
+                if (index >= 0) {
+                    getCachedSortedTransactionList().remove(index);
+                    runningBalanceIndex.invalidate(index);
+                } else {    // the order of the transaction changed while it was attached, rebuild the sorted list
+                    cachedSortedTransactionList = null;
+                    runningBalanceIndex.clear();
+                }
+
+                runningBalanceIndex.invalidateCheckpoints(tran.getDate());
+                marketPriceIndex.remove(tran);
+
+                updateAggregates(tran, false);
+                updateCachedBalances(tran, false);
 
                 result = true;
             } else {
@@ -399,6 +700,58 @@ public class Account extends StoredObject implements Comparable<Account> {
         }
     }
 
+    /**
+     * Moves an attached transaction back into order after a field used for ordering was changed in place.  Nothing
+     * is done if the transaction is not attached or the sorted list has not been built yet.
+     *
+     * @param tran the {@code Transaction} that changed
+     * @param date earliest date affected by the change
+     * @see Transaction#orderChanged(Date, Account...)
+     */
+    void transactionOrderChanged(final Transaction tran, final Date date) {
+        transactionLock.writeLock().lock();
+
+        try {
+            final List<Transaction> sortedList = cachedSortedTransactionList;
+
+            if (sortedList == null || !transactions.contains(tran)) {
+                return;
+            }
+
+            // the previous position cannot be found with a binary search because the sort key has changed
+            int previous = -1;
+
+            for (int i = 0; i < sortedList.size(); i++) {
+                if (sortedList.get(i) == tran) {
+                    previous = i;
+                    break;
+                }
+            }
+
+            if (previous >= 0) {
+                sortedList.remove(previous);
+            } else {
+                previous = sortedList.size();
+            }
+
+            int index = Collections.binarySearch(sortedList, tran);
+
+            if (index < 0) {
+                index = -(index + 1);
+            }
+
+            sortedList.add(index, tran);
+
+            runningBalanceIndex.invalidate(Math.min(index, previous));
+            runningBalanceIndex.invalidateCheckpoints(date);
+            marketPriceIndex.clear();
+
+            clearCachedBalances();
+        } finally {
+            transactionLock.writeLock().unlock();
+        }
+    }
+
     /**
      * Determines if the specified transaction is attach to this account
      *
@@ -410,6 +763,8 @@ public class Account extends StoredObject implements Comparable<Account> {
         transactionLock.readLock().lock();
 
         try {
+            awaitTransactions();
+
             return transactions.contains(tran);
         } finally {
             transactionLock.readLock().unlock();
@@ -475,6 +830,8 @@ public class Account extends StoredObject implements Comparable<Account> {
         transactionLock.readLock().lock();
 
         try {
+            awaitTransactions();
+
             return transactions.size();
         } finally {
             transactionLock.readLock().unlock();
@@ -492,6 +849,8 @@ public class Account extends StoredObject implements Comparable<Account> {
         transactionLock.readLock().lock();
 
         try {
+            awaitTransactions();
+
             int number = 0;
 
             for (final Transaction tran : transactions) {
@@ -533,6 +892,8 @@ public class Account extends StoredObject implements Comparable<Account> {
 
                     cachedSortedChildren.add(child);
                     Collections.sort(cachedSortedChildren);
+
+                    clearCachedTreeBalances();
                 }
             }
 
@@ -558,6 +919,8 @@ public class Account extends StoredObject implements Comparable<Account> {
                 result = true;
 
                 cachedSortedChildren.remove(child);
+
+                clearCachedTreeBalances();
             }
             return result;
         } finally {
@@ -604,7 +967,11 @@ public class Account extends StoredObject implements Comparable<Account> {
         transactionLock.readLock().lock();
 
         try {
-            return getCachedSortedTransactionList().indexOf(tran);
+            final List<Transaction> sortedList = getCachedSortedTransactionList();
+
+            final int index = Collections.binarySearch(sortedList, tran);
+
+            return index >= 0 ? index : -1;
         } finally {
             transactionLock.readLock().unlock();
         }
@@ -692,25 +1059,13 @@ public class Account extends StoredObject implements Comparable<Account> {
             if (accountBalance != null) {
                 return accountBalance;
             }
-            return accountBalance = getProxy().getBalance();
-        } finally {
-            transactionLock.readLock().unlock();
-        }
-    }
 
-    /**
-     * The account balance is cached to improve performance and reduce thrashing
-     * of the GC system. The accountBalance is rest when transactions are added
-     * and removed and lazily recalculated.
-     *
-     * @param node CurrencyNode to get balance against
-     * @return the balance of this account
-     */
-    private BigDecimal getBalance(final CurrencyNode node) {
-        transactionLock.readLock().lock();
+            // answer from the persisted balance instead of loading the transactions if it does not depend on prices
+            if (transactionsPending && transactionBalance != null && getProxy().getClass() == AccountProxy.class) {
+                return accountBalance = transactionBalance;
+            }
 
-        try {
-            return adjustForExchangeRate(getBalance(), node);
+            return accountBalance = getProxy().getBalance();
         } finally {
             transactionLock.readLock().unlock();
         }
@@ -779,10 +1134,6 @@ public class Account extends StoredObject implements Comparable<Account> {
         }
     }
 
-    private BigDecimal getReconciledBalance(final CurrencyNode node) {
-        return adjustForExchangeRate(getReconciledBalance(), node);
-    }
-
     private BigDecimal adjustForExchangeRate(final BigDecimal amount, final CurrencyNode node) {
         if (node.equals(getCurrencyNode())) { // child has the same commodity type
             return amount;
@@ -811,7 +1162,8 @@ public class Account extends StoredObject implements Comparable<Account> {
             }
 
             if (date == null) {
-                date = getCachedSortedTransactionList().get(getTransactionCount() - 1).getDate();
+                final List<Transaction> sortedList = getCachedSortedTransactionList();
+                date = sortedList.get(sortedList.size() - 1).getDate();
             }
 
             return date;
@@ -831,48 +1183,42 @@ public class Account extends StoredObject implements Comparable<Account> {
     }
 
     /**
-     * Returns the balance of the account plus any child accounts
+     * Returns the balance of the account plus any child accounts.
+     * <p/>
+     * The tree balance is cached and updated as transactions are added or removed.  The balances of the children
+     * are converted to the currency of their parent, so the conversion is applied once per level of the tree.
      *
      * @return the balance of this account including the balance of any child
      * accounts.
      */
     public BigDecimal getTreeBalance() {
-        transactionLock.readLock().lock();
-        childLock.readLock().lock();
+        final TreeBalanceState state = getTreeBalanceState();
+        final long generation;
 
-        try {
-            BigDecimal balance = getBalance();
-
-            for (final Account child : cachedSortedChildren) {
-                balance = balance.add(child.getTreeBalance(getCurrencyNode()));
+        synchronized (state) {
+            if (treeBalance != null) {
+                return treeBalance;
             }
 
-            return balance;
-        } finally {
-            transactionLock.readLock().unlock();
-            childLock.readLock().unlock();
+            generation = state.generation;
         }
-    }
 
-    /**
-     * Returns the balance of the account plus any child accounts. The balance
-     * is adjusted to the current exchange rate of the supplied commodity if
-     * needed.
-     *
-     * @param node The commodity to convert balance to
-     * @return the balance of this account including the balance of any child
-     * accounts.
-     */
-    private BigDecimal getTreeBalance(final CurrencyNode node) {
         transactionLock.readLock().lock();
         childLock.readLock().lock();
 
         try {
-            BigDecimal balance = getBalance(node);
+            BigDecimal balance = getBalance();
 
             for (final Account child : cachedSortedChildren) {
-                balance = balance.add(child.getTreeBalance(node));
+                balance = balance.add(child.adjustForExchangeRate(child.getTreeBalance(), getCurrencyNode()));
             }
+
+            synchronized (state) {
+                if (generation == state.generation) {  // not changed while calculating
+                    treeBalance = balance;
+                }
+            }
+
             return balance;
         } finally {
             transactionLock.readLock().unlock();
@@ -882,37 +1228,25 @@ public class Account extends StoredObject implements Comparable<Account> {
 
     /**
      * Returns the reconciled balance of the account plus any child accounts.
-     * The balance is adjusted to the current exchange rate of the supplied
-     * commodity if needed.
+     * <p/>
+     * The reconciled tree balance is cached and updated as transactions are added or removed.
      *
-     * @param node The commodity to convert balance to
      * @return the balance of this account including the balance of any child
      * accounts.
+     * @see #getTreeBalance()
      */
-    private BigDecimal getReconciledTreeBalance(final CurrencyNode node) {
-        transactionLock.readLock().lock();
-        childLock.readLock().lock();
-
-        try {
-            BigDecimal balance = getReconciledBalance(node);
+    public BigDecimal getReconciledTreeBalance() {
+        final TreeBalanceState state = getTreeBalanceState();
+        final long generation;
 
-            for (final Account child : cachedSortedChildren) {
-                balance = balance.add(child.getReconciledTreeBalance(node));
+        synchronized (state) {
+            if (reconciledTreeBalance != null) {
+                return reconciledTreeBalance;
             }
-            return balance;
-        } finally {
-            transactionLock.readLock().unlock();
-            childLock.readLock().unlock();
+
+            generation = state.generation;
         }
-    }
 
-    /**
-     * Returns the reconciled balance of the account plus any child accounts.
-     *
-     * @return the balance of this account including the balance of any child
-     * accounts.
-     */
-    public BigDecimal getReconciledTreeBalance() {
         transactionLock.readLock().lock();
         childLock.readLock().lock();
 
@@ -920,8 +1254,15 @@ public class Account extends StoredObject implements Comparable<Account> {
             BigDecimal balance = getReconciledBalance();
 
             for (final Account child : cachedSortedChildren) {
-                balance = balance.add(child.getReconciledTreeBalance(getCurrencyNode()));
+                balance = balance.add(child.adjustForExchangeRate(child.getReconciledTreeBalance(), getCurrencyNode()));
+            }
+
+            synchronized (state) {
+                if (generation == state.generation) {  // not changed while calculating
+                    reconciledTreeBalance = balance;
+                }
             }
+
             return balance;
         } finally {
             transactionLock.readLock().unlock();
@@ -1082,7 +1423,7 @@ public class Account extends StoredObject implements Comparable<Account> {
 
     /**
      * Returns an array of transactions that occur after account specified cut
-     * off date. The returned array is inclusive of the specified dates.
+     * off date. The returned array is inclusive of the specified dates and in sorted order.
      *
      * @param startDate starting cut off date
      * @param endDate   ending cut off date
@@ -1092,15 +1433,16 @@ public class Account extends StoredObject implements Comparable<Account> {
         transactionLock.readLock().lock();
 
         try {
-            final ArrayList<Transaction> list = new ArrayList<>();
+            final List<Transaction> sortedList = getCachedSortedTransactionList();
 
-            for (Transaction transaction : transactions) {
-                if (DateUtils.after(transaction.getDate(), startDate, true) && DateUtils.before(transaction.getDate(), endDate, true)) {
-                    list.add(transaction);
-                }
+            final int start = RunningBalanceIndex.indexOnOrAfter(sortedList, startDate);
+            final int end = RunningBalanceIndex.indexOnOrBefore(sortedList, endDate);
+
+            if (end < start) {
+                return new ArrayList<>();
             }
 
-            return list;
+            return new ArrayList<>(sortedList.subList(start, end + 1));
         } finally {
             transactionLock.readLock().unlock();
         }
@@ -1188,6 +1530,8 @@ public class Account extends StoredObject implements Comparable<Account> {
         accountType = type;
 
         proxy = null; // proxy will need to change
+
+        clearCachedTreeBalances();
     }
 
     /**
@@ -1378,6 +1722,8 @@ public class Account extends StoredObject implements Comparable<Account> {
         securitiesLock.readLock().lock();
 
         try {
+            awaitTransactions();
+
             for (Transaction t : transactions) {
                 if (t instanceof InvestmentTransaction) {
                     set.add(((InvestmentTransaction) t).getSecurityNode());
@@ -1530,6 +1876,8 @@ public class Account extends StoredObject implements Comparable<Account> {
      */
     private List<Transaction> getCachedSortedTransactionList() {
 
+        awaitTransactions();
+
         // Lazy initialization
         if (cachedSortedTransactionList == null) {
             cachedSortedTransactionList = new ArrayList<>(transactions);
@@ -1539,6 +1887,172 @@ public class Account extends StoredObject implements Comparable<Account> {
         return cachedSortedTransactionList;
     }
 
+    /**
+     * Blocks transaction access until the transactions being loaded in the background have been attached
+     *
+     * @param latch latch that is released once the transactions have been attached
+     * @see DeferredTransactionLoader
+     */
+    void deferTransactions(final CountDownLatch latch) {
+        transactionsLoaded = latch;
+    }
+
+    /**
+     * Attaches a transaction loaded in the background.  Access to the transactions must be blocked with
+     * {@link #deferTransactions(CountDownLatch)} by the caller.
+     *
+     * @param transaction transaction to attach
+     */
+    void attachTransaction(final Transaction transaction) {
+        synchronized (transactions) {
+            transactions.add(transaction);
+        }
+    }
+
+    /**
+     * Adds or removes a transaction while changes recorded by a data store are replayed.  Replaying a change more
+     * than once has no additional effect.  The transaction may have been changed in place, so all state derived
+     * from the transactions is discarded.
+     *
+     * @param transaction replayed transaction
+     * @param add         {@code true} to add the transaction, {@code false} to remove it
+     * @see JournalReplay
+     */
+    void replayTransaction(final Transaction transaction, final boolean add) {
+        transactionLock.writeLock().lock();
+
+        try {
+            if (add) {
+                transactions.add(transaction);
+            } else {
+                transactions.remove(transaction);
+            }
+
+            cachedSortedTransactionList = null;
+
+            runningBalanceIndex.clear();
+            marketPriceIndex.clear();
+
+            // the stored balance checkpoints no longer match the transactions
+            balanceCheckpoints = new HashMap<>();
+
+            clearCachedBalances();
+        } finally {
+            transactionLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Waits for any transactions being loaded in the background to be attached
+     */
+    private void awaitTransactions() {
+        final CountDownLatch latch = transactionsLoaded;
+
+        if (latch != null) {
+            boolean interrupted = false;
+
+            while (latch.getCount() > 0) {
+                try {
+                    latch.await();
+                } catch (final InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+
+            transactionsLoaded = null;
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (transactionsPending) {
+
+            // callers may only hold the read lock, so the load is made exclusive by its own guard
+            transactionLoadLock.lock();
+
+            try {
+                if (transactionsPending) {
+                    final TransactionLoader loader = getTransactionLoader();
+
+                    if (loader != null) {
+                        loader.load(this);  // the fetch runs on the thread that owns the persistence context
+                    } else {
+                        initializeTransactions();   // not part of an account tree with a loader
+                    }
+                }
+            } finally {
+                transactionLoadLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Sets the loader of the data store this account belongs to
+     *
+     * @param loader transaction loader
+     * @see TransactionLoader#attach(Account)
+     */
+    void setTransactionLoader(final TransactionLoader loader) {
+        transactionLoader = loader;
+    }
+
+    /**
+     * Returns the loader of this account or of its closest ancestor.  Only the root account of a data store needs
+     * to have a loader.
+     *
+     * @return the loader, {@code null} if none of the accounts has a loader
+     */
+    private TransactionLoader getTransactionLoader() {
+        for (Account account = this; account != null; account = account.parentAccount) {
+            final TransactionLoader loader = account.transactionLoader;
+
+            if (loader != null) {
+                return loader;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Fetches the transactions and updates the persisted balance if they have not been loaded yet.  Must be called
+     * from the thread that owns the persistence context of this account, either while the load guard is held or
+     * before the account is shared.  Clearing the pending flag last publishes the loaded state to readers.
+     *
+     * @see TransactionLoader#initialize(Account)
+     */
+    void initializeTransactions() {
+        if (!transactionsPending) {
+            return;
+        }
+
+        BigDecimal balance = BigDecimal.ZERO;
+
+        for (final Transaction transaction : transactions) {
+            balance = balance.add(transaction.getAmount(this));
+        }
+
+        transactionBalance = balance;
+        transactionsPending = false;
+    }
+
+    /**
+     * Keeps the persisted balance current if they are known
+     *
+     * @param transaction transaction that was added or removed
+     * @param added       {@code true} if the transaction was added
+     */
+    private void updateAggregates(final Transaction transaction, final boolean added) {
+        if (transactionBalance != null) {
+            if (added) {
+                transactionBalance = transactionBalance.add(transaction.getAmount(this));
+            } else {
+                transactionBalance = transactionBalance.subtract(transaction.getAmount(this));
+            }
+        }
+    }
+
     /**
      * Needed by XStream for proper initialization
      *
@@ -1550,13 +2064,39 @@ public class Account extends StoredObject implements Comparable<Account> {
     }
 
     @PostLoad
+    private void jpaPostLoad() {
+        postLoad();
+
+        // the account may have been refreshed after a remote change
+        clearCachedBalances();
+
+        // transactions are fetched lazily and loaded on first access
+        cachedSortedTransactionList = null;
+        transactionsPending = true;
+    }
+
     private void postLoad() {
+        if (transactions == null) {    // transactions are not always serialized with the account
+            transactions = new HashSet<>();
+        }
+
+        // older files do not contain checkpoints and checkpoints saved in another time zone use other months
+        if (balanceCheckpoints == null || !RunningBalanceIndex.getTimeZoneId().equals(balanceCheckpointZone)) {
+            balanceCheckpoints = new HashMap<>();
+        }
+
         transactionLock = new ReentrantReadWriteLock(true);
+        transactionLoadLock = new ReentrantLock();
         childLock = new ReentrantReadWriteLock(true);
         securitiesLock = new ReentrantReadWriteLock(true);
         attributesLock = new ReentrantReadWriteLock(true);
 
         cachedSortedChildren = new ArrayList<>(children);
+
+        runningBalanceIndex = new RunningBalanceIndex(this);
+        marketPriceIndex = new MarketPriceIndex(this);
+
+        treeBalanceState = new TreeBalanceState();
     }
 
     /**
@@ -1577,6 +2117,32 @@ public class Account extends StoredObject implements Comparable<Account> {
         a.cachedSortedChildren.clear();
         a.attributes.clear();
 
+        // the clone does not have any transactions
+        a.transactionLoader = null;
+        a.transactionsPending = false;
+        a.transactionLoadLock = new ReentrantLock();
+        a.transactionBalance = BigDecimal.ZERO;
+        a.balanceCheckpoints = new HashMap<>();
+
+        a.runningBalanceIndex = new RunningBalanceIndex(a);
+        a.marketPriceIndex = new MarketPriceIndex(a);
+
+        a.treeBalanceState = new TreeBalanceState();
+        a.treeBalance = null;
+        a.reconciledTreeBalance = null;
+
         return a;
     }
+
+    /**
+     * Guards the cached tree balances of an account tree
+     */
+    private static final class TreeBalanceState {
+
+        /**
+         * Incremented by every change to the cached tree balances so a tree balance calculated concurrently with a
+         * change is not cached
+         */
+        long generation;
+    }
 }
@@ -22,8 +22,6 @@ import java.util.Date;
 import java.util.List;
 import java.util.concurrent.locks.Lock;
 
-import jgnash.util.DateUtils;
-
 /**
  * Proxy class to locate account balance behaviors. Depending on account type, summation of transaction types are
  * handled differently.
@@ -48,20 +46,15 @@ class AccountProxy {
         l.lock();
 
         try {
-            BigDecimal balance = BigDecimal.ZERO;
-
-            for (Transaction transaction : account.getSortedTransactionList()) {
-                balance = balance.add(transaction.getAmount(account));
-            }
-
-            return balance;
+            return getBalanceAt(account.getSortedTransactionList().size() - 1);
         } finally {
             l.unlock();
         }
     }
 
     /**
-     * Get the account balance up to a specified index.
+     * Get the account balance up to a specified index.  The balance is read from the account's prefix-sum
+     * index of running balances.
      *
      * @param index the balance of this account at the specified index.
      * @return the balance of this account at the specified index.
@@ -71,21 +64,15 @@ class AccountProxy {
         l.lock();
 
         try {
-            BigDecimal balance = BigDecimal.ZERO;
-
-            List<Transaction> transactions = account.getSortedTransactionList();
-
-            for (int i = 0; i <= index; i++) {
-                balance = balance.add(transactions.get(i).getAmount(account));
-            }
-            return balance;
+            return account.getRunningBalanceIndex().getBalanceAt(account.getSortedTransactionList(), index);
         } finally {
             l.unlock();
         }
     }
 
     /**
-     * Returns the balance of the transactions inclusive of the start and end dates.
+     * Returns the balance of the transactions inclusive of the start and end dates.  The balance is resolved with
+     * a binary search of the sorted transactions and the running balance index.
      *
      * @param start The inclusive start date
      * @param end   The inclusive end date
@@ -96,17 +83,7 @@ class AccountProxy {
         l.lock();
 
         try {
-            BigDecimal balance = BigDecimal.ZERO;
-
-            for (final Transaction t : account.getSortedTransactionList()) {
-                final Date d = t.getDate();
-
-                if (DateUtils.after(d, start) && DateUtils.before(d, end)) {
-                    balance = balance.add(t.getAmount(account));
-                }
-            }
-
-            return balance;
+            return account.getRunningBalanceIndex().getBalance(account.getSortedTransactionList(), start, end);
         } finally {
             l.unlock();
         }
@@ -123,13 +100,9 @@ class AccountProxy {
         l.lock();
 
         try {
-            BigDecimal balance = BigDecimal.ZERO;
-
-            if (!account.transactions.isEmpty()) {
-                balance = getBalance(account.getSortedTransactionList().get(0).getDate(), date);
-            }
+            final List<Transaction> transactions = account.getSortedTransactionList();
 
-            return balance;
+            return getBalanceAt(RunningBalanceIndex.indexOnOrBefore(transactions, date));
         } finally {
             l.unlock();
         }
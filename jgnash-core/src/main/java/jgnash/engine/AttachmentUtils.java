@@ -19,11 +19,18 @@ package jgnash.engine;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import javax.xml.bind.DatatypeConverter;
 
 /**
  * Support methods for handling attachments
@@ -34,6 +41,15 @@ public class AttachmentUtils {
 
     private static final String ATTACHMENT_BASE = "attachments";
 
+    private static final String ATTACHMENT_CACHE = "attachment-cache";
+
+    private static final String CONTENT_HASH_ALGORITHM = "SHA-256";
+
+    /**
+     * A content name is the hex SHA-256 hash of the file followed by the original file extension
+     */
+    private static final Pattern CONTENT_NAME_PATTERN = Pattern.compile("[0-9a-f]{64}(\\.[^./\\\\]+)?");
+
     /**
      * Utility class
      */
@@ -82,4 +98,98 @@ public class AttachmentUtils {
     public static Path getAttachmentPath() {
         return getAttachmentDirectory(Paths.get(EngineFactory.getActiveDatabase()));
     }
+
+    /**
+     * Returns the directory used by remote clients to cache attachments between sessions
+     *
+     * @return directory for cached attachments
+     */
+    public static Path getAttachmentCacheDirectory() {
+        return Paths.get(EngineFactory.getDefaultDatabase()).getParent().resolve(ATTACHMENT_CACHE);
+    }
+
+    /**
+     * Returns the hex encoded SHA-256 hash of a file
+     *
+     * @param path file to hash
+     * @return the hash of the file content
+     * @throws IOException if the file cannot be read
+     */
+    public static String getContentHash(final Path path) throws IOException {
+        return getContentHash(path, Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns the hex encoded SHA-256 hash of the start of a file
+     *
+     * @param path   file to hash
+     * @param length number of bytes to hash, the whole file is hashed if it is shorter
+     * @return the hash of the first {@code length} bytes of the file
+     * @throws IOException if the file cannot be read
+     */
+    public static String getContentHash(final Path path, final long length) throws IOException {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance(CONTENT_HASH_ALGORITHM);
+
+            try (InputStream in = Files.newInputStream(path)) {
+                final byte[] buffer = new byte[64 * 1024];
+
+                long remaining = length;
+                int bytesRead;
+
+                while (remaining > 0 && (bytesRead = in.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+                    digest.update(buffer, 0, bytesRead);
+                    remaining -= bytesRead;
+                }
+            }
+
+            return DatatypeConverter.printHexBinary(digest.digest()).toLowerCase(Locale.ROOT);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Returns the name an attachment is stored under.  Files with the same content have the same name, so an
+     * attachment used by many transactions is only stored once.  The file extension is kept so the attachment
+     * can still be opened by type.
+     *
+     * @param path file to attach
+     * @return the content name of the file
+     * @throws IOException if the file cannot be read
+     */
+    public static String getContentName(final Path path) throws IOException {
+        final String fileName = path.getFileName().toString();
+        final int index = fileName.lastIndexOf('.');
+
+        if (index > 0 && index < fileName.length() - 1) {
+            return getContentHash(path) + fileName.substring(index).toLowerCase(Locale.ROOT);
+        }
+
+        return getContentHash(path);
+    }
+
+    /**
+     * Determines if an attachment name is a content name.  Attachments added by older releases are stored by
+     * their original file name.
+     *
+     * @param attachment attachment name
+     * @return {@code true} if the name is a content name
+     * @see #getContentName(java.nio.file.Path)
+     */
+    public static boolean isContentName(final String attachment) {
+        return attachment != null && CONTENT_NAME_PATTERN.matcher(attachment).matches();
+    }
+
+    /**
+     * Verifies the content of a file matches a content name
+     *
+     * @param attachment content name
+     * @param path       file to verify
+     * @return {@code true} if the hash of the file matches the content name
+     * @throws IOException if the file cannot be read
+     */
+    public static boolean verifyContent(final String attachment, final Path path) throws IOException {
+        return attachment.startsWith(getContentHash(path));
+    }
 }
@@ -18,6 +18,9 @@
 package jgnash.engine;
 
 import java.math.BigDecimal;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Logger;
 
 import javax.persistence.Entity;
@@ -32,6 +35,12 @@ public class CurrencyNode extends CommodityNode {
 
     private transient ExchangeRateDAO exchangeRateDAO;
 
+    /**
+     * Exchange rates to other currencies.  A cached rate is valid while the exchange rate history and the
+     * exchange rate cache of the DAO are unchanged.
+     */
+    private transient volatile ConcurrentMap<CurrencyNode, CachedRate> rateCache;
+
     public CurrencyNode() {
     }
 
@@ -47,15 +56,39 @@ public class CurrencyNode extends CommodityNode {
      */
     synchronized void setExchangeRateDAO(final ExchangeRateDAO exchangeRateStore) {
         this.exchangeRateDAO = exchangeRateStore;
+        rateCache = null;
     }
 
     /**
-     * Returns an exchange rate given a currency to convert to.
+     * Returns an exchange rate given a currency to convert to.  The latest known rate is returned and the result is
+     * cached until the exchange rate changes.
      * 
      * @param exchangeCurrency currency to convert to
      * @return exchange rate
      */
-    synchronized public BigDecimal getExchangeRate(final CurrencyNode exchangeCurrency) {
+    public BigDecimal getExchangeRate(final CurrencyNode exchangeCurrency) {
+
+        if (exchangeCurrency == null) {
+            Logger.getLogger(CurrencyNode.class.getName()).severe("exchangeCurrency was null");
+            return BigDecimal.ONE;
+        }
+
+        if (exchangeCurrency.equals(this)) {
+            return BigDecimal.ONE;
+        }
+
+        return getCachedRate(exchangeCurrency).rate;
+    }
+
+    /**
+     * Returns the exchange rate on the supplied date, or the closest prior date if a rate was not set for the date.
+     * The latest rate is returned if a rate has not been set on or before the date.
+     *
+     * @param exchangeCurrency currency to convert to
+     * @param date             date of the exchange
+     * @return exchange rate
+     */
+    public BigDecimal getExchangeRate(final CurrencyNode exchangeCurrency, final Date date) {
 
         if (exchangeCurrency == null) {
             Logger.getLogger(CurrencyNode.class.getName()).severe("exchangeCurrency was null");
@@ -66,12 +99,81 @@ public class CurrencyNode extends CommodityNode {
             return BigDecimal.ONE;
         }
 
-        BigDecimal rate = getExchangeRateDAO().getExchangeRateNode(this, exchangeCurrency).getRate();
+        final CachedRate cachedRate = getCachedRate(exchangeCurrency);
+
+        final BigDecimal rate = cachedRate.exchangeRate.getRateOnOrBefore(date);
+
+        if (rate.signum() == 0) {
+            return cachedRate.rate;
+        }
+
+        return convertRate(rate, exchangeCurrency);
+    }
+
+    /**
+     * Returns the cached exchange rate for a currency, looking it up again if the exchange rate has changed
+     *
+     * @param exchangeCurrency currency to convert to
+     * @return cached rate
+     */
+    private CachedRate getCachedRate(final CurrencyNode exchangeCurrency) {
+        final ExchangeRateDAO dao = getExchangeRateDAO();
+
+        ConcurrentMap<CurrencyNode, CachedRate> cache = rateCache;
+
+        if (cache == null) {
+            cache = new ConcurrentHashMap<>();
+            rateCache = cache;
+        }
+
+        CachedRate cachedRate = cache.get(exchangeCurrency);
+
+        if (cachedRate == null || !cachedRate.isValid(dao)) {
+            final ExchangeRate exchangeRate = dao.getExchangeRateNode(this, exchangeCurrency);
 
+            // read the generations before the rate so a concurrent change is detected when next used
+            cachedRate = new CachedRate(exchangeRate, dao.getGeneration(), exchangeRate.getChangeCount(),
+                    convertRate(exchangeRate.getRate(), exchangeCurrency));
+
+            cache.put(exchangeCurrency, cachedRate);
+        }
+
+        return cachedRate;
+    }
+
+    /**
+     * Rates are stored in one direction only and must be inverted for the other direction
+     */
+    private BigDecimal convertRate(final BigDecimal rate, final CurrencyNode exchangeCurrency) {
         if (getSymbol().compareToIgnoreCase(exchangeCurrency.getSymbol()) < 0) {
-            rate = BigDecimal.ONE.divide(rate, MathConstants.mathContext);
+            return BigDecimal.ONE.divide(rate, MathConstants.mathContext);
         }
 
         return rate;
     }
+
+    /**
+     * Exchange rate with the generations it was calculated from
+     */
+    private static final class CachedRate {
+
+        final ExchangeRate exchangeRate;
+
+        final int daoGeneration;
+
+        final int changeCount;
+
+        final BigDecimal rate;
+
+        CachedRate(final ExchangeRate exchangeRate, final int daoGeneration, final int changeCount, final BigDecimal rate) {
+            this.exchangeRate = exchangeRate;
+            this.daoGeneration = daoGeneration;
+            this.changeCount = changeCount;
+            this.rate = rate;
+        }
+
+        boolean isValid(final ExchangeRateDAO dao) {
+            return daoGeneration == dao.getGeneration() && changeCount == exchangeRate.getChangeCount();
+        }
+    }
 }
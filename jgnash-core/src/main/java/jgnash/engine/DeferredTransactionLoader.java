@@ -0,0 +1,95 @@
+/*
+ * jGnash, a personal finance application
+ * Copyright (C) 2001-2014 Craig Cavanaugh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jgnash.engine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Attaches transactions to their accounts while they are loaded in the background.
+ * <p/>
+ * Transactions are loaded in chunks and the accounts of each chunk must be known in advance.  Access to the
+ * transactions of an account blocks until every chunk containing one of its transactions has been attached, so the
+ * engine may be used while loading continues and a caller only waits for the accounts it uses.
+ *
+ * @author Craig Cavanaugh
+ */
+public final class DeferredTransactionLoader {
+
+    private final List<Collection<Account>> chunkAccounts;
+
+    private final Map<Account, CountDownLatch> latches = new HashMap<>();
+
+    /**
+     * Creates a loader and blocks access to the transactions of the accounts until they have been loaded
+     *
+     * @param chunkAccounts the accounts with transactions in each chunk
+     */
+    public DeferredTransactionLoader(final List<? extends Collection<Account>> chunkAccounts) {
+        this.chunkAccounts = new ArrayList<>(chunkAccounts);
+
+        final Map<Account, Integer> counts = new HashMap<>();
+
+        for (final Collection<Account> accounts : chunkAccounts) {
+            for (final Account account : accounts) {
+                final Integer count = counts.get(account);
+                counts.put(account, count == null ? 1 : count + 1);
+            }
+        }
+
+        for (final Map.Entry<Account, Integer> entry : counts.entrySet()) {
+            final CountDownLatch latch = new CountDownLatch(entry.getValue());
+
+            latches.put(entry.getKey(), latch);
+            entry.getKey().deferTransactions(latch);
+        }
+    }
+
+    /**
+     * Attaches a chunk of loaded transactions to their accounts.  May be called concurrently for different chunks.
+     *
+     * @param chunk        index of the chunk
+     * @param transactions transactions of the chunk
+     */
+    public void attach(final int chunk, final Collection<Transaction> transactions) {
+        for (final Transaction transaction : transactions) {
+            for (final Account account : transaction.getAccounts()) {
+                account.attachTransaction(transaction);
+            }
+        }
+
+        release(chunk);
+    }
+
+    /**
+     * Releases the accounts of a chunk without attaching any transactions.  Used if a chunk could not be loaded
+     * so callers are not blocked indefinitely.  The caller must record the failure and must not persist the
+     * accounts, their transactions are incomplete.
+     *
+     * @param chunk index of the chunk
+     */
+    public void release(final int chunk) {
+        for (final Account account : chunkAccounts.get(chunk)) {
+            latches.get(account).countDown();
+        }
+    }
+}
@@ -32,15 +32,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.Callable;
-import java.util.concurrent.CancellationException;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -115,6 +113,13 @@ public class Engine {
 
     private final ReentrantReadWriteLock engineLock;
 
+    private final LockManager lockManager;
+
+    /**
+     * If true, transaction changes hold the account lock for read and write lock the affected accounts only
+     */
+    private final boolean fineGrainedLocking;
+
     /**
      * Named identifier for this engine instance
      */
@@ -156,11 +161,6 @@ public class Engine {
      */
     private String accountSeparator = null;
 
-    /**
-     * The maximum number of network errors before scheduled tasks are stopped
-     */
-    private static final short MAX_ERRORS = 2;
-
     /**
      * Time in seconds to delay start of background updates
      */
@@ -179,6 +179,9 @@ public class Engine {
         this.name = name;
 
         // Generate locks
+        this.lockManager = lockManager;
+        fineGrainedLocking = EngineFactory.useFineGrainedLocking();
+
         accountLock = lockManager.getLock(ACCOUNT_LOCK);
         budgetLock = lockManager.getLock(BUDGET_LOCK);
         commodityLock = lockManager.getLock(COMMODITY_LOCK);
@@ -236,52 +239,15 @@ public class Engine {
     }
 
     /**
-     * Initiates a background securities history update with a given start delay
+     * Initiates a background securities history update with a given start delay.  Quotes are retrieved with batched,
+     * concurrent requests.
      *
      * @param delay delay in seconds
+     * @return {@code Future} for background task
      */
-    public void startSecuritiesUpdate(final int delay) {
-        final List<ScheduledFuture<Boolean>> futures = new ArrayList<>();
-
-        // Load of the scheduler with the tasks and save the futures
-        for (final SecurityNode securityNode : getSecurities()) {
-            if (securityNode.getQuoteSource() != QuoteSource.NONE) { // failure will occur if source is not defined
-                futures.add(backgroundExecutorService.schedule(new BackgroundCallable<>(new UpdateFactory.UpdateSecurityNodeCallable(securityNode)),
-                        delay, TimeUnit.SECONDS));
-            }
-        }
-
-        // Cleanup thread that monitor for excess network connection failures
-        new Thread() {
-            public void run() {
-                short errorCount = 0;
-
-                // Wait for completion of each task and if too many errors occur, cancel all of them
-                for (final ScheduledFuture<Boolean> future : futures) {
-                    try {
-                        if (!future.get(1, TimeUnit.MINUTES)) {
-                            errorCount++;
-                        }
-                    } catch (final InterruptedException | ExecutionException | TimeoutException e) {
-                        logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
-                        errorCount++;
-                    } catch (final CancellationException e) {
-                        errorCount = Short.MAX_VALUE;   // force a failure
-                        break; // futures are being canceled externally, exit the thread
-                    }
-
-                    if (errorCount > MAX_ERRORS) {
-                        break;
-                    }
-                }
-
-                if (errorCount > MAX_ERRORS) {
-                    for (final ScheduledFuture<Boolean> future : futures) {
-                        future.cancel(false);
-                    }
-                }
-            }
-        }.start();
+    public Future<Boolean> startSecuritiesUpdate(final int delay) {
+        return backgroundExecutorService.schedule(new BackgroundCallable<>(new UpdateFactory.UpdateSecuritiesCallable(getSecurities())),
+                delay, TimeUnit.SECONDS);
     }
 
     /**
@@ -308,37 +274,65 @@ public class Engine {
             return node.getMarketPrice(marketDate, baseCurrency);
         }
 
+        // a single lookup, scan the transactions instead of building an index
+        return getMarketPrice(MarketPriceIndex.getClosestTransaction(transactions, node, marketDate), node, baseCurrency, marketDate);
+    }
+
+    /**
+     * Returns the most current known market price for a requested date using an index of transaction prices.
+     * Building the index once is preferred over repeated calls with a collection of transactions.
+     *
+     * @param index        index of the prices of the transactions utilizing the requested investment
+     * @param node         {@code SecurityNode} we want a price for
+     * @param baseCurrency {@code CurrencyNode} reporting currency
+     * @param date         {@code Date} we want a market price for
+     * @return The best market price or a value of 0 if no history or transactions exist
+     * @see #getMarketPrice(java.util.Collection, SecurityNode, CurrencyNode, java.util.Date)
+     */
+    static BigDecimal getMarketPrice(final MarketPriceIndex index, final SecurityNode node, final CurrencyNode baseCurrency, final Date date) {
+
+        final Date marketDate = DateUtils.trimDate(date);
+
+        // Search for the exact history node record
+        SecurityHistoryNode hNode = node.getHistoryNode(marketDate);
+
+        // not null, must be an exact match, return the value because it has precedence
+        if (hNode != null) {
+            return node.getMarketPrice(marketDate, baseCurrency);
+        }
+
+        return getMarketPrice(index.getClosestTransaction(node, marketDate), node, baseCurrency, marketDate);
+    }
+
+    /**
+     * Returns the closer of the closest history node and the closest transaction, exchanged to the base currency
+     *
+     * @param t            closest transaction with a price, may be {@code null}
+     * @param node         {@code SecurityNode} we want a price for
+     * @param baseCurrency {@code CurrencyNode} reporting currency
+     * @param marketDate   trimmed {@code Date} we want a market price for
+     * @return The best market price or a value of 0 if no history or transactions exist
+     */
+    private static BigDecimal getMarketPrice(final InvestmentTransaction t, final SecurityNode node, final CurrencyNode baseCurrency, final Date marketDate) {
+
         // Nothing found yet, continue searching for something better
         Date priceDate = new Date(0);
         BigDecimal price = BigDecimal.ZERO;
 
-        hNode = node.getClosestHistoryNode(marketDate);
+        final SecurityHistoryNode hNode = node.getClosestHistoryNode(marketDate);
 
         if (hNode != null) {    // Closest option so far
             price = hNode.getPrice();
             priceDate = hNode.getDate();
         }
 
-        // Compare against transactions
-        for (final Transaction t : transactions) {
-            if (t instanceof InvestmentTransaction && ((InvestmentTransaction) t).getSecurityNode() == node) {
-
-                // The transaction date must be closer than the history node, but not newer than the request date
-                if ((t.getDate().after(priceDate) && t.getDate().before(marketDate)) || t.getDate().equals(marketDate)) {
-
-                    // Check for a dividend, etc that may have returned a price of zero
-                    final BigDecimal p = ((InvestmentTransaction) t).getPrice();
-
-                    if (p != null && p.compareTo(BigDecimal.ZERO) == 1) {
-                        price = p;
-                        priceDate = t.getDate();
-                    }
-                }
-            }
+        // Compare against the closest transaction, the transaction date must be closer than the history node, but not newer than the request date
+        if (t != null && (t.getDate().after(priceDate) || t.getDate().equals(marketDate))) {
+            price = t.getPrice();
         }
 
-        // Get the current exchange rate for the security node
-        final BigDecimal rate = node.getReportedCurrencyNode().getExchangeRate(baseCurrency);
+        // Get the exchange rate for the security node on the market date
+        final BigDecimal rate = node.getReportedCurrencyNode().getExchangeRate(baseCurrency, marketDate);
 
         // return the price and factor in the exchange rate
         return price.multiply(rate);
@@ -405,7 +399,7 @@ public class Engine {
             getConfig().initialize();
 
             // build the exchange rate storage object
-            exchangeRateDAO = new ExchangeRateDAO(getCommodityDAO());
+            exchangeRateDAO = new ExchangeRateDAO(getCommodityDAO(), messageBus);
 
             // assign the exchange rate store to the currencies
             for (CurrencyNode node : getCurrencies()) {
@@ -814,7 +808,15 @@ public class Engine {
     public boolean addReminder(final Reminder reminder) {
         Objects.requireNonNull(reminder.getUuid());
 
-        boolean result = getReminderDAO().addReminder(reminder);
+        final boolean result;
+
+        engineLock.writeLock().lock();
+
+        try {
+            result = getReminderDAO().addReminder(reminder);
+        } finally {
+            engineLock.writeLock().unlock();
+        }
 
         Message message;
         if (result) {
@@ -1099,6 +1101,60 @@ public class Engine {
         }
     }
 
+    /**
+     * Adds several SecurityHistoryNodes to a SecurityNode.  Existing SecurityHistoryNodes with the same date are
+     * replaced.
+     * <p/>
+     * The history is sorted, persisted and the cached account balances are cleared only once, and a single message
+     * is sent, so this should be used instead of repeated calls when importing history.
+     *
+     * @param node    SecurityNode to add to
+     * @param history SecurityHistoryNodes to add
+     * @return <tt>true</tt> if successful
+     */
+    public boolean addSecurityHistory(@NotNull final SecurityNode node, @NotNull final Collection<SecurityHistoryNode> history) {
+
+        commodityLock.writeLock().lock();
+
+        try {
+            final List<SecurityHistoryNode> added = new ArrayList<>();
+            final List<SecurityHistoryNode> replaced = node.addHistoryNodes(history, added);
+
+            boolean status = true;
+
+            // replaced history is removed the same way as a single history node before the additions are persisted
+            if (!replaced.isEmpty()) {
+                for (final SecurityHistoryNode historyNode : replaced) {
+                    moveObjectToTrash(historyNode);
+                }
+
+                status = getCommodityDAO().removeSecurityHistory(node, replaced);
+            }
+
+            if (status && !added.isEmpty()) {
+                status = getCommodityDAO().addSecurityHistory(node, added);
+            }
+
+            Message message;
+
+            if (status) {
+                if (!added.isEmpty()) {
+                    clearCachedAccountBalance(node);
+                }
+                message = new Message(MessageChannel.COMMODITY, ChannelEvent.SECURITY_HISTORY_ADD, this);
+            } else {
+                message = new Message(MessageChannel.COMMODITY, ChannelEvent.SECURITY_HISTORY_ADD_FAILED, this);
+            }
+
+            message.setObject(MessageProperty.COMMODITY, node);
+            messageBus.fireEvent(message);
+
+            return status;
+        } finally {
+            commodityLock.writeLock().unlock();
+        }
+    }
+
     /**
      * Returns a list of investment accounts that use the given security node
      *
@@ -1131,23 +1187,29 @@ public class Engine {
     }
 
     /**
-     * Clears an {@code Accounts} cached balance and recursively works up the tree to the root.
+     * Clears an {@code Accounts} cached balance.  The cached tree balances of the ancestors are cleared as well.
+     * Cached balances are not persisted, so the account is not updated.
      *
      * @param account {@code Account} to clear
      */
     private void clearCachedAccountBalance(final Account account) {
 
-        accountLock.writeLock().lock();
+        final List<Lock> locks = lockAccounts(Collections.singleton(account));
 
         try {
             account.clearCachedBalances();
-            getAccountDAO().updateAccount(account);
         } finally {
-            accountLock.writeLock().unlock();
+            unlock(locks);
         }
+    }
 
-        if (account.getParent() != null && account.getParent().getAccountType() != AccountType.ROOT) {
-            clearCachedAccountBalance(account.getParent());
+    /**
+     * Clears the cached tree balances of all accounts.  Tree balances are converted with the latest exchange rates
+     * and must be recalculated when the exchange rates change.
+     */
+    private void clearCachedTreeBalances() {
+        for (final Account account : getAccountDAO().getAccountList()) {
+            account.clearCachedTreeBalances();
         }
     }
 
@@ -1563,6 +1625,7 @@ public class Engine {
 
             if (exchangeRate.addHistoryNode(historyNode)) {
                 result = getCommodityDAO().addExchangeRateHistory(exchangeRate);
+                clearCachedTreeBalances();
             }
 
             if (result) {
@@ -1592,6 +1655,7 @@ public class Engine {
                 if (exchangeRate.removeHistoryNode(history)) {
                     moveObjectToTrash(history);
                     result = getCommodityDAO().removeExchangeRateHistory(exchangeRate);
+                    clearCachedTreeBalances();
                 }
             }
 
@@ -1677,7 +1741,13 @@ public class Engine {
     }
 
     public boolean updateReminder(final Reminder reminder) {
-        return getReminderDAO().updateReminder(reminder);
+        engineLock.writeLock().lock();
+
+        try {
+            return getReminderDAO().updateReminder(reminder);
+        } finally {
+            engineLock.writeLock().unlock();
+        }
     }
 
     public String getAccountSeparator() {
@@ -1806,6 +1876,10 @@ public class Engine {
 
     public void refresh(final StoredObject object) {
         eDAO.refresh(object);
+
+        if (object instanceof ExchangeRate) {   // changed by a remote client
+            clearCachedTreeBalances();
+        }
     }
 
     /**
@@ -2130,8 +2204,15 @@ public class Engine {
         return attachmentManager.getAttachment(attachment);
     }
 
-    public boolean addAttachment(final Path path, final boolean copy) {
-        boolean result = false;
+    /**
+     * Adds a file attachment.  Files with the same content are only stored once.
+     *
+     * @param path Path to the attachment to add
+     * @param copy true if only copying the file
+     * @return the attachment name to record in the transaction or {@code null} if not successful
+     */
+    public String addAttachment(final Path path, final boolean copy) {
+        String result = null;
 
         try {
             result = attachmentManager.addAttachment(path, copy);
@@ -2142,10 +2223,41 @@ public class Engine {
         return result;
     }
 
+    /**
+     * Removes an attachment.  An attachment shared with another transaction is kept.
+     *
+     * @param attachment attachment name
+     * @return true if successful
+     */
     public boolean removeAttachment(final String attachment) {
+        for (final Transaction transaction : getTransactionsWithAttachments()) {
+            if (attachment.equals(transaction.getAttachment())) {
+                return true;
+            }
+        }
+
         return attachmentManager.removeAttachment(attachment);
     }
 
+    /**
+     * Retrieves the attachments of the transactions in the background.  Remote attachments are requested in bulk
+     * instead of waiting for each one as it is viewed.
+     *
+     * @param transactions transactions with attachments
+     * @see #getTransactionsWithAttachments()
+     */
+    public void prefetchAttachments(final Collection<Transaction> transactions) {
+        final Set<String> attachments = new HashSet<>();
+
+        for (final Transaction transaction : transactions) {
+            if (transaction.getAttachment() != null && !transaction.getAttachment().isEmpty()) {
+                attachments.add(transaction.getAttachment());
+            }
+        }
+
+        attachmentManager.prefetchAttachments(attachments);
+    }
+
     @SuppressWarnings("deprecation")
     private void migrateAmortizeObjects() {
 
@@ -2567,7 +2679,7 @@ public class Engine {
 
     public boolean addTransaction(final Transaction transaction) {
 
-        accountLock.writeLock().lock();
+        final List<Lock> locks = lockAccounts(transaction.getAccounts());
 
         try {
             boolean result = isTransactionValid(transaction);
@@ -2585,31 +2697,119 @@ public class Engine {
 
                 /* If successful, extract and enter a default exchange rate for the transaction date if a rate has not been set */
                 if (result) {
-                    for (TransactionEntry entry : transaction.getTransactionEntries()) {
-                        if (entry.isMultiCurrency()) {
-                            final ExchangeRate rate = getExchangeRate(entry.getDebitAccount().getCurrencyNode(), entry.getCreditAccount().getCurrencyNode());
+                    setDefaultExchangeRates(transaction);
+                }
+            }
 
-                            if (rate.getRate(transaction.getDate()).equals(BigDecimal.ZERO)) { // no rate for the date has been set
-                                final BigDecimal exchangeRate = entry.getDebitAmount().abs().divide(entry.getCreditAmount().abs(), MathConstants.mathContext);
+            postTransactionAdd(transaction, result);
 
-                                setExchangeRate(entry.getCreditAccount().getCurrencyNode(), entry.getDebitAccount().getCurrencyNode(), exchangeRate, transaction.getDate());
-                            }
+            return result;
+        } finally {
+            unlock(locks);
+        }
+    }
+
+    /**
+     * Adds a collection of transactions.
+     * <p/>
+     * All transactions are validated before any are added and the account lock is only acquired once.  Each account
+     * is sorted once, the transactions are stored as a single batch and the messages are fired as a group so
+     * listeners are notified once per account.  Invalid transactions are skipped.
+     *
+     * @param transactions transactions to add
+     * @return {@code true} if all transactions were added successfully
+     */
+    public boolean addTransactions(final Collection<Transaction> transactions) {
+
+        final Set<Account> accounts = new HashSet<>();
+
+        for (final Transaction transaction : transactions) {
+            accounts.addAll(transaction.getAccounts());
+        }
+
+        final List<Lock> locks = lockAccounts(accounts);
+
+        try {
+            final List<Transaction> validTransactions = new ArrayList<>(transactions.size());
+            final List<Transaction> invalidTransactions = new ArrayList<>();
+
+            final Set<String> uuids = new HashSet<>();
+
+            for (final Transaction transaction : transactions) {
+                if (isTransactionValid(transaction) && uuids.add(transaction.getUuid())) {
+                    validTransactions.add(transaction);
+                } else {
+                    invalidTransactions.add(transaction);
+                }
+            }
+
+            boolean result = true;
+
+            if (!validTransactions.isEmpty()) {
+
+                /* Group the transactions by account so each account is only sorted once */
+                final Map<Account, List<Transaction>> accountTransactions = new HashMap<>();
+
+                for (final Transaction transaction : validTransactions) {
+                    for (final Account account : transaction.getAccounts()) {
+                        List<Transaction> list = accountTransactions.get(account);
+
+                        if (list == null) {
+                            list = new ArrayList<>();
+                            accountTransactions.put(account, list);
                         }
+                        list.add(transaction);
+                    }
+                }
+
+                for (final Map.Entry<Account, List<Transaction>> entry : accountTransactions.entrySet()) {
+                    if (!entry.getKey().addTransactions(entry.getValue())) {
+                        logSevere("Failed to add the Transaction");
+                    }
+                }
+
+                result = getTransactionDAO().addTransactions(validTransactions);
+
+                logInfo(rb.getString("Message.TransactionAdd"));
+
+                if (result) {
+                    for (final Transaction transaction : validTransactions) {
+                        setDefaultExchangeRates(transaction);
                     }
                 }
             }
 
-            postTransactionAdd(transaction, result);
+            postTransactionsAdd(invalidTransactions, false);
+            postTransactionsAdd(validTransactions, result);
 
-            return result;
+            return result && invalidTransactions.isEmpty();
         } finally {
-            accountLock.writeLock().unlock();
+            unlock(locks);
+        }
+    }
+
+    /**
+     * Extracts and enters a default exchange rate for the transaction date if a rate has not been set
+     *
+     * @param transaction transaction to extract exchange rates from
+     */
+    private void setDefaultExchangeRates(final Transaction transaction) {
+        for (TransactionEntry entry : transaction.getTransactionEntries()) {
+            if (entry.isMultiCurrency()) {
+                final ExchangeRate rate = getExchangeRate(entry.getDebitAccount().getCurrencyNode(), entry.getCreditAccount().getCurrencyNode());
+
+                if (rate.getRate(transaction.getDate()).equals(BigDecimal.ZERO)) { // no rate for the date has been set
+                    final BigDecimal exchangeRate = entry.getDebitAmount().abs().divide(entry.getCreditAmount().abs(), MathConstants.mathContext);
+
+                    setExchangeRate(entry.getCreditAccount().getCurrencyNode(), entry.getDebitAccount().getCurrencyNode(), exchangeRate, transaction.getDate());
+                }
+            }
         }
     }
 
     public boolean removeTransaction(final Transaction transaction) {
 
-        accountLock.writeLock().lock();
+        final List<Lock> locks = lockAccounts(transaction.getAccounts());
 
         try {
             for (Account account : transaction.getAccounts()) {
@@ -2639,7 +2839,82 @@ public class Engine {
 
             return result;
         } finally {
-            accountLock.writeLock().unlock();
+            unlock(locks);
+        }
+    }
+
+    /**
+     * Returns the locks that exclude every change made by an engine to its stored objects.  A data store that
+     * serializes the stored objects on another thread must hold them while it captures the objects to serialize.
+     * <p/>
+     * The account lock is returned for write because changes to transactions only hold it for read when fine grained
+     * locking is enabled.  The other locks are returned for read.  The engine does not acquire its locks in a fixed
+     * order, so callers must not block on more than one of them at a time.
+     *
+     * @param lockManager lock manager of the engine
+     * @return the locks to acquire
+     */
+    public static List<Lock> getSnapshotLocks(final LockManager lockManager) {
+        final List<Lock> locks = new ArrayList<>();
+
+        locks.add(lockManager.getLock(ACCOUNT_LOCK).writeLock());
+        locks.add(lockManager.getLock(BUDGET_LOCK).readLock());
+        locks.add(lockManager.getLock(COMMODITY_LOCK).readLock());
+        locks.add(lockManager.getLock(CONFIG_LOCK).readLock());
+        locks.add(lockManager.getLock(ENGINE_LOCK).readLock());
+
+        return locks;
+    }
+
+    /**
+     * Acquires the locks needed to change the transactions and balances of a collection of accounts.
+     * <p/>
+     * With fine grained locking the account lock is held for read, which only excludes changes to the account
+     * structure, and a lock for each account is held for write.  The account locks are always acquired in uuid order
+     * so callers with overlapping accounts cannot deadlock.  Otherwise the account lock is held for write.
+     *
+     * @param accounts accounts that will be changed
+     * @return the acquired locks, must be released with {@link #unlock(List)}
+     */
+    private List<Lock> lockAccounts(final Collection<Account> accounts) {
+        final List<Lock> locks = new ArrayList<>();
+
+        if (!fineGrainedLocking) {
+            locks.add(accountLock.writeLock());
+        } else {
+            locks.add(accountLock.readLock());
+
+            final Map<String, Account> sorted = new TreeMap<>();
+
+            for (final Account account : accounts) {
+                sorted.put(account.getUuid(), account);
+            }
+
+            for (final String accountId : sorted.keySet()) {
+                locks.add(lockManager.getLock(ACCOUNT_LOCK + '-' + accountId).writeLock());
+            }
+        }
+
+        for (int i = 0; i < locks.size(); i++) {
+            try {
+                locks.get(i).lock();
+            } catch (final RuntimeException e) {
+                unlock(locks.subList(0, i));   // release what has been acquired
+                throw e;
+            }
+        }
+
+        return locks;
+    }
+
+    /**
+     * Releases locks in the reverse order of acquisition
+     *
+     * @param locks locks to release
+     */
+    private static void unlock(final List<Lock> locks) {
+        for (int i = locks.size() - 1; i >= 0; i--) {
+            locks.get(i).unlock();
         }
     }
 
@@ -2731,6 +3006,32 @@ public class Engine {
         }
     }
 
+    private void postTransactionsAdd(final Collection<Transaction> transactions, final boolean result) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+
+        final List<Message> messages = new ArrayList<>();
+
+        for (Transaction transaction : transactions) {
+            for (Account a : transaction.getAccounts()) {
+                Message message;
+
+                if (result) {
+                    message = new Message(MessageChannel.TRANSACTION, ChannelEvent.TRANSACTION_ADD, this);
+                } else {
+                    message = new Message(MessageChannel.TRANSACTION, ChannelEvent.TRANSACTION_ADD_FAILED, this);
+                }
+                message.setObject(MessageProperty.ACCOUNT, a);
+                message.setObject(MessageProperty.TRANSACTION, transaction);
+
+                messages.add(message);
+            }
+        }
+
+        messageBus.fireEvents(messages);
+    }
+
     private void postTransactionRemove(final Transaction transaction, final boolean result) {
 
         for (Account a : transaction.getAccounts()) {
@@ -72,6 +72,18 @@ public class EngineFactory {
 
     private static final String REMOVE_BACKUPS = "RemoveBackups";
 
+    private static final String USE_JOURNAL = "UseJournal";
+
+    private static final String JPA_READ_THREADS = "JpaReadThreads";
+
+    private static final String FINE_GRAINED_LOCKING = "FineGrainedLocking";
+
+    private static final String LAZY_TRANSACTIONS = "LazyTransactions";
+
+    private static final String ATTACHMENT_CACHE_SIZE = "AttachmentCacheSize";
+
+    private static final long DEFAULT_ATTACHMENT_CACHE_SIZE = 256L * 1024 * 1024;
+
     private static final String OPEN_LAST = "OpenLast";
 
     /**
@@ -513,4 +525,89 @@ public class EngineFactory {
 
         pref.putBoolean(REMOVE_BACKUPS, backup);
     }
+
+    /**
+     * Determines if changes to local XStream files are appended to a journal instead of rewriting the entire file
+     *
+     * @return true if journaling is enabled
+     */
+    public static synchronized boolean useJournal() {
+        Preferences pref = Preferences.userNodeForPackage(EngineFactory.class);
+
+        return pref.getBoolean(USE_JOURNAL, false);
+    }
+
+    public static synchronized void setUseJournal(final boolean journal) {
+        Preferences pref = Preferences.userNodeForPackage(EngineFactory.class);
+
+        pref.putBoolean(USE_JOURNAL, journal);
+    }
+
+    /**
+     * Returns the number of threads used for concurrent read only queries of a JPA database
+     *
+     * @return number of threads, 0 if all queries share a single EntityManager
+     */
+    public static synchronized int getJpaReadThreads() {
+        Preferences pref = Preferences.userNodeForPackage(EngineFactory.class);
+
+        return pref.getInt(JPA_READ_THREADS, 0);
+    }
+
+    public static synchronized void setJpaReadThreads(final int threads) {
+        Preferences pref = Preferences.userNodeForPackage(EngineFactory.class);
+
+        pref.putInt(JPA_READ_THREADS, threads);
+    }
+
+    /**
+     * Determines if transaction changes lock only the affected accounts instead of every account
+     *
+     * @return true if fine grained locking is enabled
+     */
+    public static synchronized boolean useFineGrainedLocking() {
+        Preferences pref = Preferences.userNodeForPackage(EngineFactory.class);
+
+        return pref.getBoolean(FINE_GRAINED_LOCKING, false);
+    }
+
+    public static synchronized void setUseFineGrainedLocking(final boolean fineGrained) {
+        Preferences pref = Preferences.userNodeForPackage(EngineFactory.class);
+
+        pref.putBoolean(FINE_GRAINED_LOCKING, fineGrained);
+    }
+
+    /**
+     * Determines if the transactions of an account are loaded on first access when using a relational database
+     *
+     * @return true if transactions are loaded lazily
+     */
+    public static synchronized boolean useLazyTransactionLoading() {
+        Preferences pref = Preferences.userNodeForPackage(EngineFactory.class);
+
+        return pref.getBoolean(LAZY_TRANSACTIONS, false);
+    }
+
+    public static synchronized void setUseLazyTransactionLoading(final boolean lazy) {
+        Preferences pref = Preferences.userNodeForPackage(EngineFactory.class);
+
+        pref.putBoolean(LAZY_TRANSACTIONS, lazy);
+    }
+
+    /**
+     * Returns the maximum size in bytes of the attachment cache used by remote clients
+     *
+     * @return maximum size of the cache in bytes
+     */
+    public static synchronized long getAttachmentCacheSize() {
+        Preferences pref = Preferences.userNodeForPackage(EngineFactory.class);
+
+        return pref.getLong(ATTACHMENT_CACHE_SIZE, DEFAULT_ATTACHMENT_CACHE_SIZE);
+    }
+
+    public static synchronized void setAttachmentCacheSize(final long size) {
+        Preferences pref = Preferences.userNodeForPackage(EngineFactory.class);
+
+        pref.putLong(ATTACHMENT_CACHE_SIZE, size);
+    }
 }
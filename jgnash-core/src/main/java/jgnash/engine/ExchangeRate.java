@@ -22,7 +22,7 @@ import jgnash.util.DateUtils;
 import java.io.ObjectStreamException;
 import java.math.BigDecimal;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
@@ -35,17 +35,23 @@ import java.util.logging.Logger;
 
 import javax.persistence.CascadeType;
 import javax.persistence.Entity;
+import javax.persistence.Index;
 import javax.persistence.JoinTable;
 import javax.persistence.OneToMany;
 import javax.persistence.OrderBy;
 import javax.persistence.PostLoad;
+import javax.persistence.Table;
 
 /**
  * Exchange rate object
+ * <p/>
+ * The history is indexed by trimmed date in date order so a rate for a date, or the closest prior rate, is found with a
+ * binary search.  The index is rebuilt when next used after the history changes.
  *
  * @author Craig Cavanaugh
  */
 @Entity
+@Table(indexes = {@Index(columnList = "rateId")})
 public class ExchangeRate extends StoredObject {
 
     @JoinTable
@@ -58,6 +64,16 @@ public class ExchangeRate extends StoredObject {
      */
     transient private BigDecimal lastRate;
 
+    /**
+     * Date sorted index of the history, {@code null} if it needs to be rebuilt
+     */
+    private transient volatile SortedHistory sortedHistory;
+
+    /**
+     * Incremented each time the history changes so cached rates may be validated
+     */
+    private transient volatile int changeCount;
+
     /**
      * Identifier for the ExchangeRate object
      */
@@ -110,12 +126,7 @@ public class ExchangeRate extends StoredObject {
         final Date testDate = DateUtils.trimDate(date);
 
         try {
-            for (ExchangeRateHistoryNode node : historyNodes) {
-                if (testDate.compareTo(node.getDate()) == 0) {
-                    result = true;
-                    break;
-                }
-            }
+            result = getSortedHistory().indexOf(testDate) >= 0;
         } finally {
             lock.readLock().unlock();
         }
@@ -124,11 +135,14 @@ public class ExchangeRate extends StoredObject {
     }
 
     public List<ExchangeRateHistoryNode> getHistory() {
-        // return a defensive copy
-        List<ExchangeRateHistoryNode> nodes = new ArrayList<>(historyNodes);
-        Collections.sort(nodes);
+        getLock().readLock().lock();
 
-        return nodes;
+        try {
+            // return a defensive copy
+            return new ArrayList<>(Arrays.asList(getSortedHistory().nodes));
+        } finally {
+            getLock().readLock().unlock();
+        }
     }
 
     boolean addHistoryNode(final ExchangeRateHistoryNode node) {
@@ -139,7 +153,7 @@ public class ExchangeRate extends StoredObject {
         try {
             historyNodes.add(node);
 
-            lastRate = null; // force an update
+            historyChanged();
 
             result = true;
         } catch (final Exception ex) {
@@ -159,11 +173,11 @@ public class ExchangeRate extends StoredObject {
         lock.readLock().lock();
 
         try {
-            for (ExchangeRateHistoryNode historyNode : historyNodes) {
-                if (testDate.compareTo(historyNode.getDate()) == 0) {
-                    node = historyNode;
-                    break;
-                }
+            final SortedHistory history = getSortedHistory();
+            final int index = history.indexOf(testDate);
+
+            if (index >= 0) {
+                node = history.nodes[index];
             }
         } finally {
             lock.readLock().unlock();
@@ -183,8 +197,7 @@ public class ExchangeRate extends StoredObject {
             result = historyNodes.remove(hNode);
 
             if (result) {
-                lastRate = null; // force an update
-
+                historyChanged();
             }
         } finally {
             l.unlock();
@@ -202,11 +215,10 @@ public class ExchangeRate extends StoredObject {
 
         try {
             if (lastRate == null) {
-                if (!historyNodes.isEmpty()) {
-
-                    List<ExchangeRateHistoryNode> nodes = getHistory();
+                final ExchangeRateHistoryNode[] nodes = getSortedHistory().nodes;
 
-                    lastRate = nodes.get(nodes.size() - 1).getRate();
+                if (nodes.length > 0) {
+                    lastRate = nodes[nodes.length - 1].getRate();
                 } else {
                     lastRate = BigDecimal.ONE;
                 }
@@ -234,11 +246,11 @@ public class ExchangeRate extends StoredObject {
         Date exchangeDate = DateUtils.trimDate(date);
 
         try {
-            for (ExchangeRateHistoryNode historyNode : historyNodes) {
-                if (exchangeDate.equals(historyNode.getDate())) {
-                    rate = historyNode.getRate();
-                    break;
-                }
+            final SortedHistory history = getSortedHistory();
+            final int index = history.indexOf(exchangeDate);
+
+            if (index >= 0) {
+                rate = history.nodes[index].getRate();
             }
         } finally {
             getLock().readLock().unlock();
@@ -247,6 +259,68 @@ public class ExchangeRate extends StoredObject {
         return rate;
     }
 
+    /**
+     * Returns the exchange rate for a given date or the closest prior date if a rate was not set for the date.
+     * <p/>
+     * If a rate has not been set on or before the date, {@code BigDecimal.ZERO} is returned
+     *
+     * @param date Date for exchange
+     * @return the exchange rate if known, otherwise {@code BigDecimal.ZERO}
+     */
+    public BigDecimal getRateOnOrBefore(final Date date) {
+        getLock().readLock().lock();
+
+        BigDecimal rate = BigDecimal.ZERO;
+
+        try {
+            final SortedHistory history = getSortedHistory();
+            final int index = history.indexOnOrBefore(DateUtils.trimDate(date));
+
+            if (index >= 0) {
+                rate = history.nodes[index].getRate();
+            }
+        } finally {
+            getLock().readLock().unlock();
+        }
+
+        return rate;
+    }
+
+    /**
+     * Returns a count that changes each time the history changes
+     *
+     * @return the change count
+     */
+    int getChangeCount() {
+        return changeCount;
+    }
+
+    /**
+     * Discards cached values that depend on the history.  The caller must hold the write lock or have exclusive
+     * access to this exchange rate.
+     */
+    private void historyChanged() {
+        lastRate = null; // force an update
+        sortedHistory = null;
+        changeCount++;
+    }
+
+    /**
+     * Returns the date sorted index of the history, rebuilding it if needed.  The caller must hold the read lock.
+     *
+     * @return the sorted history
+     */
+    private SortedHistory getSortedHistory() {
+        SortedHistory history = sortedHistory;
+
+        if (history == null) {  // concurrent readers may build equivalent copies
+            history = new SortedHistory(historyNodes);
+            sortedHistory = history;
+        }
+
+        return history;
+    }
+
     @Override
     public boolean equals(final Object other) {
         return this == other || other instanceof ExchangeRate && rateId.equals(((ExchangeRate) other).rateId);
@@ -269,5 +343,52 @@ public class ExchangeRate extends StoredObject {
     @PostLoad
     private void postLoad() {
         lock = new ReentrantReadWriteLock(true);
+
+        // the history may have been refreshed
+        historyChanged();
+    }
+
+    /**
+     * Immutable date sorted copy of the history keyed by the trimmed date
+     */
+    private static final class SortedHistory {
+
+        final long[] dates;
+
+        final ExchangeRateHistoryNode[] nodes;
+
+        SortedHistory(final Set<ExchangeRateHistoryNode> historyNodes) {
+            nodes = historyNodes.toArray(new ExchangeRateHistoryNode[historyNodes.size()]);
+            Arrays.sort(nodes);
+
+            dates = new long[nodes.length];
+
+            // keyed by the trimmed instant so the lookup does not depend on the time zone
+            for (int i = 0; i < nodes.length; i++) {
+                dates[i] = DateUtils.trimDate(nodes[i].getDate()).getTime();
+            }
+        }
+
+        /**
+         * Returns the index of the node with the same date
+         *
+         * @param date trimmed date to search for
+         * @return the index of the node, a negative value if not found
+         */
+        int indexOf(final Date date) {
+            return Arrays.binarySearch(dates, date.getTime());
+        }
+
+        /**
+         * Returns the index of the last node that does not occur after the supplied date
+         *
+         * @param date trimmed date to search for
+         * @return the index of the node, -1 if none exist
+         */
+        int indexOnOrBefore(final Date date) {
+            final int index = indexOf(date);
+
+            return index >= 0 ? index : -(index + 1) - 1;
+        }
     }
 }
@@ -17,20 +17,38 @@
  */
 package jgnash.engine;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import jgnash.engine.dao.CommodityDAO;
+import jgnash.engine.message.Message;
+import jgnash.engine.message.MessageBus;
+import jgnash.engine.message.MessageChannel;
+import jgnash.engine.message.MessageListener;
+import jgnash.engine.message.MessageProperty;
 
 /**
  * DAO for exchange rate access
+ * <p/>
+ * Exchange rates are cached by rate id.  Commodity messages invalidate the cache so changes made by
+ * other clients are seen.  The generation is incremented whenever the cache is invalidated so rates cached by
+ * {@code CurrencyNode}s may be validated.
  *
  * @author Craig Cavanaugh
  *
  */
-class ExchangeRateDAO {
+class ExchangeRateDAO implements MessageListener {
 
     private final CommodityDAO commodityDAO;
 
-    ExchangeRateDAO(final CommodityDAO commodityDAO) {
+    private final ConcurrentMap<String, ExchangeRate> cache = new ConcurrentHashMap<>();
+
+    private volatile int generation;
+
+    ExchangeRateDAO(final CommodityDAO commodityDAO, final MessageBus messageBus) {
         this.commodityDAO = commodityDAO;
+
+        messageBus.registerListener(this, MessageChannel.COMMODITY);
     }
 
     public ExchangeRate getExchangeRateNode(final CurrencyNode baseCurrency, final CurrencyNode exchangeCurrency) {
@@ -40,13 +58,52 @@ class ExchangeRateDAO {
 
         String rateId = Engine.buildExchangeRateId(baseCurrency, exchangeCurrency);
 
-        ExchangeRate node = commodityDAO.getExchangeNode(rateId);
+        ExchangeRate node = cache.get(rateId);
 
         if (node == null) {
-            node = new ExchangeRate(Engine.buildExchangeRateId(baseCurrency, exchangeCurrency));
-            commodityDAO.addExchangeRate(node);
+            synchronized (this) {   // prevent duplicate exchange rates from being created
+                node = commodityDAO.getExchangeNode(rateId);
+
+                if (node == null) {
+                    node = new ExchangeRate(rateId);
+                    commodityDAO.addExchangeRate(node);
+                }
+
+                cache.put(rateId, node);
+            }
         }
 
         return node;
     }
+
+    /**
+     * Returns a value that changes each time the cache is invalidated
+     *
+     * @return the cache generation
+     */
+    int getGeneration() {
+        return generation;
+    }
+
+    @Override
+    public void messagePosted(final Message event) {
+        switch (event.getEvent()) {
+            case EXCHANGE_RATE_ADD:
+            case EXCHANGE_RATE_REMOVE:
+                final ExchangeRate rate = (ExchangeRate) event.getObject(MessageProperty.EXCHANGE_RATE);
+
+                if (rate != null) {
+                    cache.remove(rate.getRateId());
+                    generation++;
+                }
+                break;
+            case CURRENCY_MODIFY:
+            case CURRENCY_REMOVE:
+                cache.clear();  // a change of symbol changes the rate id
+                generation++;
+                break;
+            default:
+                break;
+        }
+    }
 }
@@ -21,6 +21,7 @@ import java.math.BigDecimal;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.locks.Lock;
 
 /**
@@ -96,7 +97,9 @@ public class InvestmentAccountProxy extends AccountProxy {
         l.lock();
 
         try {
-            return !account.transactions.isEmpty() ? getCashBalance(account.getSortedTransactionList().get(0).getDate(), end) : BigDecimal.ZERO;
+            final List<Transaction> transactions = account.getSortedTransactionList();
+
+            return !transactions.isEmpty() ? getCashBalance(transactions.get(0).getDate(), end) : BigDecimal.ZERO;
         } finally {
             l.unlock();
         }
@@ -115,7 +118,7 @@ public class InvestmentAccountProxy extends AccountProxy {
         account.getTransactionLock().readLock().lock();
 
         try {
-            return Engine.getMarketPrice(account.getSortedTransactionList(), node, account.getCurrencyNode(), date);
+            return Engine.getMarketPrice(account.getMarketPriceIndex(), node, account.getCurrencyNode(), date);
         } finally {
             account.getTransactionLock().readLock().unlock();
         }
@@ -135,10 +138,10 @@ public class InvestmentAccountProxy extends AccountProxy {
 
             BigDecimal marketValue = BigDecimal.ZERO;
 
-            int count = account.getTransactionCount();
+            final List<Transaction> transactions = account.getSortedTransactionList();
 
-            if (count > 0) {
-                Date lastDate = account.getSortedTransactionList().get(count - 1).getDate();
+            if (!transactions.isEmpty()) {
+                Date lastDate = transactions.get(transactions.size() - 1).getDate();
 
                 /*
                  * If the user was to enter a date value greater than the current date, then
@@ -147,7 +150,7 @@ public class InvestmentAccountProxy extends AccountProxy {
                  * security price.
                  */
 
-                final Date startDate = account.getSortedTransactionList().get(0).getDate();
+                final Date startDate = transactions.get(0).getDate();
 
                 if (lastDate.compareTo(new Date()) >= 0) {
                     marketValue = getMarketValue(startDate, lastDate);
@@ -176,8 +179,10 @@ public class InvestmentAccountProxy extends AccountProxy {
         try {
             BigDecimal marketValue = BigDecimal.ZERO;
 
-            if (account.getTransactionCount() > 0) {
-                marketValue = getMarketValue(account.getSortedTransactionList().get(0).getDate(), date);
+            final List<Transaction> transactions = account.getSortedTransactionList();
+
+            if (!transactions.isEmpty()) {
+                marketValue = getMarketValue(transactions.get(0).getDate(), date);
             }
 
             return marketValue;
@@ -198,24 +203,14 @@ public class InvestmentAccountProxy extends AccountProxy {
         l.lock();
 
         try {
-            final HashMap<SecurityNode, BigDecimal> priceMap = new HashMap<>();
-
-            // build lookup map for market prices
-            for (SecurityNode node : account.getSecurities()) {
-                priceMap.put(node, getMarketPrice(node, end));
-            }
-
             BigDecimal balance = BigDecimal.ZERO;
 
-            // Get a defensive copy, JPA lazy updates can have side effects
-            List<Transaction> transactions = account.getSortedTransactionList();
+            // net change in shares within the date range is read from the running balance index
+            final Map<SecurityNode, BigDecimal> sharesMap =
+                    account.getRunningBalanceIndex().getShares(account.getSortedTransactionList(), start, end);
 
-            for (Transaction t : transactions) {
-                if (t.getDate().compareTo(start) >= 0 && t.getDate().compareTo(end) <= 0) {
-                    if (t instanceof InvestmentTransaction) {
-                        balance = balance.add(((InvestmentTransaction) t).getMarketValue(priceMap.get(((InvestmentTransaction) t).getSecurityNode())));
-                    }
-                }
+            for (final Map.Entry<SecurityNode, BigDecimal> entry : sharesMap.entrySet()) {
+                balance = balance.add(entry.getValue().multiply(getMarketPrice(entry.getKey(), end)));
             }
 
             return balance;
@@ -225,7 +220,8 @@ public class InvestmentAccountProxy extends AccountProxy {
     }
 
     /**
-     * Calculates the accounts market value based on the latest security price
+     * Calculates the accounts market value based on the latest security price.  Share quantities at the index are
+     * read from the account's prefix-sum index.
      *
      * @param index index to calculate the balance to
      * @return market value
@@ -246,12 +242,12 @@ public class InvestmentAccountProxy extends AccountProxy {
 
             BigDecimal balance = BigDecimal.ZERO;
 
-            for (int i = 0; i <= index; i++) {
-                Transaction t = account.getTransactionAt(i);
+            // share balances at the index are read from the running balance index
+            final Map<SecurityNode, BigDecimal> sharesMap =
+                    account.getRunningBalanceIndex().getSharesAt(account.getSortedTransactionList(), index);
 
-                if (t instanceof InvestmentTransaction) {
-                    balance = balance.add(((InvestmentTransaction) t).getMarketValue(priceMap.get(((InvestmentTransaction) t).getSecurityNode())));
-                }
+            for (final Map.Entry<SecurityNode, BigDecimal> entry : sharesMap.entrySet()) {
+                balance = balance.add(entry.getValue().multiply(priceMap.get(entry.getKey())));
             }
 
             return balance;
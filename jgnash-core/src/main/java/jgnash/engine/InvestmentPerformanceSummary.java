@@ -46,6 +46,11 @@ public class InvestmentPerformanceSummary {
 
     private List<Transaction> transactions;
 
+    /**
+     * Prices of the transactions, built once for all securities
+     */
+    private MarketPriceIndex priceIndex;
+
     private CurrencyNode baseCurrency;
 
     public InvestmentPerformanceSummary(final Account account, final boolean recursive) {
@@ -78,6 +83,8 @@ public class InvestmentPerformanceSummary {
 
         Collections.sort(transactions);
 
+        priceIndex = new MarketPriceIndex(transactions);
+
         runCalculations(recursive);
     }
 
@@ -127,7 +134,7 @@ public class InvestmentPerformanceSummary {
 
                 if (t.getSecurityNode().equals(node)) {
 
-                    BigDecimal rate = baseCurrency.getExchangeRate(t.getInvestmentAccount().getCurrencyNode());
+                    BigDecimal rate = baseCurrency.getExchangeRate(t.getInvestmentAccount().getCurrencyNode(), t.getDate());
 
                     BigDecimal fees = t.getFees().multiply(rate);
                     BigDecimal quantity = t.getQuantity();
@@ -179,7 +186,7 @@ public class InvestmentPerformanceSummary {
 
                 if (t.getSecurityNode().equals(node)) {
 
-                    BigDecimal rate = baseCurrency.getExchangeRate(t.getInvestmentAccount().getCurrencyNode());
+                    BigDecimal rate = baseCurrency.getExchangeRate(t.getInvestmentAccount().getCurrencyNode(), t.getDate());
 
                     BigDecimal fees = t.getFees().multiply(rate);
                     BigDecimal quantity = t.getQuantity();
@@ -308,7 +315,7 @@ public class InvestmentPerformanceSummary {
     }
 
     private BigDecimal getMarketPrice(final SecurityNode node, final Date date) {
-        return Engine.getMarketPrice(transactions, node, baseCurrency, date);
+        return Engine.getMarketPrice(priceIndex, node, baseCurrency, date);
     }
 
     @Override
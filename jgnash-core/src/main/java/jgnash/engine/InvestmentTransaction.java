@@ -329,51 +329,4 @@ public class InvestmentTransaction extends Transaction {
 
         return total;
     }
-
-    /**
-     * Compares two Transactions for ordering. Equality is checked for at the
-     * reference level. If a comparison cannot be determined, the hashCode is
-     * used
-     *
-     * @param tran the {@code Transaction} to be compared.
-     * @return the value {@code 0} if the argument Transaction is equal to
-     * this Transaction; a value less than {@code 0} if this Transaction is
-     * before the Transaction argument; and a value greater than {@code 0}
-     * if this Transaction is after the Transaction argument.
-     */
-    @Override
-    public int compareTo(@NotNull final Transaction tran) {
-        if (tran == this) {
-            return 0;
-        }
-
-        int result = getDate().compareTo(tran.getDate());
-        if (result != 0) {
-            return result;
-        }
-
-        result = getTransactionType().name().compareTo(tran.getTransactionType().name());
-        if (result != 0) {
-            return result;
-        }
-
-        result = getMemo().compareTo(tran.getMemo());
-        if (result != 0) {
-            return result;
-        }
-
-        if (tran instanceof InvestmentTransaction) {
-            result = getSecurityNode().compareTo(((InvestmentTransaction) tran).getSecurityNode());
-            if (result != 0) {
-                return result;
-            }
-        }
-
-        result = getDateEntered().compareTo(tran.getDateEntered());
-        if (result != 0) {
-            return result;
-        }
-
-        return getUuid().compareTo(tran.getUuid());
-    }
 }
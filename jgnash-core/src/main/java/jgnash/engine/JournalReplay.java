@@ -0,0 +1,54 @@
+/*
+ * jGnash, a personal finance application
+ * Copyright (C) 2001-2014 Craig Cavanaugh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jgnash.engine;
+
+/**
+ * Applies changes replayed from the journal of a data store to stored objects.
+ * <p/>
+ * The journal is replayed before an engine is created, so the changes are applied directly to the objects instead
+ * of through the engine.  Replaying a change more than once has no additional effect.
+ *
+ * @author Craig Cavanaugh
+ */
+public final class JournalReplay {
+
+    private JournalReplay() {
+    }
+
+    /**
+     * Restores the removal state of a replayed object
+     *
+     * @param object           replayed object
+     * @param markedForRemoval the recorded removal state
+     */
+    public static void setMarkedForRemoval(final StoredObject object, final boolean markedForRemoval) {
+        object.setMarkedForRemoval(markedForRemoval);
+    }
+
+    /**
+     * Adds or removes a replayed transaction from the transactions of its accounts
+     *
+     * @param transaction replayed transaction
+     * @param add         {@code true} to add the transaction, {@code false} to remove it
+     */
+    public static void linkTransaction(final Transaction transaction, final boolean add) {
+        for (final Account account : transaction.getAccounts()) {
+            account.replayTransaction(transaction, add);
+        }
+    }
+}
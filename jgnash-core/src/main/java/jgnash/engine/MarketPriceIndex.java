@@ -0,0 +1,217 @@
+/*
+ * jGnash, a personal finance application
+ * Copyright (C) 2001-2014 Craig Cavanaugh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jgnash.engine;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Date sorted index of the prices of {@code InvestmentTransaction}s for each {@code SecurityNode}.
+ * <p/>
+ * Only transactions with a positive price are indexed, so dividends and other transactions without a price are
+ * ignored.  The closest price to a date is found with a binary search instead of a scan of all transactions.
+ * <p/>
+ * An index for an {@code Account} is built from the account's transactions when first used and is kept current as
+ * transactions are added and removed.  An index is only worth building when it is reused for several lookups.
+ *
+ * @author Craig Cavanaugh
+ * @see Engine#getMarketPrice(java.util.Collection, SecurityNode, CurrencyNode, java.util.Date)
+ */
+class MarketPriceIndex {
+
+    /**
+     * Account the index is built from, {@code null} if built from a collection of transactions
+     */
+    private final Account account;
+
+    private final Map<SecurityNode, List<InvestmentTransaction>> prices = new HashMap<>();
+
+    private boolean built;
+
+    /**
+     * Creates an index for the transactions of an account
+     *
+     * @param account account to index
+     */
+    MarketPriceIndex(final Account account) {
+        this.account = account;
+    }
+
+    /**
+     * Creates an index for a collection of transactions
+     *
+     * @param transactions transactions to index
+     */
+    MarketPriceIndex(final Collection<Transaction> transactions) {
+        account = null;
+        build(transactions);
+    }
+
+    /**
+     * Adds a transaction to the index if the index has been built
+     *
+     * @param transaction transaction that was added
+     */
+    synchronized void add(final Transaction transaction) {
+        if (built && hasPrice(transaction)) {
+            final List<InvestmentTransaction> list = getPriceList(((InvestmentTransaction) transaction).getSecurityNode());
+            final int index = Collections.binarySearch(list, (InvestmentTransaction) transaction);
+
+            if (index < 0) {
+                list.add(-index - 1, (InvestmentTransaction) transaction);
+            }
+        }
+    }
+
+    /**
+     * Removes a transaction from the index if the index has been built
+     *
+     * @param transaction transaction that was removed
+     */
+    synchronized void remove(final Transaction transaction) {
+        if (built && hasPrice(transaction)) {
+            final List<InvestmentTransaction> list = prices.get(((InvestmentTransaction) transaction).getSecurityNode());
+
+            if (list != null) {
+                final int index = Collections.binarySearch(list, (InvestmentTransaction) transaction);
+
+                if (index >= 0) {
+                    list.remove(index);
+                }
+            }
+        }
+    }
+
+    /**
+     * Discards the index.  It will be rebuilt when next used
+     */
+    synchronized void clear() {
+        if (account != null) {
+            prices.clear();
+            built = false;
+        }
+    }
+
+    /**
+     * Returns the latest transaction with a price for a security that does not occur after the supplied date.  If
+     * several transactions occur on that date, the last in sort order is returned.
+     *
+     * @param node security to search for
+     * @param date the inclusive date to search for
+     * @return the closest transaction, {@code null} if none exist
+     */
+    synchronized InvestmentTransaction getClosestTransaction(final SecurityNode node, final Date date) {
+        if (!built) {
+            build(account.getSortedTransactionList());
+        }
+
+        final List<InvestmentTransaction> list = prices.get(node);
+
+        if (list == null) {
+            return null;
+        }
+
+        final long time = date.getTime();
+
+        int low = 0;
+        int high = list.size();
+
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+
+            if (list.get(mid).getDate().getTime() <= time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low > 0 ? list.get(low - 1) : null;
+    }
+
+    /**
+     * Returns the latest transaction with a price for a security that does not occur after the supplied date by
+     * scanning a collection of transactions.  A single lookup is cheaper as a scan than building an index.  If
+     * several transactions occur on that date, the last in the collection is returned.
+     *
+     * @param transactions transactions to search
+     * @param node         security to search for
+     * @param date         the inclusive date to search for
+     * @return the closest transaction, {@code null} if none exist
+     */
+    static InvestmentTransaction getClosestTransaction(final Collection<Transaction> transactions, final SecurityNode node, final Date date) {
+        InvestmentTransaction closest = null;
+
+        for (final Transaction transaction : transactions) {
+            if (hasPrice(transaction) && ((InvestmentTransaction) transaction).getSecurityNode().equals(node)
+                    && !transaction.getDate().after(date)
+                    && (closest == null || !transaction.getDate().before(closest.getDate()))) {
+                closest = (InvestmentTransaction) transaction;
+            }
+        }
+
+        return closest;
+    }
+
+    private void build(final Collection<Transaction> transactions) {
+        for (final Transaction transaction : transactions) {
+            if (hasPrice(transaction)) {
+                getPriceList(((InvestmentTransaction) transaction).getSecurityNode()).add((InvestmentTransaction) transaction);
+            }
+        }
+
+        for (final List<InvestmentTransaction> list : prices.values()) {
+            Collections.sort(list);     // already sorted when built from an account
+        }
+
+        built = true;
+    }
+
+    private List<InvestmentTransaction> getPriceList(final SecurityNode node) {
+        List<InvestmentTransaction> list = prices.get(node);
+
+        if (list == null) {
+            list = new ArrayList<>();
+            prices.put(node, list);
+        }
+
+        return list;
+    }
+
+    /**
+     * Determines if a transaction may be used as a market price
+     *
+     * @param transaction transaction to check
+     * @return {@code true} if the transaction is an investment transaction with a positive price
+     */
+    private static boolean hasPrice(final Transaction transaction) {
+        if (transaction instanceof InvestmentTransaction && ((InvestmentTransaction) transaction).getSecurityNode() != null) {
+            final BigDecimal price = ((InvestmentTransaction) transaction).getPrice();
+
+            return price != null && price.compareTo(BigDecimal.ZERO) > 0;
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,520 @@
+/*
+ * jGnash, a personal finance application
+ * Copyright (C) 2001-2014 Craig Cavanaugh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jgnash.engine;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Prefix-sum index of running balances for an {@code Account}.
+ * <p/>
+ * Entry {@code i} is the sum of the transaction amounts of the account's sorted transaction list from index
+ * {@code 0} through {@code i}. A change to the transaction list at index {@code k} only invalidates the entries from
+ * {@code k} onward and the invalidated entries are lazily recalculated when next requested.
+ * <p/>
+ * Signed share quantities of {@code InvestmentTransaction}s are summed per {@code SecurityNode} as well so the market
+ * value of an account at an index may be calculated without walking the transaction history.
+ * <p/>
+ * Because the transaction list is sorted by date, balances over a date range are resolved with a binary search for
+ * each end of the range and a single subtraction of the running balances.
+ * <p/>
+ * Only transaction amounts and share quantities are indexed. Neither depends on security prices or exchange rates,
+ * so the index remains valid when those change.
+ * <p/>
+ * Month end balances are recorded as checkpoints while the running balances are calculated. A balance far beyond
+ * the valid running balances is resolved from the closest checkpoint by summing the remainder of a single month
+ * instead of the complete transaction history.  A change to a transaction invalidates the checkpoints from the month
+ * of the transaction onward.
+ * <p/>
+ * Checkpoints calculated while reading are only held by the index.  They are persisted with the account by the next
+ * change to the transactions, which holds the write lock of the account, so reads never modify the account.
+ * <p/>
+ * Months are numbered from the local date of the trimmed transaction dates with a Gregorian calendar in the default
+ * time zone.  The time zone is saved with the checkpoints and checkpoints saved in another time zone are discarded
+ * when the account is loaded because their month boundaries differ.
+ *
+ * @author Craig Cavanaugh
+ */
+class RunningBalanceIndex {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Minimum number of running balances that would have to be calculated before checkpoints are used
+     */
+    private static final int CHECKPOINT_DISTANCE = 32;
+
+    private final Account account;
+
+    private BigDecimal[] balances = new BigDecimal[INITIAL_CAPACITY];
+
+    /**
+     * The number of leading entries that are valid
+     */
+    private int validCount = 0;
+
+    private final Map<SecurityNode, ShareBalances> shareBalances = new HashMap<>();
+
+    /**
+     * Checkpoints calculated since the account's checkpoints were last saved
+     */
+    private final Map<Integer, BigDecimal> calculatedCheckpoints = new HashMap<>();
+
+    RunningBalanceIndex(final Account account) {
+        this.account = account;
+    }
+
+    /**
+     * Invalidates the running balances from the specified index onward
+     *
+     * @param index index of the first changed transaction
+     */
+    synchronized void invalidate(final int index) {
+        if (index < validCount) {
+            validCount = Math.max(0, index);
+
+            for (final ShareBalances shares : shareBalances.values()) {
+                shares.truncate(validCount);
+            }
+        }
+    }
+
+    /**
+     * Invalidates the balance checkpoints from the month of the supplied date onward and saves the remaining
+     * calculated checkpoints with the account.  Must only be called while the account's transaction write lock is
+     * held.
+     *
+     * @param date date of the changed transaction
+     */
+    synchronized void invalidateCheckpoints(final Date date) {
+        final Map<Integer, BigDecimal> checkpoints = account.getBalanceCheckpoints();
+        final int month = getMonth(date);
+
+        final Map<Integer, BigDecimal> valid = new HashMap<>();
+
+        for (final Map.Entry<Integer, BigDecimal> entry : checkpoints.entrySet()) {
+            if (entry.getKey() < month) {
+                valid.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        boolean changed = valid.size() < checkpoints.size();
+
+        for (final Map.Entry<Integer, BigDecimal> entry : calculatedCheckpoints.entrySet()) {
+            if (entry.getKey() < month) {
+                final BigDecimal balance = valid.put(entry.getKey(), entry.getValue());
+
+                if (balance == null || balance.compareTo(entry.getValue()) != 0) {
+                    changed = true;
+                }
+            }
+        }
+
+        calculatedCheckpoints.clear();
+
+        if (changed) {
+            account.setBalanceCheckpoints(valid);
+        }
+    }
+
+    /**
+     * Invalidates all running balances and calculated checkpoints
+     */
+    synchronized void clear() {
+        invalidate(0);
+        calculatedCheckpoints.clear();
+    }
+
+    /**
+     * Returns the checkpoints available to the index, the account's checkpoints and the checkpoints calculated since
+     *
+     * @return map of month number to month end balance
+     * @see #getMonth(java.util.Date)
+     */
+    synchronized Map<Integer, BigDecimal> getCheckpoints() {
+        final Map<Integer, BigDecimal> checkpoints = new HashMap<>(account.getBalanceCheckpoints());
+        checkpoints.putAll(calculatedCheckpoints);
+
+        return checkpoints;
+    }
+
+    /**
+     * Returns the running balance at the specified index
+     *
+     * @param transactions the account's sorted transaction list
+     * @param index        index of the transaction
+     * @return the sum of the transaction amounts through the specified index, zero if the index is negative
+     * @throws IndexOutOfBoundsException if the index exceeds the transaction list
+     */
+    synchronized BigDecimal getBalanceAt(final List<Transaction> transactions, final int index) {
+        if (index < 0) {
+            return BigDecimal.ZERO;
+        }
+
+        if (index - validCount >= CHECKPOINT_DISTANCE) {
+            final BigDecimal balance = getCheckpointBalance(transactions, index);
+
+            if (balance != null) {
+                return balance;
+            }
+        }
+
+        update(transactions, index);
+
+        return balances[index];
+    }
+
+    /**
+     * Calculates the balance at the specified index from the closest preceding checkpoint
+     *
+     * @param transactions the account's sorted transaction list
+     * @param index        index of the transaction
+     * @return the balance, {@code null} if a checkpoint is not available or would not save any work
+     */
+    private BigDecimal getCheckpointBalance(final List<Transaction> transactions, final int index) {
+        int month = getMonth(transactions.get(index).getDate());
+
+        // the month of the transaction may only be used if the transaction is the last of the month
+        if (index + 1 < transactions.size() && transactions.get(index + 1).getDate().before(getMonthStart(month + 1))) {
+            month--;
+        }
+
+        final Map<Integer, BigDecimal> checkpoints = getCheckpoints();
+
+        Integer closest = null;
+
+        for (final Integer key : checkpoints.keySet()) {
+            if (key <= month && (closest == null || key > closest)) {
+                closest = key;
+            }
+        }
+
+        if (closest == null) {
+            return null;
+        }
+
+        final int start = indexOnOrAfter(transactions, getMonthStart(closest + 1));
+
+        if (start <= validCount) {
+            return null;
+        }
+
+        BigDecimal balance = checkpoints.get(closest);
+
+        for (int i = start; i <= index; i++) {
+            balance = balance.add(transactions.get(i).getAmount(account));
+        }
+
+        return balance;
+    }
+
+    /**
+     * Returns the number of shares held for each security at the specified index
+     *
+     * @param transactions the account's sorted transaction list
+     * @param index        index of the transaction
+     * @return map of security to share quantity.  Securities without any activity through the index are not included.
+     * @throws IndexOutOfBoundsException if the index exceeds the transaction list
+     */
+    synchronized Map<SecurityNode, BigDecimal> getSharesAt(final List<Transaction> transactions, final int index) {
+        final Map<SecurityNode, BigDecimal> sharesMap = new HashMap<>();
+
+        if (index >= 0) {
+            update(transactions, index);
+
+            for (final Map.Entry<SecurityNode, ShareBalances> entry : shareBalances.entrySet()) {
+                final BigDecimal shares = entry.getValue().getSharesAt(index);
+
+                if (shares != null) {
+                    sharesMap.put(entry.getKey(), shares);
+                }
+            }
+        }
+
+        return sharesMap;
+    }
+
+    /**
+     * Returns the balance of the transactions inclusive of the start and end dates
+     *
+     * @param transactions the account's sorted transaction list
+     * @param start        the inclusive start date
+     * @param end          the inclusive end date
+     * @return the sum of the transaction amounts within the date range
+     */
+    synchronized BigDecimal getBalance(final List<Transaction> transactions, final Date start, final Date end) {
+        final int low = indexOnOrAfter(transactions, start);
+        final int high = indexOnOrBefore(transactions, end);
+
+        if (high < low) {
+            return BigDecimal.ZERO;
+        }
+
+        if (low == 0) {
+            return getBalanceAt(transactions, high);
+        }
+
+        return getBalanceAt(transactions, high).subtract(getBalanceAt(transactions, low - 1));
+    }
+
+    /**
+     * Returns the change in the number of shares held for each security inclusive of the start and end dates
+     *
+     * @param transactions the account's sorted transaction list
+     * @param start        the inclusive start date
+     * @param end          the inclusive end date
+     * @return map of security to share quantity.  Securities without a net change within the range are not included.
+     */
+    synchronized Map<SecurityNode, BigDecimal> getShares(final List<Transaction> transactions, final Date start, final Date end) {
+        final int low = indexOnOrAfter(transactions, start);
+        final int high = indexOnOrBefore(transactions, end);
+
+        if (high < low) {
+            return new HashMap<>();
+        }
+
+        final Map<SecurityNode, BigDecimal> sharesMap = getSharesAt(transactions, high);
+
+        if (low > 0) {
+            for (final Map.Entry<SecurityNode, BigDecimal> entry : getSharesAt(transactions, low - 1).entrySet()) {
+                final BigDecimal shares = sharesMap.get(entry.getKey()).subtract(entry.getValue());
+
+                if (shares.signum() == 0) {
+                    sharesMap.remove(entry.getKey());    // no activity within the range
+                } else {
+                    sharesMap.put(entry.getKey(), shares);
+                }
+            }
+        }
+
+        return sharesMap;
+    }
+
+    /**
+     * Returns the index of the first transaction that occurs on or after the supplied date
+     *
+     * @param transactions sorted transaction list
+     * @param date         the date to search for
+     * @return index of the first transaction on or after the date, the size of the list if none exist
+     */
+    static int indexOnOrAfter(final List<Transaction> transactions, final Date date) {
+        final long time = date.getTime();
+
+        int low = 0;
+        int high = transactions.size();
+
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+
+            if (transactions.get(mid).getDate().getTime() < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Returns the index of the last transaction that occurs on or before the supplied date
+     *
+     * @param transactions sorted transaction list
+     * @param date         the date to search for
+     * @return index of the last transaction on or before the date, -1 if none exist
+     */
+    static int indexOnOrBefore(final List<Transaction> transactions, final Date date) {
+        final long time = date.getTime();
+
+        int low = 0;
+        int high = transactions.size();
+
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+
+            if (transactions.get(mid).getDate().getTime() <= time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low - 1;
+    }
+
+    /**
+     * Extends the valid running balances through the specified index
+     *
+     * @param transactions the account's sorted transaction list
+     * @param index        index to extend the running balances to
+     */
+    private void update(final List<Transaction> transactions, final int index) {
+        if (index < validCount) {
+            return;
+        }
+
+        if (index >= transactions.size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + transactions.size());
+        }
+
+        if (index >= balances.length) {
+            balances = Arrays.copyOf(balances, Math.max(index + 1, balances.length * 2));
+        }
+
+        BigDecimal balance = validCount > 0 ? balances[validCount - 1] : BigDecimal.ZERO;
+
+        int month = validCount > 0 ? getMonth(transactions.get(validCount - 1).getDate()) : 0;
+        long nextMonth = validCount > 0 ? getMonthStart(month + 1).getTime() : Long.MIN_VALUE;
+
+        for (int i = validCount; i <= index; i++) {
+            final Transaction transaction = transactions.get(i);
+
+            if (transaction.getDate().getTime() >= nextMonth) {  // first transaction of a later month
+                if (i > 0) {
+                    calculatedCheckpoints.put(month, balances[i - 1]);
+                }
+
+                month = getMonth(transaction.getDate());
+                nextMonth = getMonthStart(month + 1).getTime();
+            }
+
+            balance = balance.add(transaction.getAmount(account));
+            balances[i] = balance;
+
+            if (transaction instanceof InvestmentTransaction) {
+                final SecurityNode node = ((InvestmentTransaction) transaction).getSecurityNode();
+
+                if (node != null) {
+                    ShareBalances shares = shareBalances.get(node);
+
+                    if (shares == null) {
+                        shares = new ShareBalances();
+                        shareBalances.put(node, shares);
+                    }
+
+                    shares.append(i, ((InvestmentTransaction) transaction).getSignedQuantity());
+                }
+            }
+        }
+
+        validCount = index + 1;
+
+        if (validCount == transactions.size()) {
+            calculatedCheckpoints.put(month, balance);
+        }
+    }
+
+    /**
+     * Returns a month number that increases by one each month
+     *
+     * @param date date to convert
+     * @return the month number of the date
+     */
+    static int getMonth(final Date date) {
+        final Calendar calendar = new GregorianCalendar();  // the locale must not change the calendar system
+        calendar.setTime(date);
+
+        return calendar.get(Calendar.YEAR) * 12 + calendar.get(Calendar.MONTH);
+    }
+
+    /**
+     * Returns the first day of a month
+     *
+     * @param month month number
+     * @return the first day of the month
+     * @see #getMonth(java.util.Date)
+     */
+    static Date getMonthStart(final int month) {
+        final Calendar calendar = new GregorianCalendar();
+        calendar.clear();
+        calendar.set(month / 12, month % 12, 1);
+
+        return calendar.getTime();
+    }
+
+    /**
+     * Returns the identifier of the time zone the month numbers are calculated in
+     *
+     * @return time zone id
+     * @see #getMonth(java.util.Date)
+     */
+    static String getTimeZoneId() {
+        return TimeZone.getDefault().getID();
+    }
+
+    /**
+     * Running share quantities for a single security.  Entries are only recorded at the indexes of transactions
+     * involving the security.
+     */
+    private static class ShareBalances {
+
+        private int[] indexes = new int[INITIAL_CAPACITY];
+
+        private BigDecimal[] quantities = new BigDecimal[INITIAL_CAPACITY];
+
+        private int size = 0;
+
+        void append(final int index, final BigDecimal quantity) {
+            if (size == indexes.length) {
+                indexes = Arrays.copyOf(indexes, size * 2);
+                quantities = Arrays.copyOf(quantities, size * 2);
+            }
+
+            indexes[size] = index;
+            quantities[size] = size > 0 ? quantities[size - 1].add(quantity) : quantity;
+            size++;
+        }
+
+        /**
+         * Discards entries at or beyond the specified transaction index
+         *
+         * @param count the number of valid transaction indexes
+         */
+        void truncate(final int count) {
+            size = insertionPoint(count);
+        }
+
+        /**
+         * Returns the share quantity at the specified transaction index
+         *
+         * @param index transaction index
+         * @return the share quantity, {@code null} if the security has not been used yet
+         */
+        BigDecimal getSharesAt(final int index) {
+            final int position = insertionPoint(index + 1);
+
+            return position > 0 ? quantities[position - 1] : null;
+        }
+
+        /**
+         * Returns the number of entries with a transaction index less than the supplied index
+         */
+        private int insertionPoint(final int index) {
+            final int result = Arrays.binarySearch(indexes, 0, size, index);
+
+            return result >= 0 ? result : -(result + 1);
+        }
+    }
+}
@@ -19,10 +19,14 @@ package jgnash.engine;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -157,8 +161,10 @@ public class SecurityNode extends CommodityNode {
         lock.writeLock().lock();
 
         try {
-            sortedHistoryNodeCache.add(node);
-            Collections.sort(sortedHistoryNodeCache);
+            // the cache is already sorted, insert in place instead of sorting again
+            final int index = Collections.binarySearch(sortedHistoryNodeCache, node);
+
+            sortedHistoryNodeCache.add(index < 0 ? -index - 1 : index, node);
 
             return historyNodes.add(node);
         } finally {
@@ -166,6 +172,64 @@ public class SecurityNode extends CommodityNode {
         }
     }
 
+    /**
+     * Adds several history nodes with a single sort.  Existing history nodes with the same date are replaced and
+     * history nodes that match an existing history node are ignored.  If more than one history node has the same
+     * date, the last one is used.
+     *
+     * @param nodes history nodes to add
+     * @param added collects the history nodes that were added
+     * @return the history nodes that were replaced
+     */
+    List<SecurityHistoryNode> addHistoryNodes(final Collection<SecurityHistoryNode> nodes, final Collection<SecurityHistoryNode> added) {
+        final Map<Date, SecurityHistoryNode> additions = new HashMap<>();
+
+        for (final SecurityHistoryNode node : nodes) {
+            additions.put(node.getDate(), node);
+        }
+
+        final List<SecurityHistoryNode> replaced = new ArrayList<>();
+
+        lock.writeLock().lock();
+
+        try {
+            for (final Iterator<SecurityHistoryNode> iterator = historyNodes.iterator(); iterator.hasNext(); ) {
+                final SecurityHistoryNode node = iterator.next();
+                final SecurityHistoryNode addition = additions.get(node.getDate());
+
+                if (addition != null) {
+                    if (isSameQuote(node, addition)) {
+                        additions.remove(node.getDate());
+                    } else {
+                        iterator.remove();
+                        replaced.add(node);
+                    }
+                }
+            }
+
+            historyNodes.addAll(additions.values());
+
+            // rebuild the cache with a single sort
+            sortedHistoryNodeCache = new ArrayList<>(historyNodes);
+            Collections.sort(sortedHistoryNodeCache);
+
+            added.addAll(additions.values());
+
+            return replaced;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static boolean isSameQuote(final SecurityHistoryNode node, final SecurityHistoryNode other) {
+        return node.getVolume() == other.getVolume() && isSameValue(node.getPrice(), other.getPrice())
+                && isSameValue(node.getHigh(), other.getHigh()) && isSameValue(node.getLow(), other.getLow());
+    }
+
+    private static boolean isSameValue(final BigDecimal value, final BigDecimal other) {
+        return value == null ? other == null : other != null && value.compareTo(other) == 0;
+    }
+
     boolean removeHistoryNode(final Date date) {
 
         boolean result = false;
@@ -244,19 +308,13 @@ public class SecurityNode extends CommodityNode {
         lock.readLock().lock();
 
         try {
-            SecurityHistoryNode hNode = null;
-
-            // Work backwards through the list as the newest date is requested the most
-            for (int i = sortedHistoryNodeCache.size() - 1; i >= 0; i--) {
-                final SecurityHistoryNode node = sortedHistoryNodeCache.get(i);
+            final int index = indexOnOrBefore(testDate);
 
-                if (testDate.compareTo(node.getDate()) == 0) {
-                    hNode = node;
-                    break;
-                }
+            if (index >= 0 && testDate.compareTo(sortedHistoryNodeCache.get(index).getDate()) == 0) {
+                return sortedHistoryNodeCache.get(index);
             }
 
-            return hNode;
+            return null;
         } finally {
             lock.readLock().unlock();
         }
@@ -274,24 +332,40 @@ public class SecurityNode extends CommodityNode {
         lock.readLock().lock();
 
         try {
-            SecurityHistoryNode hNode = null;
-
-            // Work backwards through the list as the newest date is requested the most
-            for (int i = sortedHistoryNodeCache.size() - 1; i >= 0; i--) {
-                final SecurityHistoryNode node = sortedHistoryNodeCache.get(i);
-
-                if (node.getDate().getTime() <= testDate.getTime()) {
-                    hNode = node;
-                    break;
-                }
-            }
+            final int index = indexOnOrBefore(testDate);
 
-            return hNode;
+            return index >= 0 ? sortedHistoryNodeCache.get(index) : null;
         } finally {
             lock.readLock().unlock();
         }
     }
 
+    /**
+     * Binary search for the last history node that does not occur after the supplied date.  The caller must hold
+     * the read lock.
+     *
+     * @param date the inclusive date to search for
+     * @return index of the history node in the sorted cache, -1 if none exist
+     */
+    private int indexOnOrBefore(final Date date) {
+        final long time = date.getTime();
+
+        int low = 0;
+        int high = sortedHistoryNodeCache.size();
+
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+
+            if (sortedHistoryNodeCache.get(mid).getDate().getTime() <= time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low - 1;
+    }
+
     private BigDecimal getMarketPrice(final Date date) {
         BigDecimal marketPrice = BigDecimal.ZERO;
 
@@ -305,14 +379,14 @@ public class SecurityNode extends CommodityNode {
     }
 
     /**
-     * Returns the latest market price exchanged to the specified currency
+     * Returns the latest market price exchanged to the specified currency using the exchange rate of the same date
      *
      * @param date date to find closest matching rate without exceeding
      * @param node currency to exchange to
      * @return latest market price
      */
     public BigDecimal getMarketPrice(final Date date, final CurrencyNode node) {
-        return getMarketPrice(date).multiply(getReportedCurrencyNode().getExchangeRate(node));
+        return getMarketPrice(date).multiply(getReportedCurrencyNode().getExchangeRate(node, date));
     }
 
     /**
@@ -23,6 +23,7 @@ import jgnash.util.Nullable;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -111,6 +112,12 @@ public class Transaction extends StoredObject implements Comparable<Transaction>
      */
     private transient ReadWriteLock lock;
 
+    /**
+     * Cached sort key.  This is reset whenever a field used for ordering changes, including the fields of the
+     * transaction entries
+     */
+    private transient SortKey sortKey;
+
     /**
      * Public constructor
      */
@@ -241,9 +248,12 @@ public class Transaction extends StoredObject implements Comparable<Transaction>
 
         try {
             transactionEntries.add(entry);
+            entry.setTransaction(this);
         } finally {
             l.unlock();
         }
+
+        orderChanged(date);
     }
 
     public void removeTransactionEntry(@NotNull final TransactionEntry entry) {
@@ -253,10 +263,15 @@ public class Transaction extends StoredObject implements Comparable<Transaction>
         l.lock();
 
         try {
-            transactionEntries.remove(entry);
+            if (transactionEntries.remove(entry) && entry.getTransaction() == this) {
+                entry.setTransaction(null);
+            }
         } finally {
             l.unlock();
         }
+
+        // the accounts of the removed entry may still list this transaction
+        orderChanged(date, entry.getCreditAccount(), entry.getDebitAccount());
     }
 
     /**
@@ -280,8 +295,11 @@ public class Transaction extends StoredObject implements Comparable<Transaction>
     public void setDate(@NotNull final Date date) {
         Objects.requireNonNull(date);
 
+        final Date previous = this.date;
+
         // ensure the date is always leveled
         this.date = DateUtils.trimDate(date);
+        orderChanged(previous.before(this.date) ? previous : this.date);
     }
 
     public Date getDate() {
@@ -319,6 +337,7 @@ public class Transaction extends StoredObject implements Comparable<Transaction>
      */
     public void setNumber(@Nullable final String number) {
         this.number = number;
+        orderChanged(date);
     }
 
     /**
@@ -361,12 +380,16 @@ public class Transaction extends StoredObject implements Comparable<Transaction>
 
     /**
      * Compares two Transactions for ordering. Equality is checked for at the reference level. If a comparison cannot be
-     * determined, the hashCode is used
+     * determined, the uuid is used.
+     * <p/>
+     * Comparison is performed against a cached {@code SortKey} so locks are not acquired and amounts are not summed
+     * for every comparison.
      *
      * @param tran the {@code Transaction} to be compared.
      * @return the value {@code 0} if the argument Transaction is equal to this Transaction; a value less than
      *         {@code 0} if this Transaction is before the Transaction argument; and a value greater than
      *         {@code 0} if this Transaction is after the Transaction argument.
+     * @see SortKey
      */
     @Override
     public int compareTo(final @NotNull Transaction tran) {
@@ -374,27 +397,83 @@ public class Transaction extends StoredObject implements Comparable<Transaction>
             return 0;
         }
 
-        int result = date.compareTo(tran.date);
-        if (result != 0) {
-            return result;
-        }
+        return getSortKey().compareTo(tran.getSortKey());
+    }
+
+    /**
+     * Returns the sort key for this transaction, creating it if needed.  The key is built under the write lock
+     * because entries loaded by a data store are bound to this transaction at the same time, so a later change to an
+     * entry discards the key.
+     *
+     * @return the sort key
+     */
+    SortKey getSortKey() {
+        SortKey key = sortKey;
+
+        if (key == null) {
+            Lock l = getLock().writeLock();
+            l.lock();
+
+            try {
+                key = sortKey;
+
+                if (key == null) {
+                    for (final TransactionEntry entry : transactionEntries) {
+                        entry.setTransaction(this);
+                    }
 
-        result = getNumber().compareTo(tran.getNumber());
-        if (result != 0) {
-            return result;
+                    key = new SortKey(this);
+                    sortKey = key;
+                }
+            } finally {
+                l.unlock();
+            }
         }
 
-        result = dateEntered.compareTo(tran.dateEntered);
-        if (result != 0) {
-            return result;
+        return key;
+    }
+
+    /**
+     * Discards the cached sort key after a field used for ordering has changed and moves this transaction back into
+     * order within the accounts it is attached to.  Must not be called while the lock of this transaction is held.
+     *
+     * @param date     earliest date affected by the change
+     * @param accounts accounts that may still list this transaction in addition to the accounts of its entries
+     * @see Account#transactionOrderChanged(Transaction, Date)
+     */
+    void orderChanged(final Date date, final Account... accounts) {
+        sortKey = null;
+
+        final Set<Account> affected = getEntryAccounts();
+        affected.addAll(Arrays.asList(accounts));
+        affected.remove(null);
+
+        for (final Account account : affected) {
+            account.transactionOrderChanged(this, date);
         }
+    }
+
+    /**
+     * Returns the accounts referenced by the entries, including the accounts of incomplete entries
+     *
+     * @return set of accounts
+     */
+    private Set<Account> getEntryAccounts() {
+        final Set<Account> accounts = new HashSet<>();
+
+        Lock l = getLock().readLock();
+        l.lock();
 
-        result = getAmount(getCommonAccount()).compareTo(tran.getAmount(tran.getCommonAccount()));
-        if (result != 0) {
-            return result;
+        try {
+            for (final TransactionEntry entry : transactionEntries) {
+                accounts.add(entry.getCreditAccount());
+                accounts.add(entry.getDebitAccount());
+            }
+        } finally {
+            l.unlock();
         }
 
-        return getUuid().compareTo(tran.getUuid());
+        return accounts;
     }
 
     /**
@@ -487,7 +566,16 @@ public class Transaction extends StoredObject implements Comparable<Transaction>
      * Clears all transaction entries
      */
     public void clearTransactionEntries() {
+        final Set<Account> accounts = getEntryAccounts();
+
+        for (final TransactionEntry entry : transactionEntries) {
+            if (entry.getTransaction() == this) {
+                entry.setTransaction(null);
+            }
+        }
+
         transactionEntries.clear();
+        orderChanged(date, accounts.toArray(new Account[accounts.size()]));
     }
 
     public Date getDateEntered() {
@@ -498,6 +586,7 @@ public class Transaction extends StoredObject implements Comparable<Transaction>
         Objects.requireNonNull(dateEntered);
 
         this.dateEntered = (Date) dateEntered.clone();
+        orderChanged(date);
     }
 
     @NotNull
@@ -528,6 +617,7 @@ public class Transaction extends StoredObject implements Comparable<Transaction>
 
     public void setMemo(final String memo) {
         this.memo = memo;
+        orderChanged(date);
     }
 
     @Nullable
@@ -625,9 +715,14 @@ public class Transaction extends StoredObject implements Comparable<Transaction>
             // deep clone
             tran.transactionEntries = new HashSet<>(); // deep clone
             tran.lock = new ReentrantReadWriteLock(true);
+            tran.sortKey = null;    // the uuid has changed
 
+            // entries are added directly, the clone is not attached to any account yet
             for (TransactionEntry entry : transactionEntries) {
-                tran.addTransactionEntry((TransactionEntry) entry.clone());
+                final TransactionEntry clone = (TransactionEntry) entry.clone();
+
+                tran.transactionEntries.add(clone);
+                clone.setTransaction(tran);
             }
 
         } finally {
@@ -666,4 +761,117 @@ public class Transaction extends StoredObject implements Comparable<Transaction>
 
         return b.toString();
     }
+
+    /**
+     * Immutable snapshot of the fields that determine the natural order of transactions.
+     * <p/>
+     * Transactions are ordered by date.  Plain transactions are then ordered by number, date entered, the amount
+     * relative to the common account and the uuid.  Investment transactions are ordered by transaction type, memo,
+     * security, date entered and the uuid.  Plain transactions are placed before investment transactions of the same
+     * date so the order is consistent when both kinds are listed in an account.
+     */
+    static final class SortKey implements Comparable<SortKey> {
+
+        private final long date;
+
+        private final boolean investment;
+
+        private final String number;
+
+        private final String investmentType;
+
+        private final String memo;
+
+        private final String security;
+
+        private final long dateEntered;
+
+        private final BigDecimal amount;
+
+        private final String uuid;
+
+        private SortKey(final Transaction transaction) {
+            final Lock l = transaction.getLock().readLock();
+            l.lock();
+
+            try {
+                date = transaction.getDate().getTime();
+                dateEntered = transaction.getDateEntered().getTime();
+                uuid = transaction.getUuid();
+
+                final boolean hasEntries = !transaction.transactionEntries.isEmpty();
+
+                investment = transaction instanceof InvestmentTransaction && hasEntries;
+
+                if (investment) {
+                    final SecurityNode node = ((InvestmentTransaction) transaction).getSecurityNode();
+
+                    number = EMPTY;
+                    amount = BigDecimal.ZERO;
+                    investmentType = transaction.getTransactionType().name();
+                    memo = transaction.getMemo();
+                    security = node != null ? node.getSymbol() : EMPTY;
+                } else {
+                    number = transaction.getNumber();
+                    amount = hasEntries ? transaction.getAmount(transaction.getCommonAccount()) : BigDecimal.ZERO;
+                    investmentType = EMPTY;
+                    memo = EMPTY;
+                    security = EMPTY;
+                }
+            } finally {
+                l.unlock();
+            }
+        }
+
+        @Override
+        public int compareTo(@NotNull final SortKey key) {
+            int result = Long.compare(date, key.date);
+            if (result != 0) {
+                return result;
+            }
+
+            if (investment != key.investment) {
+                return investment ? 1 : -1;
+            }
+
+            if (investment) {
+                result = investmentType.compareTo(key.investmentType);
+                if (result != 0) {
+                    return result;
+                }
+
+                result = memo.compareTo(key.memo);
+                if (result != 0) {
+                    return result;
+                }
+
+                result = security.compareTo(key.security);
+                if (result != 0) {
+                    return result;
+                }
+
+                result = Long.compare(dateEntered, key.dateEntered);
+                if (result != 0) {
+                    return result;
+                }
+            } else {
+                result = number.compareTo(key.number);
+                if (result != 0) {
+                    return result;
+                }
+
+                result = Long.compare(dateEntered, key.dateEntered);
+                if (result != 0) {
+                    return result;
+                }
+
+                result = amount.compareTo(key.amount);
+                if (result != 0) {
+                    return result;
+                }
+            }
+
+            return uuid.compareTo(key.uuid);
+        }
+    }
 }
@@ -54,6 +54,11 @@ public class TransactionEntry implements Comparable<TransactionEntry>, Cloneable
 
     private transient int hash = 0;
 
+    /**
+     * Transaction this entry belongs to, notified of changes that affect the transaction order
+     */
+    private transient volatile Transaction transaction;
+
     @SuppressWarnings("unused")
     @Id @GeneratedValue(strategy= GenerationType.TABLE)
     private long id;
@@ -195,6 +200,7 @@ public class TransactionEntry implements Comparable<TransactionEntry>, Cloneable
 
         creditAmount = amount;
         debitAmount = amount.negate();
+        orderChanged();
     }
 
     public Account getCreditAccount() {
@@ -230,10 +236,14 @@ public class TransactionEntry implements Comparable<TransactionEntry>, Cloneable
 
     public void setCreditAmount(final BigDecimal amount) {
         this.creditAmount = amount;
+        orderChanged();
     }
 
     public void setCreditAccount(final Account creditAccount) {
+        final Account previous = this.creditAccount;
+
         this.creditAccount = creditAccount;
+        orderChanged(previous);
     }
 
     void setCreditReconciled(final ReconciledState creditReconciled) {
@@ -241,7 +251,10 @@ public class TransactionEntry implements Comparable<TransactionEntry>, Cloneable
     }
 
     public void setDebitAccount(final Account debitAccount) {
+        final Account previous = this.debitAccount;
+
         this.debitAccount = debitAccount;
+        orderChanged(previous);
     }
 
     void setDebitReconciled(final ReconciledState debitReconciled) {
@@ -256,6 +269,7 @@ public class TransactionEntry implements Comparable<TransactionEntry>, Cloneable
     public void setMemo(final String memo) {
         if (memo != null) {
             this.memo = memo;
+            orderChanged();
         }
     }
 
@@ -273,6 +287,34 @@ public class TransactionEntry implements Comparable<TransactionEntry>, Cloneable
 
     public void setDebitAmount(final BigDecimal debitAmount) {
         this.debitAmount = debitAmount;
+        orderChanged();
+    }
+
+    /**
+     * Binds this entry to the transaction it belongs to
+     *
+     * @param transaction owning transaction, {@code null} if the entry has been removed
+     */
+    void setTransaction(final Transaction transaction) {
+        this.transaction = transaction;
+    }
+
+    Transaction getTransaction() {
+        return transaction;
+    }
+
+    /**
+     * Notifies the owning transaction that a field used for ordering has changed
+     *
+     * @param accounts accounts this entry no longer references that may still list the transaction
+     * @see Transaction#orderChanged(java.util.Date, Account...)
+     */
+    void orderChanged(final Account... accounts) {
+        final Transaction t = transaction;
+
+        if (t != null) {
+            t.orderChanged(t.getDate(), accounts);
+        }
     }
 
     @Override
@@ -387,7 +429,7 @@ public class TransactionEntry implements Comparable<TransactionEntry>, Cloneable
 
     public void setTransactionTag(final TransactionTag transactionTag) {
         this.transactionTag = transactionTag;
-
+        orderChanged();
     }
 
     public TransactionTag getTransactionTag() {       
@@ -416,6 +458,7 @@ public class TransactionEntry implements Comparable<TransactionEntry>, Cloneable
         try {
             e = (TransactionEntry) super.clone();
             e.id = 0; // clones id must be reset
+            e.transaction = null;   // not part of a transaction until added
         } catch (CloneNotSupportedException ex) {
             Logger.getLogger(TransactionEntry.class.getName()).log(Level.SEVERE, ex.toString(), ex);
         }
@@ -0,0 +1,59 @@
+/*
+ * jGnash, a personal finance application
+ * Copyright (C) 2001-2014 Craig Cavanaugh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jgnash.engine;
+
+/**
+ * Loads the transactions of an {@code Account} on first access.
+ * <p/>
+ * Each data store that fetches the transactions of its accounts lazily owns a loader and attaches it to its root
+ * account; the other accounts of the tree use the loader of their root.  Until the transactions of an account are
+ * needed, its balance is answered from the balance persisted with the account.
+ * <p/>
+ * Transactions are loaded once per account and stay in memory until the data store is closed; they are not paged
+ * or released.
+ *
+ * @author Craig Cavanaugh
+ */
+public abstract class TransactionLoader {
+
+    /**
+     * Attaches this loader to an account and its descendants
+     *
+     * @param account root of the account tree
+     */
+    protected final void attach(final Account account) {
+        account.setTransactionLoader(this);
+    }
+
+    /**
+     * Loads the transactions of an account.  Implementations must call {@link #initialize(Account)} from the thread
+     * that owns the persistence context of the account.
+     *
+     * @param account account to load
+     */
+    protected abstract void load(Account account);
+
+    /**
+     * Fetches the transactions of an account, if not already loaded, and updates its persisted balance
+     *
+     * @param account account to initialize
+     */
+    protected static void initialize(final Account account) {
+        account.initializeTransactions();
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * jGnash, a personal finance application
+ * Copyright (C) 2001-2014 Craig Cavanaugh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jgnash.engine.attachment;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jgnash.engine.AttachmentUtils;
+
+/**
+ * Persistent cache of attachments stored by content name.
+ * <p/>
+ * A content name identifies the content of a file, so a cached file is always current and never needs to be
+ * transferred again.  The cache is bounded in bytes and the least recently used files are removed first.  The
+ * modification time of a file records its last use so the order survives a restart.
+ *
+ * @author Craig Cavanaugh
+ */
+final class AttachmentCache {
+
+    private static final Logger logger = Logger.getLogger(AttachmentCache.class.getName());
+
+    private final Path directory;
+
+    private final long maxSize;
+
+    /**
+     * File sizes of the cached attachments in access order
+     */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long size = 0;
+
+    /**
+     * Opens a cache and loads the attachments already in the directory
+     *
+     * @param directory directory of the cache, created if needed
+     * @param maxSize   maximum size of the cache in bytes
+     * @throws IOException if the directory cannot be read or created
+     */
+    AttachmentCache(final Path directory, final long maxSize) throws IOException {
+        this.directory = directory;
+        this.maxSize = maxSize;
+
+        Files.createDirectories(directory);
+
+        final List<Path> files = new ArrayList<>();
+
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(directory)) {
+            for (final Path path : ds) {
+                if (AttachmentUtils.isContentName(path.getFileName().toString()) && Files.isRegularFile(path)) {
+                    files.add(path);
+                }
+            }
+        }
+
+        Collections.sort(files, new Comparator<Path>() {
+            @Override
+            public int compare(final Path o1, final Path o2) {
+                try {
+                    return Files.getLastModifiedTime(o1).compareTo(Files.getLastModifiedTime(o2));
+                } catch (final IOException e) {
+                    return 0;
+                }
+            }
+        });
+
+        synchronized (this) {
+            for (final Path path : files) {
+                final long length = Files.size(path);
+
+                entries.put(path.getFileName().toString(), length);
+                size += length;
+            }
+
+            evict();
+        }
+    }
+
+    /**
+     * Returns the location of an attachment in the cache
+     *
+     * @param attachment content name of the attachment
+     * @return path of the attachment, which may not exist
+     */
+    Path getPath(final String attachment) {
+        return directory.resolve(attachment);
+    }
+
+    /**
+     * Returns a cached attachment and marks it as recently used
+     *
+     * @param attachment content name of the attachment
+     * @return path of the attachment or {@code null} if it is not cached
+     */
+    synchronized Path get(final String attachment) {
+        if (entries.get(attachment) == null) {
+            return null;
+        }
+
+        final Path path = getPath(attachment);
+
+        try {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (final IOException e) {    // removed by someone else
+            size -= entries.remove(attachment);
+            return null;
+        }
+
+        return path;
+    }
+
+    /**
+     * Registers an attachment that has been written to its cache location
+     *
+     * @param attachment content name of the attachment
+     */
+    synchronized void add(final String attachment) {
+        try {
+            final Long previous = entries.put(attachment, Files.size(getPath(attachment)));
+
+            if (previous != null) {
+                size -= previous;
+            }
+
+            size += entries.get(attachment);
+
+            evict();
+        } catch (final IOException e) {
+            logger.log(Level.WARNING, e.getLocalizedMessage(), e);
+        }
+    }
+
+    /**
+     * Copies or moves a file into the cache
+     *
+     * @param attachment content name of the attachment
+     * @param source     file to store
+     * @param copy       {@code false} if the source file should be moved
+     * @throws IOException if the file cannot be stored
+     */
+    void put(final String attachment, final Path source, final boolean copy) throws IOException {
+        final Path path = getPath(attachment);
+
+        if (copy) {
+            Files.copy(source, path, StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.move(source, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        add(attachment);
+    }
+
+    synchronized void remove(final String attachment) {
+        final Long length = entries.remove(attachment);
+
+        if (length != null) {
+            size -= length;
+
+            try {
+                Files.deleteIfExists(getPath(attachment));
+            } catch (final IOException e) {
+                logger.log(Level.WARNING, e.getLocalizedMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Removes the least recently used attachments until the cache fits.  The most recent attachment is kept even
+     * if it is larger than the cache.
+     */
+    private void evict() {
+        final Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+
+        while (size > maxSize && entries.size() > 1) {
+            final Map.Entry<String, Long> eldest = iterator.next();
+
+            try {
+                Files.deleteIfExists(getPath(eldest.getKey()));
+            } catch (final IOException e) {
+                logger.log(Level.WARNING, e.getLocalizedMessage(), e);
+            }
+
+            size -= eldest.getValue();
+            iterator.remove();
+        }
+    }
+}
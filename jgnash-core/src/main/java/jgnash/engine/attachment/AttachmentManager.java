@@ -19,6 +19,7 @@ package jgnash.engine.attachment;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Collection;
 import java.util.concurrent.Future;
 
 /**
@@ -27,9 +28,26 @@ import java.util.concurrent.Future;
  * @author Craig Cavanaugh
  */
 public interface AttachmentManager {
-    boolean addAttachment(Path path, boolean copy) throws IOException;
+
+    /**
+     * Adds a file attachment.  Attachments are stored by content name, so adding a file that has already been
+     * added stores nothing new.
+     *
+     * @param path Path to the attachment to add
+     * @param copy true if only copying the file
+     * @return the attachment name to record in the transaction or {@code null} if not successful
+     * @throws IOException if the file cannot be stored
+     */
+    String addAttachment(Path path, boolean copy) throws IOException;
 
     boolean removeAttachment(String attachment);
 
     Future<Path> getAttachment(String attachment);
+
+    /**
+     * Retrieves attachments in the background so later calls to {@code getAttachment} do not have to wait
+     *
+     * @param attachments attachment names
+     */
+    void prefetchAttachments(Collection<String> attachments);
 }
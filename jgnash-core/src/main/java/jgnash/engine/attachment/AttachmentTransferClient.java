@@ -17,13 +17,12 @@
  */
 package jgnash.engine.attachment;
 
-import java.io.File;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import jgnash.engine.AttachmentUtils;
 import jgnash.net.ConnectionFactory;
 import jgnash.util.EncryptionManager;
 
@@ -34,19 +33,7 @@ import io.netty.channel.ChannelOption;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
-import io.netty.handler.codec.DelimiterBasedFrameDecoder;
-import io.netty.handler.codec.Delimiters;
-import io.netty.handler.codec.base64.Base64Decoder;
-import io.netty.handler.codec.base64.Base64Encoder;
-import io.netty.handler.codec.string.StringDecoder;
-import io.netty.handler.codec.string.StringEncoder;
-import io.netty.util.CharsetUtil;
-
-import static jgnash.engine.attachment.NettyTransferHandler.DELETE;
-import static jgnash.engine.attachment.NettyTransferHandler.EOL_DELIMITER;
-import static jgnash.engine.attachment.NettyTransferHandler.FILE_REQUEST;
-import static jgnash.engine.attachment.NettyTransferHandler.PATH_MAX;
-import static jgnash.engine.attachment.NettyTransferHandler.TRANSFER_BUFFER_SIZE;
+import io.netty.handler.stream.ChunkedWriteHandler;
 
 /**
  * Client for sending and receiving files
@@ -58,6 +45,8 @@ class AttachmentTransferClient {
 
     private final Path tempDirectory;
 
+    private final AttachmentCache cache;
+
     private NioEventLoopGroup eventLoopGroup;
 
     private Channel channel;
@@ -66,8 +55,15 @@ class AttachmentTransferClient {
 
     private EncryptionManager encryptionManager = null;
 
-    public AttachmentTransferClient(final Path tempPath) {
+    /**
+     * Creates a new client
+     *
+     * @param tempPath location for received attachments that are not content addressed
+     * @param cache    cache for received content addressed attachments, may be {@code null}
+     */
+    public AttachmentTransferClient(final Path tempPath, final AttachmentCache cache) {
         tempDirectory = tempPath;
+        this.cache = cache;
     }
 
     /**
@@ -89,7 +85,7 @@ class AttachmentTransferClient {
 
         eventLoopGroup = new NioEventLoopGroup();
 
-        transferHandler = new NettyTransferHandler(tempDirectory, encryptionManager);
+        transferHandler = new ClientTransferHandler();
 
         bootstrap.group(eventLoopGroup)
                 .channel(NioSocketChannel.class)
@@ -111,32 +107,30 @@ class AttachmentTransferClient {
         return result;
     }
 
-    private String encrypt(final String message) {
-        if (encryptionManager != null) {
-            return encryptionManager.encrypt(message);
-        }
-        return message;
-    }
-
-    public void requestFile(final Path file) {
-        try {
-            channel.writeAndFlush(encrypt(FILE_REQUEST + file) + EOL_DELIMITER).sync();
-        } catch (final InterruptedException e) {
-            logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
-        }
+    /**
+     * Requests an attachment from the server
+     *
+     * @param attachment the attachment name
+     * @return the future path of the received attachment
+     */
+    public Future<Path> requestFile(final String attachment) {
+        return transferHandler.requestFile(channel, attachment);
     }
 
     public void deleteFile(final String attachment) {
-        try {
-            channel.writeAndFlush(encrypt(DELETE + Paths.get(attachment).getFileName()) + EOL_DELIMITER).sync();
-        } catch (final InterruptedException e) {
-            logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
-        }
+        transferHandler.deleteFile(channel, attachment);
     }
 
-    public Future<Void> sendFile(final File file) {
+    /**
+     * Sends a file to the server
+     *
+     * @param path       the file to send
+     * @param attachment the attachment name to store the file under
+     * @return the future of the send, {@code null} if the path is not a file
+     */
+    public Future<Void> sendFile(final Path path, final String attachment) {
         if (transferHandler != null) {
-            return transferHandler.sendFile(channel, file.getAbsolutePath());
+            return transferHandler.sendFile(channel, path, attachment);
         }
 
         return null;
@@ -161,20 +155,43 @@ class AttachmentTransferClient {
         logger.info("Disconnected from the File Transfer Server");
     }
 
+    /**
+     * Places content addressed attachments in the cache and all others in the temporary directory
+     */
+    private final class ClientTransferHandler extends NettyTransferHandler {
+
+        ClientTransferHandler() {
+            super(tempDirectory, encryptionManager);
+        }
+
+        @Override
+        protected Path resolve(final String fileName) {
+            final String attachment = fileName.endsWith(PART_SUFFIX)
+                    ? fileName.substring(0, fileName.length() - PART_SUFFIX.length()) : fileName;
+
+            if (cache != null && AttachmentUtils.isContentName(attachment)) {
+                return cache.getPath(fileName);
+            }
+
+            return super.resolve(fileName);
+        }
+
+        @Override
+        protected void fileReceived(final String fileName, final Path path) {
+            if (cache != null && AttachmentUtils.isContentName(fileName)) {
+                cache.add(fileName);
+            }
+        }
+    }
+
     private class Initializer extends ChannelInitializer<SocketChannel> {
 
         @Override
         public void initChannel(final SocketChannel ch) throws Exception {
 
             ch.pipeline().addLast(
-                    new DelimiterBasedFrameDecoder(((TRANSFER_BUFFER_SIZE + 2) / 3) * 4 + PATH_MAX,
-                            true, Delimiters.lineDelimiter()),
-
-                    new StringEncoder(CharsetUtil.UTF_8),
-                    new StringDecoder(CharsetUtil.UTF_8),
-
-                    new Base64Encoder(),
-                    new Base64Decoder(),
+                    new TransferFrameDecoder(),
+                    new ChunkedWriteHandler(),
 
                     transferHandler);
         }
@@ -0,0 +1,83 @@
+/*
+ * jGnash, a personal finance application
+ * Copyright (C) 2001-2014 Craig Cavanaugh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jgnash.engine.attachment;
+
+import javax.crypto.Cipher;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.stream.ChunkedInput;
+
+/**
+ * Encrypts the chunks of another {@code ChunkedInput} with a stream cipher as they are written.
+ *
+ * @author Craig Cavanaugh
+ */
+class CipherChunkedInput implements ChunkedInput<ByteBuf> {
+
+    private final ChunkedInput<ByteBuf> input;
+
+    private final Cipher cipher;
+
+    /**
+     * Creates a new encrypting input
+     *
+     * @param input  input to encrypt, closed with this input
+     * @param cipher stream cipher initialized for encryption
+     */
+    CipherChunkedInput(final ChunkedInput<ByteBuf> input, final Cipher cipher) {
+        this.input = input;
+        this.cipher = cipher;
+    }
+
+    @Override
+    public boolean isEndOfInput() throws Exception {
+        return input.isEndOfInput();
+    }
+
+    @Override
+    public void close() throws Exception {
+        input.close();
+    }
+
+    @Override
+    public ByteBuf readChunk(final ChannelHandlerContext ctx) throws Exception {
+        final ByteBuf chunk = input.readChunk(ctx);
+
+        if (chunk == null) {
+            return null;
+        }
+
+        final byte[] plain = new byte[chunk.readableBytes()];
+
+        try {
+            chunk.readBytes(plain);
+        } finally {
+            chunk.release();
+        }
+
+        final byte[] encrypted = cipher.update(plain);
+
+        if (input.isEndOfInput()) {
+            return Unpooled.wrappedBuffer(encrypted != null ? encrypted : new byte[0], cipher.doFinal());
+        }
+
+        return Unpooled.wrappedBuffer(encrypted != null ? encrypted : new byte[0]);
+    }
+}
@@ -17,17 +17,15 @@
  */
 package jgnash.engine.attachment;
 
-import java.io.File;
 import java.io.IOException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.FileAttribute;
 import java.nio.file.attribute.PosixFilePermission;
 import java.nio.file.attribute.PosixFilePermissions;
-import java.util.Date;
+import java.util.Collection;
 import java.util.EnumSet;
 import java.util.Set;
 import java.util.concurrent.Callable;
@@ -35,11 +33,19 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import jgnash.engine.AttachmentUtils;
+import jgnash.engine.EngineFactory;
+
 /**
  * Attachment handler for a remote database
+ * <p/>
+ * Attachments with a content name are kept in a persistent cache and are only transferred if they are not
+ * already cached.  Other attachments are cached in a temporary directory for the session.
  *
  * @author Craig Cavanaugh
  */
@@ -47,7 +53,12 @@ public class DistributedAttachmentManager implements AttachmentManager {
 
     private static final String TEMP_ATTACHMENT_PATH = "jgnashTemp-";
 
-    private static final int TRANSFER_TIMEOUT = 5000;
+    /**
+     * Time to wait for a requested attachment in minutes
+     */
+    private static final int TRANSFER_TIMEOUT = 5;
+
+    private static final Logger logger = Logger.getLogger(DistributedAttachmentManager.class.getName());
 
     private final ExecutorService executorService = Executors.newCachedThreadPool();
 
@@ -60,12 +71,20 @@ public class DistributedAttachmentManager implements AttachmentManager {
      */
     private Path tempAttachmentPath;
 
+    private AttachmentCache cache;
+
     private AttachmentTransferClient fileClient;
 
     public DistributedAttachmentManager(final String host, final int port) {
         this.host = host;
         this.port = port;
 
+        try {
+            cache = new AttachmentCache(AttachmentUtils.getAttachmentCacheDirectory(), EngineFactory.getAttachmentCacheSize());
+        } catch (final IOException e) {
+            logger.log(Level.WARNING, "Unable to open the attachment cache", e);
+        }
+
         try {
             EnumSet<PosixFilePermission> permissions = EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE,
                     PosixFilePermission.OWNER_EXECUTE, PosixFilePermission.GROUP_READ, PosixFilePermission.GROUP_WRITE);
@@ -74,9 +93,9 @@ public class DistributedAttachmentManager implements AttachmentManager {
 
             tempAttachmentPath = Files.createTempDirectory(TEMP_ATTACHMENT_PATH, attr);
 
-            fileClient = new AttachmentTransferClient(tempAttachmentPath);
+            fileClient = new AttachmentTransferClient(tempAttachmentPath, cache);
         } catch (final IOException e) {
-            Logger.getLogger(DistributedAttachmentManager.class.getName()).log(Level.SEVERE, e.getLocalizedMessage(), e);
+            logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
         }
     }
 
@@ -87,76 +106,100 @@ public class DistributedAttachmentManager implements AttachmentManager {
      *
      * @param path Path to the attachment to add
      * @param copy true if only copying the file
-     * @return true if successful
+     * @return the content name of the attachment or {@code null} if not successful
      * @throws IOException
      */
     @Override
-    public boolean addAttachment(final Path path, boolean copy) throws IOException {
-
-        boolean result = false;
+    public String addAttachment(final Path path, boolean copy) throws IOException {
 
-        // Transfer the file to the remote location
-        final Future<Void> future = fileClient.sendFile(path.toFile());
+        final String attachment = AttachmentUtils.getContentName(path);
 
-        // Determine the cache location the file needs to go to so it does not have to be requested
-        final Path newPath = Paths.get(tempAttachmentPath + File.separator + path.getFileName());
+        // Transfer the file to the remote location, the server skips the transfer if it has the same content
+        final Future<Void> future = fileClient.sendFile(path, attachment);
 
-        if (future != null) {   // if null, path was not valid
-            try {
-                future.get();  // wait for the transfer to complete
-            } catch (InterruptedException | ExecutionException e) {
-                Logger.getLogger(DistributedAttachmentManager.class.getName()).log(Level.SEVERE, e.getLocalizedMessage(), e);
-            }
+        if (future == null) {   // path was not valid
+            return null;
+        }
 
-            // Copy or move the file
-            if (copy) {
-                Files.copy(path, newPath, StandardCopyOption.REPLACE_EXISTING);
-            } else {
-                Files.copy(path, newPath, StandardCopyOption.REPLACE_EXISTING);
-                Files.delete(path);
-            }
+        try {
+            future.get();  // wait for the transfer to complete
+        } catch (InterruptedException | ExecutionException e) {
+            logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
+            return null;
+        }
 
-            result = true;
+        // Place the file in the cache so it does not have to be requested
+        if (cache != null) {
+            cache.put(attachment, path, copy);
+        } else if (!copy) {
+            Files.delete(path);
         }
 
-        return result;
+        return attachment;
     }
 
     @Override
     public boolean removeAttachment(final String attachment) {
         fileClient.deleteFile(attachment);
+
+        if (cache != null && AttachmentUtils.isContentName(attachment)) {
+            cache.remove(attachment);
+        }
+
         return true;
     }
 
     @Override
     public Future<Path> getAttachment(final String attachment) {
+        final Path path = getLocalPath(attachment);
+
+        if (path != null) {
+            return executorService.submit(new Callable<Path>() {
+                @Override
+                public Path call() throws Exception {
+                    return path;
+                }
+            });
+        }
+
+        final Future<Path> transfer = fileClient.requestFile(attachment);
 
         return executorService.submit(new Callable<Path>() {
             @Override
             public Path call() throws Exception {
-                Path path = Paths.get(tempAttachmentPath + File.separator + Paths.get(attachment).getFileName());
-
-                if (Files.notExists(path)) {
-                    fileClient.requestFile(Paths.get(attachment));  // Request the file and place in a a temp location
-
-                    long now = new Date().getTime();
+                try {
+                    return transfer.get(TRANSFER_TIMEOUT, TimeUnit.MINUTES);
+                } catch (final ExecutionException | TimeoutException e) {
+                    logger.log(Level.WARNING, "Unable to retrieve " + attachment, e);
+                    return null;
+                }
+            }
+        });
+    }
 
-                    while ((new Date().getTime() - now) < TRANSFER_TIMEOUT) {
-                        if (Files.exists(path)) {
-                            break;
-                        }
+    @Override
+    public void prefetchAttachments(final Collection<String> attachments) {
+        for (final String attachment : attachments) {
+            if (attachment != null && !attachment.isEmpty() && getLocalPath(attachment) == null) {
+                fileClient.requestFile(attachment);  // requests are pipelined and received in the background
+            }
+        }
+    }
 
-                        Thread.yield();
-                    }
-                }
+    /**
+     * Returns the local copy of an attachment
+     *
+     * @param attachment attachment name
+     * @return the local path or {@code null} if the attachment must be requested
+     */
+    private Path getLocalPath(final String attachment) {
+        if (cache != null && AttachmentUtils.isContentName(attachment)) {
+            return cache.get(attachment);
+        }
 
-                if (Files.notExists(path)) {
-                    path = null;
-                }
+        final Path path = tempAttachmentPath.resolve(Paths.get(attachment).getFileName());
 
-                return path;
-            }
-        });
+        return Files.exists(path) ? path : null;
     }
 
     public boolean connectToServer(final char[] password) {
@@ -22,6 +22,8 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -48,28 +50,37 @@ public class LocalAttachmentManager implements AttachmentManager {
      *
      * @param path Path to the attachment to add
      * @param copy true if only copying the file
-     * @return true if successful
+     * @return the content name of the attachment or {@code null} if not successful
      * @throws IOException
      */
     @Override
-    public boolean addAttachment(final Path path, final boolean copy) throws IOException {
+    public String addAttachment(final Path path, final boolean copy) throws IOException {
 
-        boolean result = false;
+        String result = null;
 
         Path baseFile = Paths.get(EngineFactory.getActiveDatabase());
 
         if (AttachmentUtils.createAttachmentDirectory(baseFile)) {  // create if needed
 
-            Path newPath = new File(AttachmentUtils.getAttachmentPath() + File.separator + path.getFileName()).toPath();
+            final String attachment = AttachmentUtils.getContentName(path);
+
+            Path newPath = new File(AttachmentUtils.getAttachmentPath() + File.separator + attachment).toPath();
 
             try {
-                if (copy) {
-                    Files.copy(path, newPath);
-                } else {
-                    Files.copy(path, newPath);
+                final boolean exists = Files.exists(newPath);
+
+                if (!exists) {  // copy to a temporary name first so an incomplete copy is never used
+                    final Path part = Paths.get(newPath + ".part");
+
+                    Files.copy(path, part, StandardCopyOption.REPLACE_EXISTING);
+                    Files.move(part, newPath, StandardCopyOption.ATOMIC_MOVE);
+                }
+
+                // the same content may already be stored, possibly as the file being added
+                if (!copy && !(exists && Files.isSameFile(path, newPath))) {
                     Files.delete(path);
                 }
-                result = true;
+                result = attachment;
             } catch (final IOException e) {
                 Logger.getLogger(LocalAttachmentManager.class.getName()).log(Level.SEVERE, e.getLocalizedMessage(), e);
                 throw new IOException(e);
@@ -104,4 +115,9 @@ public class LocalAttachmentManager implements AttachmentManager {
             }
         });
     }
+
+    @Override
+    public void prefetchAttachments(final Collection<String> attachments) {
+        // attachments are already local
+    }
 }
@@ -17,65 +17,129 @@
  */
 package jgnash.engine.attachment;
 
-import java.io.File;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.crypto.Cipher;
+
 import jgnash.engine.AttachmentUtils;
 import jgnash.util.EncryptionManager;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
-import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultFileRegion;
 import io.netty.channel.SimpleChannelInboundHandler;
-
-import static javax.xml.bind.DatatypeConverter.parseBase64Binary;
-import static javax.xml.bind.DatatypeConverter.printBase64Binary;
+import io.netty.handler.stream.ChunkedNioFile;
+import io.netty.util.concurrent.Promise;
 
 /**
  * Handles the details of bi-directional transfer of files between a client and server.
+ * <p/>
+ * Control messages are sent as length prefixed frames that are encrypted if an {@code EncryptionManager} is used.
+ * File content is sent as raw bytes after a {@link #FILE_DATA} frame; a {@code FileRegion} is used for zero-copy
+ * transfers, or the file is streamed through a counter mode cipher if encryption is enabled.
+ * <p/>
+ * Files are always pulled by the receiver with a {@link #FILE_REQUEST} that includes the length and hash of a partial
+ * copy left by an interrupted transfer so that only the remainder is sent.  The sender restarts the transfer if the
+ * partial copy does not match the start of its file.  A partial copy is written next to the attachment and renamed
+ * once it is complete; a resumed copy that fails verification is discarded and requested again.  To push a file, the sender offers it with {@link #FILE_PUSH} and the receiver
+ * replies with a request.
+ * <p/>
+ * Files with a content name are verified when received and are not transferred again if the receiver already has
+ * a file with the same name.
  *
  * @author Craig Cavanaugh
  */
-@ChannelHandler.Sharable
-class NettyTransferHandler extends SimpleChannelInboundHandler<String> {
+class NettyTransferHandler extends SimpleChannelInboundHandler<Object> {
 
-    public static final String FILE_REQUEST = "<FILE_REQUEST>";
+    /**
+     * File name, offset and hash of the partial copy of a requested file
+     */
+    static final byte FILE_REQUEST = 1;
 
-    public static final String DELETE = "<DELETE>";
+    /**
+     * File name of a file offered by the sender
+     */
+    static final byte FILE_PUSH = 2;
 
-    public static final String EOL_DELIMITER = "\r\n";
+    /**
+     * File name of a file to delete
+     */
+    static final byte DELETE = 3;
 
-    private static final String FILE_STARTS = "<FILE_STARTS>";
+    /**
+     * File name, file size, offset and initialization vector of a file that follows
+     */
+    static final byte FILE_STARTS = 4;
 
-    private static final String FILE_ENDS = "<FILE_ENDS>";
+    /**
+     * Number of raw file bytes that follow, never encrypted
+     */
+    static final byte FILE_DATA = 5;
 
-    private static final String FILE_CHUNK = "<FILE_CHUNK>";
+    /**
+     * File name of a file that has been received completely
+     */
+    static final byte FILE_COMPLETE = 6;
 
-    private static final String ERROR = "<ERROR>";
+    /**
+     * File name and message of a failed transfer
+     */
+    static final byte ERROR = 7;
 
-    private static final Logger logger = Logger.getLogger(NettyTransferHandler.class.getName());
+    /**
+     * Suffix of a file that is still being received
+     */
+    static final String PART_SUFFIX = ".part";
 
-    public static final int TRANSFER_BUFFER_SIZE = 1024; // too large can break netty... bug?
+    static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
 
-    public static final int PATH_MAX = 4096;
+    static final int PATH_MAX = 4096;
 
-    private final Map<String, Attachment> fileMap = new ConcurrentHashMap<>();
+    private static final Logger logger = Logger.getLogger(NettyTransferHandler.class.getName());
+
+    /**
+     * Files offered to the remote side that have not been received yet
+     */
+    private final Map<String, Push> pushes = new ConcurrentHashMap<>();
+
+    /**
+     * Files requested from the remote side that have not been received yet
+     */
+    private final ConcurrentMap<String, Promise<Path>> downloads = new ConcurrentHashMap<>();
 
     private final Path attachmentPath;
 
     private final EncryptionManager encryptionManager;
 
+    /**
+     * The file being received.  Only accessed by the event loop.
+     */
+    private Incoming incoming;
+
     /**
      * Netty Handler.  The specified path may be a temporary location for clients or a persistent location for servers.
      *
@@ -87,49 +151,110 @@ class NettyTransferHandler extends SimpleChannelInboundHandler<String> {
     }
 
     @Override
-    public void channelRead0(final ChannelHandlerContext ctx, final String msg) {
+    public void channelRead0(final ChannelHandlerContext ctx, final Object msg) {
+        if (msg instanceof ByteBuf) {
+            writeIncoming(ctx, (ByteBuf) msg);
+        } else if (msg instanceof byte[]) {
+            final byte[] frame = (byte[]) msg;
 
-        final String plainMessage;
+            final byte[] body = decrypt(Arrays.copyOfRange(frame, 1, frame.length));
 
-        if (encryptionManager != null) {
-            plainMessage = encryptionManager.decrypt(msg);
-        } else {
-            plainMessage = msg;
-        }
+            if (body == null) {
+                logger.warning("Unable to decrypt the message");
+                return;
+            }
 
-        if (plainMessage.startsWith(FILE_REQUEST)) {
-            sendFile(ctx, attachmentPath + File.separator + plainMessage.substring(FILE_REQUEST.length()));
-        } else if (plainMessage.startsWith(FILE_STARTS)) {
-            openOutputStream(plainMessage.substring(FILE_STARTS.length()));
-        } else if (plainMessage.startsWith(FILE_CHUNK)) {
-            writeOutputStream(plainMessage.substring(FILE_CHUNK.length()));
-        } else if (plainMessage.startsWith(FILE_ENDS)) {
-            closeOutputStream(plainMessage.substring(FILE_ENDS.length()));
-        } else if (plainMessage.startsWith(DELETE)) {
-            deleteFile(plainMessage.substring(FILE_ENDS.length()));
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(body))) {
+                switch (frame[0]) {
+                    case FILE_REQUEST:
+                        final String requested = fileName(in.readUTF());
+                        final long requestedOffset = in.readLong();
+                        sendFile(ctx.channel(), requested, requestedOffset, in.readUTF());
+                        break;
+                    case FILE_PUSH:
+                        final String pushed = fileName(in.readUTF());
+
+                        if (AttachmentUtils.isContentName(pushed) && Files.exists(resolve(pushed))) {
+                            ctx.writeAndFlush(frame(FILE_COMPLETE, pushed));  // the same content is already stored
+                        } else {
+                            requestFile(ctx.channel(), pushed);
+                        }
+                        break;
+                    case DELETE:
+                        deleteFile(fileName(in.readUTF()));
+                        break;
+                    case FILE_STARTS:
+                        final String name = fileName(in.readUTF());
+                        final long fileSize = in.readLong();
+                        final long offset = in.readLong();
+                        final byte[] iv = new byte[in.readUnsignedShort()];
+                        in.readFully(iv);
+
+                        openIncoming(ctx, name, fileSize, offset, iv);
+                        break;
+                    case FILE_COMPLETE:
+                        completePush(fileName(in.readUTF()), null);
+                        break;
+                    case ERROR:
+                        final String fileName = fileName(in.readUTF());
+                        final String message = in.readUTF();
+
+                        logger.log(Level.WARNING, "Transfer of {0} failed: {1}", new Object[]{fileName, message});
+                        completePush(fileName, new IOException(message));
+                        completeDownload(fileName, null, new IOException(message));
+                        break;
+                    default:
+                        logger.log(Level.WARNING, "Unknown frame type: {0}", frame[0]);
+                }
+            } catch (final IOException e) {
+                logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
+            }
         }
     }
 
+    /**
+     * Returns the location of a file that is sent or received
+     *
+     * @param fileName the file name
+     * @return the path of the file
+     */
+    protected Path resolve(final String fileName) {
+        return attachmentPath.resolve(fileName);
+    }
+
+    /**
+     * Called by the event loop once a file has been received completely
+     *
+     * @param fileName the file name
+     * @param path     the path of the file
+     */
+    protected void fileReceived(final String fileName, final Path path) {
+    }
+
     private void deleteFile(final String fileName) {
-        Path path = Paths.get(attachmentPath + File.separator + fileName);
+        final Path path = resolve(fileName);
 
-        if (Files.exists(path)) {
-            try {
-                Files.delete(path);
-            } catch (final IOException e) {
-                logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
-            }
+        try {
+            Files.deleteIfExists(path);
+            Files.deleteIfExists(resolve(fileName + PART_SUFFIX));
+        } catch (final IOException e) {
+            logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
         }
     }
 
     @Override
     public void channelInactive(final ChannelHandlerContext ctx) throws Exception {
-        for (Attachment object : fileMap.values()) {
-            try {
-                object.fileOutputStream.close();
-            } catch (IOException e) {
-                logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
-            }
+        if (incoming != null) {
+            incoming.close();   // the partial file is kept so the transfer can be resumed
+            incoming = null;
+        }
+
+        for (final String fileName : pushes.keySet()) {
+            completePush(fileName, new ClosedChannelException());
+        }
+
+        for (final String fileName : downloads.keySet()) {
+            completeDownload(fileName, null, new ClosedChannelException());
         }
 
         ctx.fireChannelInactive();    // forward to the next handler in the pipeline
@@ -137,132 +262,451 @@ class NettyTransferHandler extends SimpleChannelInboundHandler<String> {
 
     @Override
     public void exceptionCaught(final ChannelHandlerContext ctx, final Throwable cause) throws Exception {
-        super.exceptionCaught(ctx, cause);
         logger.log(Level.WARNING, "Unexpected exception from downstream.", cause);
         ctx.close();
     }
 
-    private String encrypt(final String message) {
+    private byte[] encrypt(final byte[] plain) {
         if (encryptionManager != null) {
-            return encryptionManager.encrypt(message);
+            return encryptionManager.encrypt(plain);
         }
-        return message;
+        return plain;
+    }
+
+    private byte[] decrypt(final byte[] encrypted) {
+        if (encryptionManager != null) {
+            return encryptionManager.decrypt(encrypted);
+        }
+        return encrypted;
     }
 
     /**
-     * Sends a file across the channel. The Fu
-     * @param channel  Channel to send file through
+     * Builds a control frame.  Fields may be a {@code String}, {@code Long} or {@code byte[]}.
+     *
+     * @param type   frame type
+     * @param fields fields of the frame
+     * @return the frame
+     */
+    private ByteBuf frame(final byte type, final Object... fields) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            for (final Object field : fields) {
+                if (field instanceof String) {
+                    out.writeUTF((String) field);
+                } else if (field instanceof Long) {
+                    out.writeLong((Long) field);
+                } else {
+                    out.writeShort(((byte[]) field).length);
+                    out.write((byte[]) field);
+                }
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);   // not possible when writing to memory
+        }
+
+        final byte[] body = encrypt(bytes.toByteArray());
+
+        if (body == null) {
+            throw new IllegalStateException("Unable to encrypt the message");
+        }
+
+        return Unpooled.buffer(body.length + 5).writeInt(body.length + 1).writeByte(type).writeBytes(body);
+    }
+
+    /**
+     * Requests a file from the remote side.  A partial copy left by an earlier transfer is resumed if it matches the
+     * remote file.  If the file has already been requested, the pending request is returned.
+     *
+     * @param channel  Channel to send the request through
      * @param fileName the file name
-     * @return the future of the potentially asynchronous send is returned. A null value is returned if fileName is a path.
+     * @return the future path of the received file
      */
-    public Future<Void> sendFile(final Channel channel, final String fileName) {
-        Future<Void> future = null;
+    public Future<Path> requestFile(final Channel channel, final String fileName) {
+        final String name = fileName(fileName);
+
+        final Promise<Path> promise = channel.eventLoop().newPromise();
+        final Promise<Path> pending = downloads.putIfAbsent(name, promise);
 
-        Path path = Paths.get(fileName);
+        if (pending != null) {
+            return pending;
+        }
 
-        if (Files.exists(path)) {
+        sendRequest(channel, name);
 
-            if (Files.isDirectory(path)) {
-                channel.writeAndFlush(encrypt(ERROR + "Not a file: " + path) + EOL_DELIMITER);
-                return null;
+        return promise;
+    }
+
+    /**
+     * Sends the request for a file with the length and hash of any partial copy
+     */
+    private void sendRequest(final Channel channel, final String name) {
+        long offset = 0;
+        String hash = "";
+
+        try {
+            final Path part = resolve(name + PART_SUFFIX);
+
+            if (Files.exists(part)) {
+                offset = Files.size(part);
+                hash = AttachmentUtils.getContentHash(part);
             }
+        } catch (final IOException e) {
+            logger.log(Level.WARNING, e.getLocalizedMessage(), e);
+            offset = 0;
+            hash = "";
+        }
 
-            try (InputStream fileInputStream = Files.newInputStream(path)) {
-                channel.writeAndFlush(encrypt(FILE_STARTS + path.getFileName() + ":" + Files.size(path)) + EOL_DELIMITER);
+        channel.writeAndFlush(frame(FILE_REQUEST, name, offset, hash)).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(final ChannelFuture future) throws Exception {
+                if (!future.isSuccess()) {
+                    completeDownload(name, null, future.cause());
+                }
+            }
+        });
+    }
 
-                byte[] bytes = new byte[TRANSFER_BUFFER_SIZE];  // leave room for base 64 expansion
+    /**
+     * Deletes a file on the remote side
+     *
+     * @param channel  Channel to send the request through
+     * @param fileName the file name
+     */
+    public void deleteFile(final Channel channel, final String fileName) {
+        channel.writeAndFlush(frame(DELETE, fileName(fileName)));
+    }
 
-                int bytesRead;
+    /**
+     * Sends a file across the channel.  The file is offered to the remote side, which requests it and acknowledges
+     * it once it has been stored.
+     *
+     * @param channel  Channel to send file through
+     * @param path     the file to send
+     * @param fileName the name to store the file under
+     * @return the future of the asynchronous send. A null value is returned if path is not a file.
+     */
+    public Future<Void> sendFile(final Channel channel, final Path path, final String fileName) {
+        if (!Files.isRegularFile(path)) {
+            logger.log(Level.WARNING, "Not a file: {0}", path);
+            return null;
+        }
 
-                while ((bytesRead = fileInputStream.read(bytes)) != -1) {
-                    if (bytesRead > 0) {
-                        channel.write(encrypt(FILE_CHUNK + path.getFileName() + ':' +
-                                printBase64Binary(Arrays.copyOfRange(bytes, 0, bytesRead))) + EOL_DELIMITER);
-                    }
+        final String name = fileName(fileName);
+
+        final Push push = new Push(path, channel.newPromise());
+        final Push previous = pushes.put(name, push);
+
+        if (previous != null) {
+            previous.promise.tryFailure(new IOException("Replaced by a new transfer of " + name));
+        }
+
+        channel.writeAndFlush(frame(FILE_PUSH, name)).addListener(new PushFailureListener(name));
+
+        return push.promise;
+    }
+
+    /**
+     * Sends a requested file starting at the given offset.  The transfer restarts from the beginning if the offset
+     * is not within the file or the hash of the receiver's partial copy does not match the start of the file.
+     */
+    private void sendFile(final Channel channel, final String fileName, final long offset, final String hash) {
+        final Push push = pushes.get(fileName);
+        final Path path = push != null ? push.path : resolve(fileName);
+
+        if (!Files.isRegularFile(path)) {
+            logger.log(Level.WARNING, "File not found: {0}", path);
+            channel.writeAndFlush(frame(ERROR, fileName, "File not found: " + fileName));
+            return;
+        }
+
+        try {
+            final FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ);
+
+            final long fileSize = fileChannel.size();
+            long start = 0;
+
+            if (offset > 0 && offset <= fileSize) {
+                if (hash.equals(AttachmentUtils.getContentHash(path, offset))) {
+                    start = offset;
+                } else {
+                    logger.log(Level.INFO, "Partial copy of {0} does not match, restarting", fileName);
                 }
-                future = channel.writeAndFlush(encrypt(FILE_ENDS + path.getFileName()) + EOL_DELIMITER).sync();
+            }
 
-            } catch (IOException | InterruptedException e) {
-                logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
+            final long count = fileSize - start;
+
+            final Cipher cipher;
+            final byte[] iv;
+
+            if (encryptionManager != null) {
+                iv = EncryptionManager.generateStreamIV();
+                cipher = encryptionManager.getStreamCipher(Cipher.ENCRYPT_MODE, iv);
+
+                if (cipher == null) {
+                    fileChannel.close();
+                    channel.writeAndFlush(frame(ERROR, fileName, "Unable to encrypt " + fileName));
+                    return;
+                }
+            } else {
+                iv = new byte[0];
+                cipher = null;
             }
-        } else {
-            try {
-                future = channel.writeAndFlush(encrypt(ERROR + "File not found: " + path) + EOL_DELIMITER).sync();
-            } catch (final InterruptedException e) {
-                logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
+
+            channel.write(frame(FILE_STARTS, fileName, fileSize, start, iv));
+            channel.write(Unpooled.buffer(13).writeInt(9).writeByte(FILE_DATA).writeLong(count));
+
+            final ChannelFuture future;
+
+            if (count == 0) {
+                fileChannel.close();
+                future = channel.writeAndFlush(Unpooled.EMPTY_BUFFER);
+            } else if (cipher == null) {
+                future = channel.writeAndFlush(new DefaultFileRegion(fileChannel, start, count));
+            } else {
+                future = channel.writeAndFlush(new CipherChunkedInput(new ChunkedNioFile(fileChannel, start, count,
+                        TRANSFER_BUFFER_SIZE), cipher));
             }
-            logger.log(Level.WARNING, "File not found: {0}", path);
+
+            future.addListener(new PushFailureListener(fileName));
+        } catch (final IOException e) {
+            logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
+            channel.writeAndFlush(frame(ERROR, fileName, e.getLocalizedMessage()));
         }
+    }
+
+    private void completePush(final String fileName, final Throwable cause) {
+        final Push push = pushes.remove(fileName);
 
-        return future;
+        if (push != null) {
+            if (cause == null) {
+                push.promise.trySuccess();
+            } else {
+                push.promise.tryFailure(cause);
+            }
+        }
     }
 
-    private void sendFile(final ChannelHandlerContext ctx, final String msg) {
-        sendFile(ctx.channel(), msg);
+    private void completeDownload(final String fileName, final Path path, final Throwable cause) {
+        final Promise<Path> promise = downloads.remove(fileName);
+
+        if (promise != null) {
+            if (cause == null) {
+                promise.trySuccess(path);
+            } else {
+                promise.tryFailure(cause);
+            }
+        }
     }
 
-    private void closeOutputStream(final String msg) {
-        Attachment attachment = fileMap.get(msg);
+    private void openIncoming(final ChannelHandlerContext ctx, final String fileName, final long fileSize,
+                              final long offset, final byte[] iv) {
+
+        incoming = new Incoming(fileName, fileSize, fileSize - offset, offset > 0);
 
         try {
-            attachment.fileOutputStream.close();
-            fileMap.remove(msg);
+            final Path part = resolve(fileName + PART_SUFFIX);
+
+            // Lazy creation of the attachment path if needed
+            Files.createDirectories(part.getParent());
+
+            final FileChannel fileChannel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+
+            if (fileChannel.size() < offset) {
+                fileChannel.close();
+                throw new IOException("Unable to resume " + fileName + " at " + offset);
+            }
+
+            fileChannel.truncate(offset);
+            fileChannel.position(offset);
+
+            incoming.fileChannel = fileChannel;
+
+            if (encryptionManager != null) {
+                incoming.cipher = encryptionManager.getStreamCipher(Cipher.DECRYPT_MODE, iv);
+            }
         } catch (final IOException e) {
             logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
+            incoming.close();
+            completeDownload(fileName, null, e);
+            ctx.writeAndFlush(frame(ERROR, fileName, String.valueOf(e.getLocalizedMessage())));
+            return;
         }
 
-        if (attachment.path.toFile().length() != attachment.fileSize) {
-            logger.severe("Invalid file length");
+        if (incoming.remaining == 0) {
+            completeIncoming(ctx);
         }
     }
 
-    private void writeOutputStream(final String msg) {
-        String[] msgParts = msg.split(":");
+    private void writeIncoming(final ChannelHandlerContext ctx, final ByteBuf buf) {
+        if (incoming == null) {
+            logger.warning("Received file data without a file");
+            return;
+        }
 
-        Attachment attachment = fileMap.get(msgParts[0]);
+        incoming.remaining -= buf.readableBytes();
 
-        if (attachment != null) {
+        if (incoming.fileChannel != null) {   // otherwise the transfer failed and the data is discarded
             try {
-                attachment.fileOutputStream.write(parseBase64Binary(msgParts[1]));
+                if (incoming.cipher != null) {
+                    final byte[] encrypted = new byte[buf.readableBytes()];
+                    buf.readBytes(encrypted);
+
+                    incoming.write(incoming.cipher.update(encrypted));
+                } else {
+                    while (buf.isReadable()) {
+                        buf.readBytes(incoming.fileChannel, buf.readableBytes());
+                    }
+                }
             } catch (final IOException e) {
                 logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
+                incoming.close();
+                completeDownload(incoming.fileName, null, e);
+                ctx.writeAndFlush(frame(ERROR, incoming.fileName, String.valueOf(e.getLocalizedMessage())));
             }
         }
-    }
-
-    private void openOutputStream(final String msg) {
-        String[] msgParts = msg.split(":");
 
-        final String fileName = msgParts[0];
-        final long fileLength = Long.parseLong(msgParts[1]);
+        if (incoming.remaining <= 0) {
+            completeIncoming(ctx);
+        }
+    }
 
-        final Path filePath = Paths.get(attachmentPath + File.separator + fileName);
+    private void completeIncoming(final ChannelHandlerContext ctx) {
+        final Incoming attachment = incoming;
+        incoming = null;
 
-        // Lazy creation of the attachment path if needed
-        if (!AttachmentUtils.createAttachmentDirectory(attachmentPath)) {
-            logger.severe("Unable to find or create the attachment directory");
-            return;
+        if (attachment.fileChannel == null) {
+            return; // failure has already been reported
         }
 
         try {
-            fileMap.put(fileName, new Attachment(filePath, fileLength));
-        } catch (IOException e) {
+            if (attachment.cipher != null) {
+                attachment.write(attachment.cipher.doFinal());
+            }
+
+            final long length = attachment.fileChannel.size();
+            attachment.close();
+
+            final Path part = resolve(attachment.fileName + PART_SUFFIX);
+
+            final String error;
+
+            if (length != attachment.fileSize) {
+                error = "Invalid file length";
+            } else if (AttachmentUtils.isContentName(attachment.fileName)
+                    && !AttachmentUtils.verifyContent(attachment.fileName, part)) {
+                error = "Content does not match: " + attachment.fileName;
+            } else {
+                error = null;
+            }
+
+            if (error != null) {
+                Files.delete(part);
+
+                if (attachment.resumed) {  // the partial copy may have been bad, request the whole file again
+                    logger.log(Level.WARNING, "Resumed transfer of {0} failed, retrying", attachment.fileName);
+                    sendRequest(ctx.channel(), attachment.fileName);
+                    return;
+                }
+
+                throw new IOException(error);
+            }
+
+            final Path path = resolve(attachment.fileName);
+
+            Files.move(part, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            fileReceived(attachment.fileName, path);
+            completeDownload(attachment.fileName, path, null);
+
+            ctx.writeAndFlush(frame(FILE_COMPLETE, attachment.fileName));
+        } catch (final Exception e) {
             logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
+            attachment.close();
+            completeDownload(attachment.fileName, null, e);
+            ctx.writeAndFlush(frame(ERROR, attachment.fileName, String.valueOf(e.getLocalizedMessage())));
+        }
+    }
+
+    /**
+     * Strips any directories from a file name received from the remote side
+     */
+    private static String fileName(final String fileName) {
+        return Paths.get(fileName).getFileName().toString();
+    }
+
+    /**
+     * Fails a push if a write for it fails
+     */
+    private class PushFailureListener implements ChannelFutureListener {
+
+        private final String fileName;
+
+        PushFailureListener(final String fileName) {
+            this.fileName = fileName;
+        }
+
+        @Override
+        public void operationComplete(final ChannelFuture future) throws Exception {
+            if (!future.isSuccess()) {
+                completePush(fileName, future.cause());
+            }
         }
     }
 
-    private static class Attachment {
+    private static class Push {
         final Path path;
 
-        final OutputStream fileOutputStream;
+        final ChannelPromise promise;
+
+        Push(final Path path, final ChannelPromise promise) {
+            this.path = path;
+            this.promise = promise;
+        }
+    }
+
+    private static class Incoming {
+        final String fileName;
 
         final long fileSize;
 
-        private Attachment(final Path path, long fileSize) throws IOException {
-            this.path = path;
-            fileOutputStream = Files.newOutputStream(path);
+        /**
+         * True if a partial copy is being completed
+         */
+        final boolean resumed;
+
+        long remaining;
+
+        FileChannel fileChannel;
+
+        Cipher cipher;
 
+        Incoming(final String fileName, final long fileSize, final long remaining, final boolean resumed) {
+            this.fileName = fileName;
             this.fileSize = fileSize;
+            this.remaining = remaining;
+            this.resumed = resumed;
+        }
+
+        void write(final byte[] bytes) throws IOException {
+            if (bytes != null) {
+                final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+                while (buffer.hasRemaining()) {
+                    fileChannel.write(buffer);
+                }
+            }
+        }
+
+        void close() {
+            if (fileChannel != null) {
+                try {
+                    fileChannel.close();
+                } catch (final IOException e) {
+                    logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
+                }
+                fileChannel = null;
+            }
         }
     }
 }
@@ -0,0 +1,98 @@
+/*
+ * jGnash, a personal finance application
+ * Copyright (C) 2001-2014 Craig Cavanaugh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jgnash.engine.attachment;
+
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+
+import static jgnash.engine.attachment.NettyTransferHandler.FILE_DATA;
+import static jgnash.engine.attachment.NettyTransferHandler.PATH_MAX;
+
+/**
+ * Decodes the frames of the file transfer protocol.
+ * <p/>
+ * Control frames are length prefixed and decoded as a {@code byte[]} starting with the frame type.  A
+ * {@link NettyTransferHandler#FILE_DATA} frame carries the number of raw file bytes that follow it, which are passed
+ * on as {@code ByteBuf} chunks as they arrive instead of being framed.
+ *
+ * @author Craig Cavanaugh
+ */
+class TransferFrameDecoder extends ByteToMessageDecoder {
+
+    private static final int MAX_FRAME_LENGTH = PATH_MAX + 1024;
+
+    /**
+     * Raw file bytes that remain to be read
+     */
+    private long remaining = 0;
+
+    @Override
+    protected void decode(final ChannelHandlerContext ctx, final ByteBuf in, final List<Object> out) throws Exception {
+        while (in.isReadable()) {
+            if (remaining > 0) {
+                final int length = (int) Math.min(remaining, in.readableBytes());
+
+                out.add(in.readBytes(length));
+                remaining -= length;
+                continue;
+            }
+
+            if (in.readableBytes() < 4) {
+                return; // wait for more data
+            }
+
+            final int length = in.getInt(in.readerIndex());
+
+            if (length < 1 || length > MAX_FRAME_LENGTH) {
+                in.skipBytes(in.readableBytes());
+                throw new TooLongFrameException("Invalid frame length: " + length);
+            }
+
+            if (in.readableBytes() < length + 4) {
+                return; // wait for more data
+            }
+
+            in.skipBytes(4);
+
+            if (in.getByte(in.readerIndex()) == FILE_DATA) {
+                if (length != 9) {
+                    in.skipBytes(in.readableBytes());
+                    throw new CorruptedFrameException("Invalid data frame length: " + length);
+                }
+
+                in.skipBytes(1);
+                remaining = in.readLong();
+
+                if (remaining < 0) {
+                    in.skipBytes(in.readableBytes());
+                    throw new CorruptedFrameException("Invalid data length: " + remaining);
+                }
+            } else {
+                final byte[] frame = new byte[length];
+                in.readBytes(frame);
+
+                out.add(frame);
+            }
+        }
+    }
+}
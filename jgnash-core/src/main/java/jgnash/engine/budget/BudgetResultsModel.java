@@ -20,7 +20,6 @@ package jgnash.engine.budget;
 import jgnash.engine.Account;
 import jgnash.engine.AccountGroup;
 import jgnash.engine.AccountType;
-import jgnash.engine.Comparators;
 import jgnash.engine.CurrencyNode;
 import jgnash.engine.Engine;
 import jgnash.engine.EngineFactory;
@@ -36,6 +35,7 @@ import jgnash.engine.message.MessageProxy;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumMap;
 import java.util.EnumSet;
@@ -45,6 +45,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -77,6 +80,17 @@ public class BudgetResultsModel implements MessageListener {
 
     private final Map<BudgetPeriodDescriptor, Map<AccountGroup, BudgetPeriodResults>> descriptorAccountGroupResultsCache;
 
+    /**
+     * Incremented each time cached results are cleared so results computed in the background are not stored if
+     * they may be stale
+     */
+    private long cacheGeneration = 0;
+
+    /**
+     * Pool used to compute the results of independent descriptors in parallel
+     */
+    private static final ForkJoinPool pool = new ForkJoinPool();
+
     /**
      * Message proxy
      */
@@ -317,6 +331,8 @@ public class BudgetResultsModel implements MessageListener {
             if (resultsMap != null) {
                 resultsMap.remove(account);
             }
+
+            cacheGeneration++;
         } finally {
             cacheLock.unlock();
         }
@@ -331,6 +347,8 @@ public class BudgetResultsModel implements MessageListener {
             if (resultsMap != null) {
                 resultsMap.remove(group);
             }
+
+            cacheGeneration++;
         } finally {
             cacheLock.unlock();
         }
@@ -341,6 +359,7 @@ public class BudgetResultsModel implements MessageListener {
 
         try {
             accountResultsCache.remove(account);
+            cacheGeneration++;
         } finally {
             cacheLock.unlock();
         }
@@ -355,6 +374,8 @@ public class BudgetResultsModel implements MessageListener {
             if (results != null) {
                 accountGroupResultsCache.remove(accountGroup);
             }
+
+            cacheGeneration++;
         } finally {
             cacheLock.unlock();
         }
@@ -368,6 +389,7 @@ public class BudgetResultsModel implements MessageListener {
             accountGroupResultsCache.clear();
             descriptorAccountResultsCache.clear();
             descriptorAccountGroupResultsCache.clear();
+            cacheGeneration++;
         } finally {
             cacheLock.unlock();
         }
@@ -453,7 +475,119 @@ public class BudgetResultsModel implements MessageListener {
 
 
 
+    /**
+     * Computes the results of every account for all descriptors and caches them.  The descriptors are independent of
+     * each other and are computed in parallel, and each account reuses the results of its children.  Results that
+     * are already cached are not replaced.
+     * <p/>
+     * The results are computed without holding the cache lock and are only published if nothing was cleared in the
+     * meantime.  This blocks until the results are computed and should not be called from the event dispatch thread.
+     */
+    public void loadResults() {
+        final Engine engine = EngineFactory.getEngine(EngineFactory.DEFAULT);
+        Objects.requireNonNull(engine);
+
+        final List<Account> topLevelAccounts = engine.getRootAccount().getChildren();
+
+        final long generation;
+
+        cacheLock.lock();
+
+        try {
+            generation = cacheGeneration;
+        } finally {
+            cacheLock.unlock();
+        }
+
+        final Map<BudgetPeriodDescriptor, ForkJoinTask<Map<Account, BudgetPeriodResults>>> tasks = new HashMap<>();
+
+        for (final BudgetPeriodDescriptor descriptor : descriptorList) {
+            tasks.put(descriptor, pool.submit(new Callable<Map<Account, BudgetPeriodResults>>() {
+                @Override
+                public Map<Account, BudgetPeriodResults> call() throws Exception {
+                    final Map<Account, BudgetPeriodResults> resultsMap = new HashMap<>();
+
+                    accountLock.readLock().lock();
+
+                    try {
+                        for (final Account account : topLevelAccounts) {
+                            loadAccountResults(descriptor, account, resultsMap);
+                        }
+                    } finally {
+                        accountLock.readLock().unlock();
+                    }
+
+                    return resultsMap;
+                }
+            }));
+        }
+
+        // wait for the results without holding the cache lock so readers of the cache are not blocked
+        final Map<BudgetPeriodDescriptor, Map<Account, BudgetPeriodResults>> computed = new HashMap<>();
+
+        for (final Map.Entry<BudgetPeriodDescriptor, ForkJoinTask<Map<Account, BudgetPeriodResults>>> entry : tasks.entrySet()) {
+            computed.put(entry.getKey(), entry.getValue().join());
+        }
+
+        cacheLock.lock();
+
+        try {
+            // the results may be stale if anything was cleared while they were computed
+            if (generation != cacheGeneration) {
+                return;
+            }
+
+            for (final Map.Entry<BudgetPeriodDescriptor, Map<Account, BudgetPeriodResults>> entry : computed.entrySet()) {
+                Map<Account, BudgetPeriodResults> resultsMap = descriptorAccountResultsCache.get(entry.getKey());
+
+                if (resultsMap == null) {
+                    resultsMap = new HashMap<>();
+                    descriptorAccountResultsCache.put(entry.getKey(), resultsMap);
+                }
+
+                for (final Map.Entry<Account, BudgetPeriodResults> result : entry.getValue().entrySet()) {
+                    if (!resultsMap.containsKey(result.getKey())) {
+                        resultsMap.put(result.getKey(), result.getValue());
+                    }
+                }
+            }
+        } finally {
+            cacheLock.unlock();
+        }
+    }
+
+    /**
+     * Computes the results of an account and its descendants, children first
+     */
+    private BudgetPeriodResults loadAccountResults(final BudgetPeriodDescriptor descriptor, final Account account,
+                                                   final Map<Account, BudgetPeriodResults> resultsMap) {
+
+        final Map<Account, BudgetPeriodResults> childResults = new HashMap<>();
+
+        for (final Account child : account.getChildren()) {
+            childResults.put(child, loadAccountResults(descriptor, child, resultsMap));
+        }
+
+        final BudgetPeriodResults results = buildAccountResults(descriptor, account, childResults);
+        resultsMap.put(account, results);
+
+        return results;
+    }
+
     private BudgetPeriodResults buildAccountResults(final BudgetPeriodDescriptor descriptor, final Account account) {
+
+        // reuse the cached results of the children
+        final Map<Account, BudgetPeriodResults> childResults = new HashMap<>();
+
+        for (final Account child : account.getChildren()) {
+            childResults.put(child, getResults(descriptor, child));
+        }
+
+        return buildAccountResults(descriptor, account, childResults);
+    }
+
+    private BudgetPeriodResults buildAccountResults(final BudgetPeriodDescriptor descriptor, final Account account,
+                                                    final Map<Account, BudgetPeriodResults> childResults) {
         final BudgetPeriodResults results = new BudgetPeriodResults();
 
         accountLock.readLock().lock();
@@ -478,15 +612,15 @@ public class BudgetResultsModel implements MessageListener {
                 results.setRemaining(remaining);
             }
 
-            // recursive decent to add child account results and handle exchange rates
-            for (final Account child : account.getChildren(Comparators.getAccountByCode())) {
-                final BudgetPeriodResults childResults = buildAccountResults(descriptor, child);
+            // add child account results and handle exchange rates
+            for (final Map.Entry<Account, BudgetPeriodResults> entry : childResults.entrySet()) {
+                final BudgetPeriodResults childResult = entry.getValue();
 
-                final BigDecimal exchangeRate = child.getCurrencyNode().getExchangeRate(account.getCurrencyNode());
+                final BigDecimal exchangeRate = entry.getKey().getCurrencyNode().getExchangeRate(account.getCurrencyNode());
 
-                results.setChange(results.getChange().add(childResults.getChange().multiply(exchangeRate)));
-                results.setBudgeted(results.getBudgeted().add(childResults.getBudgeted().multiply(exchangeRate)));
-                results.setRemaining(results.getRemaining().add(childResults.getRemaining().multiply(exchangeRate)));
+                results.setChange(results.getChange().add(childResult.getChange().multiply(exchangeRate)));
+                results.setBudgeted(results.getBudgeted().add(childResult.getBudgeted().multiply(exchangeRate)));
+                results.setRemaining(results.getRemaining().add(childResult.getRemaining().multiply(exchangeRate)));
             }
         } finally {
             accountLock.readLock().unlock();
@@ -595,28 +729,41 @@ public class BudgetResultsModel implements MessageListener {
     }
 
     private void clearCached(final Account account) {
-        accountLock.readLock().lock();
+        clearCached(account.getAncestors(), descriptorList);
+    }
+
+    /**
+     * Clears the cached results of accounts for the given descriptors along with the summaries that include them.
+     * The results of the accounts are cached whether or not they are included in the budget as they are reused
+     * by their parents, so all affected accounts must be supplied.
+     *
+     * @param accountSet  accounts to clear
+     * @param descriptors descriptors to clear
+     */
+    private void clearCached(final Collection<Account> accountSet, final Collection<BudgetPeriodDescriptor> descriptors) {
+        cacheLock.lock();
 
         try {
-            cacheLock.lock();
-
-            try {
-                // clear cached results
-                for (Account ancestor : account.getAncestors()) {
-                    if (accounts.contains(ancestor)) {
-                        for (BudgetPeriodDescriptor descriptor : descriptorList) {
-                            clear(ancestor);
-                            clear(descriptor, ancestor);
-                            clear(ancestor.getAccountType().getAccountGroup()); // could be mixed group tree
-                            clear(descriptor, ancestor.getAccountType().getAccountGroup());
-                        }
-                    }
+            final Set<AccountGroup> groups = EnumSet.noneOf(AccountGroup.class);
+
+            for (final Account account : accountSet) {
+                clear(account);
+                groups.add(account.getAccountType().getAccountGroup()); // could be mixed group tree
+
+                for (final BudgetPeriodDescriptor descriptor : descriptors) {
+                    clear(descriptor, account);
+                }
+            }
+
+            for (final AccountGroup group : groups) {
+                clear(group);
+
+                for (final BudgetPeriodDescriptor descriptor : descriptors) {
+                    clear(descriptor, group);
                 }
-            } finally {
-                cacheLock.unlock();
             }
         } finally {
-            accountLock.readLock().unlock();
+            cacheLock.unlock();
         }
     }
 
@@ -667,18 +814,23 @@ public class BudgetResultsModel implements MessageListener {
     private void processTransactionEvent(final Message message) {
         final Transaction transaction = (Transaction) message.getObject(MessageProperty.TRANSACTION);
 
-        for (BudgetPeriodDescriptor descriptor : descriptorList) {
+        // only the descriptors covering the transaction date are affected
+        final List<BudgetPeriodDescriptor> descriptors = new ArrayList<>();
+
+        for (final BudgetPeriodDescriptor descriptor : descriptorList) {
             if (descriptor.isBetween(transaction.getDate())) {
-                final Set<Account> accountSet = new HashSet<>();
+                descriptors.add(descriptor);
+            }
+        }
 
-                for (Account account : transaction.getAccounts()) {
-                    accountSet.addAll(account.getAncestors());
-                }
+        if (!descriptors.isEmpty()) {
+            final Set<Account> accountSet = new HashSet<>();
 
-                for (Account account : accountSet) {
-                    clearCached(account);
-                }
+            for (final Account account : transaction.getAccounts()) {
+                accountSet.addAll(account.getAncestors());
             }
+
+            clearCached(accountSet, descriptors);
         }
     }
 
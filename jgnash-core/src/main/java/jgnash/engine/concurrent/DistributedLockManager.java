@@ -23,8 +23,6 @@ import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -33,6 +31,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import jgnash.net.ConnectionFactory;
+import jgnash.util.EncodeDecode;
 import jgnash.util.EncryptionManager;
 import jgnash.util.NotNull;
 
@@ -56,6 +55,11 @@ import io.netty.util.ReferenceCountUtil;
 
 /**
  * Lock manager for distributed engine instances
+ * <p/>
+ * Read locks are backed by a lease from the server that is shared by every thread of this manager and kept after the
+ * last local reader has finished, so repeated reads do not need a network round trip.  The server revokes the lease
+ * when a write lock is requested and it is released as soon as there are no local readers.  Requests from different
+ * threads are pipelined over the connection and unlock requests are not acknowledged.
  *
  * @author Craig Cavanaugh
  */
@@ -72,7 +76,12 @@ public class DistributedLockManager implements LockManager {
     /**
      * lock_action, lock_id, thread_id, lock_type
      */
-    private static final String PATTERN = "{0},{1},{2},{3}";
+    static final String PATTERN = "{0},{1},{2},{3}";
+
+    /**
+     * Seconds to wait for a response from the server before logging a warning
+     */
+    private static final long RESPONSE_WAIT = 45;
 
     static final String UUID_PREFIX = "UUID:";
 
@@ -86,14 +95,12 @@ public class DistributedLockManager implements LockManager {
 
     private static final String EOL_DELIMITER = "\r\n";
 
-    private final ExecutorService executorService = Executors.newCachedThreadPool();
-
     private EncryptionManager encryptionManager = null;
 
     /**
-     * Unique id to differentiate remote threads
+     * Unique id to differentiate remote threads and to identify the read leases of this manager
      */
-    private static final String uuid = UUID.randomUUID().toString();
+    private final String uuid = UUID.randomUUID().toString();
 
     static {
         logger.setLevel(Level.INFO);
@@ -164,7 +171,6 @@ public class DistributedLockManager implements LockManager {
             logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
         }
 
-        executorService.shutdown();
         eventLoopGroup.shutdownGracefully();
 
         eventLoopGroup = null;
@@ -206,54 +212,84 @@ public class DistributedLockManager implements LockManager {
         changeLockState(lockId, type, DistributedLockServer.LOCK);
     }
 
-    void unlock(final String lockId, final String type) {
-        changeLockState(lockId, type, DistributedLockServer.UNLOCK);
+    /**
+     * Requests an unlock.  The server does not acknowledge unlock requests so the caller does not wait.
+     *
+     * @param lockId id of the lock
+     * @param holder thread id or uuid of the lease
+     * @param type   lock type
+     */
+    void unlock(final String lockId, final String holder, final String type) {
+        send(MessageFormat.format(PATTERN, DistributedLockServer.UNLOCK, lockId, holder, type));
+    }
+
+    private void send(final String message) {
+        channel.writeAndFlush(encrypt(message) + EOL_DELIMITER);
+    }
+
+    private String getThreadId() {
+        return uuid + '-' + Thread.currentThread().getId();
     }
 
     void changeLockState(final String lockId, final String type, final String lockState) {
-        final String threadId = uuid + '-' + Thread.currentThread().getId();
-        final String lockMessage = MessageFormat.format(PATTERN, lockState, lockId, threadId, type);
+        final String lockMessage = MessageFormat.format(PATTERN, lockState, lockId, getThreadId(), type);
 
         final CountDownLatch responseLatch = getLatch(lockMessage);
 
         //noinspection SynchronizationOnLocalVariableOrMethodParameter
         synchronized (responseLatch) {   // synchronize on the lock to prevent concurrency errors
 
-            boolean result = false;
+            boolean interrupted = false;
 
             try {
 
-                // send the message to the server and wait until it if flushed
-                channel.writeAndFlush(encrypt(lockMessage) + EOL_DELIMITER).sync();
+                // send the message to the server, other requests may be outstanding
+                send(lockMessage);
 
-                for (int i = 0; i < 2; i++) {
-                    result = responseLatch.await(45L, TimeUnit.SECONDS);
+                // the lock is only held once the server responds, keep waiting while the server is reachable
+                while (true) {
+                    try {
+                        if (responseLatch.await(RESPONSE_WAIT, TimeUnit.SECONDS)) {
+                            break;
+                        }
 
-                    if (!result) {
                         logger.log(Level.WARNING, "Excessive wait for release of the lock latch for: {0}", lockId);
-                    } else {
-                        break;
+                    } catch (final InterruptedException e) {
+                        interrupted = true;
                     }
-                }
 
-                if (!result) {  // check for a failed release or deadlock
-                    logger.log(Level.SEVERE, "Failed to release the lock latch for: {0}", lockId);
+                    if (!isConnected()) {
+                        latchLock.lock();
 
-                    latchLock.lock();
+                        try {
+                            latchMap.remove(lockMessage);
+                        } finally {
+                            latchLock.unlock();
+                        }
 
-                    try {
-                        responseLatch.countDown();  // force a countdown to occur
-                        latchMap.remove(lockId);    // force removal
-                    } finally {
-                        latchLock.unlock();
+                        throw new IllegalStateException("Lost the connection to the lock server while waiting for: "
+                                + lockId);
                     }
                 }
-            } catch (InterruptedException e) {
-                logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
             }
         }
     }
 
+    private boolean isConnected() {
+        final Channel c = channel;
+
+        return c != null && c.isActive();
+    }
+
+    /**
+     * Processes a message from the server.  Messages are processed in the order received.
+     *
+     * @param lockMessage the message
+     */
     void processMessage(final String lockMessage) {
 
         final String plainMessage;
@@ -264,11 +300,25 @@ public class DistributedLockManager implements LockManager {
             plainMessage = lockMessage;
         }
 
-        //logger.info(plainMessage);
+        /** lock_action, lock_id, holder, lock_type */
+        // lock,account,3456384756384563,READ
+        // revoke,account,3456384756384563,READ
+        // lock,account,3456384756384563-17,WRITE
+
+        final String[] strings = EncodeDecode.decodeStringCollection(plainMessage).toArray(new String[4]);
+
+        if (uuid.equals(strings[2])) {  // read lease for this manager
+            final DistributedReadWriteLock lock = lockMap.get(strings[1]);
 
-        /** lock_action, lock_id, thread_id, lock_type */
-        // unlock,account,3456384756384563,read
-        // lock,account,3456384756384563,write
+            if (lock != null) {
+                if (DistributedLockServer.REVOKE.equals(strings[0])) {
+                    lock.leaseRevoked();
+                } else {
+                    lock.leaseGranted();
+                }
+            }
+            return;
+        }
 
         latchLock.lock();
 
@@ -306,14 +356,11 @@ public class DistributedLockManager implements LockManager {
 
         @Override
         public void channelRead(final ChannelHandlerContext ctx, final Object msg) {
-            executorService.submit(new Runnable() {
-                @Override
-                public void run() {
-                    processMessage(msg.toString());
-
-                    ReferenceCountUtil.release(msg);
-                }
-            });
+            try {
+                processMessage(msg.toString());    // never blocks, process in order
+            } finally {
+                ReferenceCountUtil.release(msg);
+            }
         }
 
         @Override
@@ -332,6 +379,15 @@ public class DistributedLockManager implements LockManager {
 
         private final DistributedReadWriteLock.WriteLock writeLock;
 
+        private final Object leaseMonitor = new Object();
+
+        private LeaseState leaseState = LeaseState.NONE;
+
+        /**
+         * Number of local read holds using the lease, including threads waiting for the lease to be granted
+         */
+        private int leaseHolders = 0;
+
         DistributedReadWriteLock(final String lockId) {
             super();
 
@@ -353,6 +409,132 @@ public class DistributedLockManager implements LockManager {
             return writeLock;
         }
 
+        /**
+         * Joins the read lease, requesting it from the server if it is not held.  Waits as long as the server is
+         * reachable because the lease may be queued behind a long running writer.
+         *
+         * @throws IllegalStateException if the connection to the server is lost before the lease is granted
+         */
+        void acquireLease() {
+            synchronized (leaseMonitor) {
+                if (getReadHoldCount() > 0) {   // reentrant, the lease cannot be released while this thread reads
+                    leaseHolders++;
+                    return;
+                }
+
+                boolean interrupted = false;
+
+                try {
+                    while (leaseState == LeaseState.REVOKING) {  // let the waiting writer go first
+                        interrupted |= awaitLease();
+                    }
+
+                    leaseHolders++;
+
+                    if (leaseState == LeaseState.NONE) {
+                        leaseState = LeaseState.REQUESTING;
+                        send(MessageFormat.format(PATTERN, DistributedLockServer.LOCK, lockId, uuid,
+                                DistributedLockServer.LOCK_TYPE_READ));
+                    }
+
+                    try {
+                        while (leaseState == LeaseState.REQUESTING) {
+                            interrupted |= awaitLease();
+                        }
+
+                        if (leaseState == LeaseState.NONE) {    // the request failed while waiting
+                            throw new IllegalStateException("Failed to receive the read lease for: " + lockId);
+                        }
+                    } catch (final IllegalStateException e) {
+                        leaseHolders--;
+                        throw e;
+                    }
+                } finally {
+                    if (interrupted) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Leaves the read lease and releases it if it has been revoked and this was the last local reader
+         */
+        void releaseLease() {
+            synchronized (leaseMonitor) {
+                leaseHolders--;
+
+                if (leaseHolders == 0 && leaseState == LeaseState.REVOKING) {
+                    release();
+                }
+            }
+        }
+
+        void leaseGranted() {
+            synchronized (leaseMonitor) {
+                if (leaseState == LeaseState.REQUESTING) {
+                    leaseState = LeaseState.GRANTED;
+                    leaseMonitor.notifyAll();
+                }
+            }
+        }
+
+        void leaseRevoked() {
+            synchronized (leaseMonitor) {
+                if (leaseState == LeaseState.GRANTED) {
+                    if (leaseHolders == 0) {
+                        release();
+                    } else {
+                        leaseState = LeaseState.REVOKING;
+                    }
+                }
+            }
+        }
+
+        private void release() {
+            unlock(lockId, uuid, DistributedLockServer.LOCK_TYPE_READ);
+
+            leaseState = LeaseState.NONE;
+            leaseMonitor.notifyAll();
+        }
+
+        /**
+         * Waits for the lease state to change.  Must be called while synchronized on the lease monitor.  A pending
+         * request is abandoned if the connection to the server has been lost.
+         *
+         * @return {@code true} if the thread was interrupted while waiting
+         */
+        private boolean awaitLease() {
+            final LeaseState state = leaseState;
+
+            boolean interrupted = false;
+
+            try {
+                leaseMonitor.wait(TimeUnit.SECONDS.toMillis(RESPONSE_WAIT));
+            } catch (final InterruptedException e) {
+                interrupted = true;
+            }
+
+            if (!interrupted && leaseState == state) {
+                logger.log(Level.WARNING, "Excessive wait for the read lease for: {0}", lockId);
+
+                if (!isConnected()) {
+                    logger.log(Level.SEVERE, "Lost the connection while waiting for the read lease for: {0}", lockId);
+
+                    if (leaseState == LeaseState.REQUESTING) {
+                        leaseState = LeaseState.NONE;
+                    }
+
+                    leaseMonitor.notifyAll();
+
+                    throw new IllegalStateException("Lost the connection to the lock server while waiting for: "
+                            + lockId);
+                }
+            }
+
+            return interrupted;
+        }
+
         class ReadLock extends ReentrantReadWriteLock.ReadLock {
 
             ReadLock(final ReentrantReadWriteLock lock) {
@@ -361,14 +543,14 @@ public class DistributedLockManager implements LockManager {
 
             @Override
             public void lock() {
-                DistributedLockManager.this.lock(lockId, DistributedLockServer.LOCK_TYPE_READ);
+                acquireLease();
                 super.lock();
             }
 
             @Override
             public void unlock() {
-                DistributedLockManager.this.unlock(lockId, DistributedLockServer.LOCK_TYPE_READ);
                 super.unlock();
+                releaseLease();
             }
         }
 
@@ -386,9 +568,13 @@ public class DistributedLockManager implements LockManager {
 
             @Override
             public void unlock() {
-                DistributedLockManager.this.unlock(lockId, DistributedLockServer.LOCK_TYPE_WRITE);
+                DistributedLockManager.this.unlock(lockId, getThreadId(), DistributedLockServer.LOCK_TYPE_WRITE);
                 super.unlock();
             }
         }
     }
+
+    private enum LeaseState {
+        NONE, REQUESTING, GRANTED, REVOKING
+    }
 }
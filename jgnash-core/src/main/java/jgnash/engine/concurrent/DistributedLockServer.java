@@ -17,14 +17,21 @@
  */
 package jgnash.engine.concurrent;
 
+import java.text.MessageFormat;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import jgnash.util.DefaultDaemonThreadFactory;
 import jgnash.util.EncodeDecode;
 import jgnash.util.EncryptionManager;
 
@@ -51,6 +58,14 @@ import io.netty.util.concurrent.GlobalEventExecutor;
 
 /**
  * Distributed Lock Server
+ * <p/>
+ * Read locks are granted to a client as a lease.  The client may reuse the lease for any of its threads until the
+ * server revokes it, which happens when a write lock is requested.  The client releases the lease once its local
+ * readers are done.  Write locks are granted to a single remote thread and are reentrant.
+ * <p/>
+ * The lock table is only accessed by a single thread and requests that cannot be granted are queued instead of
+ * blocking, so any number of requests may be outstanding on a connection.  A request is acknowledged by echoing it
+ * back once granted.  Unlock requests are not acknowledged.
  *
  * @author Craig Cavanaugh
  */
@@ -58,7 +73,10 @@ public class DistributedLockServer {
 
     private static final Logger logger = Logger.getLogger(DistributedLockServer.class.getName());
 
-    private final ExecutorService executorService = Executors.newCachedThreadPool();
+    /**
+     * Single thread that owns the lock table
+     */
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor(new DefaultDaemonThreadFactory());
 
     private final ChannelGroup channelGroup = new DefaultChannelGroup("lock-server", GlobalEventExecutor.INSTANCE);
 
@@ -66,14 +84,21 @@ public class DistributedLockServer {
 
     private final int port;
 
-    private final Map<String, ReadWriteLock> lockMap = new HashMap<>();
+    private final Map<String, LockEntry> lockMap = new HashMap<>();
 
     private final Map<ChannelHandlerContext, String> handlerContextMap = new HashMap<>();
 
+    /**
+     * Maps the uuid of a client to its channel so leases can be revoked
+     */
+    private final Map<String, ChannelHandlerContext> clientMap = new HashMap<>();
+
     static final String LOCK = "lock";
 
     static final String UNLOCK = "unlock";
 
+    static final String REVOKE = "revoke";
+
     static final String LOCK_TYPE_READ = "READ";
 
     static final String LOCK_TYPE_WRITE = "WRITE";
@@ -93,6 +118,18 @@ public class DistributedLockServer {
         return message;
     }
 
+    private void send(final ChannelHandlerContext ctx, final String message) {
+        if (ctx.channel().isOpen()) {
+            ctx.writeAndFlush(encrypt(message) + EOL_DELIMITER);
+        }
+    }
+
+    /**
+     * Processes a request.  Must only be called by the lock table thread.
+     *
+     * @param ctx channel the request was received from
+     * @param msg the request
+     */
     private void processMessage(final ChannelHandlerContext ctx, final String msg) {
 
         final String message;
@@ -105,72 +142,131 @@ public class DistributedLockServer {
 
         // Look for a uuid announcement for a channel
         if (message.startsWith(DistributedLockManager.UUID_PREFIX)) {
-            handlerContextMap.put(ctx, message.substring(DistributedLockManager.UUID_PREFIX.length()));
+            final String uuid = message.substring(DistributedLockManager.UUID_PREFIX.length());
+
+            handlerContextMap.put(ctx, uuid);
+            clientMap.put(uuid, ctx);
             return;
         }
 
-        /** lock_action, lock_id, thread_id, lock_type */
-        // unlock,account,1194917570,read
-        // lock,account,1194917570,write
+        /** lock_action, lock_id, holder, lock_type */
+        // unlock,account,3456384756384563,READ
+        // lock,account,3456384756384563-17,WRITE
 
         // decode the message into it's parts
         final String[] strings = EncodeDecode.decodeStringCollection(message).toArray(new String[4]);
 
         final String action = strings[0];
         final String lockId = strings[1];
-        final String remoteThread = strings[2];
+        final String holder = strings[2];
         final String lockType = strings[3];
 
-        final ReadWriteLock lock = getLock(lockId);
+        final LockEntry entry = getLock(lockId);
 
-        try {
+        switch (action) {
+            case LOCK:
+                final Request request = new Request(ctx, message, holder, lockType);
+
+                if (entry.canGrant(request, false)) {
+                    grant(entry, request);
+                } else {
+                    entry.queue.add(request);
+                }
+                break;
+            case UNLOCK:
+                switch (lockType) {
+                    case LOCK_TYPE_READ:
+                        entry.unlockRead(holder);
+                        break;
+                    case LOCK_TYPE_WRITE:
+                        entry.unlockWrite(holder);
+                        break;
+                    default:
+                        break;
+                }
+                break;
+            default:
+                logger.log(Level.WARNING, "Unknown lock request: {0}", message);
+                return;
+        }
+
+        processQueue(entry);
+    }
+
+    private void grant(final LockEntry entry, final Request request) {
+        if (LOCK_TYPE_READ.equals(request.type)) {
+            final Integer count = entry.readers.get(request.holder);
+            entry.readers.put(request.holder, count == null ? 1 : count + 1);
+        } else {
+            entry.writer = request.holder;
+            entry.writeCount++;
+        }
+
+        // return the message as an acknowledgment lock state has changed
+        send(request.ctx, request.message);
+    }
+
+    /**
+     * Grants queued requests in order until one cannot be granted, then revokes read leases if a writer is waiting
+     *
+     * @param entry lock to process
+     */
+    private void processQueue(final LockEntry entry) {
+        while (!entry.queue.isEmpty() && entry.canGrant(entry.queue.peek(), true)) {
+            grant(entry, entry.queue.poll());
+        }
+
+        if (entry.isWriteQueued()) {
+            for (final String reader : entry.readers.keySet()) {
+                final ChannelHandlerContext ctx = clientMap.get(reader);
 
-            // request a lock or unlock.  This may block
-            switch (action) {
-                case LOCK:
-                    switch (lockType) {
-                        case LOCK_TYPE_READ:
-                            lock.lockForRead(remoteThread);
-                            break;
-                        case LOCK_TYPE_WRITE:
-                            lock.lockForWrite(remoteThread);
-                            break;
-                        default:
-                            break;
-                    }
-                    break;
-                case UNLOCK:
-                    switch (lockType) {
-                        case LOCK_TYPE_READ:
-                            lock.unlockRead(remoteThread);
-                            break;
-                        case LOCK_TYPE_WRITE:
-                            lock.unlockWrite(remoteThread);
-                            break;
-                        default:
-                            break;
-                    }
-                    break;
+                if (ctx != null && entry.revoked.add(reader)) {
+                    send(ctx, MessageFormat.format(DistributedLockManager.PATTERN, REVOKE, entry.id, reader, LOCK_TYPE_READ));
+                }
             }
+        }
+    }
+
+    /**
+     * Removes the locks and requests of a closed connection.  Must only be called by the lock table thread.
+     *
+     * @param ctx the closed channel
+     */
+    private void cleanup(final ChannelHandlerContext ctx) {
+        final String uuid = handlerContextMap.remove(ctx);
+
+        if (uuid != null) {
+            clientMap.remove(uuid);
 
-            // return the message as an acknowledgment lock state has changed
-            if (ctx.channel().isOpen()) {
-                ctx.writeAndFlush(encrypt(message) + EOL_DELIMITER).sync();
+            for (final LockEntry entry : lockMap.values()) {  // look at every lock
+                entry.cleanup(uuid, ctx);
+                processQueue(entry);
             }
-        } catch (final Exception e) {
-            logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
         }
     }
 
-    private ReadWriteLock getLock(final String lockId) {
-        ReadWriteLock readWriteLock = lockMap.get(lockId);
+    /**
+     * Runs a task on the lock table thread
+     *
+     * @param task task to run
+     */
+    private void execute(final Runnable task) {
+        try {
+            executorService.execute(task);
+        } catch (final RejectedExecutionException e) {
+            logger.fine("Lock request received while the server is stopping");
+        }
+    }
+
+    private LockEntry getLock(final String lockId) {
+        LockEntry entry = lockMap.get(lockId);
 
-        if (readWriteLock == null) {
-            readWriteLock = new ReadWriteLock(lockId);
-            lockMap.put(lockId, readWriteLock);
+        if (entry == null) {
+            entry = new LockEntry(lockId);
+            lockMap.put(lockId, entry);
         }
 
-        return readWriteLock;
+        return entry;
     }
 
     public boolean startServer(final char[] password) {
@@ -239,38 +335,28 @@ public class DistributedLockServer {
         public void channelInactive(final ChannelHandlerContext ctx) throws Exception {
             logger.log(Level.INFO, "Remote connection {0} closed", ctx.channel().remoteAddress().toString());
 
-            final String uuid = handlerContextMap.get(ctx);
-
-            // Search through the lock map and remove any stale locks
-            if (uuid != null) {
-                for (ReadWriteLock readWriteLock : lockMap.values()) {  // look at every lock
-
-                    // if the remoteThread starts with the uuid, request a cleanup
-                    for (String remoteThread : readWriteLock.readingThreads.keySet()) {
-                        if (remoteThread.startsWith(uuid)) {    // cleanup a stale lock
-                            readWriteLock.cleanupStaleThread(remoteThread);
-                        }
-                    }
-
-                    if (readWriteLock.hasWriteThread(uuid)) {
-                        readWriteLock.cleanupStaleWriteThread();
-                    }
+            // Remove any stale locks
+            execute(new Runnable() {
+                @Override
+                public void run() {
+                    cleanup(ctx);
                 }
-            }
+            });
 
-            handlerContextMap.remove(ctx);
             channelGroup.remove(ctx.channel());
             super.channelInactive(ctx);
         }
 
         @Override
         public void channelRead(final ChannelHandlerContext ctx, final Object msg) {
-            executorService.submit(new Runnable() {
+            final String message = msg.toString();
+
+            ReferenceCountUtil.release(msg);
+
+            execute(new Runnable() {
                 @Override
                 public void run() {
-                    processMessage(ctx, msg.toString());
-
-                    ReferenceCountUtil.release(msg);
+                    processMessage(ctx, message);
                 }
             });
         }
@@ -301,162 +387,136 @@ public class DistributedLockServer {
     }
 
     /**
-     * Reentrant Read Write lock.
-     * <p/>
-     * A unique integer must be supplied to identify the thread instead of the current thread.
+     * A queued lock request
      */
-    private static class ReadWriteLock {
+    private static class Request {
 
-        private final String id;
+        final ChannelHandlerContext ctx;
+
+        final String message;
 
         /**
-         * The key is the uuid of the manager plus the remote thread id
-         * <p/>
-         * uuid-integer
+         * The uuid of the client for a read lease or the uuid of the client plus the remote thread id for a write lock
          */
-        private final Map<String, Integer> readingThreads = new ConcurrentHashMap<>();
+        final String holder;
 
-        private int writeAccesses = 0;
-        private int writeRequests = 0;
-        private String writingThread = null;
+        final String type;
 
-        private ReadWriteLock(final String id) {
-            this.id = id;
+        Request(final ChannelHandlerContext ctx, final String message, final String holder, final String type) {
+            this.ctx = ctx;
+            this.message = message;
+            this.holder = holder;
+            this.type = type;
         }
+    }
 
-        synchronized boolean hasWriteThread(final String id) {
-            boolean result = false;
+    /**
+     * Reentrant read write lock state.  Requests that cannot be granted are queued in arrival order.
+     */
+    private static class LockEntry {
 
-            if (writingThread != null) {
-                result = writingThread.startsWith(id);
-            }
+        private final String id;
 
-            return result;
-        }
+        /**
+         * Read lease holders and their hold counts
+         */
+        final Map<String, Integer> readers = new HashMap<>();
 
-        synchronized void cleanupStaleThread(final String remoteThread) {
-            if (readingThreads.containsKey(remoteThread)) {
-                unlockRead(remoteThread);
-                logger.log(Level.WARNING, "Removed a stale read lock for: {0}", id);
-            }
+        /**
+         * Read lease holders that have been asked to release
+         */
+        final Set<String> revoked = new HashSet<>();
 
-            if (writingThread != null && writingThread.equals(remoteThread)) {
-                unlockWrite(remoteThread);
-                logger.log(Level.WARNING, "Removed a stale write lock for: {0}", id);
-            }
-        }
+        final Deque<Request> queue = new ArrayDeque<>();
 
-        synchronized void cleanupStaleWriteThread() {
-            if (readingThreads.containsKey(writingThread)) {
-                unlockRead( writingThread);
-                logger.log(Level.WARNING, "Removed a stale read lock for: {0}", id);
-            }
+        String writer = null;
 
-            if (writingThread != null) {
-                unlockWrite( writingThread);
-                logger.log(Level.WARNING, "Removed a stale write lock for: {0}", id);
-            }
+        int writeCount = 0;
+
+        LockEntry(final String id) {
+            this.id = id;
         }
 
-        synchronized void lockForRead(final String remoteThread) throws InterruptedException {
+        /**
+         * Determines if a request may be granted
+         *
+         * @param request   the request
+         * @param fromQueue {@code true} if the request is at the head of the queue
+         * @return {@code true} if the request may be granted now
+         */
+        boolean canGrant(final Request request, final boolean fromQueue) {
+            if (LOCK_TYPE_READ.equals(request.type)) {
+                if (writer != null) {
+                    return writer.startsWith(request.holder); // lock down grade is allowed
+                }
 
-            while (!canGrantReadAccess(remoteThread)) {
-                wait();
+                return fromQueue || queue.isEmpty() || readers.containsKey(request.holder);
             }
 
-            readingThreads.put(remoteThread, (getReadHoldCount(remoteThread) + 1));
-        }
-
-        synchronized void lockForWrite(final String remoteThread) throws InterruptedException {
-            writeRequests++;
-
-            while (!canGrantWriteAccess(remoteThread)) {
-                wait();
+            if (request.holder.equals(writer)) {
+                return true;    // reentrant write
             }
 
-            writeRequests--;
-            writeAccesses++;   // bump, if greater than 1, then the lock is reentrant
-            writingThread = remoteThread;
+            return writer == null && readers.isEmpty() && (fromQueue || queue.isEmpty());
         }
 
-        synchronized void unlockRead(final String remoteThread) {
-
-            if (!isReadLockedByCurrentThread(remoteThread)) {
-                throw new IllegalMonitorStateException("Remote Thread: " + remoteThread + " does not hold a read lock for: " + id);
+        boolean isWriteQueued() {
+            for (final Request request : queue) {
+                if (LOCK_TYPE_WRITE.equals(request.type)) {
+                    return true;
+                }
             }
+            return false;
+        }
 
-            int holdCount = getReadHoldCount(remoteThread);
+        void unlockRead(final String holder) {
+            final Integer count = readers.get(holder);
 
-            if (holdCount == 1) {
-                readingThreads.remove(remoteThread);
+            if (count == null) {
+                logger.log(Level.SEVERE, "{0} does not hold a read lock for: {1}", new Object[]{holder, id});
+            } else if (count == 1) {
+                readers.remove(holder);
+                revoked.remove(holder);
             } else {
-                readingThreads.put(remoteThread, (holdCount - 1));
+                readers.put(holder, count - 1);
             }
-
-            notifyAll();
         }
 
-        synchronized void unlockWrite(final String remoteThread) {
-
-            if (!isWriteLockedByCurrentThread(remoteThread)) {
-                throw new IllegalMonitorStateException("Remote Thread: " + remoteThread + " does not hold the write lock for: " + id);
+        void unlockWrite(final String holder) {
+            if (!holder.equals(writer)) {
+                logger.log(Level.SEVERE, "{0} does not hold the write lock for: {1}", new Object[]{holder, id});
+                return;
             }
 
-            writeAccesses--;
+            writeCount--;
 
-            if (writeAccesses == 0) {
-                writingThread = null;
+            if (writeCount == 0) {
+                writer = null;
             }
-
-            notifyAll();
         }
 
-        private synchronized boolean canGrantReadAccess(final String remoteThread) {
-
-            if (isWriteLockedByCurrentThread(remoteThread)) { // lock down grade is allowed
-                return true;
-            }
+        void cleanup(final String uuid, final ChannelHandlerContext ctx) {
+            for (final Iterator<String> i = readers.keySet().iterator(); i.hasNext(); ) {
+                final String reader = i.next();
 
-            if (writingThread != null) {
-                return false;
-            }
-            if (isReadLockedByCurrentThread(remoteThread)) {
-                return true;
-            }
-
-            return writeRequests <= 0;
-        }
-
-        private synchronized boolean canGrantWriteAccess(final String remoteThread) {
-
-            if (!readingThreads.isEmpty()) {
-                return false;
-            }
-            if (writingThread == null) {
-                return true;
+                if (reader.startsWith(uuid)) {
+                    i.remove();
+                    revoked.remove(reader);
+                    logger.log(Level.WARNING, "Removed a stale read lock for: {0}", id);
+                }
             }
-            return isWriteLockedByCurrentThread(remoteThread); // reentrant write
-        }
-
-        private synchronized int getReadHoldCount(final String remoteThread) {
-            final Integer accessCount = readingThreads.get(remoteThread);
 
-            if (accessCount == null) {
-                return 0;
+            if (writer != null && writer.startsWith(uuid)) {
+                writer = null;
+                writeCount = 0;
+                logger.log(Level.WARNING, "Removed a stale write lock for: {0}", id);
             }
 
-            return accessCount;
-        }
-
-        private synchronized boolean isReadLockedByCurrentThread(final String remoteThread) {
-            return readingThreads.get(remoteThread) != null;
-        }
-
-        private synchronized boolean isWriteLockedByCurrentThread(final String remoteThread) {
-            if (writingThread != null) {
-                return writingThread.equals(remoteThread);
+            for (final Iterator<Request> i = queue.iterator(); i.hasNext(); ) {
+                if (i.next().ctx == ctx) {
+                    i.remove();
+                }
             }
-            return false;
         }
     }
 }
@@ -17,8 +17,8 @@
  */
 package jgnash.engine.concurrent;
 
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
@@ -27,15 +27,21 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * @author Craig Cavanaugh
  */
 public class LocalLockManager implements LockManager {
-    private final Map<String, ReentrantReadWriteLock> lockMap = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ReentrantReadWriteLock> lockMap = new ConcurrentHashMap<>();
 
     @Override
     public ReentrantReadWriteLock getLock(final String lockId) {
         ReentrantReadWriteLock lock = lockMap.get(lockId);
 
         if (lock == null) {
-            lock = new ReentrantReadWriteLock();
-            lockMap.put(lockId, lock);
+            final ReentrantReadWriteLock newLock = new ReentrantReadWriteLock();
+
+            // account locks may be requested concurrently, make sure only one instance is created per id
+            lock = lockMap.putIfAbsent(lockId, newLock);
+
+            if (lock == null) {
+                lock = newLock;
+            }
         }
 
         return lock;
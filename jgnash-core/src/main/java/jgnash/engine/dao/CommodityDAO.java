@@ -23,6 +23,7 @@ import jgnash.engine.ExchangeRate;
 import jgnash.engine.SecurityHistoryNode;
 import jgnash.engine.SecurityNode;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -55,6 +56,16 @@ public interface CommodityDAO {
      */
     public boolean addSecurityHistory(final SecurityNode node, final SecurityHistoryNode historyNode);
 
+    /**
+     * Call after several {@code SecurityHistoryNode}s have been added.  This pushes the update
+     * to the underlying database with a single commit
+     * @param node SecurityHistory to update
+     * @param historyNodes {@code SecurityHistoryNode}s that were added
+     *
+     * @return true if successful
+     */
+    public boolean addSecurityHistory(final SecurityNode node, final Collection<SecurityHistoryNode> historyNodes);
+
     /**
      * Returns the active currencies
      *
@@ -93,6 +104,16 @@ public interface CommodityDAO {
      */
     public boolean removeSecurityHistory(final SecurityNode node, final SecurityHistoryNode historyNode);
 
+    /**
+     * Call after several {@code SecurityHistoryNode}s have been removed.  This pushes the update
+     * to the underlying database with a single commit
+     * @param node SecurityHistory to update
+     * @param historyNodes {@code SecurityHistoryNode}s that were removed
+     *
+     * @return true if successful
+     */
+    public boolean removeSecurityHistory(final SecurityNode node, final Collection<SecurityHistoryNode> historyNodes);
+
     public void addExchangeRate(ExchangeRate eRate);
 
     public boolean updateCommodityNode(final CommodityNode node);
@@ -17,6 +17,7 @@
  */
 package jgnash.engine.dao;
 
+import java.util.Collection;
 import java.util.List;
 
 import jgnash.engine.Transaction;
@@ -37,6 +38,14 @@ public interface TransactionDAO {
 
     public boolean addTransaction(Transaction transaction);
 
+    /**
+     * Stores a collection of transactions as a single batch
+     *
+     * @param transactions transactions to store
+     * @return {@code true} if successful
+     */
+    public boolean addTransactions(Collection<Transaction> transactions);
+
     public Transaction getTransactionByUuid(final String uuid);
 
     public boolean removeTransaction(Transaction transaction);
@@ -22,7 +22,11 @@ import jgnash.engine.dao.AbstractDAO;
 
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
+import javax.persistence.TypedQuery;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.*;
 import java.util.concurrent.locks.ReentrantLock;
@@ -38,6 +42,11 @@ abstract class AbstractJpaDAO extends AbstractDAO {
 
     static final ReentrantLock emLock = new ReentrantLock();
 
+    /**
+     * Maximum number of uuids in the IN clause used to fetch the results of a pooled query
+     */
+    private static final int FETCH_BATCH_SIZE = 500;
+
     EntityManager em;
 
     boolean isRemote = false;
@@ -48,10 +57,20 @@ abstract class AbstractJpaDAO extends AbstractDAO {
      */
     static ExecutorService executorService;
 
+    /**
+     * Pool for read only queries, {@code null} if all queries use the shared EntityManager
+     */
+    final EntityManagerPool readPool;
+
     AbstractJpaDAO(final EntityManager entityManager, final boolean isRemote) {
+        this(entityManager, null, isRemote);
+    }
+
+    AbstractJpaDAO(final EntityManager entityManager, final EntityManagerPool readPool, final boolean isRemote) {
         Objects.requireNonNull(entityManager);
 
         this.isRemote = isRemote;
+        this.readPool = readPool;
         em = entityManager;
 
         emLock.lock();
@@ -99,7 +118,126 @@ abstract class AbstractJpaDAO extends AbstractDAO {
     }
 
 
+    /**
+     * Returns the objects of an entity that match a condition.
+     * <p/>
+     * When a read pool is available, the condition is evaluated on a pooled EntityManager that selects only the
+     * uuids, so the query does not wait for other queries or writes.  The matching objects are then fetched by
+     * primary key on the shared EntityManager, a batch at a time, so the engine receives the managed instances it
+     * already references.  Detached copies from the pooled EntityManager cannot be returned because the engine
+     * relies on object identity with its cached graph.
+     *
+     * @param tClass entity class
+     * @param where  JPQL condition where the entity is aliased as {@code o}
+     * @param <T>    the type of entity
+     * @return list of matching objects
+     */
+    <T extends StoredObject> List<T> query(final Class<T> tClass, final String where) {
+        final String entity = tClass.getSimpleName();
+
+        if (readPool == null) {
+            return querySerialized(tClass, "SELECT o FROM " + entity + " o WHERE " + where);
+        }
+
+        List<T> list = Collections.emptyList();
+
+        try {
+            final List<String> uuids = readPool.submit(new EntityManagerPool.Query<List<String>>() {
+                @Override
+                public List<String> call(final EntityManager em) throws Exception {
+                    return em.createQuery("SELECT o.uuid FROM " + entity + " o WHERE " + where, String.class)
+                            .getResultList();
+                }
+            }).get();
+
+            if (uuids.isEmpty()) {
+                return list;
+            }
+
+            emLock.lock();
+
+            try {
+                list = executorService.submit(new Callable<List<T>>() {
+                    @Override
+                    public List<T> call() throws Exception {
+                        final TypedQuery<T> q = em.createQuery("SELECT o FROM " + entity + " o WHERE o.uuid IN :uuids",
+                                tClass);
+
+                        final List<T> objects = new ArrayList<>(uuids.size());
+
+                        // objects removed after the uuids were selected are not returned
+                        for (int i = 0; i < uuids.size(); i += FETCH_BATCH_SIZE) {
+                            q.setParameter("uuids", uuids.subList(i, Math.min(i + FETCH_BATCH_SIZE, uuids.size())));
+                            objects.addAll(q.getResultList());
+                        }
+
+                        return objects;
+                    }
+                }).get();
+            } finally {
+                emLock.unlock();
+            }
+        } catch (final InterruptedException | ExecutionException e) {
+            Logger.getLogger(AbstractJpaDAO.class.getName()).log(Level.SEVERE, e.getLocalizedMessage(), e);
+        }
+
+        return list;
+    }
+
+    private <T> List<T> querySerialized(final Class<T> tClass, final String queryString) {
+        List<T> list = Collections.emptyList();
+
+        emLock.lock();
+
+        try {
+            Future<List<T>> future = executorService.submit(new Callable<List<T>>() {
+                @Override
+                public List<T> call() throws Exception {
+                    return new ArrayList<>(em.createQuery(queryString, tClass).getResultList());
+                }
+            });
+
+            list = future.get();
+        } catch (final InterruptedException | ExecutionException e) {
+            Logger.getLogger(AbstractJpaDAO.class.getName()).log(Level.SEVERE, e.getLocalizedMessage(), e);
+        } finally {
+            emLock.unlock();
+        }
+
+        return list;
+    }
+
+    /**
+     * Returns the managed instance of an object.
+     * <p/>
+     * When a read pool is available, the object is first looked up on a pooled EntityManager and the shared
+     * EntityManager is only used if it exists.  Uniqueness checks for new objects therefore do not wait for other
+     * queries or writes.
+     *
+     * @param tClass class of the object
+     * @param uuid   uuid of the object
+     * @param <T>    the type of object
+     * @return the object, {@code null} if not found
+     */
     public <T> T getObjectByUuid(final Class<T> tClass, final String uuid) {
+        if (readPool != null) {
+            try {
+                final boolean exists = readPool.submit(new EntityManagerPool.Query<Boolean>() {
+                    @Override
+                    public Boolean call(final EntityManager em) throws Exception {
+                        return em.find(tClass, uuid) != null;
+                    }
+                }).get();
+
+                if (!exists) {
+                    return null;
+                }
+            } catch (final InterruptedException | ExecutionException e) {
+                Logger.getLogger(AbstractJpaDAO.class.getName()).log(Level.SEVERE, e.getLocalizedMessage(), e);
+                return null;
+            }
+        }
+
         T object = null;
 
         emLock.lock();
@@ -54,6 +54,8 @@ public abstract class AbstractJpaDataStore implements DataStore {
 
     private EntityManagerFactory factory;
 
+    private EntityManagerPool readPool;
+
     private DistributedLockManager distributedLockManager;
 
     private DistributedAttachmentManager distributedAttachmentManager;
@@ -78,6 +80,11 @@ public abstract class AbstractJpaDataStore implements DataStore {
     public void closeEngine() {
         logger.info("Closing");
 
+        if (readPool != null) {
+            readPool.shutdown();
+            readPool = null;
+        }
+
         if (em != null && factory != null) {
             em.close();
             factory.close();
@@ -111,7 +118,7 @@ public abstract class AbstractJpaDataStore implements DataStore {
             boolean attachmentManagerResult = distributedAttachmentManager.connectToServer(password);
 
             if (attachmentManagerResult && lockManagerResult) {
-                engine = new Engine(new JpaEngineDAO(em, true), distributedLockManager, distributedAttachmentManager, EngineFactory.DEFAULT);
+                engine = new Engine(createEngineDAO(true), distributedLockManager, distributedAttachmentManager, EngineFactory.DEFAULT);
 
                 logger.info("Created local JPA container and engine");
                 fileName = null;
@@ -152,7 +159,7 @@ public abstract class AbstractJpaDataStore implements DataStore {
                     em = factory.createEntityManager();
 
                     logger.info("Created local JPA container and engine");
-                    engine = new Engine(new JpaEngineDAO(em, false), new LocalLockManager(), new LocalAttachmentManager(), engineName);
+                    engine = new Engine(createEngineDAO(false), new LocalLockManager(), new LocalAttachmentManager(), engineName);
 
                     this.fileName = fileName;
                     this.password = password;
@@ -170,6 +177,26 @@ public abstract class AbstractJpaDataStore implements DataStore {
     }
 
 
+    private JpaEngineDAO createEngineDAO(final boolean isRemote) {
+        final int readThreads = EngineFactory.getJpaReadThreads();
+
+        final JpaEngineDAO engineDAO;
+
+        if (readThreads > 0) {
+            readPool = new EntityManagerPool(factory, readThreads);
+            engineDAO = new JpaEngineDAO(em, readPool, isRemote);
+        } else {
+            engineDAO = new JpaEngineDAO(em, isRemote);
+        }
+
+        // fetch every transaction up front with a single query unless loading on demand
+        if (!EngineFactory.useLazyTransactionLoading()) {
+            engineDAO.loadAllTransactions();
+        }
+
+        return engineDAO;
+    }
+
     @Override
     public String getFileName() {
         return fileName;
@@ -0,0 +1,132 @@
+/*
+ * jGnash, a personal finance application
+ * Copyright (C) 2001-2014 Craig Cavanaugh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jgnash.engine.jpa;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import jgnash.util.DefaultDaemonThreadFactory;
+
+/**
+ * Pool of worker threads for read only queries.
+ * <p/>
+ * An {@code EntityManager} is not thread safe, so each worker thread owns its own {@code EntityManager} and queries
+ * run concurrently with each other and with writes made through the shared {@code EntityManager}.  The persistence
+ * context of a worker is cleared after every query, so objects returned by a query are detached and should be
+ * limited to scalar values such as uuids.
+ *
+ * @author Craig Cavanaugh
+ */
+final class EntityManagerPool {
+
+    private static final Logger logger = Logger.getLogger(EntityManagerPool.class.getName());
+
+    private final EntityManagerFactory factory;
+
+    private final ExecutorService executorService;
+
+    private final List<EntityManager> entityManagers = new ArrayList<>();
+
+    private final ThreadLocal<EntityManager> entityManager = new ThreadLocal<EntityManager>() {
+        @Override
+        protected EntityManager initialValue() {
+            final EntityManager em = factory.createEntityManager();
+
+            synchronized (entityManagers) {
+                entityManagers.add(em);
+            }
+
+            return em;
+        }
+    };
+
+    /**
+     * Work performed by a worker thread
+     *
+     * @param <T> the result type
+     */
+    interface Query<T> {
+
+        T call(EntityManager em) throws Exception;
+    }
+
+    /**
+     * Creates a new pool
+     *
+     * @param factory factory used to create an {@code EntityManager} for each worker
+     * @param threads number of worker threads
+     */
+    EntityManagerPool(final EntityManagerFactory factory, final int threads) {
+        this.factory = factory;
+
+        executorService = Executors.newFixedThreadPool(threads, new DefaultDaemonThreadFactory());
+    }
+
+    /**
+     * Submits a query to a worker thread
+     *
+     * @param query query to run
+     * @param <T>   the result type
+     * @return a Future representing the result of the query
+     */
+    <T> Future<T> submit(final Query<T> query) {
+        return executorService.submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                final EntityManager em = entityManager.get();
+
+                try {
+                    return query.call(em);
+                } finally {
+                    em.clear();  // do not hold stale objects between queries
+                }
+            }
+        });
+    }
+
+    /**
+     * Waits for running queries to complete and closes the worker {@code EntityManager}s.  Must be called before
+     * the {@code EntityManagerFactory} is closed.
+     */
+    void shutdown() {
+        executorService.shutdown();
+
+        try {
+            executorService.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (final InterruptedException e) {
+            logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
+        }
+
+        synchronized (entityManagers) {
+            for (final EntityManager em : entityManagers) {
+                em.close();
+            }
+            entityManagers.clear();
+        }
+    }
+}
@@ -45,8 +45,12 @@ class JpaAccountDAO extends AbstractJpaDAO implements AccountDAO {
 
     private static final Logger logger = Logger.getLogger(JpaAccountDAO.class.getName());
 
-    JpaAccountDAO(final EntityManager entityManager, final boolean isRemote) {
-        super(entityManager, isRemote);
+    private final JpaTransactionLoader transactionLoader;
+
+    JpaAccountDAO(final EntityManager entityManager, final EntityManagerPool readPool,
+                  final JpaTransactionLoader transactionLoader, final boolean isRemote) {
+        super(entityManager, readPool, isRemote);
+        this.transactionLoader = transactionLoader;
     }
 
     /*
@@ -67,10 +71,12 @@ class JpaAccountDAO extends AbstractJpaDAO implements AccountDAO {
 
                     List<RootAccount> list = (List<RootAccount>) q.getResultList();
 
-                    if (list.size() == 1) {
-                        return list.get(0);
-                    } else if (list.size() > 1) {
+                    if (list.size() > 1) {
                         logger.log(Level.SEVERE, "More than one RootAccount was found: " + list.size(), new Exception());
+                    }
+
+                    if (!list.isEmpty()) {
+                        transactionLoader.attachRoot(list.get(0));  // the account tree loads through this DAO
                         return list.get(0);
                     }
 
@@ -92,30 +98,8 @@ class JpaAccountDAO extends AbstractJpaDAO implements AccountDAO {
      * @see jgnash.engine.AccountDAOInterface#getAccountList()
      */
     @Override
-    @SuppressWarnings("unchecked")
     public List<Account> getAccountList() {
-        List<Account> accountList = Collections.emptyList();
-
-        emLock.lock();
-
-        try {
-            Future<List<Account>> future = executorService.submit(new Callable<List<Account>>() {
-                @Override
-                public List<Account> call() throws Exception {
-                    Query q = em.createQuery("SELECT a FROM Account a WHERE a.markedForRemoval = false");
-
-                    return new ArrayList<>(q.getResultList());
-                }
-            });
-
-            accountList = future.get();
-        } catch (final ExecutionException | InterruptedException e) {
-            logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
-        } finally {
-            emLock.unlock();
-        }
-
-        return accountList;
+        return query(Account.class, "o.markedForRemoval = false");
     }
 
     /*
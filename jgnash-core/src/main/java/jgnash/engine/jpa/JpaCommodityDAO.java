@@ -26,6 +26,7 @@ import jgnash.engine.SecurityNode;
 import jgnash.engine.dao.CommodityDAO;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -119,6 +120,42 @@ class JpaCommodityDAO extends AbstractJpaDAO implements CommodityDAO {
     }
 
 
+    @Override
+    public boolean addSecurityHistory(final SecurityNode node, final Collection<SecurityHistoryNode> historyNodes) {
+        boolean result = false;
+
+        emLock.lock();
+
+        try {
+            Future<Boolean> future = executorService.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+
+                    em.getTransaction().begin();
+
+                    for (final SecurityHistoryNode historyNode : historyNodes) {
+                        em.persist(historyNode);
+                    }
+
+                    em.persist(node);
+                    em.getTransaction().commit();
+
+                    return true;
+                }
+            });
+
+            result = future.get();
+
+        } catch (final InterruptedException | ExecutionException e) {
+            logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
+        } finally {
+            emLock.unlock();
+        }
+
+        return result;
+    }
+
+
     @Override
     public boolean removeSecurityHistory(final SecurityNode node, final SecurityHistoryNode historyNode) {
 
@@ -151,6 +188,42 @@ class JpaCommodityDAO extends AbstractJpaDAO implements CommodityDAO {
         return result;
     }
 
+    @Override
+    public boolean removeSecurityHistory(final SecurityNode node, final Collection<SecurityHistoryNode> historyNodes) {
+
+        boolean result = false;
+
+        emLock.lock();
+
+        try {
+            Future<Boolean> future = executorService.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+
+                    em.getTransaction().begin();
+                    em.persist(node);
+
+                    for (final SecurityHistoryNode historyNode : historyNodes) {
+                        em.persist(historyNode);
+                    }
+
+                    em.getTransaction().commit();
+
+                    return true;
+                }
+            });
+
+            result = future.get();
+
+        } catch (final InterruptedException | ExecutionException e) {
+            logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
+        } finally {
+            emLock.unlock();
+        }
+
+        return result;
+    }
+
     @Override
     public boolean addExchangeRateHistory(final ExchangeRate rate) {
         return merge(rate) != null;
@@ -214,23 +287,14 @@ class JpaCommodityDAO extends AbstractJpaDAO implements CommodityDAO {
             Future<ExchangeRate> future = executorService.submit(new Callable<ExchangeRate>() {
                 @Override
                 public ExchangeRate call() throws Exception {
-                    ExchangeRate exchangeRate = null;
+                    TypedQuery<ExchangeRate> q = em.createQuery("SELECT e FROM ExchangeRate e WHERE e.rateId = :rateId",
+                            ExchangeRate.class);
+                    q.setParameter("rateId", rateId);
+                    q.setMaxResults(1);
 
-                    CriteriaBuilder cb = em.getCriteriaBuilder();
-                    CriteriaQuery<ExchangeRate> cq = cb.createQuery(ExchangeRate.class);
-                    Root<ExchangeRate> root = cq.from(ExchangeRate.class);
-                    cq.select(root);
-
-                    TypedQuery<ExchangeRate> q = em.createQuery(cq);
-
-                    for (ExchangeRate rate : q.getResultList()) {
-                        if (rate.getRateId().equals(rateId)) {
-                            exchangeRate = rate;
-                            break;
-                        }
-                    }
+                    final List<ExchangeRate> rates = q.getResultList();
 
-                    return exchangeRate;
+                    return rates.isEmpty() ? null : rates.get(0);
                 }
             });
 
@@ -39,6 +39,13 @@ class JpaConfiguration {
     private static final String JAVAX_PERSISTENCE_JDBC_PASSWORD = "javax.persistence.jdbc.password";
     private static final String HIBERNATE_DIALECT = "hibernate.dialect";
     private static final String HIBERNATE_HBM2DDL_AUTO = "hibernate.hbm2ddl.auto";
+    private static final String HIBERNATE_JDBC_BATCH_SIZE = "hibernate.jdbc.batch_size";
+    private static final String HIBERNATE_ORDER_INSERTS = "hibernate.order_inserts";
+
+    /**
+     * Number of statements sent to the database in one JDBC batch
+     */
+    static final int JDBC_BATCH_SIZE = 50;
 
     public static final String DEFAULT_USER = "JGNASH";
 
@@ -48,6 +55,8 @@ class JpaConfiguration {
         Properties properties = System.getProperties();
 
         properties.setProperty(HIBERNATE_HBM2DDL_AUTO, "update");
+        properties.setProperty(HIBERNATE_JDBC_BATCH_SIZE, Integer.toString(JDBC_BATCH_SIZE));
+        properties.setProperty(HIBERNATE_ORDER_INSERTS, Boolean.TRUE.toString());
 
         switch (database) {
             case H2_DATABASE:
@@ -64,10 +64,33 @@ public class JpaEngineDAO extends AbstractJpaDAO implements EngineDAO {
 
     private TrashDAO trashDAO;
 
+    private final JpaTransactionLoader transactionLoader;
+
     private static final Logger logger = Logger.getLogger(JpaEngineDAO.class.getName());
 
     JpaEngineDAO(final EntityManager entityManager, final boolean isRemote) {
         super(entityManager, isRemote);
+        transactionLoader = new JpaTransactionLoader(entityManager);
+    }
+
+    /**
+     * Creates an engine DAO that runs read only queries for transactions and accounts on a pool of
+     * EntityManagers
+     *
+     * @param entityManager shared EntityManager used for writes
+     * @param readPool      pool for read only queries
+     * @param isRemote      true if connected to a remote database
+     */
+    JpaEngineDAO(final EntityManager entityManager, final EntityManagerPool readPool, final boolean isRemote) {
+        super(entityManager, readPool, isRemote);
+        transactionLoader = new JpaTransactionLoader(entityManager);
+    }
+
+    /**
+     * Fetches the transactions of every account with a single query instead of loading them on first access
+     */
+    void loadAllTransactions() {
+        transactionLoader.loadAll();
     }
 
     @Override
@@ -88,7 +111,7 @@ public class JpaEngineDAO extends AbstractJpaDAO implements EngineDAO {
     @Override
     public synchronized AccountDAO getAccountDAO() {
         if (accountDAO == null) {
-            accountDAO = new JpaAccountDAO(em, isRemote);
+            accountDAO = new JpaAccountDAO(em, readPool, transactionLoader, isRemote);
         }
         return accountDAO;
     }
@@ -128,7 +151,7 @@ public class JpaEngineDAO extends AbstractJpaDAO implements EngineDAO {
     @Override
     public synchronized TransactionDAO getTransactionDAO() {
         if (transactionDAO == null) {
-            transactionDAO = new JpaTransactionDAO(em, isRemote);
+            transactionDAO = new JpaTransactionDAO(em, readPool, isRemote);
         }
         return transactionDAO;
     }
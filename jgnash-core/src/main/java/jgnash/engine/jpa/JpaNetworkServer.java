@@ -126,7 +126,7 @@ public class JpaNetworkServer {
             if (engine != null) {
 
                 // Start the message bus and pass the file name so it can be reported to the client
-                MessageBusServer messageBusServer = new MessageBusServer(port + 1);
+                MessageBusServer messageBusServer = new MessageBusServer(port + 1, SERVER_ENGINE);
                 result = messageBusServer.startServer(dataStoreType, fileName, password);
 
                 if (result) { // don't continue if the server is not started successfully
@@ -289,7 +289,14 @@ public class JpaNetworkServer {
             distributedAttachmentManager.connectToServer(password);
 
             Logger.getLogger(JpaH2DataStore.class.getName()).info("Created local JPA container and engine");
-            engine = new Engine(new JpaEngineDAO(em, true), distributedLockManager, distributedAttachmentManager, SERVER_ENGINE); // treat as a remote engine
+            final JpaEngineDAO engineDAO = new JpaEngineDAO(em, true);
+
+            // fetch every transaction up front with a single query unless loading on demand
+            if (!EngineFactory.useLazyTransactionLoading()) {
+                engineDAO.loadAllTransactions();
+            }
+
+            engine = new Engine(engineDAO, distributedLockManager, distributedAttachmentManager, SERVER_ENGINE); // treat as a remote engine
         } catch (final Exception e) {
             Logger.getLogger(JpaNetworkServer.class.getName()).log(Level.SEVERE, e.toString(), e);
         }
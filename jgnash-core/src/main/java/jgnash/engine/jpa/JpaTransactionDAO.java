@@ -17,9 +17,10 @@
  */
 package jgnash.engine.jpa;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
@@ -27,7 +28,6 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.persistence.EntityManager;
-import javax.persistence.Query;
 
 import jgnash.engine.Account;
 import jgnash.engine.Transaction;
@@ -42,8 +42,8 @@ class JpaTransactionDAO extends AbstractJpaDAO implements TransactionDAO {
 
     private static final Logger logger = Logger.getLogger(JpaTransactionDAO.class.getName());
 
-    JpaTransactionDAO(final EntityManager entityManager, final boolean isRemote) {
-        super(entityManager, isRemote);
+    JpaTransactionDAO(final EntityManager entityManager, final EntityManagerPool readPool, final boolean isRemote) {
+        super(entityManager, readPool, isRemote);
         logger.setLevel(Level.ALL);
     }
 
@@ -51,37 +51,50 @@ class JpaTransactionDAO extends AbstractJpaDAO implements TransactionDAO {
      * @see jgnash.engine.dao.TransactionDAO#getTransactions()
      */
     @Override
-    @SuppressWarnings("unchecked")
     public List<Transaction> getTransactions() {
-        List<Transaction> transactionList = Collections.emptyList();
+        return query(Transaction.class, "o.markedForRemoval = false");
+    }
+
+    /*
+     * @see jgnash.engine.TransactionDAO#addTransaction(jgnash.engine.Transaction)
+     */
+    @Override
+    public synchronized boolean addTransaction(final Transaction transaction) {
+        boolean result = false;
 
         emLock.lock();
 
         try {
-            Future<List<Transaction>> future = executorService.submit(new Callable<List<Transaction>>() {
+            Future<Boolean> future = executorService.submit(new Callable<Boolean>() {
                 @Override
-                public List<Transaction> call() throws Exception {
-                    Query q = em.createQuery("SELECT t FROM Transaction t WHERE t.markedForRemoval = false");
+                public Boolean call() throws Exception {
+                    em.getTransaction().begin();
+                    em.persist(transaction);
+
+                    for (final Account account : transaction.getAccounts()) {
+                        em.persist(account);
+                    }
+                    em.getTransaction().commit();
 
-                    return new ArrayList<>(q.getResultList());
+                    return true;
                 }
             });
 
-            transactionList = future.get();
+            result = future.get();
         } catch (final InterruptedException | ExecutionException e) {
             logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
         } finally {
             emLock.unlock();
         }
 
-        return transactionList;
+        return result;
     }
 
     /*
-     * @see jgnash.engine.TransactionDAO#addTransaction(jgnash.engine.Transaction)
+     * @see jgnash.engine.dao.TransactionDAO#addTransactions(java.util.Collection)
      */
     @Override
-    public synchronized boolean addTransaction(final Transaction transaction) {
+    public synchronized boolean addTransactions(final Collection<Transaction> transactions) {
         boolean result = false;
 
         emLock.lock();
@@ -90,10 +103,23 @@ class JpaTransactionDAO extends AbstractJpaDAO implements TransactionDAO {
             Future<Boolean> future = executorService.submit(new Callable<Boolean>() {
                 @Override
                 public Boolean call() throws Exception {
+                    final Set<Account> accounts = new HashSet<>();
+
                     em.getTransaction().begin();
-                    em.persist(transaction);
 
-                    for (final Account account : transaction.getAccounts()) {
+                    int count = 0;
+
+                    for (final Transaction transaction : transactions) {
+                        em.persist(transaction);
+                        accounts.addAll(transaction.getAccounts());
+
+                        // flush each full JDBC batch so the inserts are not all held until commit
+                        if (++count % JpaConfiguration.JDBC_BATCH_SIZE == 0) {
+                            em.flush();
+                        }
+                    }
+
+                    for (final Account account : accounts) {
                         em.persist(account);
                     }
                     em.getTransaction().commit();
@@ -155,29 +181,7 @@ class JpaTransactionDAO extends AbstractJpaDAO implements TransactionDAO {
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public List<Transaction> getTransactionsWithAttachments() {
-        List<Transaction> transactionList = Collections.emptyList();
-
-        emLock.lock();
-
-        try {
-            Future<List<Transaction>> future = executorService.submit(new Callable<List<Transaction>>() {
-                @Override
-                public List<Transaction> call() throws Exception {
-                    Query q = em.createQuery("SELECT t FROM Transaction t WHERE t.markedForRemoval = false AND t.attachment is not null");
-
-                    return new ArrayList<>(q.getResultList());
-                }
-            });
-
-            transactionList = future.get();
-        } catch (final InterruptedException | ExecutionException e) {
-            logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
-        } finally {
-            emLock.unlock();
-        }
-
-        return transactionList;
+        return query(Transaction.class, "o.markedForRemoval = false AND o.attachment is not null");
     }
 }
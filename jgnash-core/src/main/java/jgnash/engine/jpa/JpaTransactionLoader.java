@@ -0,0 +1,101 @@
+/*
+ * jGnash, a personal finance application
+ * Copyright (C) 2001-2014 Craig Cavanaugh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jgnash.engine.jpa;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.persistence.EntityManager;
+
+import jgnash.engine.Account;
+import jgnash.engine.TransactionLoader;
+
+/**
+ * Loads the lazily fetched transactions of an {@code Account} using the shared {@code EntityManager}.
+ * <p/>
+ * The transactions are initialized on the thread that owns the {@code EntityManager} because it is not thread safe.
+ *
+ * @author Craig Cavanaugh
+ */
+final class JpaTransactionLoader extends TransactionLoader {
+
+    private static final Logger logger = Logger.getLogger(JpaTransactionLoader.class.getName());
+
+    private final EntityManager em;
+
+    JpaTransactionLoader(final EntityManager em) {
+        this.em = em;
+    }
+
+    @Override
+    protected void load(final Account account) {
+        AbstractJpaDAO.emLock.lock();
+
+        try {
+            AbstractJpaDAO.executorService.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    initialize(account);
+                    return null;
+                }
+            }).get();
+        } catch (final InterruptedException | ExecutionException e) {
+            logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
+        } finally {
+            AbstractJpaDAO.emLock.unlock();
+        }
+    }
+
+    /**
+     * Makes this loader responsible for the accounts of a tree
+     *
+     * @param root root of the account tree
+     */
+    void attachRoot(final Account root) {
+        attach(root);
+    }
+
+    /**
+     * Fetches the transactions of every account with a single query
+     */
+    void loadAll() {
+        AbstractJpaDAO.emLock.lock();
+
+        try {
+            AbstractJpaDAO.executorService.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    final List<Account> accounts = em.createQuery("SELECT DISTINCT a FROM Account a LEFT JOIN FETCH a.transactions",
+                            Account.class).getResultList();
+
+                    for (final Account account : accounts) {
+                        initialize(account);
+                    }
+                    return null;
+                }
+            }).get();
+        } catch (final InterruptedException | ExecutionException e) {
+            logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
+        } finally {
+            AbstractJpaDAO.emLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * jGnash, a personal finance application
+ * Copyright (C) 2001-2014 Craig Cavanaugh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jgnash.engine.message;
+
+/**
+ * A listener that receives coalesced transaction events.
+ * <p/>
+ * {@code TRANSACTION_ADD} and {@code TRANSACTION_REMOVE} events fired in quick succession are merged by the
+ * {@link MessageBus} and posted as one {@link ChannelEvent#TRANSACTIONS_ADD_BATCH} or
+ * {@link ChannelEvent#TRANSACTIONS_REMOVE_BATCH} message per account instead.  The account is available as the
+ * {@link MessageProperty#ACCOUNT} property and the transactions through {@link Message#getTransactions()}.  All other
+ * events are posted unchanged.
+ *
+ * @author Craig Cavanaugh
+ */
+public interface BatchMessageListener extends MessageListener {
+}
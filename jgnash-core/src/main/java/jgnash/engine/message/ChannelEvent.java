@@ -74,6 +74,8 @@ public enum ChannelEvent {
     TRANSACTION_ADD_FAILED,
     TRANSACTION_REMOVE,
     TRANSACTION_REMOVE_FAILED,
+    TRANSACTIONS_ADD_BATCH,     // coalesced TRANSACTION_ADD events for one account
+    TRANSACTIONS_REMOVE_BATCH,  // coalesced TRANSACTION_REMOVE events for one account
     FILE_CLOSING,
     FILE_NOT_FOUND,
     FILE_IO_ERROR,
@@ -21,14 +21,18 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.EnumMap;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import jgnash.engine.Engine;
 import jgnash.engine.EngineFactory;
 import jgnash.engine.StoredObject;
+import jgnash.engine.Transaction;
 
 /**
  * Message object
@@ -45,6 +49,11 @@ public class Message implements Serializable, Cloneable {
 
     transient private EnumMap<MessageProperty, StoredObject> properties = new EnumMap<>(MessageProperty.class);
 
+    /**
+     * Transactions of a coalesced batch event.  Batch events are only posted to local listeners.
+     */
+    private transient Set<Transaction> transactions = Collections.emptySet();
+
     /**
      * Used to flag message sent remotely
      */
@@ -64,7 +73,7 @@ public class Message implements Serializable, Cloneable {
         this(channel, event, source.getUuid());
     }
 
-    private Message(final MessageChannel channel, final ChannelEvent event, final String source) {
+    Message(final MessageChannel channel, final ChannelEvent event, final String source) {
         this.source = Objects.requireNonNull(source);
         this.event = Objects.requireNonNull(event);
         this.channel = Objects.requireNonNull(channel);
@@ -93,6 +102,29 @@ public class Message implements Serializable, Cloneable {
         return properties.get(key);
     }
 
+    /**
+     * Returns the message properties
+     *
+     * @return unmodifiable map of the properties
+     */
+    Map<MessageProperty, StoredObject> getProperties() {
+        return Collections.unmodifiableMap(properties);
+    }
+
+    /**
+     * Returns the transactions of a {@link ChannelEvent#TRANSACTIONS_ADD_BATCH} or
+     * {@link ChannelEvent#TRANSACTIONS_REMOVE_BATCH} event
+     *
+     * @return unmodifiable set of transactions in the order the events were fired, empty for other events
+     */
+    public Set<Transaction> getTransactions() {
+        return transactions;
+    }
+
+    void setTransactions(final Set<Transaction> transactions) {
+        this.transactions = Collections.unmodifiableSet(transactions);
+    }
+
     public String getSource() {
         return source;
     }
@@ -143,6 +175,7 @@ public class Message implements Serializable, Cloneable {
         s.defaultReadObject();
 
         properties = new EnumMap<>(MessageProperty.class);
+        transactions = Collections.emptySet();
 
         final int size = s.readInt();
 
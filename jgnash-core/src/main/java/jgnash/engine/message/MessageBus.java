@@ -18,19 +18,28 @@
 package jgnash.engine.message;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import jgnash.engine.Account;
 import jgnash.engine.DataStoreType;
+import jgnash.engine.Transaction;
 import jgnash.util.DefaultDaemonThreadFactory;
 import jgnash.util.LogUtils;
 
@@ -45,6 +54,11 @@ import jgnash.util.LogUtils;
  * and to ease the burden of synchronizing against multiple threads.  The iterator
  * must be used for access, but removal of weak references must be done through the
  * set, not the iterator.
+ *
+ * Transaction add and remove events are posted to plain listeners as they are fired, but are
+ * held for a short window and merged per account for BatchMessageListeners.  The pending events
+ * are only touched by the single pool thread, and any other event flushes them first so batch
+ * listeners still see events in the order fired.
  */
 public class MessageBus {
 
@@ -57,7 +71,31 @@ public class MessageBus {
 
     private final ConcurrentMap<MessageChannel, Set<WeakReference<MessageListener>>> map = new ConcurrentHashMap<>();
 
-    private final ExecutorService pool = Executors.newSingleThreadExecutor(new DefaultDaemonThreadFactory());
+    /**
+     * Time in milliseconds to hold transaction events so they can be coalesced
+     */
+    private static final long COALESCE_WINDOW = 50;
+
+    /**
+     * Maximum number of transaction events to hold before they are posted
+     */
+    private static final int MAX_PENDING = 10000;
+
+    private final ScheduledExecutorService pool = Executors.newSingleThreadScheduledExecutor(new DefaultDaemonThreadFactory());
+
+    /**
+     * Transaction events waiting to be posted, only accessed by the pool thread
+     */
+    private final List<Message> pending = new ArrayList<>();
+
+    private ScheduledFuture<?> flushFuture = null;
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flushPending();
+        }
+    };
 
     private MessageBusClient messageBusClient = null;
 
@@ -228,29 +266,142 @@ public class MessageBus {
         pool.execute(new Runnable() {
             @Override
             public void run() {
-                // Look for and post to local listeners
-                final Set<WeakReference<MessageListener>> set = map.get(message.getChannel());
-
-                if (set != null) {
-                    for (WeakReference<MessageListener> ref : set) {
-                        MessageListener l = ref.get();
-                        if (l != null) {
-                            l.messagePosted(message);
-                        }
-                    }
+                dispatch(message);
+            }
+        });
+    }
+
+    /**
+     * Fires a group of messages.  Transaction events within the group are posted to {@code BatchMessageListener}s as
+     * soon as the whole group has been dispatched instead of waiting for the coalescing window.
+     *
+     * @param messages messages to fire in order
+     */
+    public void fireEvents(final Collection<Message> messages) {
+        final List<Message> group = new ArrayList<>(messages);
+
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (final Message message : group) {
+                    dispatch(message);
                 }
+                flushPending();
+            }
+        });
+    }
+
+    /**
+     * Posts a message to local listeners and the remote server.  Must only be called by the pool thread.
+     *
+     * @param message message to post
+     */
+    private void dispatch(final Message message) {
+        postLocal(message, false);
+
+        if (isCoalescible(message)) {
+            if (!pending.isEmpty() && pending.get(0).getEvent() != message.getEvent()) {
+                flushPending();
+            }
+
+            pending.add(message);
+
+            if (pending.size() >= MAX_PENDING) {
+                flushPending();
+            } else if (flushFuture == null) {
+                flushFuture = pool.schedule(flushTask, COALESCE_WINDOW, TimeUnit.MILLISECONDS);
+            }
+        } else {
+            flushPending();
+        }
+
+        /* Post a remote message if configured to do so and filter system events.
+         *
+         * Do not re-post a remote message otherwise it will just loop through the
+         * remote message system
+         * */
+        if (!message.isRemote()) {
+            if (messageBusClient != null && message.getChannel() != MessageChannel.SYSTEM) {
+                messageBusClient.sendRemoteMessage(message);
+            }
+        }
+    }
 
-                /* Post a remote message if configured to do so and filter system events.
-                 *
-                 * Do not re-post a remote message otherwise it will just loop through the
-                 * remote message system
-                 * */
-                if (!message.isRemote()) {
-                    if (messageBusClient != null && message.getChannel() != MessageChannel.SYSTEM) {
-                        messageBusClient.sendRemoteMessage(message);
+    private static boolean isCoalescible(final Message message) {
+        return (message.getEvent() == ChannelEvent.TRANSACTION_ADD || message.getEvent() == ChannelEvent.TRANSACTION_REMOVE)
+                && message.getObject(MessageProperty.ACCOUNT) != null
+                && message.getObject(MessageProperty.TRANSACTION) != null;
+    }
+
+    /**
+     * Posts a message to local listeners
+     *
+     * @param message   message to post
+     * @param batchOnly {@code true} if only {@code BatchMessageListener}s should receive the message.
+     *                  Otherwise they are skipped for transaction events that will be coalesced.
+     */
+    private void postLocal(final Message message, final boolean batchOnly) {
+        final Set<WeakReference<MessageListener>> set = map.get(message.getChannel());
+
+        if (set != null) {
+            final boolean skipBatch = isCoalescible(message);
+
+            for (WeakReference<MessageListener> ref : set) {
+                MessageListener l = ref.get();
+                if (l != null) {
+                    final boolean batch = l instanceof BatchMessageListener;
+
+                    if (batchOnly ? batch : !(batch && skipBatch)) {
+                        l.messagePosted(message);
                     }
                 }
             }
-        });
+        }
+    }
+
+    /**
+     * Posts one merged event per account for the pending transaction events to {@code BatchMessageListener}s
+     */
+    private void flushPending() {
+        if (flushFuture != null) {
+            flushFuture.cancel(false);
+            flushFuture = null;
+        }
+
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        final ChannelEvent event = pending.get(0).getEvent() == ChannelEvent.TRANSACTION_ADD
+                ? ChannelEvent.TRANSACTIONS_ADD_BATCH : ChannelEvent.TRANSACTIONS_REMOVE_BATCH;
+
+        final Map<Account, Message> batches = new LinkedHashMap<>();
+        final Map<Account, Set<Transaction>> transactions = new HashMap<>();
+
+        for (final Message message : pending) {
+            final Account account = (Account) message.getObject(MessageProperty.ACCOUNT);
+
+            Message batch = batches.get(account);
+
+            if (batch == null) {
+                batch = new Message(message.getChannel(), event, message.getSource());
+                batch.setObject(MessageProperty.ACCOUNT, account);
+                batch.setRemote(message.isRemote());
+
+                batches.put(account, batch);
+                transactions.put(account, new LinkedHashSet<Transaction>());
+            }
+
+            transactions.get(account).add((Transaction) message.getObject(MessageProperty.TRANSACTION));
+        }
+
+        pending.clear();
+
+        for (final Map.Entry<Account, Message> entry : batches.entrySet()) {
+            final Message batch = entry.getValue();
+
+            batch.setTransactions(transactions.get(entry.getKey()));
+            postLocal(batch, true);
+        }
     }
 }
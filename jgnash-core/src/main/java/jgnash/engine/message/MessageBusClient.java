@@ -18,9 +18,13 @@
 package jgnash.engine.message;
 
 import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -42,6 +46,8 @@ import com.thoughtworks.xstream.XStream;
 import com.thoughtworks.xstream.io.xml.CompactWriter;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
@@ -51,15 +57,16 @@ import io.netty.channel.ChannelPipeline;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
-import io.netty.handler.codec.DelimiterBasedFrameDecoder;
-import io.netty.handler.codec.Delimiters;
-import io.netty.handler.codec.string.StringDecoder;
 import io.netty.handler.codec.string.StringEncoder;
 import io.netty.util.CharsetUtil;
 import io.netty.util.ReferenceCountUtil;
 
 /**
  * Message bus client for remote connections
+ * <p/>
+ * The text protocol sends each message as a line of XML and waits for the write to complete.  If the server offers
+ * the binary protocol, messages are instead queued and sent in batches with non-blocking writes once per
+ * {@link #FLUSH_WINDOW} milliseconds.
  *
  * @author Craig Cavanaugh
  */
@@ -84,6 +91,39 @@ class MessageBusClient {
 
     private final String name;
 
+    /**
+     * Time in milliseconds messages are collected before a batch is sent
+     */
+    private static final long FLUSH_WINDOW = 20;
+
+    /**
+     * True once the binary protocol has been accepted
+     */
+    private volatile boolean binary = false;
+
+    /**
+     * Messages waiting to be sent with the binary protocol
+     */
+    private final List<Message> pending = new ArrayList<>();
+
+    private boolean flushScheduled = false;
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flushPending();
+        }
+    };
+
+    private final ChannelFutureListener writeListener = new ChannelFutureListener() {
+        @Override
+        public void operationComplete(final ChannelFuture future) {
+            if (!future.isSuccess()) {
+                logger.log(Level.SEVERE, "Failed to send a message", future.cause());
+            }
+        }
+    };
+
     static {
         logger.setLevel(Level.INFO);
     }
@@ -148,9 +188,8 @@ class MessageBusClient {
         public void initChannel(final SocketChannel ch) throws Exception {
             ChannelPipeline pipeline = ch.pipeline();
 
-            // Add the text line codec combination first,
-            pipeline.addLast("framer", new DelimiterBasedFrameDecoder(8192, true, Delimiters.lineDelimiter()));
-            pipeline.addLast("decoder", new StringDecoder(CharsetUtil.UTF_8));
+            // Add the frame decoder and text encoder first, binary frames are written as a ByteBuf
+            pipeline.addLast("framer", new ProtocolFrameDecoder(encrypt(MessageCodec.PROTOCOL_ACK)));
             pipeline.addLast("encoder", new StringEncoder(CharsetUtil.UTF_8));
 
             // and then business logic.
@@ -182,41 +221,90 @@ class MessageBusClient {
         public void channelRead(final ChannelHandlerContext ctx, final Object msg) {
 
             try {
-                final String plainMessage = decrypt(msg);
+                if (msg instanceof byte[]) {
+                    processFrame((byte[]) msg);
+                } else {
+                    processText(decrypt(msg));
+                }
+            } finally {
+                ReferenceCountUtil.release(msg);
+            }
+        }
 
-                logger.log(Level.FINE, "messageReceived: {0}", plainMessage);
+        private void processFrame(final byte[] frame) {
+            final byte[] payload = encryptionManager != null ? encryptionManager.decrypt(frame) : frame;
+
+            if (payload == null || payload.length == 0) {
+                logger.log(Level.SEVERE, "Unable to decrypt the remote message");
+            } else if (payload[0] == MessageCodec.TEXT) {
+                processText(MessageCodec.decodeText(payload));
+            } else if (payload[0] == MessageCodec.BATCH) {
+                executorService.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        final Engine engine = EngineFactory.getEngine(name);
+                        Objects.requireNonNull(engine);
+
+                        try {
+                            final List<Message> messages = MessageCodec.decodeBatch(payload, MessageCodec.getResolver(engine));
+
+                            for (final Message message : messages) {
+                                // ignore our own messages
+                                if (!engine.getUuid().equals(message.getSource())) {
+                                    processRemoteMessage(message);
+                                }
+                            }
+                        } catch (final IOException e) {
+                            logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
+                        }
+                    }
+                });
+            } else {
+                logger.log(Level.SEVERE, "Unknown frame type: {0}", payload[0]);
+            }
+        }
 
-                if (plainMessage.startsWith("<Message")) {
-                    executorService.submit(new Runnable() {
-                        @Override
-                        public void run() {
-                            final Message message = (Message) xstream.fromXML(plainMessage);
+        private void processText(final String plainMessage) {
+            logger.log(Level.FINE, "messageReceived: {0}", plainMessage);
 
-                            final Engine engine = EngineFactory.getEngine(name);
-                            Objects.requireNonNull(engine);
+            if (plainMessage.startsWith("<Message")) {
+                executorService.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        final Message message = (Message) xstream.fromXML(plainMessage);
 
-                            // ignore our own messages
-                            if (!engine.getUuid().equals(message.getSource())) {
-                                processRemoteMessage(message);
-                            }
+                        final Engine engine = EngineFactory.getEngine(name);
+                        Objects.requireNonNull(engine);
+
+                        // ignore our own messages
+                        if (!engine.getUuid().equals(message.getSource())) {
+                            processRemoteMessage(message);
                         }
-                    });
-                } else if (plainMessage.startsWith(MessageBusServer.PATH_PREFIX)) {
-                    dataBasePath = plainMessage.substring(MessageBusServer.PATH_PREFIX.length());
-                    logger.log(Level.FINE, "Remote data path is: {0}", dataBasePath);
-                } else if (plainMessage.startsWith(MessageBusServer.DATA_STORE_TYPE_PREFIX)) {
-                    dataBaseType = DataStoreType.valueOf(plainMessage.substring(MessageBusServer.DATA_STORE_TYPE_PREFIX.length()));
-                    logger.log(Level.FINE, "Remote dataBaseType type is: {0}", dataBaseType.name());
-                } else if (plainMessage.startsWith(EncryptionManager.DECRYPTION_ERROR_TAG)) {    // decryption has failed, shut down the engine
-                    logger.log(Level.SEVERE, "Unable to decrypt the remote message");
-                } else if (plainMessage.startsWith(JpaNetworkServer.STOP_SERVER_MESSAGE)) {
-                    logger.info("Server is shutting down");
-                    EngineFactory.closeEngine(name);
-                } else {
-                    logger.log(Level.SEVERE, "Unknown message: {0}", plainMessage);
-                }
-            } finally {
-                ReferenceCountUtil.release(msg);
+                    }
+                });
+            } else if (plainMessage.startsWith(MessageBusServer.PATH_PREFIX)) {
+                dataBasePath = plainMessage.substring(MessageBusServer.PATH_PREFIX.length());
+                logger.log(Level.FINE, "Remote data path is: {0}", dataBasePath);
+            } else if (plainMessage.startsWith(MessageBusServer.DATA_STORE_TYPE_PREFIX)) {
+                dataBaseType = DataStoreType.valueOf(plainMessage.substring(MessageBusServer.DATA_STORE_TYPE_PREFIX.length()));
+                logger.log(Level.FINE, "Remote dataBaseType type is: {0}", dataBaseType.name());
+            } else if (plainMessage.equals(MessageCodec.PROTOCOL_OFFER)) {
+                // accept from the executor, a text message may be waiting for the event loop while holding the monitor
+                executorService.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        acceptBinaryProtocol();
+                    }
+                });
+            } else if (plainMessage.equals(MessageCodec.PROTOCOL_ACK)) {
+                logger.info("Using the binary message protocol");
+            } else if (plainMessage.startsWith(EncryptionManager.DECRYPTION_ERROR_TAG)) {    // decryption has failed, shut down the engine
+                logger.log(Level.SEVERE, "Unable to decrypt the remote message");
+            } else if (plainMessage.startsWith(JpaNetworkServer.STOP_SERVER_MESSAGE)) {
+                logger.info("Server is shutting down");
+                EngineFactory.closeEngine(name);
+            } else {
+                logger.log(Level.SEVERE, "Unknown message: {0}", plainMessage);
             }
         }
 
@@ -230,6 +318,10 @@ class MessageBusClient {
 
     public void disconnectFromServer() {
 
+        if (binary && channel != null) {
+            flushPending();
+        }
+
         try {
             channel.close().sync();
         } catch (InterruptedException e) {
@@ -243,6 +335,11 @@ class MessageBusClient {
     }
 
     public synchronized void sendRemoteMessage(final Message message) {
+        if (binary) {
+            queueMessage(message);
+            return;
+        }
+
         CharArrayWriter writer = new CharArrayWriter();
         xstream.marshal(message, new CompactWriter(writer));
 
@@ -251,17 +348,25 @@ class MessageBusClient {
         logger.log(Level.FINE, "sent: {0}", writer.toString());
     }
 
-    public void sendRemoteShutdownRequest() {
-        sendRemoteMessage(JpaNetworkServer.STOP_SERVER_MESSAGE);
+    public synchronized void sendRemoteShutdownRequest() {
+        if (binary) {
+            flushPending();
+            writeFrame(MessageCodec.encodeText(JpaNetworkServer.STOP_SERVER_MESSAGE));
+        } else {
+            sendRemoteMessage(JpaNetworkServer.STOP_SERVER_MESSAGE);
+        }
+    }
+
+    private String encrypt(final String message) {
+        if (encryptionManager != null) {
+            return encryptionManager.encrypt(message);
+        }
+        return message;
     }
 
     private synchronized void sendRemoteMessage(final String message) {
         try {
-            if (encryptionManager != null) {
-                channel.writeAndFlush(encryptionManager.encrypt(message) + MessageBusServer.EOL_DELIMITER).sync();
-            } else {
-                channel.writeAndFlush(message + MessageBusServer.EOL_DELIMITER).sync();
-            }
+            channel.writeAndFlush(encrypt(message) + MessageBusServer.EOL_DELIMITER).sync();
         } catch (final InterruptedException e) {
             logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
         } catch (final NullPointerException e) {
@@ -273,6 +378,61 @@ class MessageBusClient {
         }
     }
 
+    /**
+     * Accepts the binary protocol offered by the server.  Text messages are sent synchronously while holding the
+     * monitor, so all text messages have been written before the switch.
+     */
+    private synchronized void acceptBinaryProtocol() {
+        sendRemoteMessage(MessageCodec.PROTOCOL_ACCEPT);
+        binary = true;
+    }
+
+    private void queueMessage(final Message message) {
+        synchronized (pending) {
+            pending.add(message);
+
+            if (!flushScheduled && channel != null) {
+                flushScheduled = true;
+                channel.eventLoop().schedule(flushTask, FLUSH_WINDOW, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Sends all queued messages as a single batch
+     */
+    private void flushPending() {
+        final List<Message> batch;
+
+        synchronized (pending) {
+            batch = new ArrayList<>(pending);
+            pending.clear();
+            flushScheduled = false;
+        }
+
+        if (!batch.isEmpty()) {
+            writeFrame(MessageCodec.encodeBatch(batch));
+
+            logger.log(Level.FINE, "sent a batch of {0} messages", batch.size());
+        }
+    }
+
+    /**
+     * Writes a binary frame without waiting for the write to complete
+     *
+     * @param payload frame payload
+     */
+    private void writeFrame(final byte[] payload) {
+        final byte[] bytes = encryptionManager != null ? encryptionManager.encrypt(payload) : payload;
+        final Channel currentChannel = channel;
+
+        if (bytes != null && currentChannel != null) {
+            currentChannel.writeAndFlush(MessageCodec.toFrame(bytes)).addListener(writeListener);
+        } else {
+            logger.info("Unable to send a message through a null channel");
+        }
+    }
+
     /**
      * Takes a remote message and forces remote updates before sending the message to the MessageBus to notify UI
      * components of changes.
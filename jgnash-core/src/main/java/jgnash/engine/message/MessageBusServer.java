@@ -17,8 +17,13 @@
  */
 package jgnash.engine.message;
 
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -27,9 +32,14 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import jgnash.engine.DataStoreType;
+import jgnash.engine.Engine;
+import jgnash.engine.EngineFactory;
 import jgnash.util.EncryptionManager;
 
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.io.xml.CompactWriter;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
@@ -42,9 +52,6 @@ import io.netty.channel.group.DefaultChannelGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.codec.DelimiterBasedFrameDecoder;
-import io.netty.handler.codec.Delimiters;
-import io.netty.handler.codec.string.StringDecoder;
 import io.netty.handler.codec.string.StringEncoder;
 import io.netty.util.CharsetUtil;
 import io.netty.util.ReferenceCountUtil;
@@ -52,6 +59,9 @@ import io.netty.util.concurrent.GlobalEventExecutor;
 
 /**
  * Message bus server for remote connections
+ * <p/>
+ * The binary protocol is offered to every client.  Clients that do not accept it continue to use the text protocol,
+ * and messages are translated between the two protocols as they are relayed.
  *
  * @author Craig Cavanaugh
  */
@@ -67,6 +77,11 @@ public class MessageBusServer {
 
     private int port = 0;
 
+    /**
+     * Name of the engine used to resolve the properties of binary messages for text protocol clients
+     */
+    private final String engineName;
+
     private String dataBasePath = "";
 
     private String dataStoreType = "";
@@ -79,6 +94,16 @@ public class MessageBusServer {
 
     private final ChannelGroup channelGroup = new DefaultChannelGroup("all-connected", GlobalEventExecutor.INSTANCE);
 
+    /**
+     * Channels that have accepted the binary protocol
+     */
+    private final Set<Channel> binaryChannels = Collections.newSetFromMap(new ConcurrentHashMap<Channel, Boolean>());
+
+    /**
+     * Used to translate binary messages for text protocol clients
+     */
+    private XStream xstream;
+
     private EncryptionManager encryptionManager;
 
     private final ExecutorService executorService = Executors.newSingleThreadExecutor();
@@ -87,8 +112,9 @@ public class MessageBusServer {
         logger.setLevel(Level.INFO);
     }
 
-    public MessageBusServer(final int port) {
+    public MessageBusServer(final int port, final String engineName) {
         this.port = port;
+        this.engineName = engineName;
     }
 
     public boolean startServer(final DataStoreType dataStoreType, final String dataBasePath, final char[] password) {
@@ -187,6 +213,13 @@ public class MessageBusServer {
         return message;
     }
 
+    private byte[] encrypt(final byte[] payload) {
+        if (encryptionManager != null) {
+            return encryptionManager.encrypt(payload);
+        }
+        return payload;
+    }
+
     private String decrypt(final String message) {
         String plainMessage;
 
@@ -205,11 +238,8 @@ public class MessageBusServer {
         public void initChannel(final SocketChannel ch) throws Exception {
             ChannelPipeline pipeline = ch.pipeline();
 
-            // Add the text line codec combination first,
-            pipeline.addLast("framer", new DelimiterBasedFrameDecoder(8192, true, Delimiters.lineDelimiter()));
-
-            // the encoder and decoder are static as these are sharable
-            pipeline.addLast("decoder", new StringDecoder(CharsetUtil.UTF_8));
+            // Add the frame decoder and text encoder first, binary frames are written as a ByteBuf
+            pipeline.addLast("framer", new ProtocolFrameDecoder(encrypt(MessageCodec.PROTOCOL_ACCEPT)));
             pipeline.addLast("encoder", new StringEncoder(CharsetUtil.UTF_8));
 
             // and then business logic.
@@ -229,33 +259,68 @@ public class MessageBusServer {
             // Inform the client what they are talking with so they can establish a correct database url
             ctx.writeAndFlush(encrypt(PATH_PREFIX + dataBasePath) + EOL_DELIMITER);
             ctx.writeAndFlush(encrypt(DATA_STORE_TYPE_PREFIX + dataStoreType) + EOL_DELIMITER);
+
+            // Older clients ignore the offer and continue to use the text protocol
+            ctx.writeAndFlush(encrypt(MessageCodec.PROTOCOL_OFFER) + EOL_DELIMITER);
         }
 
         @Override
         public void channelInactive(final ChannelHandlerContext ctx) throws Exception {
             channelGroup.remove(ctx.channel());
+            binaryChannels.remove(ctx.channel());
             super.channelInactive(ctx);
         }
 
         @Override
         public void channelRead(final ChannelHandlerContext ctx, final Object msg) {
+            final Channel channel = ctx.channel();
+
             executorService.submit(new Runnable() {
                 @Override
                 public void run() {
-                    processMessage(msg.toString());
+                    if (msg instanceof byte[]) {
+                        processFrame((byte[]) msg);
+                    } else {
+                        processMessage(channel, msg.toString());
+                    }
 
                     ReferenceCountUtil.release(msg);
                 }
             });
         }
 
-        private void processMessage(final String message) {
+        private void processMessage(final Channel channel, final String message) {
             final String plainMessage = decrypt(message);
 
+            if (plainMessage.equals(MessageCodec.PROTOCOL_ACCEPT)) {
+
+                // Written from the executor so any text message relayed before the switch is received first
+                binaryChannels.add(channel);
+                channel.writeAndFlush(encrypt(MessageCodec.PROTOCOL_ACK) + EOL_DELIMITER);
+
+                logger.log(Level.INFO, "Binary protocol accepted by: {0}", channel.remoteAddress());
+            } else {
+                broadcast(plainMessage);
+            }
+        }
+
+        private void broadcast(final String plainMessage) {
             rwl.readLock().lock();
 
             try {
-                channelGroup.writeAndFlush(encrypt(plainMessage) + EOL_DELIMITER).sync();
+                final String textMessage = encrypt(plainMessage) + EOL_DELIMITER;
+                byte[] frame = null;
+
+                for (final Channel groupChannel : channelGroup) {
+                    if (binaryChannels.contains(groupChannel)) {
+                        if (frame == null) {
+                            frame = encrypt(MessageCodec.encodeText(plainMessage));
+                        }
+                        groupChannel.writeAndFlush(MessageCodec.toFrame(frame));
+                    } else {
+                        groupChannel.writeAndFlush(textMessage);
+                    }
+                }
 
                 // Local listeners do not receive encrypted messages
                 for (LocalServerListener listener : listeners) {
@@ -263,13 +328,94 @@ public class MessageBusServer {
                 }
 
                 logger.log(Level.FINE, "Broadcast: {0}", plainMessage);
-            } catch (InterruptedException e) {
+            } finally {
+                rwl.readLock().unlock();
+            }
+        }
+
+        private void processFrame(final byte[] frame) {
+            final byte[] payload = encryptionManager != null ? encryptionManager.decrypt(frame) : frame;
+
+            if (payload == null || payload.length == 0) {
+                logger.log(Level.SEVERE, "Unable to decrypt the remote message");
+            } else if (payload[0] == MessageCodec.TEXT) {
+                broadcast(MessageCodec.decodeText(payload));
+            } else if (payload[0] == MessageCodec.BATCH) {
+                processBatch(frame, payload);
+            } else {
+                logger.log(Level.SEVERE, "Unknown frame type: {0}", payload[0]);
+            }
+        }
+
+        /**
+         * Relays a batch of messages.  Binary clients receive the batch as is, text clients receive each message
+         * as a line of XML.  Message properties are resolved with the server engine and a batch that names anything
+         * other than a stored object is rejected.
+         *
+         * @param frame   the batch as received, encrypted if encryption is enabled
+         * @param payload the decrypted batch
+         */
+        private void processBatch(final byte[] frame, final byte[] payload) {
+            final Engine engine = EngineFactory.getEngine(engineName);
+
+            if (engine == null) {
+                logger.log(Level.SEVERE, "The engine is not running: {0}", engineName);
+                return;
+            }
+
+            final List<Message> messages;
+
+            try {
+                messages = MessageCodec.decodeBatch(payload, MessageCodec.getResolver(engine));
+            } catch (final IOException e) {
                 logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
+                return;
+            }
+
+            rwl.readLock().lock();
+
+            try {
+                StringBuilder textMessages = null;
+
+                for (final Channel groupChannel : channelGroup) {
+                    if (binaryChannels.contains(groupChannel)) {
+                        groupChannel.writeAndFlush(MessageCodec.toFrame(frame));
+                    } else {
+                        if (textMessages == null) {
+                            textMessages = new StringBuilder();
+
+                            for (final Message message : messages) {
+                                textMessages.append(encrypt(toXML(message))).append(EOL_DELIMITER);
+                            }
+                        }
+                        groupChannel.writeAndFlush(textMessages.toString());
+                    }
+                }
+
+                // Local listeners do not receive encrypted messages
+                for (final Message message : messages) {
+                    for (LocalServerListener listener : listeners) {
+                        listener.messagePosted(message.toString());
+                    }
+                }
+
+                logger.log(Level.FINE, "Broadcast a batch of {0} messages", messages.size());
             } finally {
                 rwl.readLock().unlock();
             }
         }
 
+        private String toXML(final Message message) {
+            if (xstream == null) {
+                xstream = XStreamFactory.getInstance();
+            }
+
+            final CharArrayWriter writer = new CharArrayWriter();
+            xstream.marshal(message, new CompactWriter(writer));
+
+            return writer.toString();
+        }
+
         @Override
         public void exceptionCaught(final ChannelHandlerContext ctx, final Throwable cause) throws Exception {
             logger.log(Level.WARNING, "Unexpected exception from downstream.", cause);
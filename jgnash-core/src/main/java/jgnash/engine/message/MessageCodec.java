@@ -0,0 +1,272 @@
+/*
+ * jGnash, a personal finance application
+ * Copyright (C) 2001-2014 Craig Cavanaugh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jgnash.engine.message;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jgnash.engine.Engine;
+import jgnash.engine.StoredObject;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Binary encoding of messages for the remote message bus.
+ * <p/>
+ * A frame payload starts with a type byte.  A {@link #TEXT} frame carries a single line of the text protocol.  A
+ * {@link #BATCH} frame carries any number of messages.  Message properties are written as a class name and uuid
+ * instead of an object graph, and repeated strings within a batch are written once and then referred to by index.
+ *
+ * @author Craig Cavanaugh
+ */
+final class MessageCodec {
+
+    /**
+     * Offered by the server to clients that support the binary protocol
+     */
+    static final String PROTOCOL_OFFER = "<PROTOCOL>binary-1";
+
+    /**
+     * Sent by the client to accept the binary protocol.  The client writes binary frames afterwards.
+     */
+    static final String PROTOCOL_ACCEPT = "<PROTOCOL>accept";
+
+    /**
+     * Sent by the server once it will only write binary frames to the client
+     */
+    static final String PROTOCOL_ACK = "<PROTOCOL>ack";
+
+    static final byte TEXT = 1;
+
+    static final byte BATCH = 2;
+
+    /**
+     * Marks a string that has not been written in the batch yet
+     */
+    private static final int NEW_STRING = -1;
+
+    private static final Logger logger = Logger.getLogger(MessageCodec.class.getName());
+
+    /**
+     * Resolves message properties when a batch is decoded
+     */
+    interface Resolver {
+
+        /**
+         * Returns the object for a message property
+         *
+         * @param clazz class of the object
+         * @param uuid  uuid of the object
+         * @return the object, {@code null} if it cannot be found
+         */
+        StoredObject resolve(Class<? extends StoredObject> clazz, String uuid);
+    }
+
+    private MessageCodec() {
+    }
+
+    /**
+     * Returns a resolver that finds message properties in an engine
+     *
+     * @param engine engine holding the objects
+     * @return the resolver
+     */
+    static Resolver getResolver(final Engine engine) {
+        return new Resolver() {
+            @Override
+            public StoredObject resolve(final Class<? extends StoredObject> clazz, final String uuid) {
+                return engine.getStoredObjectByUuid(clazz, uuid);
+            }
+        };
+    }
+
+    /**
+     * Prefixes a payload with its length for the binary protocol
+     *
+     * @param payload frame payload
+     * @return the frame
+     */
+    static ByteBuf toFrame(final byte[] payload) {
+        return Unpooled.buffer(payload.length + 4).writeInt(payload.length).writeBytes(payload);
+    }
+
+    static byte[] encodeText(final String text) {
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        final byte[] payload = new byte[bytes.length + 1];
+
+        payload[0] = TEXT;
+        System.arraycopy(bytes, 0, payload, 1, bytes.length);
+
+        return payload;
+    }
+
+    static String decodeText(final byte[] payload) {
+        return new String(payload, 1, payload.length - 1, StandardCharsets.UTF_8);
+    }
+
+    static byte[] encodeBatch(final List<Message> messages) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            final Map<String, Integer> strings = new HashMap<>();
+
+            out.writeByte(BATCH);
+            out.writeInt(messages.size());
+
+            for (final Message message : messages) {
+                writeString(out, message.getChannel().name(), strings);
+                writeString(out, message.getEvent().name(), strings);
+                writeString(out, message.getSource(), strings);
+
+                final Map<MessageProperty, StoredObject> properties = message.getProperties();
+
+                out.writeByte(properties.size());
+
+                for (final Map.Entry<MessageProperty, StoredObject> entry : properties.entrySet()) {
+                    writeString(out, entry.getKey().name(), strings);
+                    writeString(out, entry.getValue().getClass().getName(), strings);
+                    out.writeUTF(entry.getValue().getUuid());
+                }
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);   // not possible when writing to memory
+        }
+
+        return bytes.toByteArray();
+    }
+
+    static List<Message> decodeBatch(final byte[] payload, final Resolver resolver) throws IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+
+        if (in.readByte() != BATCH) {
+            throw new IOException("Not a message batch");
+        }
+
+        final List<String> strings = new ArrayList<>();
+
+        final int count = in.readInt();
+        final List<Message> messages = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            final MessageChannel channel = valueOf(MessageChannel.class, readString(in, strings));
+            final ChannelEvent event = valueOf(ChannelEvent.class, readString(in, strings));
+            final String source = readString(in, strings);
+
+            final Message message = new Message(channel, event, source);
+
+            final int size = in.readByte();
+
+            for (int j = 0; j < size; j++) {
+                final MessageProperty key = valueOf(MessageProperty.class, readString(in, strings));
+                final String className = readString(in, strings);
+                final String uuid = in.readUTF();
+
+                final StoredObject value = resolver.resolve(loadClass(className), uuid);
+
+                if (value != null) {
+                    message.setObject(key, value);
+                } else {
+                    logger.log(Level.WARNING, "Could not find {0} for uuid: {1}", new Object[]{className, uuid});
+                }
+            }
+
+            messages.add(message);
+        }
+
+        return messages;
+    }
+
+    /**
+     * Loads the class of a message property.  The name is read from the network, so the class is not initialized
+     * and only {@code StoredObject} classes are accepted.
+     *
+     * @param className name of the class
+     * @return the class
+     * @throws IOException if the class does not exist or is not a {@code StoredObject}
+     */
+    private static Class<? extends StoredObject> loadClass(final String className) throws IOException {
+        final Class<?> clazz;
+
+        try {
+            clazz = Class.forName(className, false, MessageCodec.class.getClassLoader());
+        } catch (final ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+
+        if (!StoredObject.class.isAssignableFrom(clazz)) {
+            throw new IOException("Not a stored object: " + className);
+        }
+
+        return clazz.asSubclass(StoredObject.class);
+    }
+
+    private static <E extends Enum<E>> E valueOf(final Class<E> enumType, final String name) throws IOException {
+        try {
+            return Enum.valueOf(enumType, name);
+        } catch (final IllegalArgumentException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static void writeString(final DataOutputStream out, final String string, final Map<String, Integer> strings)
+            throws IOException {
+        final Integer index = strings.get(string);
+
+        if (index != null) {
+            out.writeShort(index);
+        } else {
+            out.writeShort(NEW_STRING);
+            out.writeUTF(string);
+
+            if (strings.size() < Short.MAX_VALUE) {
+                strings.put(string, strings.size());
+            }
+        }
+    }
+
+    private static String readString(final DataInputStream in, final List<String> strings) throws IOException {
+        final int index = in.readShort();
+
+        if (index == NEW_STRING) {
+            final String string = in.readUTF();
+
+            if (strings.size() < Short.MAX_VALUE) {
+                strings.add(string);
+            }
+
+            return string;
+        }
+
+        if (index < 0 || index >= strings.size()) {
+            throw new IOException("Invalid string index: " + index);
+        }
+
+        return strings.get(index);
+    }
+}
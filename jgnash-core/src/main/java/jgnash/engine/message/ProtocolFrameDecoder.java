@@ -0,0 +1,120 @@
+/*
+ * jGnash, a personal finance application
+ * Copyright (C) 2001-2014 Craig Cavanaugh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jgnash.engine.message;
+
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.util.CharsetUtil;
+
+/**
+ * Decodes the frames of the remote message bus.
+ * <p/>
+ * Lines of the text protocol are decoded as a {@code String} until the line that switches the connection to the
+ * binary protocol has been read.  Length prefixed frames are then decoded as a {@code byte[]}.  The switch is made
+ * at the exact position of the line so no bytes are lost if both arrive in the same read.
+ *
+ * @author Craig Cavanaugh
+ */
+class ProtocolFrameDecoder extends ByteToMessageDecoder {
+
+    private static final int MAX_LINE_LENGTH = 8192;
+
+    static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+    private final String switchLine;
+
+    private volatile boolean binary = false;
+
+    /**
+     * Creates a new decoder
+     *
+     * @param switchLine line as it appears on the wire that switches the connection to the binary protocol
+     */
+    ProtocolFrameDecoder(final String switchLine) {
+        this.switchLine = switchLine;
+    }
+
+    @Override
+    protected void decode(final ChannelHandlerContext ctx, final ByteBuf in, final List<Object> out) throws Exception {
+        while (in.isReadable()) {
+            final Object frame = binary ? decodeFrame(in) : decodeLine(in);
+
+            if (frame == null) {
+                return; // wait for more data
+            }
+
+            out.add(frame);
+
+            if (!binary && switchLine.equals(frame)) {
+                binary = true;
+            }
+        }
+    }
+
+    private static String decodeLine(final ByteBuf in) throws TooLongFrameException {
+        final int end = in.indexOf(in.readerIndex(), in.writerIndex(), (byte) '\n');
+
+        if (end < 0) {
+            if (in.readableBytes() > MAX_LINE_LENGTH) {
+                in.skipBytes(in.readableBytes());
+                throw new TooLongFrameException("Line exceeds " + MAX_LINE_LENGTH + " bytes");
+            }
+            return null;
+        }
+
+        int length = end - in.readerIndex();
+
+        if (length > 0 && in.getByte(end - 1) == '\r') {
+            length--;
+        }
+
+        final String line = in.toString(in.readerIndex(), length, CharsetUtil.UTF_8);
+
+        in.readerIndex(end + 1);
+
+        return line;
+    }
+
+    private static byte[] decodeFrame(final ByteBuf in) throws TooLongFrameException {
+        if (in.readableBytes() < 4) {
+            return null;
+        }
+
+        final int length = in.getInt(in.readerIndex());
+
+        if (length < 0 || length > MAX_FRAME_LENGTH) {
+            in.skipBytes(in.readableBytes());
+            throw new TooLongFrameException("Invalid frame length: " + length);
+        }
+
+        if (in.readableBytes() < length + 4) {
+            return null;
+        }
+
+        in.skipBytes(4);
+
+        final byte[] payload = new byte[length];
+        in.readBytes(payload);
+
+        return payload;
+    }
+}
@@ -27,13 +27,25 @@ import java.nio.channels.FileLock;
 import java.nio.channels.OverlappingFileLockException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.thoughtworks.xstream.converters.ConversionException;
 import com.thoughtworks.xstream.converters.reflection.ReflectionProvider;
 import com.thoughtworks.xstream.hibernate.converter.*;
 import com.thoughtworks.xstream.hibernate.mapper.HibernateMapper;
@@ -44,6 +56,8 @@ import jgnash.engine.*;
 import jgnash.engine.budget.Budget;
 import jgnash.engine.budget.BudgetGoal;
 import jgnash.engine.budget.BudgetPeriod;
+import jgnash.engine.recurring.Reminder;
+import jgnash.util.DefaultDaemonThreadFactory;
 
 /**
  * Abstract XStream container
@@ -51,12 +65,56 @@ import jgnash.engine.budget.BudgetPeriod;
  * @author Craig Cavanaugh
  */
 abstract class AbstractXStreamContainer {
-    final List<StoredObject> objects = new ArrayList<>();
+
+    /**
+     * Stored objects indexed by uuid.  Insertion order is preserved
+     */
+    private final Map<String, StoredObject> objects = new LinkedHashMap<>();
+
+    /**
+     * Secondary index of stored objects by their concrete class
+     */
+    private final Map<Class<?>, Map<String, StoredObject>> classIndex = new HashMap<>();
+
     final ReadWriteLock readWriteLock = new ReentrantReadWriteLock(true);
     final File file;
     private FileLock fileLock = null;
     private FileChannel lockChannel = null;
 
+    /**
+     * Journal of changes since the last snapshot, {@code null} if journaling is not enabled
+     */
+    private Journal journal = null;
+
+    private ExecutorService compactionExecutor = null;
+
+    private final AtomicBoolean compacting = new AtomicBoolean(false);
+
+    private volatile BackgroundCommitter committer = null;
+
+    /**
+     * Counts down as objects are loaded in the background, {@code null} if nothing is being loaded
+     */
+    private volatile CountDownLatch loading = null;
+
+    /**
+     * First failure to load objects from the file, {@code null} if loading succeeded.  A container that failed to
+     * load does not commit so the incomplete contents never replace the file
+     */
+    private final AtomicReference<IOException> loadFailure = new AtomicReference<>();
+
+    /**
+     * Engine locks held while the stored objects to write are captured so changes made on other threads are excluded
+     *
+     * @see Engine#getSnapshotLocks(jgnash.engine.concurrent.LockManager)
+     */
+    private volatile List<Lock> snapshotLocks = Collections.emptyList();
+
+    /**
+     * Time in milliseconds to wait before retrying to acquire the snapshot locks
+     */
+    private static final long SNAPSHOT_LOCK_RETRY = 10;
+
     AbstractXStreamContainer(final File file) {
         this.file = file;
     }
@@ -83,6 +141,38 @@ abstract class AbstractXStreamContainer {
         return list;
     }
 
+    /**
+     * Returns the top level objects written to a file in the order they are written.  Objects marked for removal
+     * are not included.
+     *
+     * @param objects Collection of StoredObjects to write
+     * @return sorted list of the objects to write
+     */
+    static List<StoredObject> getWritableObjects(final Collection<StoredObject> objects) {
+        List<StoredObject> list = new ArrayList<>();
+
+        list.addAll(query(objects, Budget.class));
+        list.addAll(query(objects, Config.class));
+        list.addAll(query(objects, CommodityNode.class));
+        list.addAll(query(objects, ExchangeRate.class));
+        list.addAll(query(objects, RootAccount.class));
+        list.addAll(query(objects, Reminder.class));
+
+        // remove any objects marked for removal
+        Iterator<StoredObject> i = list.iterator();
+        while (i.hasNext()) {
+            StoredObject o = i.next();
+            if (o.isMarkedForRemoval()) {
+                i.remove();
+            }
+        }
+
+        // sort the list
+        Collections.sort(list, new StoredObjectComparator());
+
+        return list;
+    }
+
     static XStream configureXStream(final XStream xstream) {
         xstream.ignoreUnknownElements();    // gracefully ignore fields in the file that do not have object members
 
@@ -144,6 +234,7 @@ abstract class AbstractXStreamContainer {
         xstream.omitField(TransactionEntry.class, "id");
         xstream.omitField(ExchangeRateHistoryNode.class, "id");
         xstream.omitField(SecurityHistoryNode.class, "id");
+        xstream.omitField(Account.class, "transactionBalance");
 
         // Filters out the hibernate
         xstream.registerConverter(new HibernateProxyConverter());
@@ -185,6 +276,309 @@ abstract class AbstractXStreamContainer {
 
     abstract void commit();
 
+    /**
+     * Sets the engine locks that exclude changes to the stored objects.  Must be set before the engine is created.
+     *
+     * @param locks locks to hold while the stored objects to write are captured
+     */
+    void setSnapshotLocks(final List<Lock> locks) {
+        snapshotLocks = new ArrayList<>(locks);
+    }
+
+    /**
+     * Acquires the snapshot locks.  Must be called before any other lock or monitor of the container is acquired.
+     * <p/>
+     * Only the first lock is waited for.  The engine does not acquire its locks in a fixed order, so if any other
+     * lock is not available, all locks are released and acquiring them is retried.
+     */
+    private void lockObjects() {
+        final List<Lock> locks = snapshotLocks;
+
+        boolean interrupted = false;
+
+        while (true) {
+            int acquired = 0;
+
+            for (final Lock lock : locks) {
+                if (acquired == 0) {
+                    lock.lock();
+                } else if (!lock.tryLock()) {
+                    break;
+                }
+                acquired++;
+            }
+
+            if (acquired == locks.size()) {
+                break;
+            }
+
+            unlock(locks.subList(0, acquired));
+
+            try {
+                Thread.sleep(SNAPSHOT_LOCK_RETRY);
+            } catch (final InterruptedException e) {
+                interrupted = true; // the snapshot must still be written
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Releases the snapshot locks
+     */
+    private void unlockObjects() {
+        unlock(snapshotLocks);
+    }
+
+    private static void unlock(final List<Lock> locks) {
+        for (int i = locks.size() - 1; i >= 0; i--) {
+            locks.get(i).unlock();
+        }
+    }
+
+    /**
+     * Starts committing changes on a background thread
+     *
+     * @param maxCount number of changes that will trigger a commit
+     * @param maxDelay maximum time in milliseconds a change will remain uncommitted
+     * @see BackgroundCommitter
+     */
+    synchronized void startCommitter(final int maxCount, final long maxDelay) {
+        if (committer == null) {
+            committer = new BackgroundCommitter(this, maxCount, maxDelay);
+        }
+    }
+
+    /**
+     * Commits all pending changes and stops the background committer
+     */
+    void stopCommitter() {
+        final BackgroundCommitter oldCommitter;
+
+        synchronized (this) {
+            oldCommitter = committer;
+            committer = null;
+        }
+
+        if (oldCommitter != null) {
+            oldCommitter.shutdown(); // the container monitor must not be held while waiting for the final commit
+        }
+    }
+
+    /**
+     * Notifies the background committer of a change
+     */
+    void changed() {
+        final BackgroundCommitter backgroundCommitter = committer;
+
+        if (backgroundCommitter != null) {
+            backgroundCommitter.changed();
+        }
+    }
+
+    /**
+     * Commits all pending changes and waits for the commit to complete
+     */
+    void flush() {
+        final BackgroundCommitter backgroundCommitter = committer;
+
+        if (backgroundCommitter != null) {
+            backgroundCommitter.flush();
+        } else {
+            commit();
+        }
+    }
+
+    /**
+     * Captures the stored objects to write to the file.  Called with the snapshot locks held, so only references to
+     * the objects should be copied and serialization left to the returned writer.
+     *
+     * @return writer for the captured objects
+     */
+    abstract SnapshotWriter prepareSnapshot();
+
+    /**
+     * Writes all stored objects to the file.  Must be called before any other lock or monitor of the container is
+     * acquired.
+     *
+     * @return true if successful
+     * @see #writeSnapshot(jgnash.engine.xstream.AbstractXStreamContainer.SnapshotWriter)
+     */
+    boolean writeSnapshot() {
+        awaitLoaded();
+
+        final SnapshotWriter writer;
+
+        lockObjects();
+
+        try {
+            writer = prepareSnapshot();
+        } finally {
+            unlockObjects();
+        }
+
+        return writeSnapshot(writer);
+    }
+
+    /**
+     * Writes objects captured by {@link #prepareSnapshot()}.  The snapshot locks are only held while the objects are
+     * captured, so the engine is not blocked while they are serialized.  If an object is changed while it is
+     * serialized, the objects are captured and written again while holding the snapshot locks.
+     *
+     * @param writer writer for the captured objects
+     * @return true if successful
+     */
+    private boolean writeSnapshot(final SnapshotWriter writer) {
+        try {
+            return writer.write();
+        } catch (final ConversionException e) {
+            Logger.getLogger(AbstractXStreamContainer.class.getName()).log(Level.INFO,
+                    "An object changed while it was written, writing again while locked", e);
+
+            lockObjects();
+
+            try {
+                return prepareSnapshot().write();
+            } finally {
+                unlockObjects();
+            }
+        }
+    }
+
+    /**
+     * Replays any journal left by a previous session and optionally enables journaled commits.
+     * <p/>
+     * When journaling is enabled, commits append the changes since the previous commit to the journal instead of
+     * writing a new snapshot.  The snapshot is compacted in the background once the journal grows past
+     * {@link Journal#COMPACTION_THRESHOLD} and when the container is closed.
+     *
+     * @param enabled true to enable journaled commits
+     */
+    void openJournal(final boolean enabled) {
+        awaitLoaded();  // records may refer to objects that are still loading
+
+        final Journal existing = new Journal(Journal.getJournalFile(file), this);
+
+        if (existing.exists()) {
+            readWriteLock.writeLock().lock();
+
+            try {
+                final int count = existing.replay();
+
+                Logger.getLogger(AbstractXStreamContainer.class.getName()).log(Level.INFO,
+                        "Replayed {0} journal records", count);
+            } finally {
+                readWriteLock.writeLock().unlock();
+            }
+        }
+
+        if (enabled) {
+            journal = existing;
+            compactionExecutor = Executors.newSingleThreadExecutor(new DefaultDaemonThreadFactory());
+        } else if (existing.exists() && writeSnapshot()) {
+            existing.truncate();
+        }
+    }
+
+    boolean isJournaled() {
+        return journal != null;
+    }
+
+    /**
+     * Appends pending changes to the journal and schedules compaction if the journal has grown too large.  The
+     * snapshot locks are held while the records are serialized and written, but not while they are forced to the
+     * storage device.  Must be called before any other lock or monitor of the container is acquired.
+     *
+     * @return false if journaling is not enabled and a snapshot should be written instead
+     */
+    boolean commitJournal() {
+        if (journal == null) {
+            return false;
+        }
+
+        lockObjects();  // records are serialized as they are written
+
+        try {
+            journal.write();
+        } catch (final IOException e) {
+            Logger.getLogger(AbstractXStreamContainer.class.getName()).log(Level.SEVERE, e.getLocalizedMessage(), e);
+        } finally {
+            unlockObjects();
+        }
+
+        try {
+            journal.sync();
+        } catch (final IOException e) {
+            Logger.getLogger(AbstractXStreamContainer.class.getName()).log(Level.SEVERE, e.getLocalizedMessage(), e);
+        }
+
+        if (journal.size() > Journal.COMPACTION_THRESHOLD && !compactionExecutor.isShutdown()
+                && compacting.compareAndSet(false, true)) {
+            compactionExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        compact();
+                    } finally {
+                        compacting.set(false);
+                    }
+                }
+            });
+        }
+
+        return true;
+    }
+
+    /**
+     * Writes a new snapshot and discards the journal records it covers.  The length of the journal is captured with
+     * the objects, so records appended while the snapshot is written are kept and replayed over the new snapshot.
+     */
+    private void compact() {
+        awaitLoaded();
+
+        final long covered;
+        final SnapshotWriter writer;
+
+        lockObjects();
+
+        try {
+            covered = journal.size();
+            writer = prepareSnapshot();
+        } finally {
+            unlockObjects();
+        }
+
+        Logger.getLogger(AbstractXStreamContainer.class.getName()).info("Compacting journal");
+
+        if (writeSnapshot(writer)) {
+            journal.discard(covered);
+        }
+    }
+
+    /**
+     * Records an update to a stored object if journaling is enabled
+     *
+     * @param object updated object
+     */
+    void update(final StoredObject object) {
+        journal(Journal.Operation.UPDATE, object);
+    }
+
+    /**
+     * Records a change to a stored object if journaling is enabled
+     *
+     * @param operation journal operation
+     * @param object    changed object
+     */
+    void journal(final Journal.Operation operation, final StoredObject object) {
+        if (journal != null) {
+            journal.record(operation, object);
+        }
+    }
+
     boolean set(final StoredObject object) {
 
         boolean result = false;
@@ -192,8 +586,9 @@ abstract class AbstractXStreamContainer {
         readWriteLock.writeLock().lock();
 
         try {
-            if (get(object.getUuid()) == null) { // make sure the UUID is unique before adding
-                objects.add(object);
+            if (!objects.containsKey(object.getUuid())) { // make sure the UUID is unique before adding
+                index(object);
+                journal(Journal.Operation.SET, object);
             }
             result = true;
         } catch (final Exception ex) {
@@ -209,24 +604,45 @@ abstract class AbstractXStreamContainer {
         readWriteLock.writeLock().lock();
 
         try {
-            objects.remove(object);
+            if (objects.remove(object.getUuid()) != null) {
+                final Map<String, StoredObject> classObjects = classIndex.get(object.getClass());
+
+                if (classObjects != null) {
+                    classObjects.remove(object.getUuid());
+                }
+
+                journal(Journal.Operation.DELETE, object);
+            }
         } finally {
             readWriteLock.writeLock().unlock();
         }
     }
 
     StoredObject get(final String uuid) {
+        StoredObject result = find(uuid);
+
+        if (result == null && loading != null) {
+            awaitLoaded();
+            result = find(uuid);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns a stored object without waiting for objects that are loaded in the background
+     *
+     * @param uuid uuid of the object
+     * @return the object, {@code null} if it is not held or has not been loaded yet
+     */
+    StoredObject find(final String uuid) {
         StoredObject result = null;
 
         Lock l = readWriteLock.readLock();
         l.lock();
 
         try {
-            for (StoredObject o : objects) {
-                if (o.getUuid().equals(uuid)) {
-                    result = o;
-                }
-            }
+            result = objects.get(uuid);
         } finally {
             l.unlock();
         }
@@ -234,14 +650,23 @@ abstract class AbstractXStreamContainer {
         return result;
     }
 
+    @SuppressWarnings("unchecked")
     <T extends StoredObject> List<T> query(final Class<T> clazz) {
-        List<T> list = null;
+        if (clazz.isAssignableFrom(Transaction.class) || Transaction.class.isAssignableFrom(clazz)) {
+            awaitLoaded();  // transactions may still be loading
+        }
+
+        List<T> list = new ArrayList<>();
 
         Lock l = readWriteLock.readLock();
         l.lock();
 
         try {
-            list = query(objects, clazz);
+            for (final Map.Entry<Class<?>, Map<String, StoredObject>> entry : classIndex.entrySet()) {
+                if (clazz.isAssignableFrom(entry.getKey())) {
+                    list.addAll((Collection<T>) entry.getValue().values());
+                }
+            }
         } finally {
             l.unlock();
         }
@@ -249,7 +674,138 @@ abstract class AbstractXStreamContainer {
         return list;
     }
 
+    /**
+     * Adds objects loaded from a file to the indexes.  Objects are collected as they are instantiated so the uuid
+     * is not known until loading is complete.  The write lock must be held by the caller.
+     *
+     * @param loadedObjects the loaded objects
+     * @see StoredObjectReflectionProvider
+     */
+    void index(final Collection<StoredObject> loadedObjects) {
+        for (final StoredObject object : loadedObjects) {
+            if (!objects.containsKey(object.getUuid())) {
+                index(object);
+            }
+        }
+    }
+
+    private void index(final StoredObject object) {
+        objects.put(object.getUuid(), object);
+
+        Map<String, StoredObject> classObjects = classIndex.get(object.getClass());
+
+        if (classObjects == null) {
+            classObjects = new LinkedHashMap<>();
+            classIndex.put(object.getClass(), classObjects);
+        }
+
+        classObjects.put(object.getUuid(), object);
+    }
+
+    /**
+     * Returns a live view of all stored objects.  The read or write lock must be held by the caller.
+     *
+     * @return all stored objects
+     */
+    Collection<StoredObject> values() {
+        return objects.values();
+    }
+
+    /**
+     * Marks the start of loading objects in the background.  Callers that need every object will wait until
+     * the returned latch has been counted down once for each task.
+     *
+     * @param tasks number of background tasks
+     * @return latch to count down as each task completes
+     */
+    CountDownLatch beginBackgroundLoad(final int tasks) {
+        final CountDownLatch latch = new CountDownLatch(tasks);
+        loading = latch;
+        return latch;
+    }
+
+    /**
+     * Waits for objects loaded in the background.  Must not be called while holding the write lock.
+     */
+    void awaitLoaded() {
+        final CountDownLatch latch = loading;
+
+        if (latch != null) {
+            boolean interrupted = false;
+
+            while (true) {
+                try {
+                    latch.await();
+                    break;
+                } catch (final InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+
+            loading = null;
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Records a failure to load objects from the file.  Only the first failure is kept.
+     *
+     * @param e cause of the failure
+     */
+    void loadFailed(final IOException e) {
+        Logger.getLogger(AbstractXStreamContainer.class.getName()).log(Level.SEVERE, e.getLocalizedMessage(), e);
+
+        loadFailure.compareAndSet(null, e);
+    }
+
+    /**
+     * Determines if loading the file failed
+     *
+     * @return true if objects could not be loaded and the container must not be committed
+     */
+    boolean isLoadFailed() {
+        return loadFailure.get() != null;
+    }
+
+    /**
+     * Waits for objects loaded in the background and reports any failure to load them.  Must not be called while
+     * holding the write lock.
+     *
+     * @throws IOException if any part of the file could not be loaded
+     */
+    void checkLoaded() throws IOException {
+        awaitLoaded();
+
+        final IOException e = loadFailure.get();
+
+        if (e != null) {
+            throw new IOException("Could not load " + file.getAbsolutePath(), e);
+        }
+    }
+
     void close() {
+        awaitLoaded();
+        stopCommitter();
+
+        if (journal != null) {
+            compactionExecutor.shutdown();
+
+            try {
+                compactionExecutor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (final InterruptedException e) {
+                Logger.getLogger(AbstractXStreamContainer.class.getName()).log(Level.SEVERE, e.getLocalizedMessage(), e);
+            }
+
+            commitJournal();    // journal remains intact if the final snapshot fails
+            compact();
+
+            journal.close();
+            journal = null;
+        }
+
         releaseFileLock();
     }
 
@@ -268,12 +824,14 @@ abstract class AbstractXStreamContainer {
      * @see jgnash.engine.StoredObject
      */
     List<StoredObject> asList() {
+        awaitLoaded();
+
         ArrayList<StoredObject> list = null;
 
         readWriteLock.readLock().lock();
 
         try {
-            list = new ArrayList<>(objects);
+            list = new ArrayList<>(objects.values());
         } finally {
             readWriteLock.readLock().unlock();
         }
@@ -281,6 +839,20 @@ abstract class AbstractXStreamContainer {
         return list;
     }
 
+    /**
+     * Writes stored objects captured while the snapshot locks were held
+     */
+    interface SnapshotWriter {
+
+        /**
+         * Serializes the captured objects and writes them to the file
+         *
+         * @return true if successful
+         * @throws ConversionException if an object was changed while it was serialized
+         */
+        boolean write();
+    }
+
     static class XStreamOut extends XStream {
 
         public XStreamOut(final ReflectionProvider reflectionProvider, final HierarchicalStreamDriver hierarchicalStreamDriver) {
@@ -18,8 +18,6 @@
 package jgnash.engine.xstream;
 
 import java.util.Objects;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.ReentrantLock;
 
 import jgnash.engine.StoredObject;
 import jgnash.engine.dao.AbstractDAO;
@@ -36,13 +34,18 @@ abstract class AbstractXStreamDAO extends AbstractDAO {
      */
     static final int MAX_COMMIT_TIME = 30; // seconds
 
-    static final AtomicInteger commitCount = new AtomicInteger(0);
-
-    AbstractXStreamContainer container;
+    /**
+     * Maximum time in seconds before a journaled commit will occur.  Changes made within this time are appended to
+     * the journal together.
+     */
+    static final int MAX_JOURNAL_COMMIT_TIME = 1; // seconds
 
-    private static final ReentrantLock commitLock = new ReentrantLock();
+    /**
+     * Maximum number of changes before a commit will occur
+     */
+    static final int MAX_COMMIT_COUNT = 250;
 
-    private static final int MAX_COMMIT_COUNT = 250;
+    AbstractXStreamContainer container;
 
     AbstractXStreamDAO(final AbstractXStreamContainer container) {
         Objects.requireNonNull(container);
@@ -68,19 +71,6 @@ abstract class AbstractXStreamDAO extends AbstractDAO {
     }
 
     final void commit() {
-        if (commitCount.getAndIncrement() >= MAX_COMMIT_COUNT) {
-            commitAndReset();
-        }
-    }
-
-    final void commitAndReset() {
-        commitLock.lock();
-
-        try {
-            commitCount.set(0);
-            container.commit();
-        } finally {
-            commitLock.unlock();
-        }
+        container.changed();
     }
 }
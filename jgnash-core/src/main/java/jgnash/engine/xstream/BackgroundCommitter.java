@@ -0,0 +1,153 @@
+/*
+ * jGnash, a personal finance application
+ * Copyright (C) 2001-2014 Craig Cavanaugh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jgnash.engine.xstream;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jgnash.util.DefaultDaemonThreadFactory;
+
+/**
+ * Commits an {@code AbstractXStreamContainer} on a dedicated background thread.
+ * <p/>
+ * A commit is requested once the number of changes reaches a limit or once the oldest uncommitted change reaches a
+ * maximum age, whichever occurs first.  At most one commit is queued at any time, so a burst of changes made while a
+ * commit is queued or running is merged into the next commit.
+ * <p/>
+ * The container holds the engine's snapshot locks only while it captures the objects to write, so changes made while
+ * the objects are serialized and written do not wait for the commit to finish.
+ *
+ * @author Craig Cavanaugh
+ */
+final class BackgroundCommitter {
+
+    private static final Logger logger = Logger.getLogger(BackgroundCommitter.class.getName());
+
+    private final AbstractXStreamContainer container;
+
+    private final int maxCount;
+
+    private final long maxDelay;
+
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Number of changes since the last commit started
+     */
+    private final AtomicInteger changeCount = new AtomicInteger(0);
+
+    /**
+     * True if a commit is queued and has not started yet
+     */
+    private final AtomicBoolean queued = new AtomicBoolean(false);
+
+    /**
+     * True if a commit is scheduled for the maximum age of the oldest change
+     */
+    private final AtomicBoolean timerScheduled = new AtomicBoolean(false);
+
+    private final Runnable commitTask = new Runnable() {
+        @Override
+        public void run() {
+            queued.set(false);
+            commit();
+        }
+    };
+
+    private final Runnable timerTask = new Runnable() {
+        @Override
+        public void run() {
+            timerScheduled.set(false);
+            commit();
+        }
+    };
+
+    /**
+     * Creates and starts a new committer
+     *
+     * @param container container to commit
+     * @param maxCount  number of changes that will trigger a commit
+     * @param maxDelay  maximum time in milliseconds a change will remain uncommitted
+     */
+    BackgroundCommitter(final AbstractXStreamContainer container, final int maxCount, final long maxDelay) {
+        this.container = container;
+        this.maxCount = maxCount;
+        this.maxDelay = maxDelay;
+
+        executor = Executors.newSingleThreadScheduledExecutor(new DefaultDaemonThreadFactory());
+    }
+
+    /**
+     * Records a change and requests a commit if needed.  The caller does not wait for the commit.
+     */
+    void changed() {
+        if (changeCount.incrementAndGet() >= maxCount) {
+            if (queued.compareAndSet(false, true)) {
+                execute(commitTask, 0);
+            }
+        } else if (timerScheduled.compareAndSet(false, true)) {
+            execute(timerTask, maxDelay);
+        }
+    }
+
+    /**
+     * Commits all changes and waits for the commit to complete
+     */
+    void flush() {
+        try {
+            executor.submit(commitTask).get();
+        } catch (final RejectedExecutionException e) {
+            commit();   // the executor has been shutdown, commit on the calling thread
+        } catch (final InterruptedException | ExecutionException e) {
+            logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
+        }
+    }
+
+    /**
+     * Commits all changes and stops the committer thread
+     */
+    void shutdown() {
+        flush();
+
+        executor.shutdownNow();   // discards the scheduled timer
+    }
+
+    private void execute(final Runnable task, final long delay) {
+        try {
+            executor.schedule(task, delay, TimeUnit.MILLISECONDS);
+        } catch (final RejectedExecutionException e) {
+            logger.log(Level.WARNING, "Committer has been shutdown", e);
+        }
+    }
+
+    /**
+     * Commits the container if any changes have been made
+     */
+    private void commit() {
+        if (changeCount.getAndSet(0) > 0) {
+            container.commit();
+        }
+    }
+}
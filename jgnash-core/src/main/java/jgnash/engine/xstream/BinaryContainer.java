@@ -19,153 +19,527 @@ package jgnash.engine.xstream;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
-import jgnash.engine.CommodityNode;
-import jgnash.engine.Config;
-import jgnash.engine.ExchangeRate;
-import jgnash.engine.RootAccount;
+import jgnash.engine.Account;
+import jgnash.engine.DeferredTransactionLoader;
 import jgnash.engine.StoredObject;
-import jgnash.engine.StoredObjectComparator;
-import jgnash.engine.budget.Budget;
-import jgnash.engine.recurring.Reminder;
-import jgnash.util.FileUtils;
+import jgnash.engine.Transaction;
+import jgnash.util.DefaultDaemonThreadFactory;
+import jgnash.util.FileMagic;
 
 import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.converters.ConversionException;
 import com.thoughtworks.xstream.converters.reflection.PureJavaReflectionProvider;
 import com.thoughtworks.xstream.io.binary.BinaryStreamDriver;
 
 /**
  * Simple object container for StoredObjects that reads and writes a binary file
  * using XStream.
+ * <p/>
+ * Files are written as a header followed by Deflater compressed sections.  The first section holds all objects
+ * except the transactions of accounts, which are written in chunks of up to {@value #CHUNK_SIZE} transactions that
+ * refer to other objects by uuid.  Each chunk is preceded by the uuids of the accounts it contains transactions for.
+ * <p/>
+ * When a file is read, the first section is loaded before returning and the chunks are loaded in parallel in the
+ * background.  Access to the transactions of an account waits only for the chunks containing the account.  If
+ * any section cannot be loaded, the failure is reported by {@link #checkLoaded()} and the container refuses to
+ * commit so the file is not overwritten with missing transactions.
+ * Uncompressed files and single section compressed files written by prior releases are still read.
  *
  * @author Craig Cavanaugh
  */
 class BinaryContainer extends AbstractXStreamContainer {
 
+    /**
+     * Buffer size used for compression
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Compressed format with a single section
+     */
+    private static final int SINGLE_SECTION_VERSION = 1;
+
+    /**
+     * Compressed format with transactions written in separate chunks
+     */
+    private static final int CHUNKED_VERSION = 2;
+
+    /**
+     * Maximum number of transactions in a chunk
+     */
+    private static final int CHUNK_SIZE = 2000;
+
     BinaryContainer(final File file) {
         super(file);
     }
 
     @Override
     void commit() {
-        writeBinary();
+        if (isLoadFailed()) {
+            Logger.getLogger(BinaryContainer.class.getName()).severe("The file was not loaded completely and will not be written");
+            return;
+        }
+
+        if (!commitJournal()) {
+            writeSnapshot();
+        }
     }
 
-    private synchronized void writeBinary() {
+    @Override
+    SnapshotWriter prepareSnapshot() {
+        final List<StoredObject> list;
+        final List<List<Transaction>> chunks;
+
         readWriteLock.readLock().lock();
 
+        try {
+            list = getWritableObjects(values());
+            chunks = partitionTransactions(values());
+        } finally {
+            readWriteLock.readLock().unlock();
+        }
+
+        return new SnapshotWriter() {
+            @Override
+            public boolean write() {
+                return writeBinary(list, chunks);
+            }
+        };
+    }
+
+    private synchronized boolean writeBinary(final List<StoredObject> list, final List<List<Transaction>> chunks) {
+        if (isLoadFailed()) {
+            Logger.getLogger(BinaryContainer.class.getName()).severe("The file was not loaded completely and will not be written");
+            return false;
+        }
+
         try {
             releaseFileLock();
-            writeBinary(objects, file);
+            return writeBinary(list, chunks, file);
         } finally {
             if (!acquireFileLock()) { // lock the file on open
                 Logger.getLogger(BinaryContainer.class.getName()).severe("Could not acquire the file lock");
             }
-            readWriteLock.readLock().unlock();
         }
     }
 
     /**
-     * Writes an XML file given a collection of StoredObjects. TrashObjects and
-     * objects marked for removal are not written. If the file already exists,
-     * it will be overwritten.
+     * Writes a compressed binary file given a collection of StoredObjects. TrashObjects and
+     * objects marked for removal are not written.
+     * <p/>
+     * The file is written to a temporary file which then replaces the existing file with an atomic rename, so an
+     * interrupted write will not damage the existing file.
      *
      * @param objects Collection of StoredObjects to write
      * @param file    file to write
+     * @return true if successful
+     */
+    public static synchronized boolean writeBinary(final Collection<StoredObject> objects, final File file) {
+        return writeBinary(getWritableObjects(objects), partitionTransactions(objects), file);
+    }
+
+    /**
+     * Writes a compressed binary file given the top level objects and the transactions partitioned into chunks
+     *
+     * @param list   sorted top level objects to write
+     * @param chunks transactions to write
+     * @param file   file to write
+     * @return true if successful
+     * @throws ConversionException if an object was changed while it was serialized
      */
-    public static synchronized void writeBinary(final Collection<StoredObject> objects, final File file) {
+    private static synchronized boolean writeBinary(final List<StoredObject> list, final List<List<Transaction>> chunks,
+                                                    final File file) {
         Logger logger = Logger.getLogger(BinaryContainer.class.getName());
 
-        if (file.exists()) {
-            File backup = new File(file.getAbsolutePath() + ".backup");
-            if (backup.exists()) {
-                if (!backup.delete()) {
-                    logger.log(Level.WARNING, "Was not able to delete the old backup file: {0}",
-                            backup.getAbsolutePath());
+        logger.info("Writing Binary file");
+
+        final Path path = file.getAbsoluteFile().toPath();
+
+        Path tempPath = null;
+
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+        try {
+            tempPath = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath),
+                    BUFFER_SIZE))) {
+                out.write(FileMagic.getCompressedBinaryXStreamHeader(CHUNKED_VERSION));
+
+                // account transactions are written in separate chunks
+                XStream xstream = configureXStream(new XStreamOut(new PureJavaReflectionProvider(), new BinaryStreamDriver()));
+                xstream.omitField(Account.class, "transactions");
+
+                writeSection(out, xstream, Collections.<Account>emptySet(), list, deflater);
+
+                XStream chunkXStream = configureXStream(new XStreamOut(new PureJavaReflectionProvider(), new BinaryStreamDriver()));
+                chunkXStream.registerConverter(new StoredObjectReferenceConverter(chunkXStream) {
+                    @Override
+                    boolean isReference(final StoredObject object) {
+                        return true;
+                    }
+
+                    @Override
+                    StoredObject resolve(final String uuid) {
+                        // references are resolved against the loaded objects by the reading container
+                        throw new IllegalStateException("References cannot be resolved by an XStream instance used for writing");
+                    }
+                }, XStream.PRIORITY_VERY_HIGH);
+
+                for (final List<Transaction> chunk : chunks) {
+                    final Set<Account> accounts = new LinkedHashSet<>();
+
+                    for (final Transaction transaction : chunk) {
+                        accounts.addAll(transaction.getAccounts());
+                    }
+
+                    writeSection(out, chunkXStream, accounts, chunk, deflater);
                 }
             }
 
-            FileUtils.copyFile(file, backup);
+            // force the contents to disk before the rename makes them visible
+            try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+
+            try {
+                Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
+
+            deleteTempFile(tempPath);
+
+            return false;
+        } catch (final ConversionException e) {
+            deleteTempFile(tempPath);
+
+            throw e;
+        } finally {
+            deflater.end();
         }
 
-        List<StoredObject> list = new ArrayList<>();
+        logger.info("Writing Binary file complete");
 
-        list.addAll(query(objects, Budget.class));
-        list.addAll(query(objects, Config.class));
-        list.addAll(query(objects, CommodityNode.class));
-        list.addAll(query(objects, ExchangeRate.class));
-        list.addAll(query(objects, RootAccount.class));
-        list.addAll(query(objects, Reminder.class));
+        return true;
+    }
 
-        // remove any objects marked for removal
-        Iterator<StoredObject> i = list.iterator();
-        while (i.hasNext()) {
-            StoredObject o = i.next();
-            if (o.isMarkedForRemoval()) {
-                i.remove();
+    /**
+     * Partitions the transactions of all accounts into chunks.  The transactions of an account are kept together
+     * so an account depends on as few chunks as possible when loaded.
+     *
+     * @param objects Collection of StoredObjects to partition the transactions of
+     * @return list of chunks
+     */
+    private static List<List<Transaction>> partitionTransactions(final Collection<StoredObject> objects) {
+        final List<List<Transaction>> chunks = new ArrayList<>();
+        final Set<Transaction> partitioned = new HashSet<>();
+
+        List<Transaction> chunk = new ArrayList<>();
+
+        for (final Account account : query(objects, Account.class)) {
+            if (account.isMarkedForRemoval()) {
+                continue;
+            }
+
+            for (final Transaction transaction : account.getSortedTransactionList()) {
+                if (partitioned.add(transaction)) {
+                    chunk.add(transaction);
+
+                    if (chunk.size() == CHUNK_SIZE) {
+                        chunks.add(chunk);
+                        chunk = new ArrayList<>();
+                    }
+                }
             }
         }
 
-        // sort the list
-        Collections.sort(list, new StoredObjectComparator());
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
 
-        logger.info("Writing Binary file");
+        return chunks;
+    }
 
-        try (OutputStream os = new BufferedOutputStream(new FileOutputStream(file))) {
+    private static void writeSection(final DataOutputStream out, final XStream xstream, final Collection<Account> accounts,
+                                     final Object object, final Deflater deflater) throws IOException {
+        out.writeInt(accounts.size());
 
-            XStream xstream = configureXStream(new XStreamOut(new PureJavaReflectionProvider(), new BinaryStreamDriver()));
+        for (final Account account : accounts) {
+            out.writeUTF(account.getUuid());
+        }
 
-            try (ObjectOutputStream out = xstream.createObjectOutputStream(os)) {
-                out.writeObject(list);
-                out.flush();
-            }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(BUFFER_SIZE);
 
-            os.flush(); // forcibly flush before letting go of the resources to help older windows systems write correctly
-        } catch (IOException e) {
-            logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
+        deflater.reset();
+
+        try (ObjectOutputStream objectOut = xstream.createObjectOutputStream(new BufferedOutputStream(
+                new DeflaterOutputStream(bytes, deflater, BUFFER_SIZE), BUFFER_SIZE))) {
+            objectOut.writeObject(object);
         }
 
-        logger.info("Writing Binary file complete");
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+    }
+
+    private static void deleteTempFile(final Path tempPath) {
+        if (tempPath != null) {
+            try {
+                Files.deleteIfExists(tempPath);
+            } catch (final IOException e) {
+                Logger.getLogger(BinaryContainer.class.getName()).log(Level.WARNING, e.getLocalizedMessage(), e);
+            }
+        }
     }
 
     void readBinary() {
-        try (FileInputStream fis = new FileInputStream(file);
-             BufferedInputStream inputStream = new BufferedInputStream(fis)) {
+        final int version = FileMagic.getCompressedBinaryXStreamVersion(file);
 
-            readWriteLock.writeLock().lock();
+        final Inflater inflater = new Inflater();
 
-            XStream xstream = configureXStream(new XStream(new StoredObjectReflectionProvider(objects),
-                    new BinaryStreamDriver()));
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
 
-            try (ObjectInputStream in = xstream.createObjectInputStream(inputStream);
-                 FileLock readLock = fis.getChannel().tryLock(0, Long.MAX_VALUE, true)) {
+            readWriteLock.writeLock().lock();
+
+            try (FileLock readLock = channel.tryLock(0, Long.MAX_VALUE, true)) {
                 if (readLock != null) {
-                    in.readObject();
+                    InputStream inputStream = new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE);
+
+                    if (version > 0) {
+                        // skip past the header
+                        new DataInputStream(inputStream).readFully(new byte[FileMagic.getCompressedBinaryXStreamHeader(version).length]);
+                    }
+
+                    if (version >= CHUNKED_VERSION) {
+                        readSections(new DataInputStream(inputStream));
+                    } else {
+                        if (version == SINGLE_SECTION_VERSION) {
+                            inputStream = new BufferedInputStream(new InflaterInputStream(inputStream, inflater,
+                                    BUFFER_SIZE), BUFFER_SIZE);
+                        }
+
+                        final List<StoredObject> loadedObjects = new ArrayList<>();
+
+                        XStream xstream = configureXStream(new XStream(new StoredObjectReflectionProvider(loadedObjects),
+                                new BinaryStreamDriver()));
+
+                        try (ObjectInputStream in = xstream.createObjectInputStream(inputStream)) {
+                            in.readObject();
+                            index(loadedObjects);
+                        }
+                    }
                 }
             }
 
-        } catch (IOException | ClassNotFoundException e) {
-            Logger.getLogger(BinaryContainer.class.getName()).log(Level.SEVERE, null, e);
+        } catch (final IOException e) {
+            loadFailed(e);
+        } catch (final ClassNotFoundException e) {
+            loadFailed(new IOException(e));
         } finally {
+            inflater.end();
+
             if (!acquireFileLock()) { // lock the file on open
                 Logger.getLogger(BinaryContainer.class.getName()).severe("Could not acquire the file lock");
             }
             readWriteLock.writeLock().unlock();
         }
     }
+
+    /**
+     * Loads the first section and starts loading the transaction chunks in the background.  The write lock must be
+     * held by the caller.
+     *
+     * @param in stream positioned after the header
+     */
+    private void readSections(final DataInputStream in) throws IOException, ClassNotFoundException {
+        final List<StoredObject> loadedObjects = new ArrayList<>();
+
+        XStream xstream = configureXStream(new XStream(new StoredObjectReflectionProvider(loadedObjects),
+                new BinaryStreamDriver()));
+        xstream.omitField(Account.class, "transactions");
+
+        readObject(xstream, readSection(in).data);
+        index(loadedObjects);
+
+        final List<Section> chunks = new ArrayList<>();
+
+        for (Section section = readSection(in); section != null; section = readSection(in)) {
+            chunks.add(section);
+        }
+
+        if (chunks.isEmpty()) {
+            return;
+        }
+
+        final List<Collection<Account>> chunkAccounts = new ArrayList<>();
+
+        for (final Section chunk : chunks) {
+            final List<Account> accounts = new ArrayList<>();
+
+            for (final String uuid : chunk.accounts) {
+                final StoredObject object = find(uuid);
+
+                if (object instanceof Account) {
+                    accounts.add((Account) object);
+                }
+            }
+
+            chunkAccounts.add(accounts);
+        }
+
+        final DeferredTransactionLoader loader = new DeferredTransactionLoader(chunkAccounts);
+
+        final CountDownLatch loadingLatch = beginBackgroundLoad(chunks.size());
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(chunks.size(),
+                Runtime.getRuntime().availableProcessors()), new DefaultDaemonThreadFactory());
+
+        for (int i = 0; i < chunks.size(); i++) {
+            final int chunk = i;
+            final byte[] data = chunks.get(i).data;
+
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        loadTransactions(loader, chunk, data);
+                    } catch (final IOException e) {
+                        loadFailed(e);
+                        loader.release(chunk);
+                    } catch (ClassNotFoundException | RuntimeException e) {
+                        loadFailed(new IOException("Could not load transaction chunk " + chunk, e));
+                        loader.release(chunk);
+                    } finally {
+                        loadingLatch.countDown();
+                    }
+                }
+            });
+        }
+
+        executor.shutdown();    // threads exit once the chunks are loaded
+
+        Logger.getLogger(BinaryContainer.class.getName()).log(Level.INFO, "Loading {0} transaction chunks",
+                chunks.size());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void loadTransactions(final DeferredTransactionLoader loader, final int chunk, final byte[] data)
+            throws IOException, ClassNotFoundException {
+
+        final List<StoredObject> loadedObjects = new ArrayList<>();
+
+        XStream xstream = configureXStream(new XStream(new StoredObjectReflectionProvider(loadedObjects),
+                new BinaryStreamDriver()));
+
+        xstream.registerConverter(new StoredObjectReferenceConverter(xstream) {
+            @Override
+            boolean isReference(final StoredObject object) {
+                return true;
+            }
+
+            @Override
+            StoredObject resolve(final String uuid) {
+                return find(uuid);
+            }
+        }, XStream.PRIORITY_VERY_HIGH);
+
+        final List<Transaction> transactions = (List<Transaction>) readObject(xstream, data);
+
+        readWriteLock.writeLock().lock();
+
+        try {
+            index(loadedObjects);
+        } finally {
+            readWriteLock.writeLock().unlock();
+        }
+
+        loader.attach(chunk, transactions);
+    }
+
+    private static Object readObject(final XStream xstream, final byte[] data) throws IOException, ClassNotFoundException {
+        final Inflater inflater = new Inflater();
+
+        try (ObjectInputStream in = xstream.createObjectInputStream(new BufferedInputStream(new InflaterInputStream(
+                new ByteArrayInputStream(data), inflater, BUFFER_SIZE), BUFFER_SIZE))) {
+            return in.readObject();
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Reads the next section
+     *
+     * @param in stream to read from
+     * @return the section, {@code null} if the end of the file has been reached
+     */
+    private static Section readSection(final DataInputStream in) throws IOException {
+        final int accountCount;
+
+        try {
+            accountCount = in.readInt();
+        } catch (final EOFException e) {
+            return null;
+        }
+
+        final List<String> accounts = new ArrayList<>(accountCount);
+
+        for (int i = 0; i < accountCount; i++) {
+            accounts.add(in.readUTF());
+        }
+
+        final byte[] data = new byte[in.readInt()];
+        in.readFully(data);
+
+        return new Section(accounts, data);
+    }
+
+    private static class Section {
+
+        final List<String> accounts;
+
+        final byte[] data;
+
+        Section(final List<String> accounts, final byte[] data) {
+            this.accounts = accounts;
+            this.data = data;
+        }
+    }
 }
@@ -18,17 +18,21 @@
 package jgnash.engine.xstream;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import jgnash.engine.Config;
 import jgnash.engine.DataStore;
 import jgnash.engine.DataStoreType;
 import jgnash.engine.Engine;
+import jgnash.engine.EngineFactory;
 import jgnash.engine.StoredObject;
 import jgnash.engine.attachment.LocalAttachmentManager;
 import jgnash.engine.concurrent.LocalLockManager;
+import jgnash.engine.concurrent.LockManager;
 import jgnash.util.Resource;
 
 /**
@@ -52,7 +56,7 @@ public class BinaryXStreamDataStore implements DataStore {
      */
     @Override
     public void closeEngine() {
-        container.commit(); // force a commit
+        container.flush(); // force a commit
         container.close();
 
         container = null;
@@ -72,9 +76,27 @@ public class BinaryXStreamDataStore implements DataStore {
 
         if (file.exists()) {
             container.readBinary();
+
+            try {
+                container.checkLoaded();
+            } catch (final IOException e) {
+                logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
+
+                container.close();  // nothing is written over the file
+                container = null;
+
+                return null;
+            }
         }
 
-        Engine engine = new Engine(new XStreamEngineDAO(container), new LocalLockManager(), new LocalAttachmentManager(), engineName);
+        final LockManager lockManager = new LocalLockManager();
+
+        // background commits hold the engine locks while the objects are serialized
+        container.setSnapshotLocks(Engine.getSnapshotLocks(lockManager));
+
+        container.openJournal(EngineFactory.useJournal());
+
+        Engine engine = new Engine(new XStreamEngineDAO(container), lockManager, new LocalAttachmentManager(), engineName);
 
         logger.info("Created local Binary container and engine");
 
@@ -146,6 +168,10 @@ public class BinaryXStreamDataStore implements DataStore {
      */
     @Override
     public void saveAs(final File file, final Collection<StoredObject> objects) {
+        if (container != null) {
+            container.flush();  // complete any commit of the open file before writing
+        }
+
         BinaryContainer.writeBinary(objects, file);
     }
 
@@ -0,0 +1,462 @@
+/*
+ * jGnash, a personal finance application
+ * Copyright (C) 2001-2014 Craig Cavanaugh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jgnash.engine.xstream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import jgnash.engine.Account;
+import jgnash.engine.JournalReplay;
+import jgnash.engine.StoredObject;
+import jgnash.engine.Transaction;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.io.xml.CompactWriter;
+import com.thoughtworks.xstream.io.xml.KXml2Driver;
+
+/**
+ * Append-only journal of changes made to the objects of an {@code AbstractXStreamContainer}.
+ * <p/>
+ * Changes are recorded in memory as objects are stored, updated and deleted and are appended to a sidecar file when
+ * the container commits.  Each record holds a single object and other stored objects it refers to are written as a
+ * uuid reference, so the cost of a commit follows the size of the change instead of the size of the file.
+ * <p/>
+ * The journal is replayed over the snapshot when the file is opened.  Replaying a record more than once has no
+ * additional effect, so records written while a new snapshot is being compacted are safe to replay.
+ * <p/>
+ * The transaction set of an {@code Account} is not journaled. It is rebuilt from the transaction records instead.
+ *
+ * @author Craig Cavanaugh
+ */
+final class Journal {
+
+    /**
+     * Journal operations.  The codes are persisted and must not change.
+     */
+    enum Operation {
+        SET(1, true),
+        UPDATE(2, true),
+        DELETE(3, false),
+        ADD_TRANSACTION(4, true),
+        REMOVE_TRANSACTION(5, false);
+
+        final byte code;
+
+        final boolean hasPayload;
+
+        Operation(final int code, final boolean hasPayload) {
+            this.code = (byte) code;
+            this.hasPayload = hasPayload;
+        }
+
+        static Operation fromCode(final byte code) throws IOException {
+            for (final Operation operation : values()) {
+                if (operation.code == code) {
+                    return operation;
+                }
+            }
+            throw new IOException("Unknown journal operation: " + code);
+        }
+    }
+
+    static final String FILE_EXT = ".journal";
+
+    /**
+     * Journal size in bytes that triggers compaction into a new snapshot
+     */
+    static final long COMPACTION_THRESHOLD = 4 * 1024 * 1024;
+
+    private static final Logger logger = Logger.getLogger(Journal.class.getName());
+
+    private final File file;
+
+    private final AbstractXStreamContainer container;
+
+    private final XStream xstream;
+
+    /**
+     * Stored objects instantiated while a record is replayed
+     */
+    private final List<StoredObject> loadedObjects = new ArrayList<>();
+
+    /**
+     * Records that have not been written yet.  Objects are serialized when written so the latest state is captured.
+     */
+    private final List<Record> pending = new ArrayList<>();
+
+    /**
+     * Latest pending record carrying a payload for each uuid.  Used to coalesce repeated updates of an object.
+     */
+    private final Map<String, Record> pendingPayloads = new HashMap<>();
+
+    private DataOutputStream out;
+
+    /**
+     * Underlying file stream of {@code out}, used to force written records to the storage device
+     */
+    private FileOutputStream fileOut;
+
+    private long size;
+
+    Journal(final File file, final AbstractXStreamContainer container) {
+        this.file = file;
+        this.container = container;
+
+        size = file.length();
+
+        xstream = AbstractXStreamContainer.configureXStream(new XStream(new StoredObjectReflectionProvider(loadedObjects),
+                new KXml2Driver()));
+
+        // account transaction sets are rebuilt from the transaction records
+        xstream.omitField(Account.class, "transactions");
+
+        // stored objects held by the container are written as a reference, others are written in full
+        xstream.registerConverter(new StoredObjectReferenceConverter(xstream) {
+            @Override
+            boolean isReference(final StoredObject object) {
+                return container.find(object.getUuid()) == object;
+            }
+
+            @Override
+            StoredObject resolve(final String uuid) {
+                return container.find(uuid);
+            }
+        }, XStream.PRIORITY_VERY_HIGH);
+    }
+
+    static File getJournalFile(final File file) {
+        return new File(file.getAbsolutePath() + FILE_EXT);
+    }
+
+    /**
+     * Records a change to a stored object
+     *
+     * @param operation journal operation
+     * @param object    changed object
+     */
+    void record(final Operation operation, final StoredObject object) {
+        synchronized (pending) {
+            final Record last = pendingPayloads.get(object.getUuid());
+
+            if (last != null) {
+                if (operation == Operation.UPDATE) {
+                    return; // the pending record will capture the latest state
+                }
+
+                if (operation == Operation.ADD_TRANSACTION && last.operation == Operation.SET) {
+                    last.operation = operation;
+                    return;
+                }
+            }
+
+            final Record record = new Record(operation, object);
+
+            pending.add(record);
+
+            if (operation.hasPayload) {
+                pendingPayloads.put(object.getUuid(), record);
+            } else {
+                pendingPayloads.remove(object.getUuid());
+            }
+        }
+    }
+
+    /**
+     * Appends all pending records to the journal file.  The records are durable once {@link #sync()} returns.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    synchronized void write() throws IOException {
+        final List<Record> records;
+
+        synchronized (pending) {
+            records = new ArrayList<>(pending);
+            pending.clear();
+            pendingPayloads.clear();
+        }
+
+        if (records.isEmpty()) {
+            return;
+        }
+
+        if (out == null) {
+            fileOut = new FileOutputStream(file, true);
+            out = new DataOutputStream(new BufferedOutputStream(fileOut));
+        }
+
+        for (final Record record : records) {
+            write(record);
+        }
+
+        out.flush();
+    }
+
+    /**
+     * Forces the written records to the storage device
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    synchronized void sync() throws IOException {
+        if (fileOut != null) {
+            fileOut.getFD().sync();
+        }
+    }
+
+    /**
+     * Returns the size of the journal file
+     *
+     * @return size in bytes
+     */
+    synchronized long size() {
+        return size;
+    }
+
+    synchronized boolean exists() {
+        return file.exists();
+    }
+
+    /**
+     * Discards the journal file after its contents have been written to a snapshot.  Records that are still pending
+     * are kept.
+     */
+    synchronized void truncate() {
+        close();
+
+        if (file.exists() && !file.delete()) {
+            logger.log(Level.WARNING, "Was not able to delete the journal: {0}", file.getAbsolutePath());
+        }
+
+        size = 0;
+    }
+
+    /**
+     * Discards the records at the start of the journal after they have been written to a snapshot.  Records appended
+     * since are kept.  Records that are still pending are not affected.
+     *
+     * @param length length of the journal covered by the snapshot
+     */
+    synchronized void discard(final long length) {
+        if (length >= size) {
+            truncate();
+            return;
+        }
+
+        close();
+
+        final File temp = new File(file.getAbsolutePath() + ".tmp");
+
+        try {
+            try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                 FileChannel tempOut = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                         StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+                long position = length;
+
+                while (position < size) {
+                    position += in.transferTo(position, size - position, tempOut);
+                }
+
+                tempOut.force(true);
+            }
+
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            size -= length;
+        } catch (final IOException e) {
+            // replaying the covered records again has no additional effect
+            logger.log(Level.WARNING, "Was not able to discard the covered journal records", e);
+
+            if (temp.exists() && !temp.delete()) {
+                logger.log(Level.WARNING, "Was not able to delete: {0}", temp.getAbsolutePath());
+            }
+        }
+    }
+
+    synchronized void close() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (final IOException e) {
+                logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
+            }
+            out = null;
+            fileOut = null;
+        }
+    }
+
+    /**
+     * Applies the journal to the container.  The container's write lock must be held by the caller.
+     * <p/>
+     * Replay stops at the first incomplete or damaged record, which is expected if the application terminated
+     * while a record was being written.
+     *
+     * @return the number of records replayed
+     */
+    synchronized int replay() {
+        int count = 0;
+
+        if (!file.exists()) {
+            return count;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                final int length;
+
+                try {
+                    length = in.readInt();
+                } catch (final EOFException e) {
+                    break;  // end of the journal
+                }
+
+                final byte[] data = new byte[length];
+                in.readFully(data);
+
+                final CRC32 crc = new CRC32();
+                crc.update(data);
+
+                if (crc.getValue() != in.readLong()) {
+                    logger.warning("Discarding damaged journal record");
+                    break;
+                }
+
+                apply(data);
+                count++;
+            }
+        } catch (final EOFException e) {
+            logger.warning("Discarding incomplete journal record");
+        } catch (final IOException e) {
+            logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
+        }
+
+        return count;
+    }
+
+    private void write(final Record record) throws IOException {
+        final StoredObject object = record.object;
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream data = new DataOutputStream(bytes)) {
+            data.writeByte(record.operation.code);
+            data.writeUTF(object.getUuid());
+            data.writeBoolean(object.isMarkedForRemoval());
+
+            if (record.operation.hasPayload) {
+                final byte[] payload = toXML(object).getBytes(StandardCharsets.UTF_8);
+
+                data.writeInt(payload.length);
+                data.write(payload);
+            }
+        }
+
+        final byte[] data = bytes.toByteArray();
+
+        final CRC32 crc = new CRC32();
+        crc.update(data);
+
+        out.writeInt(data.length);
+        out.write(data);
+        out.writeLong(crc.getValue());
+
+        size += data.length + 12;
+    }
+
+    private String toXML(final StoredObject object) {
+        final StringWriter writer = new StringWriter();
+
+        xstream.marshal(object, new CompactWriter(writer));
+
+        return writer.toString();
+    }
+
+    private void apply(final byte[] bytes) throws IOException {
+        final DataInputStream data = new DataInputStream(new ByteArrayInputStream(bytes));
+
+        final Operation operation = Operation.fromCode(data.readByte());
+        final String uuid = data.readUTF();
+        final boolean markedForRemoval = data.readBoolean();
+
+        StoredObject object = container.get(uuid);
+
+        switch (operation) {
+            case DELETE:
+                if (object != null) {
+                    container.delete(object);
+                }
+                break;
+            case REMOVE_TRANSACTION:
+                if (object instanceof Transaction) {
+                    JournalReplay.linkTransaction((Transaction) object, false);
+                }
+                break;
+            default:
+                final byte[] payload = new byte[data.readInt()];
+                data.readFully(payload);
+
+                final String xml = new String(payload, StandardCharsets.UTF_8);
+
+                loadedObjects.clear();
+
+                object = (StoredObject) (object != null ? xstream.fromXML(xml, object) : xstream.fromXML(xml));
+
+                JournalReplay.setMarkedForRemoval(object, markedForRemoval);
+
+                loadedObjects.add(object);
+                container.index(loadedObjects);
+
+                if (operation == Operation.ADD_TRANSACTION && object instanceof Transaction) {
+                    JournalReplay.linkTransaction((Transaction) object, true);
+                }
+        }
+    }
+
+    private static class Record {
+
+        Operation operation;
+
+        final StoredObject object;
+
+        Record(final Operation operation, final StoredObject object) {
+            this.operation = operation;
+            this.object = object;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * jGnash, a personal finance application
+ * Copyright (C) 2001-2014 Craig Cavanaugh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jgnash.engine.xstream;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jgnash.engine.StoredObject;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.converters.Converter;
+import com.thoughtworks.xstream.converters.MarshallingContext;
+import com.thoughtworks.xstream.converters.UnmarshallingContext;
+import com.thoughtworks.xstream.converters.reflection.ReflectionConverter;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+
+/**
+ * Converter that writes nested {@code StoredObject}s as a uuid reference so a stream may be read independently of
+ * the stream holding the referenced objects.
+ * <p/>
+ * Top level objects are always written in full.  A converter tracks the nesting depth and may only be used by a
+ * single thread.
+ *
+ * @author Craig Cavanaugh
+ */
+abstract class StoredObjectReferenceConverter implements Converter {
+
+    private static final String REFERENCE_ATTRIBUTE = "storedObjectRef";
+
+    private final Converter delegate;
+
+    private int marshalDepth;
+
+    private int unmarshalDepth;
+
+    StoredObjectReferenceConverter(final XStream xstream) {
+        delegate = new ReflectionConverter(xstream.getMapper(), xstream.getReflectionProvider());
+    }
+
+    /**
+     * Determines if a nested stored object is written as a reference
+     *
+     * @param object nested stored object
+     * @return true to write a reference, false to write the object in full
+     */
+    abstract boolean isReference(StoredObject object);
+
+    /**
+     * Resolves a reference to a stored object
+     *
+     * @param uuid uuid of the referenced object
+     * @return the referenced object, {@code null} if it does not exist
+     */
+    abstract StoredObject resolve(String uuid);
+
+    @SuppressWarnings("rawtypes")
+    @Override
+    public boolean canConvert(final Class type) {
+        return StoredObject.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public void marshal(final Object source, final HierarchicalStreamWriter writer, final MarshallingContext context) {
+        final StoredObject object = (StoredObject) source;
+
+        if (marshalDepth > 0 && isReference(object)) {
+            writer.addAttribute(REFERENCE_ATTRIBUTE, object.getUuid());
+            return;
+        }
+
+        marshalDepth++;
+
+        try {
+            delegate.marshal(source, writer, context);
+        } finally {
+            marshalDepth--;
+        }
+    }
+
+    @Override
+    public Object unmarshal(final HierarchicalStreamReader reader, final UnmarshallingContext context) {
+        final String uuid = reader.getAttribute(REFERENCE_ATTRIBUTE);
+
+        if (uuid != null && unmarshalDepth > 0) {
+            final StoredObject object = resolve(uuid);
+
+            if (object == null) {
+                Logger.getLogger(StoredObjectReferenceConverter.class.getName()).log(Level.WARNING,
+                        "Reference to a missing object: {0}", uuid);
+            }
+            return object;
+        }
+
+        unmarshalDepth++;
+
+        try {
+            return delegate.unmarshal(reader, context);
+        } finally {
+            unmarshalDepth--;
+        }
+    }
+}
@@ -33,25 +33,17 @@ import java.nio.channels.FileLock;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import jgnash.engine.CommodityNode;
-import jgnash.engine.Config;
 import jgnash.engine.Engine;
-import jgnash.engine.ExchangeRate;
-import jgnash.engine.RootAccount;
 import jgnash.engine.StoredObject;
-import jgnash.engine.StoredObjectComparator;
-import jgnash.engine.budget.Budget;
-import jgnash.engine.recurring.Reminder;
 import jgnash.util.FileMagic;
 import jgnash.util.FileUtils;
 
 import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.converters.ConversionException;
 import com.thoughtworks.xstream.converters.reflection.PureJavaReflectionProvider;
 import com.thoughtworks.xstream.io.xml.KXml2Driver;
 import com.thoughtworks.xstream.io.xml.PrettyPrintWriter;
@@ -69,20 +61,39 @@ class XMLContainer extends AbstractXStreamContainer {
 
     @Override
     void commit() {
-        writeXML();
+        if (!commitJournal()) {
+            writeSnapshot();
+        }
     }
 
-    private synchronized void writeXML() {
+    @Override
+    SnapshotWriter prepareSnapshot() {
+        final List<StoredObject> list;
+
         readWriteLock.readLock().lock();
 
+        try {
+            list = getWritableObjects(values());
+        } finally {
+            readWriteLock.readLock().unlock();
+        }
+
+        return new SnapshotWriter() {
+            @Override
+            public boolean write() {
+                return writeXML(list);
+            }
+        };
+    }
+
+    private synchronized boolean writeXML(final List<StoredObject> list) {
         try {
             releaseFileLock();
-            writeXML(objects, file);
+            return writeObjects(list, file);
         } finally {
             if (!acquireFileLock()) { // lock the file on open
                 Logger.getLogger(BinaryContainer.class.getName()).severe("Could not acquire the file lock");
             }
-            readWriteLock.readLock().unlock();
         }
     }
 
@@ -93,12 +104,27 @@ class XMLContainer extends AbstractXStreamContainer {
      *
      * @param objects Collection of StoredObjects to write
      * @param file    file to write
+     * @return true if successful
      */
-    public static synchronized void writeXML(final Collection<StoredObject> objects, final File file) {
+    public static synchronized boolean writeXML(final Collection<StoredObject> objects, final File file) {
+        return writeObjects(getWritableObjects(objects), file);
+    }
+
+    /**
+     * Writes an XML file given the sorted top level objects.  The existing file is restored from the backup if an
+     * object is changed while it is serialized.
+     *
+     * @param list sorted top level objects to write
+     * @param file file to write
+     * @return true if successful
+     * @throws ConversionException if an object was changed while it was serialized
+     */
+    private static synchronized boolean writeObjects(final List<StoredObject> list, final File file) {
         Logger logger = Logger.getLogger(XMLContainer.class.getName());
 
+        File backup = new File(file.getAbsolutePath() + ".backup");
+
         if (file.exists()) {
-            File backup = new File(file.getAbsolutePath() + ".backup");
             if (backup.exists()) {
                 if (!backup.delete()) {
                     logger.log(Level.WARNING, "Was not able to delete the old backup file: {0}",
@@ -109,27 +135,6 @@ class XMLContainer extends AbstractXStreamContainer {
             FileUtils.copyFile(file, backup);
         }
 
-        List<StoredObject> list = new ArrayList<>();
-
-        list.addAll(query(objects, Budget.class));
-        list.addAll(query(objects, Config.class));
-        list.addAll(query(objects, CommodityNode.class));
-        list.addAll(query(objects, ExchangeRate.class));
-        list.addAll(query(objects, RootAccount.class));
-        list.addAll(query(objects, Reminder.class));
-
-        // remove any objects marked for removal
-        Iterator<StoredObject> i = list.iterator();
-        while (i.hasNext()) {
-            StoredObject o = i.next();
-            if (o.isMarkedForRemoval()) {
-                i.remove();
-            }
-        }
-
-        // sort the list
-        Collections.sort(list, new StoredObjectComparator());
-
         logger.info("Writing XML file");
 
         try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
@@ -144,9 +149,18 @@ class XMLContainer extends AbstractXStreamContainer {
             }
         } catch (IOException e) {
             logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
+            return false;
+        } catch (final ConversionException e) {
+            if (backup.exists()) {
+                FileUtils.copyFile(backup, file);
+            }
+
+            throw e;
         }
 
         logger.info("Writing XML file complete");
+
+        return true;
     }
 
     void readXML() {
@@ -163,13 +177,16 @@ class XMLContainer extends AbstractXStreamContainer {
 
             readWriteLock.writeLock().lock();
 
-            XStream xstream = configureXStream(new XStream(new StoredObjectReflectionProvider(objects),
+            final List<StoredObject> loadedObjects = new ArrayList<>();
+
+            XStream xstream = configureXStream(new XStream(new StoredObjectReflectionProvider(loadedObjects),
                     new KXml2Driver()));
 
             try (ObjectInputStream in = xstream.createObjectInputStream(reader);
                  FileLock readLock = fis.getChannel().tryLock(0, Long.MAX_VALUE, true)) {
                 if (readLock != null) {
                     in.readObject();
+                    index(loadedObjects);
                 }
             }
 
@@ -26,9 +26,11 @@ import jgnash.engine.Config;
 import jgnash.engine.DataStore;
 import jgnash.engine.DataStoreType;
 import jgnash.engine.Engine;
+import jgnash.engine.EngineFactory;
 import jgnash.engine.StoredObject;
 import jgnash.engine.attachment.LocalAttachmentManager;
 import jgnash.engine.concurrent.LocalLockManager;
+import jgnash.engine.concurrent.LockManager;
 import jgnash.util.Resource;
 
 /**
@@ -52,7 +54,7 @@ public class XMLDataStore implements DataStore {
      */
     @Override
     public void closeEngine() {
-        container.commit(); // force a commit
+        container.flush(); // force a commit
         container.close();
 
         container = null;
@@ -74,7 +76,14 @@ public class XMLDataStore implements DataStore {
             container.readXML();
         }
 
-        Engine engine = new Engine(new XStreamEngineDAO(container), new LocalLockManager(), new LocalAttachmentManager(), engineName);
+        final LockManager lockManager = new LocalLockManager();
+
+        // background commits hold the engine locks while the objects are serialized
+        container.setSnapshotLocks(Engine.getSnapshotLocks(lockManager));
+
+        container.openJournal(EngineFactory.useJournal());
+
+        Engine engine = new Engine(new XStreamEngineDAO(container), lockManager, new LocalAttachmentManager(), engineName);
 
         logger.info("Created local XML container and engine");
 
@@ -146,6 +155,10 @@ public class XMLDataStore implements DataStore {
      */
     @Override
     public void saveAs(final File file, final Collection<StoredObject> objects) {
+        if (container != null) {
+            container.flush();  // complete any commit of the open file before writing
+        }
+
         XMLContainer.writeXML(objects, file);
     }
 
@@ -66,6 +66,7 @@ public class XStreamAccountDAO extends AbstractXStreamDAO implements AccountDAO
     @Override
     public boolean addAccount(final Account parent, final Account child) {
         container.set(child);
+        container.update(parent);
         commit();
 
         return true;
@@ -82,6 +83,7 @@ public class XStreamAccountDAO extends AbstractXStreamDAO implements AccountDAO
     @Override
     public boolean addAccountSecurity(final Account account, final SecurityNode node) {
         container.set(node);
+        container.update(account);
         commit();
 
         return true;
@@ -109,6 +111,7 @@ public class XStreamAccountDAO extends AbstractXStreamDAO implements AccountDAO
 
     @Override
     public boolean updateAccount(final Account account) {
+        container.update(account);
         commit();
         return true;
     }
@@ -116,12 +119,14 @@ public class XStreamAccountDAO extends AbstractXStreamDAO implements AccountDAO
     @Override
     @Deprecated
     public boolean removeAccountProperty(final Account account, final Object object) {
+        container.update(account);
         commit();
         return true;
     }
 
     @Override
     public boolean toggleAccountVisibility(final Account account) {
+        container.update(account);
         commit();
         return true;
     }
@@ -44,6 +44,7 @@ public class XStreamBudgetDAO extends AbstractXStreamDAO implements BudgetDAO {
     @Override
     public boolean update(final Budget budget) {
         container.set(budget);
+        container.update(budget);
         commit();
 
         return true;
@@ -26,6 +26,7 @@ import jgnash.engine.SecurityNode;
 import jgnash.engine.StoredObject;
 import jgnash.engine.dao.CommodityDAO;
 
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -50,12 +51,21 @@ public class XStreamCommodityDAO extends AbstractXStreamDAO implements Commodity
 
     @Override
     public boolean addExchangeRateHistory(final ExchangeRate rate) {
+        container.update(rate);
         commit();
         return true;
     }
 
     @Override
     public boolean addSecurityHistory(final SecurityNode node, final SecurityHistoryNode historyNode) {
+        container.update(node);
+        commit();
+        return true;
+    }
+
+    @Override
+    public boolean addSecurityHistory(final SecurityNode node, final Collection<SecurityHistoryNode> historyNodes) {
+        container.update(node);
         commit();
         return true;
     }
@@ -129,12 +139,21 @@ public class XStreamCommodityDAO extends AbstractXStreamDAO implements Commodity
 
     @Override
     public boolean removeExchangeRateHistory(final ExchangeRate rate) {
+        container.update(rate);
         commit();
         return true;
     }
 
     @Override
     public boolean removeSecurityHistory(final SecurityNode node, final SecurityHistoryNode historyNode) {
+        container.update(node);
+        commit();
+        return true;
+    }
+
+    @Override
+    public boolean removeSecurityHistory(final SecurityNode node, final Collection<SecurityHistoryNode> historyNodes) {
+        container.update(node);
         commit();
         return true;
     }
@@ -147,6 +166,7 @@ public class XStreamCommodityDAO extends AbstractXStreamDAO implements Commodity
 
     @Override
     public boolean updateCommodityNode(final CommodityNode node) {
+        container.update(node);
         commit();
         return true;
     }
@@ -60,6 +60,7 @@ public class XStreamConfigDAO extends AbstractXStreamDAO implements ConfigDAO {
     @Override
     public void update(final Config config) {
         container.set(config);
+        container.update(config);
         commit();
     }
 }
@@ -18,13 +18,7 @@
 package jgnash.engine.xstream;
 
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.logging.Logger;
 
 import jgnash.engine.StoredObject;
 import jgnash.engine.dao.*;
@@ -50,50 +44,26 @@ public class XStreamEngineDAO extends AbstractXStreamDAO implements EngineDAO {
 
     private TrashDAO trashDAO;
 
-    private ScheduledExecutorService commitExecutor;
-
-    private ScheduledFuture<?> future;
-
-    private final Timer commitTimer;
-
     XStreamEngineDAO(final AbstractXStreamContainer container) {
-        super(container);
-
-        commitTimer = new Timer();
-
-        // scheduled thread to check and verify a commit occurs every 30 seconds at the minimum if needed.
-        commitExecutor = Executors.newSingleThreadScheduledExecutor();
-
-        // run commit every 30 seconds, 30 seconds after startup
-        commitTimer.scheduleAtFixedRate(new TimerTask() {
-
-            @Override
-            public void run() {
-
-                if (future != null && !future.isDone() || commitExecutor == null) {
-                    return;
-                }
-
-                future = commitExecutor.schedule(new Runnable() {
+        this(container, MAX_COMMIT_COUNT, container.isJournaled() ? MAX_JOURNAL_COMMIT_TIME : MAX_COMMIT_TIME);
+    }
 
-                    @Override
-                    public void run() {
-                        if (commitCount.get() > 0) {
-                            Logger.getLogger(XStreamEngineDAO.class.getName()).info("Commiting file");
-                            commitAndReset();
-                        }
-                    }
+    /**
+     * Creates an engine DAO that commits the container in the background
+     *
+     * @param container      container to commit
+     * @param maxCommitCount number of changes that will trigger a commit
+     * @param maxCommitTime  maximum time in seconds a change will remain uncommitted
+     */
+    XStreamEngineDAO(final AbstractXStreamContainer container, final int maxCommitCount, final int maxCommitTime) {
+        super(container);
 
-                }, 0, TimeUnit.SECONDS);
-            }
-        }, MAX_COMMIT_TIME * 1000, MAX_COMMIT_TIME * 1000);
+        container.startCommitter(maxCommitCount, TimeUnit.SECONDS.toMillis(maxCommitTime));
     }
 
     @Override
     public synchronized void shutdown() {
-        commitTimer.cancel();
-        commitExecutor.shutdown();
-        commitExecutor = null;
+        container.stopCommitter();
     }
 
     @Override
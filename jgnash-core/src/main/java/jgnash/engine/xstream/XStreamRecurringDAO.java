@@ -52,6 +52,7 @@ public class XStreamRecurringDAO extends AbstractXStreamDAO implements Recurring
 
     @Override
     public boolean updateReminder(final Reminder reminder) {
+        container.update(reminder);
         commit();
         return true;
     }
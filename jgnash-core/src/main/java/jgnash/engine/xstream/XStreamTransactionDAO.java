@@ -21,6 +21,7 @@ import jgnash.engine.Transaction;
 import jgnash.engine.dao.TransactionDAO;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -45,11 +46,23 @@ public class XStreamTransactionDAO extends AbstractXStreamDAO implements Transac
     @Override
     public boolean addTransaction(final Transaction transaction) {
         container.set(transaction);
+        container.journal(Journal.Operation.ADD_TRANSACTION, transaction);
         commit();
 
         return true;
     }
 
+    @Override
+    public boolean addTransactions(final Collection<Transaction> transactions) {
+        for (final Transaction transaction : transactions) {
+            container.set(transaction);
+            container.journal(Journal.Operation.ADD_TRANSACTION, transaction);
+        }
+        commit();   // one commit for the batch
+
+        return true;
+    }
+
     @Override
     public Transaction getTransactionByUuid(final String uuid) {
         return getObjectByUuid(Transaction.class, uuid);
@@ -57,6 +70,7 @@ public class XStreamTransactionDAO extends AbstractXStreamDAO implements Transac
 
     @Override
     public boolean removeTransaction(final Transaction transaction) {
+        container.journal(Journal.Operation.REMOVE_TRANSACTION, transaction);
         commit();
         return true;
     }
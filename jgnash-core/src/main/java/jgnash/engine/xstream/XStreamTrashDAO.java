@@ -44,6 +44,7 @@ public class XStreamTrashDAO extends AbstractXStreamDAO implements TrashDAO {
     @Override
     public void add(final TrashObject trashObject) {
         container.set(trashObject);
+        container.update(trashObject.getObject());    // marked for removal
         commit();
     }
 
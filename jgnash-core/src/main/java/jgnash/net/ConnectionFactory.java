@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.prefs.Preferences;
@@ -42,6 +43,13 @@ public class ConnectionFactory {
 
     private static final int MIN_TIMEOUT = 1;
 
+    /**
+     * Minimum time in milliseconds between the start of two requests to the same host
+     */
+    private static final int HOST_REQUEST_INTERVAL = 100;
+
+    private static final HostRateLimiter rateLimiter = new HostRateLimiter(HOST_REQUEST_INTERVAL, TimeUnit.MILLISECONDS);
+
     private ConnectionFactory() {
     }
 
@@ -70,14 +78,27 @@ public class ConnectionFactory {
         return pref.getInt(TIMEOUT, DEFAULT_TIMEOUT);
     }
 
+    /**
+     * Creates a connection for a URL.  Requests to the same host are spaced out, so this may block if several
+     * threads are connecting to the same host.
+     *
+     * @param url the URL to connect to
+     * @return the connection, {@code null} if the URL is not valid or the thread was interrupted
+     */
     @Nullable
-    public synchronized static URLConnection getConnection(String url) {
+    public static URLConnection getConnection(String url) {
         URLConnection connection = null;
        
         try {
-            connection = getConnection(new URL(url));
+            final URL u = new URL(url);
+
+            rateLimiter.acquire(u.getHost());
+
+            connection = getConnection(u);
         } catch (final MalformedURLException ex) {
             Logger.getLogger(ConnectionFactory.class.getName()).log(Level.SEVERE, null, ex);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
         }
 
         /* Set the connection timeout */
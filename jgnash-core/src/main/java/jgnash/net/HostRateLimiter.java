@@ -0,0 +1,71 @@
+/*
+ * jGnash, a personal finance application
+ * Copyright (C) 2001-2014 Craig Cavanaugh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jgnash.net;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spaces out requests made to the same host so concurrent downloads do not flood a quote server.
+ *
+ * @author Craig Cavanaugh
+ */
+final class HostRateLimiter {
+
+    private final long interval;
+
+    /**
+     * Time in nanoseconds when the next request to a host may start
+     */
+    private final Map<String, Long> nextRequest = new HashMap<>();
+
+    /**
+     * Creates a new rate limiter
+     *
+     * @param interval minimum time between the start of two requests to the same host
+     * @param unit     time unit of the interval
+     */
+    HostRateLimiter(final long interval, final TimeUnit unit) {
+        this.interval = unit.toNanos(interval);
+    }
+
+    /**
+     * Blocks until a request may be made to the host
+     *
+     * @param host host of the request
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void acquire(final String host) throws InterruptedException {
+        final long wait;
+
+        synchronized (this) {
+            final long now = System.nanoTime();
+            final Long next = nextRequest.get(host);
+
+            final long start = next == null || next - now < 0 ? now : next;
+
+            nextRequest.put(host, start + interval);
+            wait = start - now;
+        }
+
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+}
@@ -17,21 +17,30 @@
  */
 package jgnash.net.security;
 
+import jgnash.engine.SecurityHistoryNode;
 import jgnash.engine.SecurityNode;
 import jgnash.net.ConnectionFactory;
 import jgnash.util.DateUtils;
 
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
 import java.math.BigDecimal;
+import java.net.HttpURLConnection;
 import java.net.SocketTimeoutException;
 import java.net.URLConnection;
+import java.net.URLEncoder;
 import java.net.UnknownHostException;
 import java.nio.charset.StandardCharsets;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -47,6 +56,11 @@ public abstract class AbstractYahooParser implements SecurityParser {
 
     private static final Pattern COMMA_DELIMITER_PATTERN = Pattern.compile(",");
 
+    /**
+     * Number of symbols requested at once.  Yahoo accepts up to 200 symbols per request.
+     */
+    private static final int MAX_BATCH_SIZE = 50;
+
     private long volume;
 
     private BigDecimal price;
@@ -117,93 +131,161 @@ public abstract class AbstractYahooParser implements SecurityParser {
         return false;
     }
 
+    @Override
+    public int getMaxBatchSize() {
+        return MAX_BATCH_SIZE;
+    }
+
     @Override
     public synchronized boolean parse(final SecurityNode node) {
+        final SecurityHistoryNode history = parse(Collections.singletonList(node)).get(node);
 
-        boolean result = false;
+        if (history == null) {
+            price = null;
+            return false;
+        }
 
-        String base = getBaseURL();
+        setPrice(history.getPrice());
+        setHigh(history.getHigh());
+        setLow(history.getLow());
+        setVolume(history.getVolume());
+        setDate(history.getDate());
 
-        String symbol;
+        return true;
+    }
 
-        if (useISIN()) {
-            symbol = node.getISIN();
-        } else {
-            symbol = node.getSymbol();
-        }
+    @Override
+    public Map<SecurityNode, SecurityHistoryNode> parse(final Collection<SecurityNode> nodes) {
+        final Map<SecurityNode, SecurityHistoryNode> quotes = new HashMap<>();
 
-        // http://finance.yahoo.com/d/quotes.csv?s=SUNW&f=sl1d1t1c1ohgv&e=.csv
-        // String u = "http://finance.yahoo.com/d/quotes.csv?s=" + symbol +
+        // securities are only matched to the returned lines by the echoed symbol
+        final Map<String, SecurityNode> symbols = new HashMap<>();
 
-        String u = base + symbol + "&f=sl1d1t1c1ohgv&e=.csv";
+        final StringBuilder u = new StringBuilder(getBaseURL());
 
-        String line = null;
+        try {
+            for (final SecurityNode node : nodes) {
+                final String symbol = useISIN() ? node.getISIN() : node.getSymbol();
 
-        final URLConnection connection = ConnectionFactory.getConnection(u);
+                if (symbol != null && !symbol.isEmpty()) {
+                    if (!symbols.isEmpty()) {
+                        u.append('+');
+                    }
 
-        if (connection != null) {
-            try (BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
-                line = in.readLine();
+                    u.append(URLEncoder.encode(symbol, StandardCharsets.UTF_8.name()));
+                    symbols.put(symbol.toUpperCase(Locale.ROOT), node);
+                }
+            }
+        } catch (final UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);   // UTF-8 is always supported
+        }
+
+        if (symbols.isEmpty()) {
+            return quotes;
+        }
 
-                if (line != null) {
+        // http://finance.yahoo.com/d/quotes.csv?s=SUNW+AMD&f=sl1d1t1c1ohgv&e=.csv
+        u.append("&f=sl1d1t1c1ohgv&e=.csv");
 
-                    // trim the line.  Yahoo may occasionally include some extra white space
-                    line = line.trim();
+        final URLConnection connection = ConnectionFactory.getConnection(u.toString());
 
-                    String[] fields = COMMA_DELIMITER_PATTERN.split(line);
-                    in.close();
+        if (connection != null) {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+                String line = in.readLine();
 
-                    if (fields.length >= 7) {
+                while (line != null) {
+                    // trim the line.  Yahoo may occasionally include some extra white space
+                    final String[] fields = COMMA_DELIMITER_PATTERN.split(line.trim());
 
-                        // may be returned as a yield percentage... ignore for now
-                        if (!fields[1].contains("%")) {
-                            setPrice(new BigDecimal(fields[1]));
-                        }
+                    if (fields.length >= 9) {
+                        final SecurityNode node = symbols.get(unquote(fields[0]).toUpperCase(Locale.ROOT));
 
-                        // try to parse the date "10/12/2012"
-                        // the date from Yahoo is the last close date.  It may not reflect the date the parse is performed
-                        if (!fields[2].isEmpty()) {
+                        if (node == null) {
+                            logger.log(Level.WARNING, "Skipped a quote for a symbol that was not requested: {0}", line);
+                        } else {
                             try {
-                                DateFormat df = new SimpleDateFormat("\"MM/dd/yyyy\"");
-                                Date date = df.parse(fields[2]);
-                                setDate(date);
-                            } catch (ParseException e) {
-                                logger.log(Level.SEVERE, null, e);
+                                final SecurityHistoryNode history = parseFields(fields);
+
+                                if (history != null) {
+                                    quotes.put(node, history);
+                                }
+                            } catch (final NumberFormatException e) {
+                                logger.log(Level.SEVERE, line, e);
                             }
                         }
+                    }
 
-                        if (fields[6].equals("N/A")) {
-                            setHigh(BigDecimal.ZERO);
-                        } else {
-                            setHigh(new BigDecimal(fields[6]));
-                        }
+                    line = in.readLine();
+                }
+            } catch (final SocketTimeoutException | UnknownHostException e) {
+                logger.log(Level.WARNING, e.getLocalizedMessage(), e);
+            } catch (final Exception e) {
+                logger.log(Level.SEVERE, null, e);
+            } finally {
+                if (connection instanceof HttpURLConnection) {
+                    ((HttpURLConnection) connection).disconnect();
+                }
+            }
+        }
 
-                        if (fields[7].equals("N/A")) {
-                            setLow(BigDecimal.ZERO);
-                        } else {
-                            setLow(new BigDecimal(fields[7]));
-                        }
+        return quotes;
+    }
 
-                        if (fields[8].equals("N/A")) {
-                            setVolume(0);
-                        } else {
-                            setVolume(Long.parseLong(fields[8]));
-                        }
+    /**
+     * Parses the fields of a quote line: symbol, last price, date, time, change, open, high, low and volume
+     *
+     * @return the quote or {@code null} if a price is not available
+     */
+    private static SecurityHistoryNode parseFields(final String[] fields) {
 
-                        result = true;
-                    }
-                }
+        // may be returned as a yield percentage or not available... ignore for now
+        if (fields[1].contains("%") || fields[1].equals("N/A")) {
+            return null;
+        }
 
-            } catch (SocketTimeoutException | UnknownHostException e) {
-                price = null;
-                logger.log(Level.WARNING, e.getLocalizedMessage(), e);
-            } catch (NumberFormatException e) {
-                logger.log(Level.SEVERE, line, e);
-            } catch (Exception e) {
+        final SecurityHistoryNode history = new SecurityHistoryNode();
+
+        history.setPrice(new BigDecimal(fields[1]));
+
+        // try to parse the date "10/12/2012"
+        // the date from Yahoo is the last close date.  It may not reflect the date the parse is performed
+        if (!fields[2].isEmpty() && !fields[2].equals("N/A")) {
+            try {
+                DateFormat df = new SimpleDateFormat("\"MM/dd/yyyy\"");
+                history.setDate(df.parse(fields[2]));
+            } catch (ParseException e) {
                 logger.log(Level.SEVERE, null, e);
+                history.setDate(DateUtils.today());
             }
+        } else {
+            history.setDate(DateUtils.today());
+        }
+
+        if (fields[6].equals("N/A")) {
+            history.setHigh(BigDecimal.ZERO);
+        } else {
+            history.setHigh(new BigDecimal(fields[6]));
         }
 
-        return result;
+        if (fields[7].equals("N/A")) {
+            history.setLow(BigDecimal.ZERO);
+        } else {
+            history.setLow(new BigDecimal(fields[7]));
+        }
+
+        if (fields[8].equals("N/A")) {
+            history.setVolume(0);
+        } else {
+            history.setVolume(Long.parseLong(fields[8]));
+        }
+
+        return history;
+    }
+
+    private static String unquote(final String field) {
+        if (field.length() >= 2 && field.charAt(0) == '"' && field.charAt(field.length() - 1) == '"') {
+            return field.substring(1, field.length() - 1);
+        }
+        return field;
     }
-}
\ No newline at end of file
+}
@@ -19,8 +19,12 @@
 package jgnash.net.security;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Map;
 
+import jgnash.engine.SecurityHistoryNode;
 import jgnash.engine.SecurityNode;
 import jgnash.util.DateUtils;
 
@@ -66,4 +70,14 @@ public class NullParser implements SecurityParser {
        return DateUtils.today();
     }
 
+    @Override
+    public Map<SecurityNode, SecurityHistoryNode> parse(final Collection<SecurityNode> nodes) {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public int getMaxBatchSize() {
+        return Integer.MAX_VALUE;
+    }
+
 }
@@ -0,0 +1,190 @@
+/*
+ * jGnash, a personal finance application
+ * Copyright (C) 2001-2014 Craig Cavanaugh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jgnash.net.security;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jgnash.engine.QuoteSource;
+import jgnash.engine.SecurityHistoryNode;
+import jgnash.engine.SecurityNode;
+import jgnash.util.DefaultDaemonThreadFactory;
+import jgnash.util.NotNull;
+
+/**
+ * Retrieves security quotes in batches using a bounded number of concurrent requests.
+ * <p/>
+ * Securities are grouped by quote source and each group is split into batches no larger than the parser allows.
+ * Requests to the same host are spaced out by {@link jgnash.net.ConnectionFactory}.
+ *
+ * @author Craig Cavanaugh
+ */
+public class QuoteFetcher {
+
+    private static final Logger logger = Logger.getLogger(QuoteFetcher.class.getName());
+
+    /**
+     * Default number of concurrent requests
+     */
+    static final int DEFAULT_THREADS = 4;
+
+    /**
+     * Number of failed requests before the remaining requests are canceled
+     */
+    private static final int MAX_ERRORS = 2;
+
+    private final ExecutorService executorService;
+
+    public QuoteFetcher() {
+        this(DEFAULT_THREADS);
+    }
+
+    /**
+     * Creates a new fetcher
+     *
+     * @param threads maximum number of concurrent requests
+     */
+    public QuoteFetcher(final int threads) {
+        executorService = Executors.newFixedThreadPool(threads, new DefaultDaemonThreadFactory());
+    }
+
+    /**
+     * Retrieves the latest quotes for securities using the quote source of each security
+     *
+     * @param nodes securities to update
+     * @return the retrieved quotes, securities without a quote are not included
+     * @throws InterruptedException if interrupted while waiting for the requests
+     */
+    public Map<SecurityNode, SecurityHistoryNode> fetch(@NotNull final Collection<SecurityNode> nodes) throws InterruptedException {
+        final Map<QuoteSource, List<SecurityNode>> sources = new EnumMap<>(QuoteSource.class);
+
+        for (final SecurityNode node : nodes) {
+            if (node.getQuoteSource() != QuoteSource.NONE) { // failure will occur if source is not defined
+                List<SecurityNode> list = sources.get(node.getQuoteSource());
+
+                if (list == null) {
+                    list = new ArrayList<>();
+                    sources.put(node.getQuoteSource(), list);
+                }
+
+                list.add(node);
+            }
+        }
+
+        final Map<SecurityNode, SecurityHistoryNode> quotes = new HashMap<>();
+
+        for (final Map.Entry<QuoteSource, List<SecurityNode>> entry : sources.entrySet()) {
+            final SecurityParser parser = entry.getKey().getParser();
+
+            if (parser != null) {
+                quotes.putAll(fetch(parser, entry.getValue()));
+            }
+        }
+
+        return quotes;
+    }
+
+    /**
+     * Retrieves the latest quotes for securities with a single parser.  The batches are requested concurrently and
+     * the remaining batches are canceled if too many requests fail.
+     *
+     * @param parser parser used to retrieve the quotes
+     * @param nodes  securities to update
+     * @return the retrieved quotes, securities without a quote are not included
+     * @throws InterruptedException if interrupted while waiting for the requests
+     */
+    public Map<SecurityNode, SecurityHistoryNode> fetch(@NotNull final SecurityParser parser, @NotNull final Collection<SecurityNode> nodes)
+            throws InterruptedException {
+
+        final CompletionService<Map<SecurityNode, SecurityHistoryNode>> completionService = new ExecutorCompletionService<>(executorService);
+        final List<Future<Map<SecurityNode, SecurityHistoryNode>>> futures = new ArrayList<>();
+
+        final int batchSize = Math.max(1, parser.getMaxBatchSize());
+        final List<SecurityNode> list = new ArrayList<>(nodes);
+
+        for (int i = 0; i < list.size(); i += batchSize) {
+            final List<SecurityNode> batch = new ArrayList<>(list.subList(i, Math.min(i + batchSize, list.size())));
+
+            futures.add(completionService.submit(new Callable<Map<SecurityNode, SecurityHistoryNode>>() {
+                @Override
+                public Map<SecurityNode, SecurityHistoryNode> call() throws Exception {
+                    return parser.parse(batch);
+                }
+            }));
+        }
+
+        final Map<SecurityNode, SecurityHistoryNode> quotes = new HashMap<>();
+        int errorCount = 0;
+
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    final Map<SecurityNode, SecurityHistoryNode> result = completionService.take().get();
+
+                    if (result.isEmpty()) {
+                        errorCount++;
+                    }
+
+                    quotes.putAll(result);
+                } catch (final ExecutionException e) {
+                    logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
+                    errorCount++;
+                }
+
+                if (errorCount > MAX_ERRORS) {
+                    logger.warning("Too many failed quote requests, canceling the remaining requests");
+                    break;
+                }
+            }
+        } finally {
+            for (final Future<Map<SecurityNode, SecurityHistoryNode>> future : futures) {
+                future.cancel(true);    // no effect on completed requests
+            }
+        }
+
+        return quotes;
+    }
+
+    /**
+     * Runs a task on the request threads
+     *
+     * @param callable task to run
+     * @param <T>      result type of the task
+     * @return {@code Future} for the task
+     */
+    public <T> Future<T> submit(@NotNull final Callable<T> callable) {
+        return executorService.submit(callable);
+    }
+
+    public void shutdown() {
+        executorService.shutdownNow();
+    }
+}
@@ -18,8 +18,11 @@
 package jgnash.net.security;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.Date;
+import java.util.Map;
 
+import jgnash.engine.SecurityHistoryNode;
 import jgnash.engine.SecurityNode;
 
 /**
@@ -42,4 +45,20 @@ public interface SecurityParser {
     boolean parse(SecurityNode node);
 
     boolean useISIN();
+
+    /**
+     * Retrieves the latest quotes for several securities with a single request.  Implementations must be
+     * thread safe.
+     *
+     * @param nodes securities to retrieve, no more than {@link #getMaxBatchSize()}
+     * @return the quote of each security, securities without a quote are not included
+     */
+    Map<SecurityNode, SecurityHistoryNode> parse(Collection<SecurityNode> nodes);
+
+    /**
+     * Returns the maximum number of securities that may be retrieved with a single request
+     *
+     * @return maximum batch size
+     */
+    int getMaxBatchSize();
 }
@@ -26,13 +26,15 @@ import java.net.URLConnection;
 import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -68,6 +70,13 @@ public class UpdateFactory {
 
     private static final int TIMEOUT = 1;   // default timeout in minutes
 
+    private static final String HISTORY_URL = "http://ichart.finance.yahoo.com/table.csv";
+
+    /**
+     * Shared request threads so updates do not each create their own
+     */
+    private static final QuoteFetcher fetcher = new QuoteFetcher();
+
     public static void setUpdateOnStartup(final boolean update) {
         final Engine engine = EngineFactory.getEngine(EngineFactory.DEFAULT);
 
@@ -89,39 +98,25 @@ public class UpdateFactory {
     }
 
     public static boolean updateOne(final SecurityNode node) {
-        boolean result = false;
-
-        final ExecutorService service = Executors.newSingleThreadExecutor();
-        final Future<Boolean> future = service.submit(new UpdateSecurityNodeCallable(node));
-
-        try {
-            result = future.get(TIMEOUT, TimeUnit.MINUTES);
-            service.shutdown();
-        } catch (final InterruptedException | ExecutionException e) { // intentionally interrupted
-            logger.log(Level.FINEST, e.getLocalizedMessage(), e);
-        } catch (final TimeoutException e) {
-            logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
-        }
-
-        return result;
+        return waitFor(fetcher.submit(new UpdateSecurityNodeCallable(node)));
     }
 
     public static boolean importHistory(final SecurityNode securityNode, final Date startDate, final Date endDate) {
-        boolean result = false;
+        return waitFor(fetcher.submit(new HistoricalImportCallable(securityNode, startDate, endDate)));
+    }
 
-        final ExecutorService service = Executors.newSingleThreadExecutor();
-        final Future<Boolean> future = service.submit(new HistoricalImportCallable(securityNode, startDate, endDate));
+    private static boolean waitFor(final Future<Boolean> future) {
+        boolean result = false;
 
         try {
             result = future.get(TIMEOUT, TimeUnit.MINUTES);
-            service.shutdown();
         } catch (final InterruptedException | ExecutionException e) { // intentionally interrupted
             logger.log(Level.FINEST, e.getLocalizedMessage(), e);
         } catch (final TimeoutException e) {
+            future.cancel(true);
             logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
         }
 
-
         return result;
     }
 
@@ -133,8 +128,16 @@ public class UpdateFactory {
 
         private final SecurityNode securityNode;
 
+        private final String baseURL;
+
         public HistoricalImportCallable(@NotNull final SecurityNode securityNode, @NotNull final Date startDate, @NotNull final Date endDate) {
+            this(securityNode, startDate, endDate, HISTORY_URL);
+        }
+
+        HistoricalImportCallable(@NotNull final SecurityNode securityNode, @NotNull final Date startDate, @NotNull final Date endDate,
+                                 @NotNull final String baseURL) {
             this.securityNode = securityNode;
+            this.baseURL = baseURL;
 
             if (DateUtils.before(startDate, endDate)) {
                 this.startDate = startDate;
@@ -147,10 +150,33 @@ public class UpdateFactory {
 
         @Override
         public Boolean call() throws Exception {
-            final Calendar cal = Calendar.getInstance();
-            final Resource rb = Resource.get();
+            final List<SecurityHistoryNode> history = fetchHistory();
+
+            if (history == null || Thread.currentThread().isInterrupted()) {
+                return false;
+            }
 
-            boolean result = true;
+            final Engine engine = EngineFactory.getEngine(EngineFactory.DEFAULT);
+
+            // apply all of the rows at once instead of one engine call per row
+            if (engine != null && !history.isEmpty()) {
+                if (!engine.addSecurityHistory(securityNode, history)) {
+                    return false;
+                }
+
+                logger.info(Resource.get().getString("Message.UpdatedPrice", securityNode.getSymbol()));
+            }
+
+            return true;
+        }
+
+        /**
+         * Downloads the history of the security
+         *
+         * @return the history or {@code null} if the download failed or was interrupted
+         */
+        List<SecurityHistoryNode> fetchHistory() {
+            final Calendar cal = Calendar.getInstance();
 
             final String s = securityNode.getSymbol().toLowerCase();
 
@@ -166,12 +192,14 @@ public class UpdateFactory {
 
             // http://ichart.finance.yahoo.com/table.csv?s=AMD&d=1&e=14&f=2007&g=d&a=2&b=21&c=1983&ignore=.csv << new URL 2.14.07
 
-            StringBuilder r = new StringBuilder("http://ichart.finance.yahoo.com/table.csv?a=");
+            StringBuilder r = new StringBuilder(baseURL).append("?a=");
             r.append(a).append("&b=").append(b).append("&c=").append(c);
             r.append("&d=").append(d).append("&e=").append(e);
             r.append("&f=").append(f).append("&s=").append(s);
             r.append("&y=0&g=d&ignore=.csv");
 
+            final List<SecurityHistoryNode> history = new ArrayList<>();
+
             URLConnection connection = null;
 
             try {
@@ -180,61 +208,56 @@ public class UpdateFactory {
 
                 connection = ConnectionFactory.getConnection(r.toString());
 
-                if (connection != null) {
+                if (connection == null) {
+                    return null;
+                }
 
-                    try (BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+                try (BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
 
-                        String l = in.readLine();
+                    String l = in.readLine();
 
-                        // make sure that we have valid data format.
-                        if (!RESPONSE_HEADER.equals(l)) {
-                            result = false;
-                        }
+                    // make sure that we have valid data format.
+                    if (!RESPONSE_HEADER.equals(l)) {
+                        return null;
+                    }
 
-                        final Engine engine = EngineFactory.getEngine(EngineFactory.DEFAULT);
+                    //Date,Open,High,Low,Close,Volume,Adj Close
+                    //2007-02-13,14.75,14.86,14.47,14.60,17824500,14.60
 
-                        //Date,Open,High,Low,Close,Volume,Adj Close
-                        //2007-02-13,14.75,14.86,14.47,14.60,17824500,14.60
+                    l = in.readLine(); // prime the first read
 
-                        l = in.readLine(); // prime the first read
+                    while (l != null) {
 
-                        while (l != null) {
+                        if (Thread.currentThread().isInterrupted()) {
+                            Thread.currentThread().interrupt();
+                            return null;
+                        }
 
-                            if (Thread.currentThread().isInterrupted()) {
-                                Thread.currentThread().interrupt();
-                                return false;
-                            }
+                        if (!l.isEmpty() && l.charAt(0) != '<') { // may have comments in file
+                            String[] fields = COMMA_DELIMITER_PATTERN.split(l);
+                            Date date = df.parse(fields[0]);
+                            final BigDecimal high = new BigDecimal(fields[2]);
+                            final BigDecimal low = new BigDecimal(fields[3]);
+                            final BigDecimal close = new BigDecimal(fields[4]);
+                            final long volume = Long.parseLong(fields[5]);
 
-                            if (l.charAt(0) != '<') { // may have comments in file
-                                String[] fields = COMMA_DELIMITER_PATTERN.split(l);
-                                Date date = df.parse(fields[0]);
-                                final BigDecimal high = new BigDecimal(fields[2]);
-                                final BigDecimal low = new BigDecimal(fields[3]);
-                                final BigDecimal close = new BigDecimal(fields[4]);
-                                final long volume = Long.parseLong(fields[5]);
-
-                                final SecurityHistoryNode node = new SecurityHistoryNode();
-
-                                node.setDate(date);
-                                node.setPrice(close);
-                                node.setVolume(volume);
-                                node.setHigh(high);
-                                node.setLow(low);
-
-                                if (engine != null && !Thread.currentThread().isInterrupted()) {
-                                    engine.addSecurityHistory(securityNode, node);
-                                }
-                            }
+                            final SecurityHistoryNode node = new SecurityHistoryNode();
 
-                            l = in.readLine();
+                            node.setDate(date);
+                            node.setPrice(close);
+                            node.setVolume(volume);
+                            node.setHigh(high);
+                            node.setLow(low);
+
+                            history.add(node);
                         }
-                    }
 
-                    String message = rb.getString("Message.UpdatedPrice", securityNode.getSymbol());
-                    logger.info(message);
+                        l = in.readLine();
+                    }
                 }
             } catch (IOException | ParseException | NumberFormatException ex) {
                 logger.log(Level.SEVERE, null, ex);
+                return null;
             } finally {
                 if (connection != null) {
                     if (connection instanceof HttpURLConnection) {
@@ -243,7 +266,42 @@ public class UpdateFactory {
                 }
             }
 
-            return result;
+            return history;
+        }
+    }
+
+    /**
+     * Retrieves the latest quotes for a group of securities with batched, concurrent requests and records them
+     */
+    public static class UpdateSecuritiesCallable implements Callable<Boolean> {
+
+        private final Collection<SecurityNode> securityNodes;
+
+        public UpdateSecuritiesCallable(@NotNull final Collection<SecurityNode> securityNodes) {
+            this.securityNodes = new ArrayList<>(securityNodes);
+        }
+
+        @Override
+        public Boolean call() throws Exception {
+            final Engine e = EngineFactory.getEngine(EngineFactory.DEFAULT);
+
+            if (e == null) {
+                return false;
+            }
+
+            final Map<SecurityNode, SecurityHistoryNode> quotes = fetcher.fetch(securityNodes);
+
+            for (final Map.Entry<SecurityNode, SecurityHistoryNode> entry : quotes.entrySet()) {
+                if (Thread.currentThread().isInterrupted()) { // check for thread interruption
+                    return false;
+                }
+
+                if (e.addSecurityHistory(entry.getKey(), entry.getValue())) {
+                    logger.info(Resource.get().getString("Message.UpdatedPrice", entry.getKey().getSymbol()));
+                }
+            }
+
+            return !quotes.isEmpty();
         }
     }
 
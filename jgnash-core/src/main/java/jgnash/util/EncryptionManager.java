@@ -19,10 +19,12 @@
 package jgnash.util;
 
 import java.nio.charset.StandardCharsets;
+import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.Key;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -30,6 +32,7 @@ import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
+import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
 import static javax.xml.bind.DatatypeConverter.parseBase64Binary;
@@ -48,6 +51,15 @@ public class EncryptionManager {
 
     private static final String ENCRYPTION_ALGORITHM = "AES";
 
+    private static final String STREAM_ALGORITHM = "AES/CTR/NoPadding";
+
+    /**
+     * Length of the initialization vector for a stream cipher
+     */
+    public static final int STREAM_IV_LENGTH = 16;
+
+    private static final SecureRandom random = new SecureRandom();
+
     public static final String DECRYPTION_ERROR_TAG = "<DecryptError>";
 
     private static final Logger logger = Logger.getLogger(EncryptionManager.class.getName());
@@ -113,4 +125,78 @@ public class EncryptionManager {
             return DECRYPTION_ERROR_TAG;
         }
     }
+
+    /**
+     * Encrypts the supplied bytes
+     *
+     * @param plain bytes to encrypt
+     * @return the encrypted bytes or {@code null} if encryption fails
+     */
+    public byte[] encrypt(final byte[] plain) {
+        try {
+            final Cipher cipher = Cipher.getInstance(ENCRYPTION_ALGORITHM);
+
+            cipher.init(Cipher.ENCRYPT_MODE, key);
+
+            return cipher.doFinal(plain);
+        } catch (final InvalidKeyException | NoSuchAlgorithmException | NoSuchPaddingException | BadPaddingException | IllegalBlockSizeException e) {
+            logger.log(Level.SEVERE, e.getMessage(), e);
+        }
+
+        return null;
+    }
+
+    /**
+     * Decrypts the supplied bytes
+     *
+     * @param encrypted bytes to decrypt
+     * @return the decrypted bytes or {@code null} if decryption fails
+     */
+    public byte[] decrypt(final byte[] encrypted) {
+        try {
+            final Cipher cipher = Cipher.getInstance(ENCRYPTION_ALGORITHM);
+
+            cipher.init(Cipher.DECRYPT_MODE, key);
+
+            return cipher.doFinal(encrypted);
+        } catch (final InvalidKeyException | NoSuchAlgorithmException | NoSuchPaddingException | BadPaddingException | IllegalBlockSizeException e) {
+            logger.log(Level.SEVERE, "Invalid password");
+            return null;
+        }
+    }
+
+    /**
+     * Generates a random initialization vector for a stream cipher
+     *
+     * @return a new initialization vector
+     */
+    public static byte[] generateStreamIV() {
+        final byte[] iv = new byte[STREAM_IV_LENGTH];
+        random.nextBytes(iv);
+
+        return iv;
+    }
+
+    /**
+     * Creates a cipher for encrypting large amounts of data in chunks.  Counter mode is used, so the output has the
+     * same length as the input and chunks of any size may be passed to {@code Cipher.update}.
+     *
+     * @param mode {@code Cipher.ENCRYPT_MODE} or {@code Cipher.DECRYPT_MODE}
+     * @param iv   initialization vector, a new one must be used for every stream that is encrypted
+     * @return the cipher or {@code null} if it could not be created
+     * @see #generateStreamIV()
+     */
+    public Cipher getStreamCipher(final int mode, final byte[] iv) {
+        try {
+            final Cipher cipher = Cipher.getInstance(STREAM_ALGORITHM);
+
+            cipher.init(mode, key, new IvParameterSpec(iv));
+
+            return cipher;
+        } catch (final InvalidKeyException | InvalidAlgorithmParameterException | NoSuchAlgorithmException | NoSuchPaddingException e) {
+            logger.log(Level.SEVERE, e.getMessage(), e);
+        }
+
+        return null;
+    }
 }
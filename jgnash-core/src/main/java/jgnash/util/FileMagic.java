@@ -48,6 +48,12 @@ public class FileMagic {
     private static final byte[] BINARY_XSTREAM_HEADER = new byte[]{10, -127, 0, 13, 111, 98, 106, 101, 99, 116, 45,
             115, 116, 114, 101, 97, 109, 11, -127, 10};
 
+    /**
+     * Header prefix of a compressed binary XStream file.  The prefix is followed by a single digit format version and
+     * a line feed
+     */
+    private static final byte[] COMPRESSED_BINARY_XSTREAM_HEADER = "jGnashBXDS-Z".getBytes(StandardCharsets.US_ASCII);
+
     private static final byte[] H2_HEADER = new byte[]{0x2D, 0x2D, 0x20, 0x48, 0x32, 0x20, 0x30, 0x2E, 0x35, 0x2F, 0x42, 0x20, 0x2D, 0x2D};
 
     private static final byte[] HSQL_HEADER = "SET DATABASE UNIQUE NAME HSQLDB".getBytes(StandardCharsets.UTF_8);
@@ -215,8 +221,55 @@ public class FileMagic {
         return result;
     }
 
+    /**
+     * Determines if a file is an uncompressed or compressed binary XStream file
+     *
+     * @param file file to identify
+     * @return true if a binary XStream file
+     */
     public static boolean isBinaryXStreamFile(final File file) {
-        return isFile(file, BINARY_XSTREAM_HEADER);
+        return isFile(file, BINARY_XSTREAM_HEADER) || isCompressedBinaryXStreamFile(file);
+    }
+
+    public static boolean isCompressedBinaryXStreamFile(final File file) {
+        return isFile(file, COMPRESSED_BINARY_XSTREAM_HEADER);
+    }
+
+    /**
+     * Returns the header written at the start of a compressed binary XStream file
+     *
+     * @param version format version, 1 through 9
+     * @return the header
+     */
+    public static byte[] getCompressedBinaryXStreamHeader(final int version) {
+        final byte[] header = Arrays.copyOf(COMPRESSED_BINARY_XSTREAM_HEADER, COMPRESSED_BINARY_XSTREAM_HEADER.length + 2);
+
+        header[header.length - 2] = (byte) ('0' + version);
+        header[header.length - 1] = '\n';
+
+        return header;
+    }
+
+    /**
+     * Returns the format version of a compressed binary XStream file
+     *
+     * @param file file to identify
+     * @return the format version, 0 if the file is not a compressed binary XStream file
+     */
+    public static int getCompressedBinaryXStreamVersion(final File file) {
+        int version = 0;
+
+        if (isCompressedBinaryXStreamFile(file)) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                raf.seek(COMPRESSED_BINARY_XSTREAM_HEADER.length);
+
+                version = raf.read() - '0';
+            } catch (IOException ex) {
+                Logger.getLogger(FileMagic.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+
+        return version;
     }
 
     private static boolean isH2File(final File file) {
@@ -18,13 +18,27 @@
 package jgnash.engine;
 
 import org.junit.AfterClass;
+import org.junit.Test;
 
+import java.io.File;
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import jgnash.util.FileMagic;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
 /**
  * @author Craig Cavanaugh
  */
@@ -46,6 +60,46 @@ public class BinaryXStreamEngineTest extends EngineTest {
         return EngineFactory.bootLocalEngine(testFile, EngineFactory.DEFAULT, PASSWORD, DataStoreType.BINARY_XSTREAM);
     }
 
+    @Test
+    public void testCompressedFile() {
+        closeEngine();
+
+        final File file = new File(testFile);
+
+        assertTrue(FileMagic.isCompressedBinaryXStreamFile(file));
+        assertEquals(FileMagic.FileType.BinaryXStream, FileMagic.magic(file));
+
+        e = EngineFactory.bootLocalEngine(testFile, EngineFactory.DEFAULT, PASSWORD);
+
+        assertNotNull(e);
+        assertNotNull(e.getCurrency("CAD"));
+    }
+
+    @Test
+    public void testDamagedTransactionChunk() throws IOException {
+        Account account = new Account(AccountType.BANK, e.getDefaultCurrency());
+        account.setName("testDamagedTransactionChunk");
+        e.addAccount(e.getRootAccount(), account);
+
+        assertTrue(e.addTransaction(TransactionFactory.generateSingleEntryTransaction(account, BigDecimal.TEN,
+                new Date(), "memo", "payee", "")));
+
+        closeEngine();
+
+        // the transaction chunk is the last section of the file
+        final Path path = Paths.get(testFile);
+        final byte[] bytes = Files.readAllBytes(path);
+        Arrays.fill(bytes, bytes.length - 32, bytes.length, (byte) 0xff);
+        Files.write(path, bytes);
+
+        e = EngineFactory.bootLocalEngine(testFile, EngineFactory.DEFAULT, PASSWORD);
+
+        assertNull(e);
+
+        // the file must not be written over with the missing transactions
+        assertArrayEquals(bytes, Files.readAllBytes(path));
+    }
+
     @AfterClass
     public static void cleanup() throws IOException {
 
@@ -26,11 +26,15 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -51,7 +55,7 @@ public class DistributedLockTest {
 
     @Before
     public void setUp() {
-        final char[] password = new char[]{};
+        final char[] password = password();
 
         ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.PARANOID);
 
@@ -280,4 +284,116 @@ public class DistributedLockTest {
 
         Thread.sleep(1000);
     }
+
+    @Test
+    public void readLeaseRevokedForWriter() throws Exception {
+        final DistributedLockManager writerManager = new DistributedLockManager("localhost", PORT);
+        assertTrue(writerManager.connectToServer(password()));
+
+        try {
+            final ReadWriteLock readLock = manager.getLock("lease");
+            final ReadWriteLock writeLock = writerManager.getLock("lease");
+
+            // the lease is cached after the unlock
+            readLock.readLock().lock();
+            readLock.readLock().unlock();
+
+            final AtomicBoolean written = new AtomicBoolean();
+
+            Thread writer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    writeLock.writeLock().lock();
+
+                    try {
+                        Thread.sleep(500);
+                        written.set(true);
+                    } catch (final InterruptedException e) {
+                        logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
+                    } finally {
+                        writeLock.writeLock().unlock();
+                    }
+                }
+            });
+
+            writer.start();
+            Thread.sleep(100);
+
+            // must wait for the other manager to release the write lock
+            readLock.readLock().lock();
+
+            try {
+                assertTrue(written.get());
+            } finally {
+                readLock.readLock().unlock();
+            }
+
+            writer.join();
+        } finally {
+            writerManager.disconnectFromServer();
+        }
+    }
+
+    @Test
+    public void lockThroughput() throws Exception {
+        final int count = 5000;
+
+        final ReentrantReadWriteLock lock = (ReentrantReadWriteLock) manager.getLock("throughput");
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < count; i++) {
+            lock.readLock().lock();
+            lock.readLock().unlock();
+        }
+
+        final long readTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+
+        for (int i = 0; i < count; i++) {
+            lock.writeLock().lock();
+            lock.writeLock().unlock();
+        }
+
+        final long writeTime = System.nanoTime() - start;
+
+        logger.log(Level.INFO, "Read locks per second: {0}", count * TimeUnit.SECONDS.toNanos(1) / Math.max(readTime, 1));
+        logger.log(Level.INFO, "Write locks per second: {0}", count * TimeUnit.SECONDS.toNanos(1) / Math.max(writeTime, 1));
+
+        assertEquals(0, lock.getReadLockCount());
+        assertFalse(lock.isWriteLocked());
+
+        // the cached read lease needs a single round trip while every write lock needs one
+        assertTrue(readTime < writeTime);
+
+        // every lock was released on the server, another manager is not blocked
+        final DistributedLockManager otherManager = new DistributedLockManager("localhost", PORT);
+        assertTrue(otherManager.connectToServer(password()));
+
+        try {
+            final ReadWriteLock otherLock = otherManager.getLock("throughput");
+            final AtomicBoolean locked = new AtomicBoolean();
+
+            final Thread writer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    otherLock.writeLock().lock();
+                    locked.set(true);
+                    otherLock.writeLock().unlock();
+                }
+            });
+
+            writer.start();
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+
+            assertTrue(locked.get());
+        } finally {
+            otherManager.disconnectFromServer();
+        }
+    }
+
+    char[] password() {
+        return new char[]{};
+    }
 }
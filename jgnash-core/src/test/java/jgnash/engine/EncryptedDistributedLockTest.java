@@ -37,7 +37,7 @@ public class EncryptedDistributedLockTest extends DistributedLockTest {
     @Before
     @Override
     public void setUp() {
-        final char[] password = new char[]{'P', 'a', 's', 's', 'w', 'o', 'r', 'd'};
+        final char[] password = password();
 
         ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.PARANOID);
 
@@ -50,4 +50,9 @@ public class EncryptedDistributedLockTest extends DistributedLockTest {
         manager = new DistributedLockManager("localhost", PORT);
         manager.connectToServer(password);
     }
+
+    @Override
+    char[] password() {
+        return new char[]{'P', 'a', 's', 's', 'w', 'o', 'r', 'd'};
+    }
 }
@@ -21,10 +21,13 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.TimeZone;
 
 import jgnash.engine.budget.Budget;
 import jgnash.engine.budget.BudgetGoal;
@@ -189,10 +192,49 @@ public abstract class EngineTest {
         assertEquals(BigDecimal.TEN, new BigDecimal(e.getPreference("myNumber")));
     }
 
-    @Ignore
     @Test
-    public void testAddSecurityHistory() {
-        fail("Not yet implemented");
+    public void testAddSecurityHistory() throws Exception {
+        SecurityNode securityNode = new SecurityNode(e.getDefaultCurrency());
+        securityNode.setSymbol("GOOGL");
+        securityNode.setScale((byte) 2);
+        assertTrue(e.addSecurity(securityNode));
+
+        final Date today = DateUtils.today();
+        final Date yesterday = DateUtils.subtractDay(today);
+        final Date tomorrow = DateUtils.addDays(today, 1);
+
+        List<SecurityHistoryNode> history = new ArrayList<>();
+        history.add(buildHistoryNode(yesterday, "500.00"));
+        history.add(buildHistoryNode(today, "501.00"));
+        assertTrue(e.addSecurityHistory(securityNode, history));
+
+        // replace today and add tomorrow
+        history = new ArrayList<>();
+        history.add(buildHistoryNode(today, "505.00"));
+        history.add(buildHistoryNode(tomorrow, "502.00"));
+        assertTrue(e.addSecurityHistory(securityNode, history));
+
+        assertEquals(3, securityNode.getHistoryNodes().size());
+
+        // close and reopen to force check for persistence
+        closeEngine();
+        e = EngineFactory.bootLocalEngine(testFile, EngineFactory.DEFAULT, PASSWORD);
+
+        securityNode = e.getSecurity("GOOGL");
+        assertNotNull(securityNode);
+
+        assertEquals(3, securityNode.getHistoryNodes().size());
+        assertEquals(0, new BigDecimal("500.00").compareTo(securityNode.getHistoryNode(yesterday).getPrice()));
+        assertEquals(0, new BigDecimal("505.00").compareTo(securityNode.getHistoryNode(today).getPrice()));
+        assertEquals(0, new BigDecimal("502.00").compareTo(securityNode.getHistoryNode(tomorrow).getPrice()));
+    }
+
+    private static SecurityHistoryNode buildHistoryNode(final Date date, final String price) {
+        final SecurityHistoryNode node = new SecurityHistoryNode();
+        node.setDate(date);
+        node.setPrice(new BigDecimal(price));
+
+        return node;
     }
 
     @Ignore
@@ -361,6 +403,32 @@ public abstract class EngineTest {
 
         assertTrue(new BigDecimal("1.02").compareTo(rate.getRate()) == 0);
         assertTrue(new BigDecimal("1.01").compareTo(rate.getRate(yesterday)) == 0);
+
+        // closest prior rate
+        assertTrue(rate.contains(yesterday));
+        assertTrue(new BigDecimal("1.02").compareTo(rate.getRateOnOrBefore(DateUtils.addDays(today, 5))) == 0);
+        assertTrue(new BigDecimal("1.01").compareTo(rate.getRateOnOrBefore(yesterday)) == 0);
+        assertTrue(BigDecimal.ZERO.compareTo(rate.getRateOnOrBefore(DateUtils.subtractDay(yesterday))) == 0);
+
+        usd = e.getCurrency("USD");
+        cad = e.getCurrency("CAD");
+
+        assertTrue(new BigDecimal("1.01").compareTo(usd.getExchangeRate(cad, yesterday)) == 0);
+        assertTrue(new BigDecimal("1.02").compareTo(usd.getExchangeRate(cad)) == 0);
+
+        // the cached rate is replaced when the rate changes
+        e.setExchangeRate(usd, cad, new BigDecimal("1.03"), today);
+        assertTrue(new BigDecimal("1.03").compareTo(usd.getExchangeRate(cad)) == 0);
+
+        // dates before the epoch
+        final Date early = DateUtils.getDateOfTheYear(1965, 10);
+
+        e.setExchangeRate(usd, cad, new BigDecimal("0.95"), early);
+        rate = e.getExchangeRate(usd, cad);
+
+        assertTrue(rate.contains(early));
+        assertTrue(BigDecimal.ZERO.compareTo(rate.getRateOnOrBefore(DateUtils.subtractDay(early))) == 0);
+        assertTrue(new BigDecimal("0.95").compareTo(rate.getRateOnOrBefore(DateUtils.addDays(early, 1))) == 0);
     }
 
     @Ignore
@@ -808,6 +876,214 @@ public abstract class EngineTest {
         assertEquals(3, a.getTransactionCount());
     }
 
+    @Test
+    public void testAddTransactions() throws Exception {
+        final String ACCOUNT_NAME = "testAddTransactions";
+
+        CurrencyNode node = e.getDefaultCurrency();
+
+        Account a = new Account(AccountType.BANK, node);
+        a.setName(ACCOUNT_NAME);
+
+        e.addAccount(e.getRootAccount(), a);
+
+        final Date today = new Date();
+
+        final List<Transaction> transactions = new ArrayList<>();
+
+        for (int i = 0; i < 100; i++) {
+            transactions.add(TransactionFactory.generateSingleEntryTransaction(a, BigDecimal.ONE,
+                    DateUtils.addDays(today, -i), "memo", "payee", Integer.toString(i)));
+        }
+
+        // a duplicate is rejected without preventing the rest of the batch
+        transactions.add(transactions.get(0));
+
+        assertFalse(e.addTransactions(transactions));
+
+        assertEquals(100, a.getTransactionCount());
+        assertEquals(0, new BigDecimal("100").compareTo(a.getBalance()));
+        assertEquals("99", a.getSortedTransactionList().get(0).getNumber());
+
+        // close and reopen to force check for persistence
+        closeEngine();
+        e = EngineFactory.bootLocalEngine(testFile, EngineFactory.DEFAULT, PASSWORD);
+
+        a = e.getAccountByName(ACCOUNT_NAME);
+        assertEquals(100, a.getTransactionCount());
+    }
+
+    @Test
+    public void testRunningBalance() throws Exception {
+        final String ACCOUNT_NAME = "testRunningBalance";
+
+        CurrencyNode node = e.getDefaultCurrency();
+
+        Account a = new Account(AccountType.BANK, node);
+        a.setName(ACCOUNT_NAME);
+
+        e.addAccount(e.getRootAccount(), a);
+
+        final Date today = new Date();
+
+        e.addTransaction(TransactionFactory.generateSingleEntryTransaction(a, new BigDecimal("10.00"), DateUtils.addDays(today, -2), "memo", "payee", "1"));
+        e.addTransaction(TransactionFactory.generateSingleEntryTransaction(a, new BigDecimal("30.00"), today, "memo", "payee", "3"));
+
+        assertEquals(new BigDecimal("10.00"), a.getBalanceAt(0));
+        assertEquals(new BigDecimal("40.00"), a.getBalanceAt(1));
+
+        // insert between the existing transactions, balances from the insertion point must be recalculated
+        final Transaction middle = TransactionFactory.generateSingleEntryTransaction(a, new BigDecimal("20.00"), DateUtils.subtractDay(today), "memo", "payee", "2");
+        e.addTransaction(middle);
+
+        assertEquals(new BigDecimal("10.00"), a.getBalanceAt(0));
+        assertEquals(new BigDecimal("30.00"), a.getBalanceAt(1));
+        assertEquals(new BigDecimal("60.00"), a.getBalanceAt(2));
+        assertEquals(new BigDecimal("60.00"), a.getBalance());
+
+        // date ranged balances
+        assertEquals(new BigDecimal("50.00"), a.getBalance(DateUtils.subtractDay(today), today));
+        assertEquals(new BigDecimal("30.00"), a.getBalance(DateUtils.subtractDay(today)));
+        assertEquals(BigDecimal.ZERO, a.getBalance(DateUtils.addDays(today, -5), DateUtils.addDays(today, -3)));
+        assertEquals(2, a.getTransactions(DateUtils.addDays(today, -2), DateUtils.subtractDay(today)).size());
+
+        e.removeTransaction(middle);
+
+        assertEquals(new BigDecimal("10.00"), a.getBalanceAt(0));
+        assertEquals(new BigDecimal("40.00"), a.getBalanceAt(1));
+        assertEquals(new BigDecimal("40.00"), a.getBalance());
+    }
+
+    @Test
+    public void testBalanceCheckpoints() throws Exception {
+        final String ACCOUNT_NAME = "testBalanceCheckpoints";
+
+        CurrencyNode node = e.getDefaultCurrency();
+
+        Account a = new Account(AccountType.BANK, node);
+        a.setName(ACCOUNT_NAME);
+
+        e.addAccount(e.getRootAccount(), a);
+
+        // every other day from January 1st through July 17th
+        for (int i = 0; i < 100; i++) {
+            e.addTransaction(TransactionFactory.generateSingleEntryTransaction(a, BigDecimal.ONE, DateUtils.getDateOfTheYear(2012, i * 2 + 1),
+                    "memo", "payee", ""));
+        }
+
+        assertEquals(0, new BigDecimal("100").compareTo(a.getBalance()));
+
+        // a checkpoint for each month is calculated, but reading the balance does not change the account
+        assertTrue(a.getBalanceCheckpoints().isEmpty());
+        assertCheckpoints(a.getRunningBalanceIndex().getCheckpoints(), "16", "30", "46", "61", "76", "91", "100");
+
+        // only the checkpoints from the month of the transaction onward are invalidated, the others are saved
+        e.addTransaction(TransactionFactory.generateSingleEntryTransaction(a, BigDecimal.TEN, DateUtils.getDateOfTheYear(2012, 150),
+                "memo", "payee", ""));
+
+        assertCheckpoints(a.getBalanceCheckpoints(), "16", "30", "46", "61");
+
+        assertEquals(0, new BigDecimal("110").compareTo(a.getBalance()));
+        assertCheckpoints(a.getBalanceCheckpoints(), "16", "30", "46", "61");
+        assertCheckpoints(a.getRunningBalanceIndex().getCheckpoints(), "16", "30", "46", "61", "86", "101", "110");
+
+        // close and reopen to force check for persistence
+        closeEngine();
+        e = EngineFactory.bootLocalEngine(testFile, EngineFactory.DEFAULT, PASSWORD);
+
+        a = e.getAccountByName(ACCOUNT_NAME);
+
+        assertCheckpoints(a.getBalanceCheckpoints(), "16", "30", "46", "61");
+
+        // resolved from the checkpoints
+        assertEquals(0, new BigDecimal("110").compareTo(a.getBalance()));
+        assertEquals(0, new BigDecimal("85").compareTo(a.getBalance(DateUtils.getDateOfTheYear(2012, 150))));
+        assertEquals(0, new BigDecimal("10").compareTo(a.getBalance(DateUtils.getDateOfTheYear(2012, 150), DateUtils.getDateOfTheYear(2012, 150))));
+
+        assertCheckpoints(a.getBalanceCheckpoints(), "16", "30", "46", "61");
+
+        // checkpoints saved in another time zone have other month boundaries and are discarded when loaded
+        final TimeZone timeZone = TimeZone.getDefault();
+
+        closeEngine();
+
+        try {
+            TimeZone.setDefault(TimeZone.getTimeZone("UTC".equals(timeZone.getID()) ? "America/New_York" : "UTC"));
+
+            e = EngineFactory.bootLocalEngine(testFile, EngineFactory.DEFAULT, PASSWORD);
+            a = e.getAccountByName(ACCOUNT_NAME);
+
+            assertTrue(a.getBalanceCheckpoints().isEmpty());
+            assertEquals(0, new BigDecimal("110").compareTo(a.getBalance()));
+        } finally {
+            TimeZone.setDefault(timeZone);
+        }
+    }
+
+    /**
+     * Asserts the month end balances of consecutive months starting with January 2012
+     */
+    private static void assertCheckpoints(final Map<Integer, BigDecimal> checkpoints, final String... balances) {
+        assertEquals(balances.length, checkpoints.size());
+
+        final int january = RunningBalanceIndex.getMonth(DateUtils.getDateOfTheYear(2012, 1));
+
+        for (int i = 0; i < balances.length; i++) {
+            assertEquals(0, new BigDecimal(balances[i]).compareTo(checkpoints.get(january + i)));
+        }
+    }
+
+    @Test
+    public void testTreeBalance() throws Exception {
+        CurrencyNode usd = e.getDefaultCurrency();
+        CurrencyNode cad = e.getCurrency("CAD");
+
+        e.setExchangeRate(cad, usd, new BigDecimal("0.5"));
+
+        Account parent = new Account(AccountType.BANK, usd);
+        parent.setName("testTreeBalance");
+        e.addAccount(e.getRootAccount(), parent);
+
+        Account child = new Account(AccountType.BANK, usd);
+        child.setName("testTreeBalanceChild");
+        e.addAccount(parent, child);
+
+        Account foreign = new Account(AccountType.BANK, cad);
+        foreign.setName("testTreeBalanceForeign");
+        e.addAccount(child, foreign);
+
+        e.addTransaction(TransactionFactory.generateSingleEntryTransaction(parent, new BigDecimal("10.00"), new Date(), "memo", "payee", ""));
+        e.addTransaction(TransactionFactory.generateSingleEntryTransaction(foreign, new BigDecimal("100.00"), new Date(), "memo", "payee", ""));
+
+        final BigDecimal rate = cad.getExchangeRate(usd);
+
+        assertEquals(0, new BigDecimal("10.00").add(new BigDecimal("100.00").multiply(rate)).compareTo(parent.getTreeBalance()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(parent.getReconciledTreeBalance()));
+
+        // the cached tree balances are updated by the change in the balance
+        final Transaction transaction = TransactionFactory.generateSingleEntryTransaction(child, new BigDecimal("5.00"), new Date(), "memo", "payee", "");
+        transaction.setReconciled(ReconciledState.RECONCILED);
+        e.addTransaction(transaction);
+
+        assertEquals(0, new BigDecimal("15.00").add(new BigDecimal("100.00").multiply(rate)).compareTo(parent.getTreeBalance()));
+        assertEquals(0, new BigDecimal("5.00").compareTo(parent.getReconciledTreeBalance()));
+
+        e.addTransaction(TransactionFactory.generateSingleEntryTransaction(foreign, new BigDecimal("20.00"), new Date(), "memo", "payee", ""));
+
+        assertEquals(0, new BigDecimal("15.00").add(new BigDecimal("120.00").multiply(rate)).compareTo(parent.getTreeBalance()));
+        assertEquals(0, new BigDecimal("120.00").compareTo(foreign.getTreeBalance()));
+
+        e.removeTransaction(transaction);
+
+        assertEquals(0, new BigDecimal("10.00").add(new BigDecimal("120.00").multiply(rate)).compareTo(parent.getTreeBalance()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(parent.getReconciledTreeBalance()));
+
+        // a new exchange rate clears the cached tree balances
+        e.setExchangeRate(cad, usd, new BigDecimal("0.25"));
+
+        assertEquals(0, new BigDecimal("10.00").add(new BigDecimal("120.00").multiply(cad.getExchangeRate(usd))).compareTo(parent.getTreeBalance()));
+    }
+
     @Test
     public void testGetTransactionsWithAttachments() throws Exception {
         final String ACCOUNT_NAME = "testAccount";
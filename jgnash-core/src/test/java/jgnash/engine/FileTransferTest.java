@@ -21,25 +21,30 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Random;
 import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import jgnash.engine.jpa.JpaH2DataStore;
-import jgnash.engine.jpa.JpaHsqlDataStore;
 import jgnash.engine.jpa.JpaNetworkServer;
 import jgnash.util.EncryptionManager;
 
 import io.netty.util.ResourceLeakDetector;
+import org.junit.After;
 import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Ignore;
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -50,31 +55,38 @@ import static org.junit.Assert.fail;
  */
 public class FileTransferTest {
 
-    @Test
-    public void encryptedNetworkedTest() throws Exception {
+    private String testFile;
 
-        final char[] password = new char[]{'p','a','s','s','w','o','r','d'};
-        final int port = 5300;
+    @Before
+    public void setUp() {
+        ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.PARANOID);
+    }
 
-        System.setProperty(EncryptionManager.ENCRYPTION_FLAG, "true");
-        System.setProperty("ssl", "true");
+    @After
+    public void tearDown() {
+        EngineFactory.closeEngine(EngineFactory.DEFAULT);
+    }
 
-        ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.PARANOID);
+    /**
+     * Creates a populated database and starts a server for it
+     *
+     * @param type     database type
+     * @param password password, encryption and ssl are enabled if not empty
+     * @param port     server port
+     */
+    private void startServer(final DataStoreType type, final char[] password, final int port) throws Exception {
+        final boolean encrypted = password.length > 0;
 
-        String testFile = null;
+        System.setProperty(EncryptionManager.ENCRYPTION_FLAG, Boolean.toString(encrypted));
+        System.setProperty("ssl", Boolean.toString(encrypted));
 
-        try {
-            File temp = Files.createTempFile("jpa-test-e", "." + JpaH2DataStore.FILE_EXT).toFile();
-            Assert.assertTrue(temp.delete());
-            temp.deleteOnExit();
-            testFile = temp.getAbsolutePath();
-        } catch (final IOException e) {
-            Logger.getLogger(FileTransferTest.class.getName()).log(Level.SEVERE, e.getLocalizedMessage(), e);
-            fail();
-        }
+        File temp = Files.createTempFile("jpa-test", "." + type.getDataStore().getFileExt()).toFile();
+        Assert.assertTrue(temp.delete());
+        temp.deleteOnExit();
+        testFile = temp.getAbsolutePath();
 
         // Start an engine and close so we have a populated file
-        EngineFactory.bootLocalEngine(testFile, EngineFactory.DEFAULT, password, DataStoreType.H2_DATABASE);
+        EngineFactory.bootLocalEngine(testFile, EngineFactory.DEFAULT, password, type);
         EngineFactory.closeEngine(EngineFactory.DEFAULT);
 
         final JpaNetworkServer networkServer = new JpaNetworkServer();
@@ -85,12 +97,21 @@ public class FileTransferTest {
 
             @Override
             public void run() {
-                System.out.println("starting server");
+                Logger.getLogger(FileTransferTest.class.getName()).info("Starting Server");
                 networkServer.startServer(serverFile, port, password);
             }
         }.start();
 
         Thread.sleep(4000);
+    }
+
+    @Test
+    public void encryptedNetworkedTest() throws Exception {
+
+        final char[] password = new char[]{'p','a','s','s','w','o','r','d'};
+        final int port = 5300;
+
+        startServer(DataStoreType.H2_DATABASE, password, port);
 
         try {
             Engine e = EngineFactory.bootClientEngine("localhost", port, password, EngineFactory.DEFAULT);
@@ -102,11 +123,13 @@ public class FileTransferTest {
             Path tempAttachment = Paths.get(Object.class.getResource("/jgnash-logo.png").toURI());
             assertTrue(Files.exists(tempAttachment));
 
-            assertTrue(e.addAttachment(tempAttachment, true));  // push a copy of the attachment
+            final String attachment = e.addAttachment(tempAttachment, true);  // push a copy of the attachment
+            assertNotNull(attachment);
+            assertTrue(AttachmentUtils.isContentName(attachment));
 
             Thread.sleep(4000); // wait for the transfer to finish, it may have been pushed into the background
 
-            Path newPath = Paths.get(AttachmentUtils.getAttachmentDirectory(Paths.get(testFile)) + File.separator + tempAttachment.getFileName());
+            Path newPath = Paths.get(AttachmentUtils.getAttachmentDirectory(Paths.get(testFile)) + File.separator + attachment);
             newPath.toFile().deleteOnExit();
 
             // Verify copy has occurred
@@ -129,8 +152,6 @@ public class FileTransferTest {
 
             assertTrue(Files.exists(remoteTemp));
             assertNotEquals(remoteTemp.toString(), tempAttachment.toString());
-
-            EngineFactory.closeEngine(EngineFactory.DEFAULT);
         } catch (final Exception e) {
             Logger.getLogger(FileTransferTest.class.getName()).log(Level.SEVERE, e.getLocalizedMessage(), e);
             fail();
@@ -143,41 +164,7 @@ public class FileTransferTest {
         final char[] password = new char[]{};
         final int port = 5400;
 
-        System.setProperty(EncryptionManager.ENCRYPTION_FLAG, "false");
-        System.setProperty("ssl", "false");
-
-        ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.PARANOID);
-
-        String testFile = null;
-
-        try {
-            File temp = Files.createTempFile("jpa-test", "." + JpaHsqlDataStore.FILE_EXT).toFile();
-            Assert.assertTrue(temp.delete());
-            temp.deleteOnExit();
-            testFile = temp.getAbsolutePath();
-        } catch (final IOException e) {
-            Logger.getLogger(FileTransferTest.class.getName()).log(Level.SEVERE, e.getLocalizedMessage(), e);
-            fail();
-        }
-
-        // Start an engine and close so we have a populated file
-        EngineFactory.bootLocalEngine(testFile, EngineFactory.DEFAULT, password, DataStoreType.HSQL_DATABASE);
-        EngineFactory.closeEngine(EngineFactory.DEFAULT);
-
-        final JpaNetworkServer networkServer = new JpaNetworkServer();
-
-        final String serverFile = testFile;
-
-        new Thread() {
-
-            @Override
-            public void run() {
-                Logger.getLogger(FileTransferTest.class.getName()).info("Starting Server");
-                networkServer.startServer(serverFile, port, password);
-            }
-        }.start();
-
-        Thread.sleep(4000);
+        startServer(DataStoreType.HSQL_DATABASE, password, port);
 
         try {
             Engine e = EngineFactory.bootClientEngine("localhost", port, password, EngineFactory.DEFAULT);
@@ -189,17 +176,22 @@ public class FileTransferTest {
             Path tempAttachment = Paths.get(Object.class.getResource("/jgnash-logo.png").toURI());
             assertTrue(Files.exists(tempAttachment));
 
-            assertTrue(e.addAttachment(tempAttachment, true));  // push a copy of the attachment
+            final String attachment = e.addAttachment(tempAttachment, true);  // push a copy of the attachment
+            assertNotNull(attachment);
+            assertTrue(AttachmentUtils.isContentName(attachment));
 
             Thread.sleep(4000); // wait for transfer to finish
 
-            Path newPath = Paths.get(AttachmentUtils.getAttachmentDirectory(Paths.get(testFile)) + File.separator + tempAttachment.getFileName());
+            Path newPath = Paths.get(AttachmentUtils.getAttachmentDirectory(Paths.get(testFile)) + File.separator + attachment);
             newPath.toFile().deleteOnExit();
 
             // Verify copy has occurred
             assertEquals(tempAttachment.toFile().length(), newPath.toFile().length()); // same length?
             assertNotEquals(tempAttachment.toString(), newPath.toString()); // different files?
 
+            // The same content is stored once under the same name
+            assertEquals(attachment, e.addAttachment(tempAttachment, true));
+
 
             // Test that move is working
             Path moveFile = Files.createTempFile("jgnash", "test");
@@ -207,7 +199,7 @@ public class FileTransferTest {
             bw.write("This is the temporary file content 3.");
             bw.close();
 
-            assertTrue(e.addAttachment(moveFile, false));
+            assertNotNull(e.addAttachment(moveFile, false));
             assertFalse(Files.exists(moveFile));
 
             // Create a new temp file in the directory
@@ -225,12 +217,124 @@ public class FileTransferTest {
 
             assertTrue(Files.exists(remoteTemp));
             assertNotEquals(remoteTemp.toString(), tempAttachment.toString());
-
-            EngineFactory.closeEngine(EngineFactory.DEFAULT);
         } catch (Exception e) {
             Logger.getLogger(FileTransferTest.class.getName()).log(Level.SEVERE, e.getLocalizedMessage(), e);
             fail();
         }
 
     }
+
+    @Test
+    public void resumeTest() throws Exception {
+        final char[] password = new char[]{};
+        final int port = 5700;
+
+        startServer(DataStoreType.H2_DATABASE, password, port);
+
+        try {
+            Engine e = EngineFactory.bootClientEngine("localhost", port, password, EngineFactory.DEFAULT);
+
+            final byte[] content = "0123456789ABCDEFGHIJ".getBytes(StandardCharsets.UTF_8);
+
+            // Retrieve a file to find the directory the client receives files in
+            final Path clientDirectory = e.getAttachment(createServerFile("first".getBytes(StandardCharsets.UTF_8))
+                    .getFileName().toString()).get().getParent();
+
+            // A partial copy that matches the start of the server's file is completed
+            assertArrayEquals(content, resume(e, clientDirectory, createServerFile(content),
+                    "0123456789".getBytes(StandardCharsets.UTF_8)));
+
+            // A partial copy that does not match is discarded and the whole file is sent
+            assertArrayEquals(content, resume(e, clientDirectory, createServerFile(content),
+                    "abcdefghij".getBytes(StandardCharsets.UTF_8)));
+        } catch (final Exception e) {
+            Logger.getLogger(FileTransferTest.class.getName()).log(Level.SEVERE, e.getLocalizedMessage(), e);
+            fail();
+        }
+    }
+
+    /**
+     * Creates a file in the server attachment directory
+     */
+    private Path createServerFile(final byte[] content) throws IOException {
+        final Path path = Files.createTempFile(AttachmentUtils.getAttachmentDirectory(Paths.get(testFile)), "tempfile-", ".txt");
+        path.toFile().deleteOnExit();
+        Files.write(path, content);
+
+        return path;
+    }
+
+    /**
+     * Leaves a partial copy of a server file in the client directory and retrieves the file
+     *
+     * @return the content of the retrieved file
+     */
+    private static byte[] resume(final Engine e, final Path clientDirectory, final Path serverFile,
+                                 final byte[] partialContent) throws Exception {
+
+        final Path part = clientDirectory.resolve(serverFile.getFileName() + ".part");
+        part.toFile().deleteOnExit();
+        Files.write(part, partialContent);
+
+        final Path remote = e.getAttachment(serverFile.getFileName().toString()).get();
+        assertNotNull(remote);
+        remote.toFile().deleteOnExit();
+
+        assertFalse(Files.exists(part));
+
+        return Files.readAllBytes(remote);
+    }
+
+    @Ignore("Benchmark, run manually")
+    @Test
+    public void throughputTest() throws Exception {
+        measureThroughput(new char[]{}, 5500);
+    }
+
+    @Ignore("Benchmark, run manually")
+    @Test
+    public void encryptedThroughputTest() throws Exception {
+        measureThroughput(new char[]{'p','a','s','s','w','o','r','d'}, 5600);
+    }
+
+    /**
+     * Pushes a large attachment to the server and logs the transfer rate
+     */
+    private void measureThroughput(final char[] password, final int port) throws Exception {
+        final int fileSize = 32 * 1024 * 1024;
+
+        final boolean encrypted = password.length > 0;
+
+        startServer(DataStoreType.H2_DATABASE, password, port);
+
+        try {
+            Engine e = EngineFactory.bootClientEngine("localhost", port, password, EngineFactory.DEFAULT);
+
+            final Path largeFile = Files.createTempFile("jgnash-large-", ".bin");
+            largeFile.toFile().deleteOnExit();
+
+            final byte[] bytes = new byte[fileSize];
+            new Random(1).nextBytes(bytes);
+            Files.write(largeFile, bytes);
+
+            final long start = System.nanoTime();
+
+            final String attachment = e.addAttachment(largeFile, true);  // returns once the server has stored the file
+            assertNotNull(attachment);
+
+            final double seconds = (System.nanoTime() - start) / 1000000000.0;
+
+            Path newPath = Paths.get(AttachmentUtils.getAttachmentDirectory(Paths.get(testFile)) + File.separator + attachment);
+            newPath.toFile().deleteOnExit();
+
+            assertEquals(fileSize, Files.size(newPath));
+            assertArrayEquals(bytes, Files.readAllBytes(newPath));
+
+            Logger.getLogger(FileTransferTest.class.getName()).info(String.format("%s transfer of %d MB: %.2f MB/s",
+                    encrypted ? "Encrypted" : "Plain", fileSize / (1024 * 1024), fileSize / (1024 * 1024) / seconds));
+        } catch (final Exception e) {
+            Logger.getLogger(FileTransferTest.class.getName()).log(Level.SEVERE, e.getLocalizedMessage(), e);
+            fail();
+        }
+    }
 }
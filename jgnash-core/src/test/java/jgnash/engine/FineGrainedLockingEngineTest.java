@@ -0,0 +1,107 @@
+/*
+ * jGnash, a personal finance application
+ * Copyright (C) 2001-2014 Craig Cavanaugh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jgnash.engine;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the engine tests with transaction changes locking only the affected accounts
+ *
+ * @author Craig Cavanaugh
+ */
+public class FineGrainedLockingEngineTest extends XMLEngineTest {
+
+    private boolean fineGrainedLocking;
+
+    @Override
+    public Engine createEngine() throws Exception {
+        fineGrainedLocking = EngineFactory.useFineGrainedLocking();
+        EngineFactory.setUseFineGrainedLocking(true);
+
+        return super.createEngine();
+    }
+
+    @Override
+    public void tearDown() throws IOException {
+        super.tearDown();
+
+        EngineFactory.setUseFineGrainedLocking(fineGrainedLocking);
+    }
+
+    @Test
+    public void testConcurrentTransfers() throws Exception {
+        final CurrencyNode node = e.getDefaultCurrency();
+
+        final Account[] accounts = new Account[4];
+
+        for (int i = 0; i < accounts.length; i++) {
+            accounts[i] = new Account(AccountType.BANK, node);
+            accounts[i].setName("concurrent" + i);
+            e.addAccount(e.getRootAccount(), accounts[i]);
+        }
+
+        final int count = 50;
+
+        final ExecutorService executorService = Executors.newFixedThreadPool(accounts.length);
+        final List<Future<Boolean>> futures = new ArrayList<>();
+
+        // each thread transfers in the opposite direction of its neighbour so account order differs between threads
+        for (int i = 0; i < accounts.length; i++) {
+            final Account debit = accounts[i];
+            final Account credit = accounts[(i + 1) % accounts.length];
+
+            futures.add(executorService.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    boolean result = true;
+
+                    for (int j = 0; j < count; j++) {
+                        result &= e.addTransaction(TransactionFactory.generateDoubleEntryTransaction(credit, debit,
+                                BigDecimal.ONE, new Date(), "memo", "payee", Integer.toString(j)));
+                    }
+                    return result;
+                }
+            }));
+        }
+
+        for (final Future<Boolean> future : futures) {
+            assertTrue(future.get(1, TimeUnit.MINUTES));
+        }
+
+        executorService.shutdown();
+
+        for (final Account account : accounts) {
+            assertEquals(count * 2, account.getTransactionCount());
+            assertEquals(0, BigDecimal.ZERO.compareTo(account.getBalance()));
+        }
+    }
+}
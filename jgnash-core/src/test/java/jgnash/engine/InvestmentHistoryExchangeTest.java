@@ -193,6 +193,51 @@ import static org.junit.Assert.fail;
 
          assertEquals(new BigDecimal("503.00"), price);
 
+         /// The account's price index is kept current as transactions are removed ///
+
+         assertEquals(new BigDecimal("502.34"), Engine.getMarketPrice(investAccount.getMarketPriceIndex(), securityNode, usdCurrency, getDate("2014-07-01")));
+
+         assertTrue(e.removeTransaction(it));
+
+         price = Engine.getMarketPrice(investAccount.getMarketPriceIndex(), securityNode, usdCurrency, getDate("2014-07-01"));
+         assertEquals(new BigDecimal("501.34"), price);
+         assertEquals(Engine.getMarketPrice(investAccount.getSortedTransactionList(), securityNode, usdCurrency, getDate("2014-07-01")), price);
+     }
+
+     @Test
+     public void testBulkHistory() {
+         final SecurityHistoryNode existing = new SecurityHistoryNode();
+         existing.setDate(getDate("2014-06-02"));
+         existing.setPrice(new BigDecimal("400.00"));
+         assertTrue(e.addSecurityHistory(securityNode, existing));
+
+         final List<SecurityHistoryNode> history = new ArrayList<>();
+
+         // added in reverse order to check sorting
+         for (int i = 30; i > 0; i--) {
+             final SecurityHistoryNode node = new SecurityHistoryNode();
+             node.setDate(getDate(String.format("2014-06-%02d", i)));
+             node.setPrice(new BigDecimal(500 + i));
+             history.add(node);
+         }
+
+         assertTrue(e.addSecurityHistory(securityNode, history));
+
+         final List<SecurityHistoryNode> nodes = securityNode.getHistoryNodes();
+
+         assertEquals(30, nodes.size());
+         assertEquals(getDate("2014-06-01"), nodes.get(0).getDate());
+         assertEquals(getDate("2014-06-30"), nodes.get(29).getDate());
+
+         // the existing history on the same date is replaced
+         assertEquals(new BigDecimal(502), securityNode.getHistoryNode(getDate("2014-06-02")).getPrice());
+
+         // adding the same history again is not a change
+         assertTrue(e.addSecurityHistory(securityNode, history));
+         assertEquals(30, securityNode.getHistoryNodes().size());
+
+         final BigDecimal price = Engine.getMarketPrice(Collections.<Transaction>emptyList(), securityNode, usdCurrency, getDate("2014-06-15"));
+         assertEquals(new BigDecimal(515), price);
      }
 
      @Before
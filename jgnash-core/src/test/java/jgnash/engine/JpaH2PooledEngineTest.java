@@ -0,0 +1,125 @@
+/*
+ * jGnash, a personal finance application
+ * Copyright (C) 2001-2014 Craig Cavanaugh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jgnash.engine;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the engine tests with read only queries on a pool of EntityManagers
+ *
+ * @author Craig Cavanaugh
+ */
+public class JpaH2PooledEngineTest extends JpaH2EngineTest {
+
+    private int readThreads;
+
+    @Override
+    public Engine createEngine() throws Exception {
+        readThreads = EngineFactory.getJpaReadThreads();
+        EngineFactory.setJpaReadThreads(4);
+
+        return super.createEngine();
+    }
+
+    @Override
+    public void tearDown() throws IOException {
+        super.tearDown();
+
+        EngineFactory.setJpaReadThreads(readThreads);
+    }
+
+    @Test
+    public void testConcurrentReads() throws Exception {
+        final Account checking = new Account(AccountType.BANK, e.getDefaultCurrency());
+        checking.setName("Checking");
+        assertTrue(e.addAccount(e.getRootAccount(), checking));
+
+        final Account expense = new Account(AccountType.EXPENSE, e.getDefaultCurrency());
+        expense.setName("Expense");
+        assertTrue(e.addAccount(e.getRootAccount(), expense));
+
+        for (int i = 0; i < 20; i++) {
+            assertTrue(e.addTransaction(TransactionFactory.generateDoubleEntryTransaction(expense, checking,
+                    BigDecimal.ONE, new Date(), "before", "", "")));
+        }
+
+        final int readers = 4;
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < readers; i++) {
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+
+                        for (int j = 0; j < 25; j++) {
+                            final List<Transaction> transactions = e.getTransactions();
+
+                            // writes may add transactions while reading, but every result is the managed instance
+                            assertTrue(transactions.size() >= 20);
+
+                            for (final Transaction transaction : transactions) {
+                                assertSame(transaction, e.getTransactionByUuid(transaction.getUuid()));
+                            }
+
+                            assertFalse(e.isStored(new Transaction()));
+                            assertSame(checking, e.getAccountByUuid(checking.getUuid()));
+                        }
+                    } catch (final Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            });
+
+            threads.add(thread);
+            thread.start();
+        }
+
+        start.countDown();
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(e.addTransaction(TransactionFactory.generateDoubleEntryTransaction(expense, checking,
+                    BigDecimal.ONE, new Date(), "during", "", "")));
+        }
+
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNull(failure.get());
+        assertEquals(30, e.getTransactions().size());
+        assertEquals(30, checking.getTransactionCount());
+    }
+}
@@ -8,6 +8,8 @@ import java.math.BigDecimal;
 import java.util.Date;
 import java.util.List;
 
+import jgnash.util.DateUtils;
+
 import org.junit.Test;
 
 public class TransactionTest {
@@ -110,4 +112,62 @@ public class TransactionTest {
         }
     }
 
+    @Test
+    public void testSortKeyClearedOnEntryChange() {
+        final CurrencyNode node = DefaultCurrencies.buildCustomNode("USD");
+
+        final Account bank = new Account(AccountType.BANK, node);
+        final Account expense = new Account(AccountType.EXPENSE, node);
+
+        final Date date = new Date();
+
+        final Transaction first = TransactionFactory.generateDoubleEntryTransaction(bank, expense, new BigDecimal("10"), date, "memo", "payee", "");
+        final Transaction second = TransactionFactory.generateDoubleEntryTransaction(bank, expense, new BigDecimal("20"), date, "memo", "payee", "");
+        second.setDateEntered(first.getDateEntered());
+
+        // only the amounts differ
+        final int order = Integer.signum(first.compareTo(second));
+        assertTrue(order != 0);
+
+        second.getTransactionEntries().get(0).setAmount(new BigDecimal("5"));
+
+        assertEquals(-order, Integer.signum(first.compareTo(second)));
+    }
+
+    @Test
+    public void testAttachedTransactionReordered() {
+        final CurrencyNode node = DefaultCurrencies.buildCustomNode("USD");
+
+        final Account bank = new Account(AccountType.BANK, node);
+        final Account expense = new Account(AccountType.EXPENSE, node);
+
+        final Date date = new Date();
+
+        final Transaction first = TransactionFactory.generateDoubleEntryTransaction(bank, expense, new BigDecimal("10"), date, "memo", "payee", "1");
+        final Transaction second = TransactionFactory.generateDoubleEntryTransaction(bank, expense, new BigDecimal("20"), date, "memo", "payee", "2");
+        final Transaction third = TransactionFactory.generateDoubleEntryTransaction(bank, expense, new BigDecimal("30"), date, "memo", "payee", "3");
+
+        for (final Transaction transaction : new Transaction[]{first, second, third}) {
+            bank.addTransaction(transaction);
+            expense.addTransaction(transaction);
+        }
+
+        assertEquals(0, bank.indexOf(first));
+
+        // edited in place while attached
+        first.setNumber("4");
+
+        for (final Account account : new Account[]{bank, expense}) {
+            assertEquals(2, account.indexOf(first));
+            assertEquals(0, account.indexOf(second));
+            assertEquals(1, account.indexOf(third));
+        }
+
+        first.setDate(DateUtils.subtractDay(date));
+
+        assertEquals(0, bank.indexOf(first));
+        assertEquals(1, bank.indexOf(second));
+        assertTrue(bank.removeTransaction(second));
+        assertEquals(1, bank.indexOf(third));
+    }
 }
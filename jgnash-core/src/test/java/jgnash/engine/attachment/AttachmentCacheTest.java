@@ -0,0 +1,127 @@
+/*
+ * jGnash, a personal finance application
+ * Copyright (C) 2001-2014 Craig Cavanaugh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jgnash.engine.attachment;
+
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import jgnash.engine.AttachmentUtils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Content addressed attachment cache test
+ *
+ * @author Craig Cavanaugh
+ */
+public class AttachmentCacheTest {
+
+    @Test
+    public void testContentName() throws Exception {
+        final Path directory = Files.createTempDirectory("jgnash-cache-test");
+
+        try {
+            final Path first = createFile(directory, "first.PDF", 100, (byte) 1);
+            final Path second = createFile(directory, "second.pdf", 100, (byte) 1);
+            final Path third = createFile(directory, "third.pdf", 100, (byte) 2);
+
+            final String name = AttachmentUtils.getContentName(first);
+
+            assertTrue(AttachmentUtils.isContentName(name));
+            assertTrue(name.endsWith(".pdf"));
+            assertEquals(name, AttachmentUtils.getContentName(second));
+            assertNotEquals(name, AttachmentUtils.getContentName(third));
+            assertTrue(AttachmentUtils.verifyContent(name, second));
+            assertFalse(AttachmentUtils.verifyContent(name, third));
+
+            assertFalse(AttachmentUtils.isContentName("first.pdf"));
+            assertFalse(AttachmentUtils.isContentName(name + ".part"));
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() throws Exception {
+        final Path directory = Files.createTempDirectory("jgnash-cache-test");
+        final Path source = Files.createTempDirectory("jgnash-cache-source");
+
+        try {
+            final AttachmentCache cache = new AttachmentCache(directory, 250);
+
+            final String[] names = new String[3];
+
+            for (int i = 0; i < names.length; i++) {
+                final Path file = createFile(source, "file" + i + ".bin", 100, (byte) i);
+
+                names[i] = AttachmentUtils.getContentName(file);
+                cache.put(names[i], file, true);
+
+                if (i == 1) {
+                    assertNotNull(cache.get(names[0]));   // first file is now used more recently than the second
+                }
+            }
+
+            assertNotNull(cache.get(names[0]));
+            assertNull(cache.get(names[1]));
+
+            Thread.sleep(1100);   // modification times may only have a resolution of a second
+
+            assertNotNull(cache.get(names[2]));
+            assertFalse(Files.exists(cache.getPath(names[1])));
+
+            // reopening the cache keeps the entries that fit
+            final AttachmentCache reopened = new AttachmentCache(directory, 150);
+
+            assertNull(reopened.get(names[0]));
+            assertNotNull(reopened.get(names[2]));
+        } finally {
+            delete(directory);
+            delete(source);
+        }
+    }
+
+    private static Path createFile(final Path directory, final String name, final int length, final byte value)
+            throws Exception {
+        final byte[] bytes = new byte[length];
+
+        for (int i = 0; i < length; i++) {
+            bytes[i] = value;
+        }
+
+        return Files.write(directory.resolve(name), bytes);
+    }
+
+    private static void delete(final Path directory) throws Exception {
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(directory)) {
+            for (final Path path : ds) {
+                Files.delete(path);
+            }
+        }
+
+        Files.delete(directory);
+    }
+}
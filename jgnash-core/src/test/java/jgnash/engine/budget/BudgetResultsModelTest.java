@@ -0,0 +1,140 @@
+/*
+ * jGnash, a personal finance application
+ * Copyright (C) 2001-2014 Craig Cavanaugh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jgnash.engine.budget;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.Date;
+
+import jgnash.engine.Account;
+import jgnash.engine.AccountGroup;
+import jgnash.engine.AccountType;
+import jgnash.engine.CurrencyNode;
+import jgnash.engine.DataStoreType;
+import jgnash.engine.Engine;
+import jgnash.engine.EngineFactory;
+import jgnash.engine.Transaction;
+import jgnash.engine.TransactionFactory;
+import jgnash.engine.message.ChannelEvent;
+import jgnash.engine.message.Message;
+import jgnash.engine.message.MessageChannel;
+import jgnash.engine.message.MessageProperty;
+import jgnash.util.DateUtils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * JUnit test class for cached {@code BudgetResultsModel} results
+ *
+ * @author Craig Cavanaugh
+ */
+public class BudgetResultsModelTest {
+
+    private static final char[] PASSWORD = new char[]{};
+
+    @Test
+    public void testIncrementalResults() throws Exception {
+
+        File file = Files.createTempFile("budget-", DataStoreType.XML.getDataStore().getFileExt()).toFile();
+
+        file.deleteOnExit();
+
+        Engine e = EngineFactory.bootLocalEngine(file.getName(), EngineFactory.DEFAULT, PASSWORD, DataStoreType.XML);
+        CurrencyNode node = e.getDefaultCurrency();
+
+        Account bank = new Account(AccountType.BANK, node);
+        bank.setName("Bank");
+        e.addAccount(e.getRootAccount(), bank);
+
+        Account food = new Account(AccountType.EXPENSE, node);
+        food.setName("Food");
+        e.addAccount(e.getRootAccount(), food);
+
+        Account groceries = new Account(AccountType.EXPENSE, node);
+        groceries.setName("Groceries");
+        e.addAccount(food, groceries);
+
+        Account dining = new Account(AccountType.EXPENSE, node);
+        dining.setName("Dining");
+        e.addAccount(food, dining);
+
+        final Date march = DateUtils.getDateOfTheYear(2012, 75);
+
+        assertTrue(e.addTransaction(TransactionFactory.generateDoubleEntryTransaction(bank, groceries, new BigDecimal("50.00"), march,
+                "memo", "payee", "")));
+        assertTrue(e.addTransaction(TransactionFactory.generateDoubleEntryTransaction(bank, dining, new BigDecimal("20.00"), march,
+                "memo", "payee", "")));
+
+        Budget budget = new Budget();
+        budget.setName("My Budget");
+        budget.setDescription("Test");
+        budget.setBudgetPeriod(BudgetPeriod.MONTHLY);
+
+        assertTrue(e.addBudget(budget));
+
+        BudgetResultsModel model = new BudgetResultsModel(budget, 2012, node);
+        model.loadResults();
+
+        BudgetPeriodDescriptor marchDescriptor = null;
+        BudgetPeriodDescriptor aprilDescriptor = null;
+
+        for (final BudgetPeriodDescriptor descriptor : model.getDescriptorList()) {
+            if (descriptor.isBetween(march)) {
+                marchDescriptor = descriptor;
+            } else if (marchDescriptor != null && aprilDescriptor == null) {
+                aprilDescriptor = descriptor;
+            }
+        }
+
+        assertEquals(new BigDecimal("50.00"), model.getResults(marchDescriptor, groceries).getChange());
+        assertEquals(new BigDecimal("20.00"), model.getResults(marchDescriptor, dining).getChange());
+
+        // parent is rolled up from the children
+        assertEquals(new BigDecimal("70.00"), model.getResults(marchDescriptor, food).getChange());
+        assertEquals(new BigDecimal("70.00"), model.getResults(marchDescriptor, AccountGroup.EXPENSE).getChange());
+        assertEquals(new BigDecimal("0.00"), model.getResults(aprilDescriptor, food).getChange());
+
+        final BudgetPeriodResults aprilResults = model.getResults(aprilDescriptor, food);
+
+        // add a transaction and notify the model directly instead of waiting for the message bus
+        final Transaction transaction = TransactionFactory.generateDoubleEntryTransaction(bank, dining, new BigDecimal("5.00"), march,
+                "memo", "payee", "");
+
+        assertTrue(e.addTransaction(transaction));
+
+        final Message message = new Message(MessageChannel.TRANSACTION, ChannelEvent.TRANSACTION_ADD, e);
+        message.setObject(MessageProperty.TRANSACTION, transaction);
+        model.messagePosted(message);
+
+        assertEquals(new BigDecimal("25.00"), model.getResults(marchDescriptor, dining).getChange());
+        assertEquals(new BigDecimal("75.00"), model.getResults(marchDescriptor, food).getChange());
+        assertEquals(new BigDecimal("75.00"), model.getResults(marchDescriptor, AccountGroup.EXPENSE).getChange());
+        assertEquals(new BigDecimal("75.00"), model.getResults(food).getChange());
+
+        // periods not covering the transaction are not recomputed
+        assertTrue(aprilResults == model.getResults(aprilDescriptor, food));
+
+        EngineFactory.closeEngine(EngineFactory.DEFAULT);
+
+        assertTrue(file.delete());
+    }
+}
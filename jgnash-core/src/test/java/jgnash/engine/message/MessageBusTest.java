@@ -0,0 +1,111 @@
+/*
+ * jGnash, a personal finance application
+ * Copyright (C) 2001-2014 Craig Cavanaugh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jgnash.engine.message;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jgnash.engine.Account;
+import jgnash.engine.AccountType;
+import jgnash.engine.CurrencyNode;
+import jgnash.engine.DefaultCurrencies;
+import jgnash.engine.StoredObject;
+import jgnash.engine.Transaction;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Message bus coalescing test
+ *
+ * @author Craig Cavanaugh
+ */
+public class MessageBusTest {
+
+    @Test
+    public void testTransactionEventsAreCoalesced() throws Exception {
+        final MessageBus messageBus = MessageBus.getInstance("MessageBusTest");
+
+        final CurrencyNode currency = DefaultCurrencies.buildNode(Locale.US);
+
+        final StoredObject[] accounts = {new Account(AccountType.BANK, currency), new Account(AccountType.BANK, currency)};
+
+        Transaction first = null;
+
+        final AtomicInteger plainCount = new AtomicInteger();
+        final List<Message> batches = new CopyOnWriteArrayList<>();
+        final CountDownLatch batchLatch = new CountDownLatch(accounts.length);
+
+        final MessageListener plainListener = new MessageListener() {
+            @Override
+            public void messagePosted(final Message event) {
+                plainCount.incrementAndGet();
+            }
+        };
+
+        final BatchMessageListener batchListener = new BatchMessageListener() {
+            @Override
+            public void messagePosted(final Message event) {
+                batches.add(event);
+                batchLatch.countDown();
+            }
+        };
+
+        messageBus.registerListener(plainListener, MessageChannel.TRANSACTION);
+        messageBus.registerListener(batchListener, MessageChannel.TRANSACTION);
+
+        for (int i = 0; i < 100; i++) {
+            final Transaction transaction = new Transaction();
+
+            if (first == null) {
+                first = transaction;
+            }
+
+            for (final StoredObject account : accounts) {
+                final Message message = new Message(MessageChannel.TRANSACTION, ChannelEvent.TRANSACTION_ADD, "source-uuid");
+                message.setObject(MessageProperty.ACCOUNT, account);
+                message.setObject(MessageProperty.TRANSACTION, transaction);
+
+                messageBus.fireEvent(message);
+            }
+        }
+
+        assertTrue(batchLatch.await(5, TimeUnit.SECONDS));
+
+        assertEquals(200, plainCount.get());
+        assertEquals(accounts.length, batches.size());
+
+        for (int i = 0; i < accounts.length; i++) {
+            final Message batch = batches.get(i);
+
+            assertEquals(ChannelEvent.TRANSACTIONS_ADD_BATCH, batch.getEvent());
+            assertEquals(accounts[i], batch.getObject(MessageProperty.ACCOUNT));
+            assertEquals(100, batch.getTransactions().size());
+            assertEquals(first, batch.getTransactions().iterator().next());
+        }
+
+        messageBus.unregisterListener(plainListener, MessageChannel.TRANSACTION);
+        messageBus.unregisterListener(batchListener, MessageChannel.TRANSACTION);
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * jGnash, a personal finance application
+ * Copyright (C) 2001-2014 Craig Cavanaugh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jgnash.engine.message;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import jgnash.engine.Account;
+import jgnash.engine.AccountType;
+import jgnash.engine.DefaultCurrencies;
+import jgnash.engine.StoredObject;
+import jgnash.engine.Transaction;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Binary message encoding test
+ *
+ * @author Craig Cavanaugh
+ */
+public class MessageCodecTest {
+
+    private static MessageCodec.Resolver getResolver(final Map<String, StoredObject> objects) {
+        return new MessageCodec.Resolver() {
+            @Override
+            public StoredObject resolve(final Class<? extends StoredObject> clazz, final String uuid) {
+                final StoredObject object = objects.get(uuid);
+
+                return clazz.isInstance(object) ? object : null;
+            }
+        };
+    }
+
+    @Test
+    public void testBatchRoundTrip() throws Exception {
+        final Map<String, StoredObject> objects = new HashMap<>();
+
+        final Account account = new Account(AccountType.BANK, DefaultCurrencies.buildNode(Locale.US));
+        objects.put(account.getUuid(), account);
+
+        final List<Message> messages = new ArrayList<>();
+        final List<Transaction> transactions = new ArrayList<>();
+
+        for (int i = 0; i < 100; i++) {
+            final Transaction transaction = new Transaction();
+            objects.put(transaction.getUuid(), transaction);
+            transactions.add(transaction);
+
+            final Message message = new Message(MessageChannel.TRANSACTION, ChannelEvent.TRANSACTION_ADD, "source-uuid");
+            message.setObject(MessageProperty.ACCOUNT, account);
+            message.setObject(MessageProperty.TRANSACTION, transaction);
+            messages.add(message);
+        }
+
+        final byte[] payload = MessageCodec.encodeBatch(messages);
+
+        assertEquals(MessageCodec.BATCH, payload[0]);
+
+        final List<Message> decoded = MessageCodec.decodeBatch(payload, getResolver(objects));
+
+        assertEquals(messages.size(), decoded.size());
+
+        for (int i = 0; i < messages.size(); i++) {
+            final Message message = decoded.get(i);
+
+            assertEquals(MessageChannel.TRANSACTION, message.getChannel());
+            assertEquals(ChannelEvent.TRANSACTION_ADD, message.getEvent());
+            assertEquals("source-uuid", message.getSource());
+
+            assertSame(account, message.getObject(MessageProperty.ACCOUNT));
+            assertSame(transactions.get(i), message.getObject(MessageProperty.TRANSACTION));
+        }
+    }
+
+    @Test
+    public void testRejectsOtherClasses() {
+        final Account account = new Account(AccountType.BANK, DefaultCurrencies.buildNode(Locale.US));
+
+        final Message message = new Message(MessageChannel.ACCOUNT, ChannelEvent.ACCOUNT_ADD, "source-uuid");
+        message.setObject(MessageProperty.ACCOUNT, account);
+
+        final byte[] payload = MessageCodec.encodeBatch(Collections.singletonList(message));
+
+        // replace the class name with one of the same length that is not a stored object
+        final byte[] className = Account.class.getName().getBytes(StandardCharsets.UTF_8);
+        final byte[] otherName = ThreadLocal.class.getName().getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(className.length, otherName.length);
+
+        boolean replaced = false;
+
+        for (int i = 0; i <= payload.length - className.length && !replaced; i++) {
+            boolean match = true;
+
+            for (int j = 0; j < className.length && match; j++) {
+                match = payload[i + j] == className[j];
+            }
+
+            if (match) {
+                System.arraycopy(otherName, 0, payload, i, otherName.length);
+                replaced = true;
+            }
+        }
+
+        assertTrue(replaced);
+
+        try {
+            MessageCodec.decodeBatch(payload, getResolver(Collections.<String, StoredObject>singletonMap(
+                    account.getUuid(), account)));
+            fail("A class other than a stored object was accepted");
+        } catch (final IOException e) {
+            assertTrue(e.getMessage().contains(ThreadLocal.class.getName()));
+        }
+    }
+
+    @Test
+    public void testText() {
+        final String text = "<STOP_SERVER>";
+
+        final byte[] payload = MessageCodec.encodeText(text);
+
+        assertEquals(MessageCodec.TEXT, payload[0]);
+        assertEquals(text, MessageCodec.decodeText(payload));
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * jGnash, a personal finance application
+ * Copyright (C) 2001-2014 Craig Cavanaugh
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package jgnash.net.security;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import jgnash.engine.SecurityHistoryNode;
+import jgnash.engine.SecurityNode;
+import jgnash.util.DateUtils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Batched quote retrieval test using a local stub server
+ *
+ * @author Craig Cavanaugh
+ */
+public class QuoteFetcherTest {
+
+    @Test
+    public void testBatchedQuotes() throws Exception {
+        final AtomicInteger requests = new AtomicInteger();
+
+        final HttpServer server = startServer("/quotes", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+
+                final String query = URLDecoder.decode(exchange.getRequestURI().getRawQuery(), "UTF-8");
+                final String symbols = query.substring(2, query.indexOf('&'));
+
+                final StringBuilder response = new StringBuilder();
+
+                for (final String symbol : symbols.split(" ")) {
+                    response.append('"').append(symbol).append("\",10.5,\"10/12/2012\",\"4:00pm\",+0.25,10.25,11.0,10.0,1000\r\n");
+                }
+
+                respond(exchange, response.toString());
+            }
+        });
+
+        final QuoteFetcher fetcher = new QuoteFetcher();
+
+        try {
+            final String baseURL = "http://localhost:" + server.getAddress().getPort() + "/quotes?s=";
+
+            final AbstractYahooParser parser = new AbstractYahooParser() {
+                @Override
+                protected String getBaseURL() {
+                    return baseURL;
+                }
+            };
+
+            final List<SecurityNode> nodes = new ArrayList<>();
+
+            for (int i = 0; i < 120; i++) {
+                final SecurityNode node = new SecurityNode();
+                node.setSymbol("SYM" + i);
+                nodes.add(node);
+            }
+
+            final Map<SecurityNode, SecurityHistoryNode> quotes = fetcher.fetch(parser, nodes);
+
+            assertEquals(3, requests.get());
+            assertEquals(120, quotes.size());
+
+            for (final SecurityNode node : nodes) {
+                final SecurityHistoryNode history = quotes.get(node);
+
+                assertNotNull(history);
+                assertEquals(new BigDecimal("10.5"), history.getPrice());
+                assertEquals(new BigDecimal("11.0"), history.getHigh());
+                assertEquals(new BigDecimal("10.0"), history.getLow());
+                assertEquals(1000, history.getVolume());
+            }
+        } finally {
+            fetcher.shutdown();
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testQuotesMatchedBySymbol() throws Exception {
+        final HttpServer server = startServer("/quotes", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                // out of order, one symbol missing and one that was not requested
+                respond(exchange, "\"CCC\",3.0,\"10/12/2012\",\"4:00pm\",+0.25,3.0,3.0,3.0,300\r\n"
+                        + "\"XXX\",9.0,\"10/12/2012\",\"4:00pm\",+0.25,9.0,9.0,9.0,900\r\n"
+                        + "\"aaa\",1.0,\"10/12/2012\",\"4:00pm\",+0.25,1.0,1.0,1.0,100\r\n");
+            }
+        });
+
+        try {
+            final String baseURL = "http://localhost:" + server.getAddress().getPort() + "/quotes?s=";
+
+            final AbstractYahooParser parser = new AbstractYahooParser() {
+                @Override
+                protected String getBaseURL() {
+                    return baseURL;
+                }
+            };
+
+            final List<SecurityNode> nodes = new ArrayList<>();
+
+            for (final String symbol : new String[]{"AAA", "BBB", "CCC"}) {
+                final SecurityNode node = new SecurityNode();
+                node.setSymbol(symbol);
+                nodes.add(node);
+            }
+
+            final Map<SecurityNode, SecurityHistoryNode> quotes = parser.parse(nodes);
+
+            assertEquals(2, quotes.size());
+            assertEquals(new BigDecimal("1.0"), quotes.get(nodes.get(0)).getPrice());
+            assertNull(quotes.get(nodes.get(1)));
+            assertEquals(new BigDecimal("3.0"), quotes.get(nodes.get(2)).getPrice());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testHistoricalImport() throws Exception {
+        final HttpServer server = startServer("/table.csv", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                respond(exchange, "Date,Open,High,Low,Close,Volume,Adj Close\n"
+                        + "2007-02-14,14.60,14.90,14.50,14.80,15000000,14.80\n"
+                        + "2007-02-13,14.75,14.86,14.47,14.60,17824500,14.60\n");
+            }
+        });
+
+        try {
+            final SecurityNode node = new SecurityNode();
+            node.setSymbol("AMD");
+
+            final Date end = DateUtils.today();
+            final Date start = new Date(end.getTime() - TimeUnit.DAYS.toMillis(7));
+
+            final UpdateFactory.HistoricalImportCallable callable = new UpdateFactory.HistoricalImportCallable(node, start, end,
+                    "http://localhost:" + server.getAddress().getPort() + "/table.csv");
+
+            final List<SecurityHistoryNode> history = callable.fetchHistory();
+
+            assertNotNull(history);
+            assertEquals(2, history.size());
+            assertEquals(new BigDecimal("14.80"), history.get(0).getPrice());
+            assertEquals(17824500, history.get(1).getVolume());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static HttpServer startServer(final String context, final HttpHandler handler) throws IOException {
+        final HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext(context, handler);
+        server.start();
+
+        return server;
+    }
+
+    private static void respond(final HttpExchange exchange, final String response) throws IOException {
+        final byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+
+        exchange.sendResponseHeaders(200, bytes.length);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
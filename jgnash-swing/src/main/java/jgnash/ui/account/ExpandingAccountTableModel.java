@@ -33,11 +33,11 @@ import jgnash.engine.AccountType;
 import jgnash.engine.Comparators;
 import jgnash.engine.Engine;
 import jgnash.engine.EngineFactory;
+import jgnash.engine.message.BatchMessageListener;
 import jgnash.engine.message.ChannelEvent;
 import jgnash.engine.message.Message;
 import jgnash.engine.message.MessageBus;
 import jgnash.engine.message.MessageChannel;
-import jgnash.engine.message.MessageListener;
 import jgnash.engine.message.MessageProperty;
 import jgnash.text.CommodityFormat;
 import jgnash.ui.components.expandingtable.AbstractExpandingTableModel;
@@ -93,7 +93,8 @@ public final class ExpandingAccountTableModel extends AbstractExpandingTableMode
         columnTypes = new Class<?>[] { String.class, String.class, BigDecimal.class, BigDecimal.class, String.class,
                         String.class };
 
-        MessageBus.getInstance().registerListener(messageListener, MessageChannel.ACCOUNT, MessageChannel.COMMODITY, MessageChannel.SYSTEM);
+        MessageBus.getInstance().registerListener(messageListener, MessageChannel.ACCOUNT, MessageChannel.COMMODITY, MessageChannel.SYSTEM,
+                MessageChannel.TRANSACTION);
 
         AccountBalanceDisplayManager.addAccountBalanceDisplayModeChangeListener(new ActionListener() {
 
@@ -282,7 +283,8 @@ public final class ExpandingAccountTableModel extends AbstractExpandingTableMode
     }
 
     private void unregister() {
-        MessageBus.getInstance().unregisterListener(messageListener, MessageChannel.ACCOUNT, MessageChannel.COMMODITY, MessageChannel.SYSTEM);
+        MessageBus.getInstance().unregisterListener(messageListener, MessageChannel.ACCOUNT, MessageChannel.COMMODITY, MessageChannel.SYSTEM,
+                MessageChannel.TRANSACTION);
     }
 
     @Override
@@ -290,7 +292,10 @@ public final class ExpandingAccountTableModel extends AbstractExpandingTableMode
         return object.getParent();
     }
 
-    private class MessageBusListener implements MessageListener {
+    /**
+     * Receives transaction changes as one batch per account so the entries and balances are repainted once per batch
+     */
+    private class MessageBusListener implements BatchMessageListener {
 
         @Override
         public void messagePosted(final Message event) {
@@ -322,6 +327,10 @@ public final class ExpandingAccountTableModel extends AbstractExpandingTableMode
                         case SECURITY_HISTORY_REMOVE:
                             fireNodeChanged();
                             break;
+                        case TRANSACTIONS_ADD_BATCH:
+                        case TRANSACTIONS_REMOVE_BATCH:
+                            fireTableDataChanged();
+                            break;
                         case FILE_LOAD_SUCCESS:
                         case FILE_NEW_SUCCESS:
                             logger.warning("Should not have received a load and new file notification");
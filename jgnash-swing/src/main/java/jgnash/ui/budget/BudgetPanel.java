@@ -405,11 +405,45 @@ public final class BudgetPanel extends JPanel implements ActionListener, Message
             showCurrentPeriod();
 
             overviewPanel.updateSparkLines();
+
+            loadResults(resultsModel);
         }
 
         logger.exiting(BudgetPanel.class.getName(), "showBudgetPane");
     }
 
+    /**
+     * Computes the periods in parallel off the EDT instead of cell by cell while painting
+     *
+     * @param model results model to load
+     */
+    private void loadResults(final BudgetResultsModel model) {
+
+        SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
+
+            @Override
+            protected Void doInBackground() throws Exception {
+                model.loadResults();
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    get();
+
+                    if (model == resultsModel) {   // ignore if the budget or year changed while loading
+                        scrollPane.repaint();
+                    }
+                } catch (final InterruptedException | ExecutionException e) {
+                    logger.log(Level.SEVERE, e.getLocalizedMessage(), e);
+                }
+            }
+        };
+
+        worker.execute();
+    }
+
     private void removeBudgetPane() {
         logger.entering(BudgetPanel.class.getName(), "removeBudgetPane");
 
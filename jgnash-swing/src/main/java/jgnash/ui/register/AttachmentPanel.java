@@ -132,8 +132,10 @@ class AttachmentPanel extends JPanel implements ActionListener {
     Transaction buildTransaction(final Transaction transaction) {
         if (attachment != null) {
             if (moveAttachment) {   // move the attachment first
-                if (moveAttachment()) {
-                    transaction.setAttachment(attachment.getFileName().toString());
+                final String name = moveAttachment();
+
+                if (name != null) {
+                    transaction.setAttachment(name);
                 } else {
                     transaction.setAttachment(null);
 
@@ -152,7 +154,7 @@ class AttachmentPanel extends JPanel implements ActionListener {
         return transaction;
     }
 
-    private boolean moveAttachment() {
+    private String moveAttachment() {
         final Engine engine = EngineFactory.getEngine(EngineFactory.DEFAULT);
         Objects.requireNonNull(engine);
 
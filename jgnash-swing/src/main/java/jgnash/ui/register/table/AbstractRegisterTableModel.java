@@ -26,11 +26,11 @@ import javax.swing.table.AbstractTableModel;
 
 import jgnash.engine.Account;
 import jgnash.engine.Transaction;
+import jgnash.engine.message.BatchMessageListener;
 import jgnash.engine.message.ChannelEvent;
 import jgnash.engine.message.Message;
 import jgnash.engine.message.MessageBus;
 import jgnash.engine.message.MessageChannel;
-import jgnash.engine.message.MessageListener;
 import jgnash.engine.message.MessageProperty;
 import jgnash.ui.register.AccountBalanceDisplayManager;
 import jgnash.util.BigDecimalCache;
@@ -46,7 +46,7 @@ import jgnash.util.Resource;
  *
  * @author Craig Cavanaugh
  */
-public abstract class AbstractRegisterTableModel extends AbstractTableModel implements MessageListener, AccountTableModel, PackableTableModel {
+public abstract class AbstractRegisterTableModel extends AbstractTableModel implements BatchMessageListener, AccountTableModel, PackableTableModel {
 
     static final Resource rb = Resource.get();
 
@@ -272,14 +272,20 @@ public abstract class AbstractRegisterTableModel extends AbstractTableModel impl
                         case FILE_CLOSING:
                             unregister();
                             return;
-                        case TRANSACTION_ADD:
-                            Transaction t = (Transaction) event.getObject(MessageProperty.TRANSACTION);
-                            int index = account.indexOf(t);
+                        case TRANSACTIONS_ADD_BATCH:
                             balanceCache.ensureCapacity(account.getTransactionCount());
-                            balanceCache.clear(index);
-                            fireTableRowsInserted(index, index);
+
+                            if (event.getTransactions().size() == 1) {
+                                Transaction t = event.getTransactions().iterator().next();
+                                int index = account.indexOf(t);
+                                balanceCache.clear(index);
+                                fireTableRowsInserted(index, index);
+                            } else {    // one repaint for the whole batch
+                                balanceCache.clear();
+                                fireTableDataChanged();
+                            }
                             break;
-                        case TRANSACTION_REMOVE:
+                        case TRANSACTIONS_REMOVE_BATCH:
                             balanceCache.clear();
                             fireTableDataChanged();
                             break;
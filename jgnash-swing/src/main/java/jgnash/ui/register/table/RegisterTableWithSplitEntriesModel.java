@@ -261,16 +261,20 @@ public class RegisterTableWithSplitEntriesModel extends RegisterTableModel {
                         case FILE_CLOSING:
                             unregister();
                             break;
-                        case TRANSACTION_ADD:
-                            Transaction t = (Transaction) event.getObject(MessageProperty.TRANSACTION);
+                        case TRANSACTIONS_ADD_BATCH:
                             updateData();
-                            int index = indexOfWrapper(t);
 
-                            if (index >= 0) {
-                                fireTableRowsInserted(index, index);
+                            if (event.getTransactions().size() == 1) {
+                                int index = indexOfWrapper(event.getTransactions().iterator().next());
+
+                                if (index >= 0) {
+                                    fireTableRowsInserted(index, index);
+                                }
+                            } else {
+                                fireTableDataChanged();
                             }
                             break;
-                        case TRANSACTION_REMOVE:
+                        case TRANSACTIONS_REMOVE_BATCH:
                             updateData();
                             fireTableDataChanged();
                             break;
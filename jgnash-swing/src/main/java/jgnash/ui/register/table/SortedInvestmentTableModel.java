@@ -140,8 +140,8 @@ public class SortedInvestmentTableModel extends InvestmentRegisterTableModel imp
                 @Override
                 public void run() {
                     switch (event.getEvent()) {
-                        case TRANSACTION_ADD:
-                        case TRANSACTION_REMOVE:
+                        case TRANSACTIONS_ADD_BATCH:
+                        case TRANSACTIONS_REMOVE_BATCH:
                             getTransactions();
                             break;
                         default: // ignore any other messages that don't matter
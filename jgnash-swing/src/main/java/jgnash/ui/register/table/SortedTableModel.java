@@ -202,22 +202,31 @@ public class SortedTableModel extends RegisterTableModel implements SortableTabl
                 case FILE_CLOSING:
                     unregister();
                     return;
-                case TRANSACTION_ADD:
+                case TRANSACTIONS_ADD_BATCH:
                     EventQueue.invokeLater(new Runnable() {
 
                         @Override
                         public void run() {
                             balanceCache.ensureCapacity(account.getTransactionCount());
-                            addTransaction((Transaction) event.getObject(MessageProperty.TRANSACTION));
+
+                            if (event.getTransactions().size() == 1) {
+                                addTransaction(event.getTransactions().iterator().next());
+                            } else {
+                                reloadTransactions();
+                            }
                         }
                     });
                     return;
-                case TRANSACTION_REMOVE:
+                case TRANSACTIONS_REMOVE_BATCH:
                     EventQueue.invokeLater(new Runnable() {
 
                         @Override
                         public void run() {
-                            removeTransaction((Transaction) event.getObject(MessageProperty.TRANSACTION));
+                            if (event.getTransactions().size() == 1) {
+                                removeTransaction(event.getTransactions().iterator().next());
+                            } else {
+                                reloadTransactions();
+                            }
                         }
                     });
                     return;
@@ -227,6 +236,16 @@ public class SortedTableModel extends RegisterTableModel implements SortableTabl
         }
     }
 
+    /**
+     * Reloads the transactions and repaints once instead of updating row by row
+     */
+    private void reloadTransactions() {
+        getTransactions();
+
+        balanceCache.clear();
+        fireTableDataChanged();
+    }
+
     private void addTransaction(final Transaction t) {
         lock.lock();
 